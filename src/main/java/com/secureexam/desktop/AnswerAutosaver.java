@@ -0,0 +1,226 @@
+package com.secureexam.desktop;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Write-behind autosave for one exam session.
+ * {@link #record(int, String)} only stores the latest answer per question in memory;
+ * a background writer flushes the pending changes to {@link LocalCache} in one
+ * transaction at least every {@code maxLossMillis}, which bounds how much work a
+ * crash can lose. A bound of 0 writes every change through immediately.
+ * The latency of recent flushes is kept so each session reports what autosave costs with
+ * the configured cache storage (disk or memory).
+ * <p>
+ * Given an {@link AnswerSheet} source, the autosaver instead only notes which questions changed
+ * ({@link #record(int)}) and a flush stores one snapshot of the whole sheet, so nothing is
+ * converted to answer text or boxed on the way.
+ */
+public class AnswerAutosaver implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(AnswerAutosaver.class.getName());
+    private static final int LATENCY_SAMPLES = 1024;
+
+    private final String examId;
+    private final String studentId;
+    private final long maxLossMillis;
+    private final ScheduledExecutorService writer;
+    private final Object lock = new Object();
+    private Map<Integer, String> pending = new HashMap<>();
+    private final Supplier<AnswerSheet> sheet; // null when answers are saved as text
+    private BitSet pendingSheetChanges = new BitSet();
+    private final AtomicLong recordedChanges = new AtomicLong();
+    private final AtomicLong flushedChanges = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final long[] flushNanos = new long[LATENCY_SAMPLES]; // ring of the most recent flush latencies
+    private volatile boolean closed = false;
+
+    public AnswerAutosaver(String examId, String studentId, long maxLossMillis) {
+        this(examId, studentId, maxLossMillis, null);
+    }
+
+    /**
+     * @param sheet supplies the sheet to store on each flush, or null to save answer text through {@link #record(int, String)}
+     */
+    public AnswerAutosaver(String examId, String studentId, long maxLossMillis, Supplier<AnswerSheet> sheet) {
+        if (maxLossMillis < 0) {
+            throw new IllegalArgumentException("Autosave loss bound must not be negative");
+        }
+        this.examId = examId;
+        this.studentId = studentId;
+        this.maxLossMillis = maxLossMillis;
+        this.sheet = sheet;
+        if (maxLossMillis > 0) {
+            writer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "answer-autosave-" + examId);
+                thread.setDaemon(true);
+                return thread;
+            });
+            writer.scheduleWithFixedDelay(this::flushQuietly, maxLossMillis, maxLossMillis, TimeUnit.MILLISECONDS);
+        } else {
+            writer = null;
+        }
+    }
+
+    public long getMaxLossMillis() { return maxLossMillis; }
+    public long getRecordedChanges() { return recordedChanges.get(); }
+    public long getFlushedChanges() { return flushedChanges.get(); }
+    public long getFlushCount() { return flushes.get(); }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the latency of recent successful flushes at that percentile, in microseconds (0 before any flush)
+     */
+    public double getFlushLatencyMicros(double percentile) {
+        long[] sorted;
+        synchronized (flushNanos) {
+            sorted = Arrays.copyOf(flushNanos, (int) Math.min(flushes.get(), LATENCY_SAMPLES));
+        }
+        if (sorted.length == 0) {
+            return 0;
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.min(sorted.length - 1, Math.round(percentile / 100 * (sorted.length - 1)));
+        return sorted[index] / 1e3;
+    }
+
+    /**
+     * Records the latest answer for a question; repeated changes to the same question
+     * before the next flush collapse into one write. A null answer clears the question.
+     */
+    public void record(int questionIndex, String answer) {
+        if (closed) {
+            throw new IllegalStateException("Autosaver is closed");
+        }
+        synchronized (lock) {
+            pending.put(questionIndex, answer);
+        }
+        recordedChanges.incrementAndGet();
+        if (writer == null) {
+            flushQuietly();
+        }
+    }
+
+    /**
+     * Notes that a question's entry in the answer sheet changed; the next flush stores the sheet.
+     */
+    public void record(int questionIndex) {
+        if (closed) {
+            throw new IllegalStateException("Autosaver is closed");
+        }
+        if (sheet == null) {
+            throw new IllegalStateException("Autosaver was created without an answer sheet");
+        }
+        synchronized (lock) {
+            pendingSheetChanges.set(questionIndex);
+        }
+        recordedChanges.incrementAndGet();
+        if (writer == null) {
+            flushQuietly();
+        }
+    }
+
+    /**
+     * Writes all pending changes now. On failure the changes are put back so the
+     * next flush retries them, unless a newer value was recorded in the meantime.
+     */
+    public void flush() throws SQLException {
+        if (sheet != null) {
+            flushSheet();
+            return;
+        }
+        Map<Integer, String> batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new HashMap<>();
+        }
+        try {
+            long start = System.nanoTime();
+            LocalCache.saveAnswers(examId, studentId, batch);
+            recordFlush(batch.size(), System.nanoTime() - start);
+        } catch (SQLException e) {
+            synchronized (lock) {
+                for (Map.Entry<Integer, String> entry : batch.entrySet()) {
+                    if (!pending.containsKey(entry.getKey())) {
+                        pending.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+            throw e;
+        }
+    }
+
+    private void flushSheet() throws SQLException {
+        BitSet batch;
+        synchronized (lock) {
+            if (pendingSheetChanges.isEmpty()) {
+                return;
+            }
+            batch = pendingSheetChanges;
+            pendingSheetChanges = new BitSet();
+        }
+        try {
+            long start = System.nanoTime();
+            LocalCache.saveAnswerSheet(examId, studentId, sheet.get());
+            recordFlush(batch.cardinality(), System.nanoTime() - start);
+        } catch (SQLException e) {
+            synchronized (lock) {
+                pendingSheetChanges.or(batch);
+            }
+            throw e;
+        }
+    }
+
+    private void recordFlush(int changes, long elapsedNanos) {
+        flushedChanges.addAndGet(changes);
+        synchronized (flushNanos) {
+            flushNanos[(int) (flushes.getAndIncrement() % LATENCY_SAMPLES)] = elapsedNanos;
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Autosave flush failed for examId: " + examId + "; will retry", e);
+        } catch (RuntimeException e) {
+            // Never let an unexpected failure cancel the scheduled writer
+            LOGGER.log(Level.SEVERE, "Unexpected autosave failure for examId: " + examId, e);
+        }
+    }
+
+    /**
+     * Stops the background writer and flushes whatever is still pending.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (writer != null) {
+            writer.shutdown();
+            try {
+                writer.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flushQuietly();
+        LOGGER.info(String.format("Autosaver closed for examId: %s after %d flushes of %d recorded changes; "
+                + "flush p50=%.1f us p99=%.1f us on %s cache", examId, flushes.get(), recordedChanges.get(),
+            getFlushLatencyMicros(50), getFlushLatencyMicros(99), LocalCache.isInMemory() ? "memory" : "disk"));
+    }
+}
@@ -0,0 +1,346 @@
+package com.secureexam.desktop;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped journal of one student's exam session.
+ * Every answer change, flag toggle, navigation and focus loss is written as a fixed-size,
+ * CRC-checked 32-byte record, so an autosave costs a few stores into the mapping
+ * instead of a database write. {@link #replay()} rebuilds the latest state after a
+ * crash; a torn record at the tail is detected by its checksum and discarded.
+ * Unless every record is forced, a background flusher forces new records to the device at
+ * the autosave loss bound, so a power loss costs no more than a crash of the autosave would.
+ *
+ * Record layout (big-endian):
+ * [0] type, [1] value, [2..3] reserved, [4..7] question index,
+ * [8..15] sequence, [16..23] timestamp millis, [24..27] reserved, [28..31] CRC32 of bytes 0..27
+ */
+public class AnswerJournal implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(AnswerJournal.class.getName());
+    private static final Path JOURNAL_DIR = Path.of(ConfigLoader.getCacheDirectory(), "secureexam_journal");
+
+    static final int RECORD_SIZE = 32;
+    private static final int HEADER_SIZE = RECORD_SIZE;
+    private static final int MAGIC = 0x53454A31; // "SEJ1"
+    private static final int VERSION = 1;
+    private static final int SEGMENT_BYTES = 64 * 1024;
+
+    public static final byte TYPE_ANSWER = 1;
+    public static final byte TYPE_FLAG = 2;
+    public static final byte TYPE_NAVIGATE = 3;
+    public static final byte TYPE_FOCUS_LOSS = 4;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final boolean forceEachRecord;
+    private final ScheduledExecutorService flusher; // null when every record is forced, or flushing is left to the OS
+    private final ByteBuffer scratch = ByteBuffer.allocate(RECORD_SIZE);
+    private final CRC32 crc = new CRC32();
+    private MappedByteBuffer mapped;
+    private int position;
+    private int forcedPosition;
+    private long sequence;
+
+    /**
+     * Opens (or creates) the journal file. Existing records are scanned so that
+     * new appends continue after the last valid one.
+     * @param forceEachRecord flush every record to the storage device, surviving power loss
+     */
+    public AnswerJournal(Path file, boolean forceEachRecord) throws IOException {
+        this(file, forceEachRecord, 0);
+    }
+
+    /**
+     * @param flushIntervalMillis when records are not forced one by one, how often new records are
+     *        forced from a background thread; 0 leaves writing them back to the operating system
+     */
+    public AnswerJournal(Path file, boolean forceEachRecord, long flushIntervalMillis) throws IOException {
+        this.file = file;
+        this.forceEachRecord = forceEachRecord;
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = Math.max(channel.size(), SEGMENT_BYTES);
+        mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, roundToSegment(size));
+        if (mapped.getInt(0) != MAGIC) {
+            mapped.putInt(0, MAGIC);
+            mapped.putInt(4, VERSION);
+            mapped.putInt(8, RECORD_SIZE);
+            mapped.force(0, HEADER_SIZE);
+        } else if (mapped.getInt(4) != VERSION || mapped.getInt(8) != RECORD_SIZE) {
+            channel.close();
+            throw new IOException("Unsupported journal format in " + file);
+        }
+        position = HEADER_SIZE;
+        replay(); // positions the writer after the last valid record
+        forcedPosition = position;
+        if (!forceEachRecord && flushIntervalMillis > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "answer-journal-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * Opens the session journal; new records reach the device within the autosave loss bound
+     * ({@code cache.autosaveMaxLossMs}), or each one at once with {@code cache.journalForceEachRecord}.
+     */
+    public static AnswerJournal open(String examId, String studentId) throws IOException {
+        return new AnswerJournal(pathFor(examId, studentId), ConfigLoader.isJournalForceEachRecord(),
+            ConfigLoader.getAutosaveMaxLossMillis());
+    }
+
+    public static boolean exists(String examId, String studentId) {
+        return Files.exists(pathFor(examId, studentId));
+    }
+
+    /**
+     * Removes the journal of a session that will not be resumed, so it is not replayed onto a fresh start.
+     */
+    public static void discard(String examId, String studentId) throws IOException {
+        if (exists(examId, studentId)) {
+            open(examId, studentId).delete();
+        }
+    }
+
+    static Path pathFor(String examId, String studentId) {
+        String key = examId + "\u0000" + studentId;
+        String safe = (examId + "_" + studentId).replaceAll("[^A-Za-z0-9._-]", "_");
+        CRC32 keyHash = new CRC32();
+        keyHash.update(key.getBytes(StandardCharsets.UTF_8));
+        // The hash keeps ids that sanitize to the same name from sharing a file
+        return JOURNAL_DIR.resolve(safe + "-" + Long.toHexString(keyHash.getValue()) + ".journal");
+    }
+
+    public Path getFile() { return file; }
+
+    /**
+     * @param optionIndex index into the question's displayed options, or -1 when cleared
+     */
+    public void appendAnswer(int questionIndex, int optionIndex) throws IOException {
+        append(TYPE_ANSWER, (byte) optionIndex, questionIndex);
+    }
+
+    public void appendFlag(int questionIndex, boolean flagged) throws IOException {
+        append(TYPE_FLAG, (byte) (flagged ? 1 : 0), questionIndex);
+    }
+
+    public void appendNavigation(int questionIndex) throws IOException {
+        append(TYPE_NAVIGATE, (byte) 0, questionIndex);
+    }
+
+    /**
+     * @param focusLossCount the count after this loss; it is stored in the question index field
+     */
+    public void appendFocusLoss(int focusLossCount) throws IOException {
+        append(TYPE_FOCUS_LOSS, (byte) 0, focusLossCount);
+    }
+
+    private synchronized void append(byte type, byte value, int questionIndex) throws IOException {
+        if (position + RECORD_SIZE > mapped.capacity()) {
+            mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, mapped.capacity() + SEGMENT_BYTES);
+        }
+        scratch.clear();
+        scratch.put(type).put(value).putShort((short) 0).putInt(questionIndex)
+            .putLong(++sequence).putLong(System.currentTimeMillis()).putInt(0);
+        crc.reset();
+        crc.update(scratch.array(), 0, RECORD_SIZE - 4);
+        scratch.putInt((int) crc.getValue());
+        mapped.put(position, scratch.array(), 0, RECORD_SIZE);
+        if (forceEachRecord) {
+            mapped.force(position, RECORD_SIZE);
+        }
+        position += RECORD_SIZE;
+    }
+
+    /**
+     * Forces the records appended since the last flush to the storage device.
+     */
+    public synchronized void flush() {
+        if (channel.isOpen() && position > forcedPosition) {
+            mapped.force(forcedPosition, position - forcedPosition);
+            forcedPosition = position;
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to flush journal " + file, e);
+        }
+    }
+
+    /**
+     * Rebuilds the latest session state from the journal. Scanning stops at the first
+     * record whose checksum does not match, which is where a crash interrupted a write,
+     * or whose sequence number does not follow the previous one.
+     */
+    public synchronized JournalState replay() {
+        JournalState state = new JournalState();
+        int offset = HEADER_SIZE;
+        byte[] record = new byte[RECORD_SIZE];
+        while (offset + RECORD_SIZE <= mapped.capacity()) {
+            mapped.get(offset, record, 0, RECORD_SIZE);
+            crc.reset();
+            crc.update(record, 0, RECORD_SIZE - 4);
+            ByteBuffer buf = ByteBuffer.wrap(record);
+            if (record[0] == 0 || buf.getInt(RECORD_SIZE - 4) != (int) crc.getValue()
+                    || buf.getLong(8) != state.lastSequence + 1) {
+                // Torn write, or a stale record from before the journal was blanked
+                break;
+            }
+            byte value = record[1];
+            int questionIndex = buf.getInt(4);
+            state.lastSequence = buf.getLong(8);
+            switch (record[0]) {
+                case TYPE_ANSWER:
+                    if (value < 0) {
+                        state.answers.remove(questionIndex);
+                    } else {
+                        state.answers.put(questionIndex, (int) value);
+                    }
+                    break;
+                case TYPE_FLAG:
+                    state.flags.set(questionIndex, value != 0);
+                    break;
+                case TYPE_NAVIGATE:
+                    state.currentIndex = questionIndex;
+                    break;
+                case TYPE_FOCUS_LOSS:
+                    state.focusLossCount = Math.max(state.focusLossCount, questionIndex);
+                    break;
+                default:
+                    LOGGER.warning("Unknown journal record type " + record[0] + " in " + file);
+            }
+            state.recordCount++;
+            offset += RECORD_SIZE;
+        }
+        position = offset;
+        sequence = state.lastSequence;
+        return state;
+    }
+
+    /**
+     * Folds the journal into the submission's answer sheet through {@link LocalCache#saveAnswerSheet},
+     * in canonical question and option order like every other save, and deletes the journal file.
+     * The journal is kept if the sheet cannot be saved.
+     * @param order the layout the journaled indices refer to, or null if it is unknown, in which case they are kept in display order
+     */
+    public void compact(String examId, String studentId, QuestionOrder order, int questionCount)
+            throws IOException, SQLException {
+        JournalState state = replay();
+        AnswerSheet sheet = state.toAnswerSheet(questionCount);
+        if (order != null && order.size() == questionCount) {
+            sheet = sheet.toCanonical(order);
+        } else {
+            LOGGER.warning("No layout for examId: " + examId + "; compacted answers are kept in display order");
+        }
+        LocalCache.saveAnswerSheet(examId, studentId, sheet);
+        LOGGER.info("Compacted " + state.recordCount + " journal records for examId: " + examId);
+        delete();
+    }
+
+    /**
+     * Closes the journal and removes its file. The first record slot is blanked first so
+     * that a file which cannot be removed while still mapped (as on Windows) replays empty.
+     */
+    public void delete() throws IOException {
+        synchronized (this) {
+            if (channel.isOpen()) {
+                mapped.put(HEADER_SIZE, new byte[RECORD_SIZE], 0, RECORD_SIZE);
+                mapped.force(HEADER_SIZE, RECORD_SIZE);
+                position = HEADER_SIZE;
+                sequence = 0;
+            }
+        }
+        close();
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Journal " + file + " left in place after blanking", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        closeChannel();
+    }
+
+    private synchronized void closeChannel() {
+        try {
+            if (channel.isOpen()) {
+                mapped.force();
+                channel.close();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Error closing journal " + file, e);
+        }
+    }
+
+    private static long roundToSegment(long size) {
+        return ((size + SEGMENT_BYTES - 1) / SEGMENT_BYTES) * SEGMENT_BYTES;
+    }
+
+    /**
+     * Session state rebuilt from journal records.
+     */
+    public static class JournalState {
+        private final Map<Integer, Integer> answers = new HashMap<>();
+        private final BitSet flags = new BitSet();
+        private int currentIndex = 0;
+        private int focusLossCount = 0;
+        private long lastSequence = 0;
+        private int recordCount = 0;
+
+        public Map<Integer, Integer> getAnswers() { return answers; }
+        public BitSet getFlags() { return flags; }
+        public int getCurrentIndex() { return currentIndex; }
+        public int getFocusLossCount() { return focusLossCount; }
+        public long getLastSequence() { return lastSequence; }
+        public int getRecordCount() { return recordCount; }
+
+        /**
+         * @return the journaled answers and flags by displayed question and option index
+         */
+        public AnswerSheet toAnswerSheet(int questionCount) {
+            AnswerSheet sheet = new AnswerSheet(questionCount);
+            for (Map.Entry<Integer, Integer> entry : answers.entrySet()) {
+                if (entry.getKey() < questionCount && entry.getValue() < Question.OPTION_COUNT) {
+                    sheet.setAnswer(entry.getKey(), entry.getValue());
+                }
+            }
+            for (int i = flags.nextSetBit(0); i >= 0 && i < questionCount; i = flags.nextSetBit(i + 1)) {
+                sheet.setFlag(i, true);
+            }
+            return sheet;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.secureexam.desktop;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A student's answers and flags as primitives: one byte per question holding the chosen
+ * option index (-1 when unanswered) and a bit per question for flags.
+ * <p>
+ * Wire format ({@link #encode()}): [format version][question count varint], the answers
+ * packed two per byte as option index + 1 (0 when unanswered), then [flag byte count varint]
+ * and the flag bits. A 200-question sheet is about 130 bytes, where the same answers as
+ * option text are several kilobytes.
+ */
+public class AnswerSheet {
+    private static final int FORMAT_VERSION = 1;
+
+    private final byte[] answers;
+    private final BitSet flags;
+
+    public AnswerSheet(int questionCount) {
+        this.answers = new byte[questionCount];
+        Arrays.fill(answers, (byte) -1);
+        this.flags = new BitSet(questionCount);
+    }
+
+    public int size() { return answers.length; }
+
+    /**
+     * @return the chosen option index, or -1 if the question is unanswered
+     */
+    public synchronized int getAnswer(int questionIndex) {
+        return answers[questionIndex];
+    }
+
+    /**
+     * @param optionIndex 0 to 3, or -1 to clear the answer
+     */
+    public synchronized void setAnswer(int questionIndex, int optionIndex) {
+        if (optionIndex < -1 || optionIndex >= Question.OPTION_COUNT) {
+            throw new IllegalArgumentException("Option index out of range: " + optionIndex);
+        }
+        answers[questionIndex] = (byte) optionIndex;
+    }
+
+    public synchronized boolean isFlagged(int questionIndex) {
+        return flags.get(questionIndex);
+    }
+
+    public synchronized void setFlag(int questionIndex, boolean flagged) {
+        flags.set(questionIndex, flagged);
+    }
+
+    public synchronized int getAnsweredCount() {
+        int answered = 0;
+        for (byte answer : answers) {
+            if (answer >= 0) {
+                answered++;
+            }
+        }
+        return answered;
+    }
+
+    public synchronized int getFlaggedCount() {
+        return flags.cardinality();
+    }
+
+    /**
+     * @param questions the questions the answers refer to, in the same order
+     */
+    public synchronized int score(List<Question> questions) {
+        int score = 0;
+        for (int i = 0; i < answers.length && i < questions.size(); i++) {
+            if (questions.get(i).isCorrect(answers[i])) {
+                score++;
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Maps a sheet recorded against the student's shuffled layout onto canonical question and
+     * option order, which is what is stored and uploaded: readers need only the exam, not the layout.
+     */
+    public synchronized AnswerSheet toCanonical(QuestionOrder order) {
+        if (order.size() != answers.length) {
+            throw new IllegalArgumentException("Order covers " + order.size() + " questions but the sheet has " + answers.length);
+        }
+        AnswerSheet canonical = new AnswerSheet(answers.length);
+        for (int i = 0; i < answers.length; i++) {
+            int ordinal = order.canonicalOrdinal(i);
+            if (answers[i] >= 0) {
+                canonical.answers[ordinal] = (byte) order.canonicalOption(i, answers[i]);
+            }
+            if (flags.get(i)) {
+                canonical.flags.set(ordinal);
+            }
+        }
+        return canonical;
+    }
+
+    /**
+     * @return the answers as option text, for stores that still keep text
+     */
+    public synchronized Map<Integer, String> toAnswers(List<Question> questions) {
+        Map<Integer, String> result = new HashMap<>();
+        for (int i = 0; i < answers.length && i < questions.size(); i++) {
+            if (answers[i] >= 0) {
+                result.put(i, questions.get(i).getOption(answers[i]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the answers for people reading results, e.g. {@code "1:B 2:- 3:D*"}: question number,
+     * option letter or {@code -} when unanswered, and {@code *} when flagged
+     */
+    public synchronized String describe() {
+        StringBuilder text = new StringBuilder(answers.length * 5);
+        for (int i = 0; i < answers.length; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(i + 1).append(':').append(answers[i] >= 0 ? (char) ('A' + answers[i]) : '-');
+            if (flags.get(i)) {
+                text.append('*');
+            }
+        }
+        return text.toString();
+    }
+
+    public synchronized byte[] encode() {
+        byte[] flagBytes = flags.toByteArray();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8 + (answers.length + 1) / 2 + flagBytes.length);
+        out.write(FORMAT_VERSION);
+        QuestionCodec.writeVarint(out, answers.length);
+        for (int i = 0; i < answers.length; i += 2) {
+            int low = answers[i] + 1;
+            int high = i + 1 < answers.length ? answers[i + 1] + 1 : 0;
+            out.write(low | high << 4);
+        }
+        QuestionCodec.writeVarint(out, flagBytes.length);
+        out.write(flagBytes, 0, flagBytes.length);
+        return out.toByteArray();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the bytes are not an answer sheet this version can read
+     */
+    public static AnswerSheet decode(byte[] encoded) {
+        try {
+            ByteBuffer in = ByteBuffer.wrap(encoded);
+            int version = in.get();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unsupported answer sheet format: " + version);
+            }
+            AnswerSheet sheet = new AnswerSheet(QuestionCodec.readVarint(in));
+            for (int i = 0; i < sheet.answers.length; i += 2) {
+                int packed = in.get() & 0xFF;
+                sheet.setAnswer(i, (packed & 0xF) - 1);
+                if (i + 1 < sheet.answers.length) {
+                    sheet.setAnswer(i + 1, (packed >> 4) - 1);
+                }
+            }
+            byte[] flagBytes = new byte[QuestionCodec.readVarint(in)];
+            in.get(flagBytes);
+            sheet.flags.or(BitSet.valueOf(flagBytes));
+            return sheet;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed answer sheet", e);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.secureexam.desktop;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * At-rest encryption for LocalCache records.
+ * Each exam gets its own AES-256 key derived from the cache master key with HKDF-SHA256, and
+ * each record is sealed separately with AES-GCM under a fresh 96-bit nonce, so one question
+ * can be read without touching the rest of the exam. The record's identity (exam, kind, row)
+ * is bound in as associated data, so ciphertext copied to another row fails authentication.
+ * <p>
+ * Sealed records are {@code [0xE0][nonce][ciphertext + tag]}; PayloadCodec frames never start
+ * with that marker. {@link #open} rejects anything else, so a plaintext record cannot be swapped
+ * in for a sealed one. Records written while encryption was off are sealed in place once, when
+ * the cache is next opened with a key.
+ */
+public class CacheCipher {
+    private static final Logger LOGGER = Logger.getLogger(CacheCipher.class.getName());
+    private static final byte SEALED = (byte) 0xE0;
+    private static final int NONCE_BYTES = 12;
+    private static final int TAG_BITS = 128;
+    private static final int KEY_BYTES = 32;
+    private static final byte[] HKDF_SALT = "SecureExam LocalCache v1".getBytes(StandardCharsets.UTF_8);
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final ThreadLocal<Cipher> GCM = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance("AES/GCM/NoPadding");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES-GCM is not available", e);
+        }
+    });
+
+    private final byte[] pseudoRandomKey;
+    private final Map<String, SecretKeySpec> examKeys = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> macKeys = new ConcurrentHashMap<>();
+
+    public CacheCipher(byte[] masterKey) {
+        if (masterKey.length < KEY_BYTES) {
+            throw new IllegalArgumentException("Cache master key must be at least " + KEY_BYTES + " bytes");
+        }
+        pseudoRandomKey = hmac(HKDF_SALT, masterKey); // HKDF extract
+    }
+
+    /**
+     * Reads the master key an administrator provisioned at {@code cache.keyFile}, which the client
+     * runs with access to but the student's own account cannot read. No key is ever generated here:
+     * one the client created for itself would sit wherever the student can read it, so without a
+     * provisioned key this fails and callers keep cached exams and snapshots out of reach.
+     * @throws IOException if no key is provisioned, it cannot be read, or (where the file system
+     *         has POSIX permissions) group or others have any access to it
+     */
+    public static CacheCipher fromConfig() throws IOException {
+        return fromKeyFile(Path.of(ConfigLoader.getCacheKeyFile()));
+    }
+
+    static CacheCipher fromKeyFile(Path keyFile) throws IOException {
+        if (!Files.isReadable(keyFile)) {
+            throw new IOException("No cache master key provisioned at " + keyFile);
+        }
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(keyFile);
+            permissions.removeAll(EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE));
+            if (!permissions.isEmpty()) {
+                throw new IOException("Cache master key " + keyFile + " must be accessible to its owner only");
+            }
+        }
+        return new CacheCipher(Base64.getDecoder().decode(Files.readAllBytes(keyFile)));
+    }
+
+    /**
+     * Writes a new random master key, accessible to the current user only where the file system
+     * supports it. Run once per machine by an administrator, as the account the client runs under:
+     * {@code java -cp <client jar> com.secureexam.desktop.CacheCipher <key file>}.
+     * @throws FileAlreadyExistsException rather than replace a key the cache is encrypted with
+     */
+    public static void provisionKeyFile(Path keyFile) throws IOException {
+        byte[] key = new byte[KEY_BYTES];
+        RANDOM.nextBytes(key);
+        Path parent = keyFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(keyFile, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+            Files.write(keyFile, Base64.getEncoder().encode(key), StandardOpenOption.TRUNCATE_EXISTING);
+        } else {
+            Files.write(keyFile, Base64.getEncoder().encode(key), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        }
+        LOGGER.info("Provisioned cache master key " + keyFile);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: CacheCipher <key file>");
+            System.exit(2);
+        }
+        provisionKeyFile(Path.of(args[0]));
+    }
+
+    public static boolean isSealed(byte[] stored) {
+        return stored != null && stored.length > 0 && stored[0] == SEALED;
+    }
+
+    /**
+     * Encrypts one record of an exam.
+     * @param context identifies the record within the exam (for example the question ordinal); it is authenticated, not stored
+     */
+    public byte[] seal(String examId, String context, byte[] plaintext) {
+        byte[] nonce = new byte[NONCE_BYTES];
+        RANDOM.nextBytes(nonce);
+        try {
+            Cipher cipher = GCM.get();
+            cipher.init(Cipher.ENCRYPT_MODE, examKey(examId), new GCMParameterSpec(TAG_BITS, nonce));
+            cipher.updateAAD(context.getBytes(StandardCharsets.UTF_8));
+            ByteBuffer out = ByteBuffer.allocate(1 + NONCE_BYTES + cipher.getOutputSize(plaintext.length));
+            out.put(SEALED).put(nonce);
+            cipher.doFinal(ByteBuffer.wrap(plaintext), out);
+            return out.array();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to encrypt cache record", e);
+        }
+    }
+
+    /**
+     * Decrypts a record written by {@link #seal} with the same exam and context.
+     * @throws IllegalStateException if the record is not sealed, or was altered, moved or sealed under another key
+     */
+    public byte[] open(String examId, String context, byte[] stored) {
+        if (!isSealed(stored)) {
+            throw new IllegalStateException("Cache record is not encrypted: " + examId + " " + context);
+        }
+        try {
+            Cipher cipher = GCM.get();
+            cipher.init(Cipher.DECRYPT_MODE, examKey(examId), new GCMParameterSpec(TAG_BITS, stored, 1, NONCE_BYTES));
+            cipher.updateAAD(context.getBytes(StandardCharsets.UTF_8));
+            return cipher.doFinal(stored, 1 + NONCE_BYTES, stored.length - 1 - NONCE_BYTES);
+        } catch (AEADBadTagException e) {
+            throw new IllegalStateException("Cache record failed authentication: " + examId + " " + context, e);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to decrypt cache record", e);
+        }
+    }
+
+    /**
+     * HMAC-SHA256 tag over the first {@code length} bytes of data, under a key derived from the
+     * cache master key for the context. For files kept outside the cache that must not be forged
+     * or edited by someone without the key.
+     */
+    public byte[] authenticate(String context, byte[] data, int length) {
+        byte[] macKey = macKeys.computeIfAbsent(context, c -> expand("mac:" + c));
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(macKey, "HmacSHA256"));
+            mac.update(data, 0, length);
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    private SecretKeySpec examKey(String examId) {
+        return examKeys.computeIfAbsent(examId, id -> new SecretKeySpec(expand("exam:" + id), "AES"));
+    }
+
+    // HKDF expand, one block: T(1) = HMAC(PRK, info || 0x01)
+    private byte[] expand(String info) {
+        byte[] infoBytes = info.getBytes(StandardCharsets.UTF_8);
+        byte[] input = new byte[infoBytes.length + 1];
+        System.arraycopy(infoBytes, 0, input, 0, infoBytes.length);
+        input[infoBytes.length] = 1;
+        return hmac(pseudoRandomKey, input);
+    }
+
+    private static byte[] hmac(byte[] key, byte[] data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+}
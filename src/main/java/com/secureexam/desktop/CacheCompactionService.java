@@ -0,0 +1,167 @@
+package com.secureexam.desktop;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the local cache file from growing for the whole semester. Deleted exams and
+ * submissions leave free space and half-empty chunks behind, which H2 does not give back on
+ * its own. Each pass reads the file's fill rate (space used by chunks) and chunks fill rate
+ * (live data inside them), and compacts once either drops below the threshold.
+ * <p>
+ * The SQL engine is compacted with {@code SHUTDOWN COMPACT} while {@link CachePool#exclusive}
+ * holds every connection, so callers wait briefly and then reopen the smaller file. The
+ * MVStore engine compacts in place. A pass never starts, and stops before compacting, while
+ * an exam is active.
+ */
+public class CacheCompactionService {
+    private static final Logger LOGGER = Logger.getLogger(CacheCompactionService.class.getName());
+    private static final long EXCLUSIVE_WAIT_MILLIS = 5_000;
+    private static final int KEY_VALUE_COMPACT_MILLIS = 10_000;
+
+    private final int fillThresholdPercent;
+    private final long minFileBytes;
+    private ScheduledExecutorService scheduler;
+    private volatile CompactionReport lastReport;
+
+    /**
+     * @param fillThresholdPercent compact when the fill rate or chunks fill rate is below this
+     * @param minFileBytes never compact files smaller than this; the gain would not be worth the pause
+     */
+    public CacheCompactionService(int fillThresholdPercent, long minFileBytes) {
+        this.fillThresholdPercent = fillThresholdPercent;
+        this.minFileBytes = minFileBytes;
+    }
+
+    public static CacheCompactionService fromConfig() {
+        return new CacheCompactionService(ConfigLoader.getCacheCompactFillPercent(), ConfigLoader.getCacheCompactMinBytes());
+    }
+
+    public CompactionReport getLastReport() { return lastReport; }
+
+    /**
+     * Checks every {@code intervalMillis} and runs a pass only when no exam is active and
+     * the app has been idle for at least {@code idleMillis}.
+     */
+    public synchronized void start(long intervalMillis, long idleMillis) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cache-compaction");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            if (ExamActivity.isIdle(idleMillis)) {
+                runOnce();
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        LOGGER.info("Cache compaction scheduled every " + intervalMillis + " ms when idle for " + idleMillis + " ms");
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Reads the cache file's size and fill rates. Pending writes are committed first; the
+     * rates only reflect deletes once the chunks holding them have been written.
+     */
+    public CompactionReport measure() throws SQLException {
+        MvStoreCache kv = LocalCache.keyValueStore();
+        if (kv != null) {
+            kv.commit();
+            return new CompactionReport(kv.getFileSize(), kv.getFillRate(), kv.getChunksFillRate());
+        }
+        long fileBytes = 0;
+        int fillRate = 100;
+        int chunksFillRate = 100;
+        try (CachePool.Lease lease = LocalCache.acquire()) {
+            lease.prepare("CHECKPOINT").execute();
+        }
+        try (CachePool.Lease lease = LocalCache.acquire();
+             ResultSet rs = lease.prepare("SELECT SETTING_NAME, SETTING_VALUE FROM INFORMATION_SCHEMA.SETTINGS"
+                 + " WHERE SETTING_NAME IN ('info.FILE_SIZE', 'info.FILL_RATE', 'info.CHUNKS_FILL_RATE')").executeQuery()) {
+            while (rs.next()) {
+                long value = Long.parseLong(rs.getString(2));
+                switch (rs.getString(1)) {
+                    case "info.FILE_SIZE":
+                        fileBytes = value;
+                        break;
+                    case "info.FILL_RATE":
+                        fillRate = (int) value;
+                        break;
+                    default:
+                        chunksFillRate = (int) value;
+                }
+            }
+        }
+        return new CompactionReport(fileBytes, fillRate, chunksFillRate);
+    }
+
+    boolean needsCompaction(CompactionReport report) {
+        return report.getFileBytesBefore() >= minFileBytes
+            && Math.min(report.getFillRate(), report.getChunksFillRate()) < fillThresholdPercent;
+    }
+
+    /**
+     * Measures the cache and compacts it if a threshold is crossed. Also called at shutdown,
+     * where compacting costs the student nothing.
+     * @return what was measured and reclaimed, or null if the cache could not be measured
+     */
+    public CompactionReport runOnce() {
+        long start = System.nanoTime();
+        CompactionReport report;
+        try {
+            report = measure();
+            if (LocalCache.isInMemory()) {
+                return report; // nothing on disk to compact; SHUTDOWN would discard the in-memory cache
+            }
+            if (ExamActivity.isExamActive()) {
+                report.setSkippedForExam(true);
+            } else if (needsCompaction(report)) {
+                if (compact()) {
+                    report.setCompacted(measure().getFileBytesBefore());
+                } else {
+                    report.setSkippedForExam(true);
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Cache compaction pass failed", e);
+            return null;
+        }
+        report.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        lastReport = report;
+        LOGGER.info("Cache compaction: " + report);
+        return report;
+    }
+
+    // Returns false if an exam started before compaction could begin
+    private boolean compact() throws SQLException {
+        MvStoreCache kv = LocalCache.keyValueStore();
+        if (kv != null) {
+            kv.compactFile(KEY_VALUE_COMPACT_MILLIS);
+            return true;
+        }
+        return LocalCache.exclusive(connection -> {
+            if (ExamActivity.isExamActive()) {
+                return false;
+            }
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("SHUTDOWN COMPACT");
+            }
+            return true;
+        }, EXCLUSIVE_WAIT_MILLIS);
+    }
+}
@@ -0,0 +1,188 @@
+package com.secureexam.desktop;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Removes expired entries from the local cache in small transactions.
+ * Each chunk deletes at most about {@code chunkRows} rows (an exam's questions count towards
+ * its chunk), commits, and pauses, so the H2 write lock is never held long enough to stall
+ * autosave. A pass stops as soon as an exam becomes active. Deletes use the indexes on
+ * {@code created}, so the cost is proportional to what is reclaimed rather than the cache size.
+ */
+public class CacheExpiryService {
+    private static final Logger LOGGER = Logger.getLogger(CacheExpiryService.class.getName());
+
+    private final long expiryMillis;
+    private final int chunkRows;
+    private final long chunkPauseMillis;
+    private ScheduledExecutorService scheduler;
+    private volatile ExpiryReport lastReport;
+
+    public CacheExpiryService(long expiryMillis, int chunkRows, long chunkPauseMillis) {
+        if (chunkRows < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1");
+        }
+        this.expiryMillis = expiryMillis;
+        this.chunkRows = chunkRows;
+        this.chunkPauseMillis = chunkPauseMillis;
+    }
+
+    public static CacheExpiryService fromConfig() {
+        return new CacheExpiryService(TimeUnit.DAYS.toMillis(ConfigLoader.getCacheExpiryDays()),
+            ConfigLoader.getCacheExpiryChunkRows(), 20);
+    }
+
+    public ExpiryReport getLastReport() { return lastReport; }
+
+    /**
+     * Checks every {@code intervalMillis} and runs a pass only when no exam is active and
+     * the app has been idle for at least {@code idleMillis}.
+     */
+    public synchronized void start(long intervalMillis, long idleMillis) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cache-expiry");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            if (ExamActivity.isIdle(idleMillis)) {
+                runOnce();
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        LOGGER.info("Cache expiry scheduled every " + intervalMillis + " ms when idle for " + idleMillis + " ms");
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Runs one expiry pass now and reports what it reclaimed.
+     */
+    public ExpiryReport runOnce() {
+        long start = System.nanoTime();
+        Timestamp cutoff = new Timestamp(System.currentTimeMillis() - expiryMillis);
+        ExpiryReport report = new ExpiryReport();
+        try {
+            boolean more = true;
+            while (more && !stopForExam(report)) {
+                more = deleteExamChunk(cutoff, report);
+                pause(more);
+            }
+            more = true;
+            while (more && !stopForExam(report)) {
+                more = deleteSubmissionChunk(cutoff, report);
+                pause(more);
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Cache expiry pass failed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            report.setInterrupted(true);
+        }
+        report.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        lastReport = report;
+        LOGGER.info("Cache expiry: " + report);
+        return report;
+    }
+
+    private static boolean stopForExam(ExpiryReport report) {
+        if (ExamActivity.isExamActive()) {
+            report.setInterrupted(true);
+            return true;
+        }
+        return false;
+    }
+
+    private void pause(boolean more) throws InterruptedException {
+        if (more && chunkPauseMillis > 0) {
+            Thread.sleep(chunkPauseMillis); // let autosave and readers take the lock between chunks
+        }
+    }
+
+    // Deletes the oldest expired exams whose questions add up to about one chunk; returns true if more may remain
+    private boolean deleteExamChunk(Timestamp cutoff, ExpiryReport report) throws SQLException {
+        MvStoreCache kv = LocalCache.keyValueStore();
+        if (kv != null) {
+            return kv.expireExamChunk(cutoff.getTime(), chunkRows, report, LocalCache.getQuestionCache()::invalidate);
+        }
+        try (CachePool.Lease lease = LocalCache.acquire()) {
+            List<Integer> examKeys = new ArrayList<>();
+            List<String> examIds = new ArrayList<>();
+            int rows = 0;
+            boolean more = false;
+            PreparedStatement selectStmt = lease.prepare(
+                "SELECT examKey, examId, questionCount FROM cached_exams WHERE created < ? ORDER BY created FETCH FIRST ? ROWS ONLY");
+            selectStmt.setTimestamp(1, cutoff);
+            selectStmt.setInt(2, chunkRows + 1);
+            try (ResultSet rs = selectStmt.executeQuery()) {
+                while (rs.next()) {
+                    if (!examKeys.isEmpty() && rows + 1 + rs.getInt(3) > chunkRows) {
+                        more = true;
+                        break;
+                    }
+                    examKeys.add(rs.getInt(1));
+                    examIds.add(rs.getString(2));
+                    rows += 1 + rs.getInt(3);
+                }
+            }
+            if (examKeys.isEmpty()) {
+                return false;
+            }
+
+            Connection conn = lease.connection();
+            conn.setAutoCommit(false);
+            // Re-check created so an exam re-cached since the select survives
+            PreparedStatement deleteStmt = lease.prepare("DELETE FROM cached_exams WHERE examKey = ? AND created < ?");
+            for (int examKey : examKeys) {
+                deleteStmt.setInt(1, examKey);
+                deleteStmt.setTimestamp(2, cutoff);
+                deleteStmt.addBatch();
+            }
+            int deleted = 0;
+            for (int count : deleteStmt.executeBatch()) {
+                deleted += Math.max(count, 0);
+            }
+            conn.commit();
+            examIds.forEach(LocalCache.getQuestionCache()::invalidate);
+            report.addExams(deleted, rows - examKeys.size());
+            return more;
+        }
+    }
+
+    private boolean deleteSubmissionChunk(Timestamp cutoff, ExpiryReport report) throws SQLException {
+        MvStoreCache kv = LocalCache.keyValueStore();
+        if (kv != null) {
+            return kv.expireSubmissionChunk(cutoff.getTime(), chunkRows, report);
+        }
+        try (CachePool.Lease lease = LocalCache.acquire()) {
+            PreparedStatement stmt = lease.prepare(
+                "DELETE FROM submissions WHERE created < ? AND submitted = true FETCH FIRST ? ROWS ONLY");
+            stmt.setTimestamp(1, cutoff);
+            stmt.setInt(2, chunkRows);
+            int deleted = stmt.executeUpdate();
+            if (deleted > 0) {
+                report.addSubmissions(deleted);
+            }
+            return deleted == chunkRows;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.secureexam.desktop;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded pool of H2 connections used by {@link LocalCache}.
+ * Each pooled connection keeps its own prepared statements so callers
+ * never re-prepare the same SQL, and no two threads share a connection.
+ * Every lease holds one of {@code maxSize} permits, which lets {@link #exclusive} wait
+ * for all of them to come back.
+ */
+public class CachePool {
+    private static final Logger LOGGER = Logger.getLogger(CachePool.class.getName());
+
+    private final String url;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+    private final BlockingQueue<PooledConnection> idle;
+    private final AtomicInteger created = new AtomicInteger();
+    private final Semaphore permits;
+    private volatile boolean closed = false;
+
+    public CachePool(String url, int maxSize, long acquireTimeoutMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1");
+        }
+        this.url = url;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.idle = new ArrayBlockingQueue<>(maxSize);
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    @FunctionalInterface
+    public interface ConnectionWork<T> {
+        T run(Connection connection) throws SQLException;
+    }
+
+    public int getMaxSize() { return maxSize; }
+    public int getCreatedCount() { return created.get(); }
+
+    /**
+     * Borrows a connection, opening a new one while the pool is below its bound
+     * and otherwise waiting for one to be returned.
+     */
+    public Lease acquire() throws SQLException {
+        if (closed) {
+            throw new SQLException("Cache pool is closed");
+        }
+        if (!tryAcquirePermits(1, acquireTimeoutMillis)) {
+            throw new SQLException("Timed out after " + acquireTimeoutMillis + " ms waiting for a cache connection");
+        }
+        try {
+            return new Lease(take());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private PooledConnection take() throws SQLException {
+        PooledConnection pooled = idle.poll();
+        if (pooled == null) {
+            pooled = tryCreate();
+        }
+        if (pooled == null) {
+            try {
+                pooled = idle.poll(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a cache connection", e);
+            }
+            if (pooled == null) {
+                throw new SQLException("Timed out after " + acquireTimeoutMillis + " ms waiting for a cache connection");
+            }
+        }
+        return pooled;
+    }
+
+    private boolean tryAcquirePermits(int count, long timeoutMillis) throws SQLException {
+        try {
+            return permits.tryAcquire(count, timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a cache connection", e);
+        }
+    }
+
+    /**
+     * Waits until every lease has been returned, closes the pooled connections and runs
+     * {@code work} on a connection of its own. New leases wait while it runs, and the pool
+     * reopens connections on demand afterwards. Meant for maintenance that needs the database
+     * to itself, such as {@code SHUTDOWN COMPACT}.
+     */
+    public <T> T exclusive(ConnectionWork<T> work, long waitMillis) throws SQLException {
+        if (!tryAcquirePermits(maxSize, waitMillis)) {
+            throw new SQLException("Timed out after " + waitMillis + " ms waiting for exclusive use of the cache");
+        }
+        try {
+            PooledConnection pooled;
+            while ((pooled = idle.poll()) != null) {
+                pooled.close();
+                created.decrementAndGet();
+            }
+            try (Connection connection = DriverManager.getConnection(url)) {
+                return work.run(connection);
+            }
+        } finally {
+            permits.release(maxSize);
+        }
+    }
+
+    private PooledConnection tryCreate() throws SQLException {
+        while (true) {
+            int current = created.get();
+            if (current >= maxSize) {
+                return null;
+            }
+            if (created.compareAndSet(current, current + 1)) {
+                try {
+                    return new PooledConnection(DriverManager.getConnection(url));
+                } catch (SQLException e) {
+                    created.decrementAndGet();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void release(PooledConnection pooled) {
+        boolean healthy;
+        try {
+            Connection conn = pooled.connection;
+            healthy = !conn.isClosed();
+            if (healthy && !conn.getAutoCommit()) {
+                // A lease that forgot to commit must not leak its transaction to the next borrower
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Discarding broken cache connection", e);
+            healthy = false;
+        }
+
+        if (!healthy || closed || !idle.offer(pooled)) {
+            pooled.close();
+            created.decrementAndGet();
+        }
+        permits.release();
+    }
+
+    /**
+     * Closes every idle connection. Leases still in use are closed when returned.
+     */
+    public void close() {
+        closed = true;
+        PooledConnection pooled;
+        while ((pooled = idle.poll()) != null) {
+            pooled.close();
+            created.decrementAndGet();
+        }
+    }
+
+    private static class PooledConnection {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement stmt = statements.get(sql);
+            if (stmt == null || stmt.isClosed()) {
+                stmt = connection.prepareStatement(sql);
+                statements.put(sql, stmt);
+            } else {
+                // A batch loop that threw leaves its rows queued on the shared statement
+                stmt.clearBatch();
+                stmt.clearParameters();
+            }
+            return stmt;
+        }
+
+        void close() {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "Error closing cache connection", e);
+            }
+            statements.clear();
+        }
+    }
+
+    /**
+     * Exclusive use of one pooled connection; return it with {@link #close()}.
+     * Statements obtained from {@link #prepare(String)} belong to the pool and must not be closed.
+     */
+    public class Lease implements AutoCloseable {
+        private PooledConnection pooled;
+
+        private Lease(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        public Connection connection() {
+            return pooled.connection;
+        }
+
+        public PreparedStatement prepare(String sql) throws SQLException {
+            return pooled.prepare(sql);
+        }
+
+        @Override
+        public void close() {
+            if (pooled != null) {
+                release(pooled);
+                pooled = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.secureexam.desktop;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persists the in-memory cache ({@code cache.storage = "memory"}) so a crash or restart loses
+ * at most one interval of cached data. Snapshots are taken on a background thread every
+ * {@code intervalMillis}, when {@link LocalCache#requestSnapshot()} is called after a submit,
+ * and once more on {@link #stop()}. Autosave never waits for disk in this mode; the answer
+ * journal still covers the window between snapshots.
+ * <p>
+ * Before each snapshot the cache is held to its memory budget by dropping the least recently
+ * cached exams' questions, which can be fetched again. Submissions are never dropped, and
+ * nothing is dropped while an exam is active.
+ */
+public class CacheSnapshotter {
+    private static final Logger LOGGER = Logger.getLogger(CacheSnapshotter.class.getName());
+
+    private final long intervalMillis;
+    private final long memoryBudgetBytes;
+    private ScheduledExecutorService scheduler;
+    private volatile long lastSnapshotBytes;
+    private volatile long lastSnapshotMillis;
+    private volatile int examsEvicted;
+
+    public CacheSnapshotter(long intervalMillis, long memoryBudgetBytes) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Snapshot interval must be positive");
+        }
+        this.intervalMillis = intervalMillis;
+        this.memoryBudgetBytes = memoryBudgetBytes;
+    }
+
+    public static CacheSnapshotter fromConfig() {
+        return new CacheSnapshotter(ConfigLoader.getCacheSnapshotIntervalMillis(), ConfigLoader.getCacheMemoryBudgetBytes());
+    }
+
+    public long getLastSnapshotBytes() { return lastSnapshotBytes; }
+    public long getLastSnapshotMillis() { return lastSnapshotMillis; }
+    public int getExamsEvicted() { return examsEvicted; }
+
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cache-snapshot");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::snapshotQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        LOGGER.info("Cache snapshots scheduled every " + intervalMillis + " ms with a budget of " + memoryBudgetBytes + " bytes");
+    }
+
+    /**
+     * Queues a snapshot on the background thread and returns immediately.
+     */
+    public synchronized void requestSnapshot() {
+        if (scheduler == null) {
+            return;
+        }
+        try {
+            scheduler.execute(this::snapshotQuietly);
+        } catch (RejectedExecutionException e) {
+            LOGGER.fine("Snapshot request after shutdown ignored");
+        }
+    }
+
+    /**
+     * Stops the schedule and takes a final snapshot on the calling thread.
+     */
+    public void stop() {
+        ScheduledExecutorService current;
+        synchronized (this) {
+            current = scheduler;
+            scheduler = null;
+        }
+        if (current != null) {
+            current.shutdown();
+            try {
+                current.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        snapshotQuietly();
+    }
+
+    /**
+     * Enforces the memory budget and writes a snapshot now.
+     * @return the snapshot size in bytes
+     */
+    public long snapshotNow() throws SQLException, IOException {
+        enforceBudget();
+        long start = System.nanoTime();
+        long bytes = LocalCache.writeSnapshot();
+        lastSnapshotMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        lastSnapshotBytes = bytes;
+        LOGGER.info("Cache snapshot: " + bytes + " bytes in " + lastSnapshotMillis + " ms");
+        return bytes;
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshotNow();
+        } catch (SQLException | IOException e) {
+            LOGGER.log(Level.WARNING, "Cache snapshot failed; will retry next interval", e);
+        } catch (RuntimeException e) {
+            // Never let an unexpected failure cancel the schedule
+            LOGGER.log(Level.SEVERE, "Unexpected cache snapshot failure", e);
+        }
+    }
+
+    private void enforceBudget() throws SQLException {
+        long used = LocalCache.storedBytes();
+        if (used <= memoryBudgetBytes) {
+            return;
+        }
+        if (ExamActivity.isExamActive()) {
+            LOGGER.warning("In-memory cache holds " + used + " bytes, over its budget of " + memoryBudgetBytes
+                + "; eviction deferred until the exam ends");
+            return;
+        }
+        for (String examId : LocalCache.examsOldestFirst()) {
+            LocalCache.cleanupExamCache(examId);
+            examsEvicted++;
+            used = LocalCache.storedBytes();
+            if (used <= memoryBudgetBytes) {
+                break;
+            }
+        }
+        LOGGER.info("In-memory cache trimmed to " + used + " bytes after evicting " + examsEvicted + " exams in total");
+    }
+}
@@ -0,0 +1,58 @@
+package com.secureexam.desktop;
+
+/**
+ * Outcome of one {@link CacheCompactionService} pass: the cache file's size and fill rates
+ * before, its size after, and whether it was compacted.
+ */
+public class CompactionReport {
+    private final long fileBytesBefore;
+    private final int fillRate;
+    private final int chunksFillRate;
+    private long fileBytesAfter;
+    private boolean compacted;
+    private boolean skippedForExam;
+    private long elapsedMillis;
+
+    CompactionReport(long fileBytesBefore, int fillRate, int chunksFillRate) {
+        this.fileBytesBefore = fileBytesBefore;
+        this.fillRate = fillRate;
+        this.chunksFillRate = chunksFillRate;
+        this.fileBytesAfter = fileBytesBefore;
+    }
+
+    void setCompacted(long fileBytesAfter) {
+        this.compacted = true;
+        this.fileBytesAfter = fileBytesAfter;
+    }
+
+    void setSkippedForExam(boolean skippedForExam) { this.skippedForExam = skippedForExam; }
+    void setElapsedMillis(long elapsedMillis) { this.elapsedMillis = elapsedMillis; }
+
+    public long getFileBytesBefore() { return fileBytesBefore; }
+    public long getFileBytesAfter() { return fileBytesAfter; }
+    /** Percentage of the file occupied by chunks; the rest is free space left by deleted data. */
+    public int getFillRate() { return fillRate; }
+    /** Percentage of live data inside those chunks; the rest is fragmentation. */
+    public int getChunksFillRate() { return chunksFillRate; }
+    public boolean isCompacted() { return compacted; }
+    /** True when the pass did nothing because an exam was running. */
+    public boolean isSkippedForExam() { return skippedForExam; }
+    public long getElapsedMillis() { return elapsedMillis; }
+
+    public long getBytesReclaimed() {
+        return fileBytesBefore - fileBytesAfter;
+    }
+
+    @Override
+    public String toString() {
+        String state = "file " + fileBytesBefore + " bytes, fill " + fillRate + "%, chunks fill " + chunksFillRate + "%";
+        if (skippedForExam) {
+            return "Skipped compaction for an active exam; " + state;
+        }
+        if (!compacted) {
+            return "No compaction needed; " + state;
+        }
+        return "Compacted " + state + " to " + fileBytesAfter + " bytes, reclaimed " + getBytesReclaimed()
+            + " bytes in " + elapsedMillis + " ms";
+    }
+}
@@ -0,0 +1,29 @@
+package com.secureexam.desktop;
+
+/**
+ * Raw and stored payload sizes of one cached exam.
+ */
+public class CompressionStats {
+    private final long rawBytes;
+    private final long storedBytes;
+
+    public CompressionStats(long rawBytes, long storedBytes) {
+        this.rawBytes = rawBytes;
+        this.storedBytes = storedBytes;
+    }
+
+    public long getRawBytes() { return rawBytes; }
+    public long getStoredBytes() { return storedBytes; }
+
+    /**
+     * @return stored bytes divided by raw bytes (1.0 when nothing is stored)
+     */
+    public double getRatio() {
+        return rawBytes == 0 ? 1.0 : (double) storedBytes / rawBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d -> %d bytes (%.1f%%)", rawBytes, storedBytes, getRatio() * 100);
+    }
+}
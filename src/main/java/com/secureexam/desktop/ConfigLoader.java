@@ -1,19 +1,29 @@
 package com.secureexam.desktop;
 
+import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class ConfigLoader {
     private static final Logger LOGGER = Logger.getLogger(ConfigLoader.class.getName());
+    // The tests name their own settings file, so nothing they cache lands next to a real installation's
+    static final Path SETTINGS_FILE = Path.of(System.getProperty("secureexam.settings", "src/main/resources/settings.json"));
     private static JSONObject config;
 
     static {
+        reload();
+    }
+
+    // Re-reads settings.json; used by tests that rewrite the file after the class is loaded
+    static void reload() {
         try {
-            String content = Files.readString(Path.of("src/main/resources/settings.json"));
+            String content = Files.readString(SETTINGS_FILE);
             config = new JSONObject(content);
         } catch (Exception e) {
             LOGGER.log(Level.WARNING, "Config file not found; using defaults", e);
@@ -34,4 +44,208 @@ public class ConfigLoader {
     public static int getDefaultTimeLimit() {
         return config.optJSONObject("examRules", new JSONObject()).optInt("defaultTimeLimit", 30);
     }
-}
\ No newline at end of file
+
+    public static int getCachePoolSize() {
+        return config.optJSONObject("cache", new JSONObject()).optInt("poolSize", 4);
+    }
+
+    public static long getAutosaveMaxLossMillis() {
+        return config.optJSONObject("cache", new JSONObject()).optLong("autosaveMaxLossMs", 500);
+    }
+
+    public static boolean isJournalForceEachRecord() {
+        return config.optJSONObject("cache", new JSONObject()).optBoolean("journalForceEachRecord", false);
+    }
+
+    public static long getQuestionCacheMaxBytes() {
+        return config.optJSONObject("cache", new JSONObject()).optLong("l1MaxBytes", 32L * 1024 * 1024);
+    }
+
+    public static long getQuestionCacheTtlMillis() {
+        return config.optJSONObject("cache", new JSONObject()).optLong("l1TtlSeconds", 3600) * 1000;
+    }
+
+    public static int getCacheExpiryDays() {
+        return config.optJSONObject("cache", new JSONObject()).optInt("expiryDays", 30);
+    }
+
+    public static int getCacheExpiryChunkRows() {
+        return config.optJSONObject("cache", new JSONObject()).optInt("expiryChunkRows", 500);
+    }
+
+    public static long getMaintenanceIntervalMillis() {
+        return config.optJSONObject("cache", new JSONObject()).optLong("maintenanceIntervalMinutes", 15) * 60_000;
+    }
+
+    public static long getMaintenanceIdleMillis() {
+        return config.optJSONObject("cache", new JSONObject()).optLong("maintenanceIdleMinutes", 2) * 60_000;
+    }
+
+    /**
+     * @return the LocalCache storage engine: "sql" (default) or "mvstore"
+     */
+    public static String getCacheEngine() {
+        return config.optJSONObject("cache", new JSONObject()).optString("engine", "sql");
+    }
+
+    /**
+     * @return the codec for compressed cache payloads: "deflate" (default), "lzf" or "none"
+     */
+    public static String getCacheCompression() {
+        return config.optJSONObject("cache", new JSONObject()).optString("compression", "deflate");
+    }
+
+    public static boolean isCacheEncrypted() {
+        return config.optJSONObject("cache", new JSONObject()).optBoolean("encrypt", true);
+    }
+
+    /**
+     * @return the cache master key file an administrator provisioned ({@link CacheCipher#provisionKeyFile});
+     *         by default in the machine-wide configuration directory rather than anywhere the client writes
+     */
+    public static String getCacheKeyFile() {
+        String fallback = System.getProperty("os.name", "").startsWith("Windows")
+            ? Path.of(System.getenv().getOrDefault("ProgramData", "C:\\ProgramData"), "SecureExam", "cache.key").toString()
+            : "/etc/secureexam/cache.key";
+        return config.optJSONObject("cache", new JSONObject()).optString("keyFile", fallback);
+    }
+
+    /**
+     * @return directory holding the cache database, answer journals and session snapshots
+     */
+    public static String getCacheDirectory() {
+        return config.optJSONObject("cache", new JSONObject()).optString("directory", ".");
+    }
+
+    /**
+     * @return compact the cache file once its fill rate or its chunks' live-data rate drops below this percentage
+     */
+    public static int getCacheCompactFillPercent() {
+        return config.optJSONObject("cache", new JSONObject()).optInt("compactFillPercent", 60);
+    }
+
+    public static long getCacheCompactMinBytes() {
+        return config.optJSONObject("cache", new JSONObject()).optLong("compactMinMegabytes", 4) * 1024 * 1024;
+    }
+
+    /**
+     * @return where the cache lives: "disk" (default) or "memory", snapshotted to disk in the background
+     */
+    public static String getCacheStorage() {
+        return config.optJSONObject("cache", new JSONObject()).optString("storage", "disk");
+    }
+
+    public static long getCacheSnapshotIntervalMillis() {
+        return config.optJSONObject("cache", new JSONObject()).optLong("snapshotIntervalSeconds", 60) * 1000;
+    }
+
+    public static long getCacheMemoryBudgetBytes() {
+        return config.optJSONObject("cache", new JSONObject()).optLong("memoryBudgetMegabytes", 256) * 1024 * 1024;
+    }
+
+    public static int getPrefetchConcurrency() {
+        return config.optJSONObject("cache", new JSONObject()).optInt("prefetchConcurrency", 2);
+    }
+
+    /**
+     * @return the download rate background exam prefetch is held to, across all its threads
+     */
+    public static long getPrefetchBytesPerSecond() {
+        return config.optJSONObject("cache", new JSONObject()).optLong("prefetchKilobytesPerSecond", 256) * 1024;
+    }
+
+    /**
+     * @return how long a prefetched question set is used at exam start without checking Firestore again
+     */
+    public static long getPrefetchFreshMillis() {
+        return config.optJSONObject("cache", new JSONObject()).optLong("prefetchFreshMinutes", 30) * 60 * 1000;
+    }
+
+    /**
+     * @return directory searched for staged exam bundles ({@code <examId>.seb}), e.g. a USB stick or local share
+     */
+    public static String getBundleDirectory() {
+        return config.optJSONObject("bundle", new JSONObject()).optString("directory", "./secureexam_bundles");
+    }
+
+    /**
+     * @return base64 X.509 Ed25519 public keys whose exam bundles students accept
+     */
+    public static List<String> getBundleTrustedKeys() {
+        JSONArray keys = config.optJSONObject("bundle", new JSONObject()).optJSONArray("trustedKeys");
+        List<String> result = new ArrayList<>();
+        for (int i = 0; keys != null && i < keys.length(); i++) {
+            result.add(keys.getString(i));
+        }
+        return result;
+    }
+
+    /**
+     * @return the LAN exam relay students try before Firestore, e.g. "http://192.168.1.10:8765"; empty disables it
+     */
+    public static String getRelayUrl() {
+        return config.optJSONObject("relay", new JSONObject()).optString("url", "");
+    }
+
+    /**
+     * @return true on the proctor machine that runs the relay server
+     */
+    public static boolean isRelayServer() {
+        return config.optJSONObject("relay", new JSONObject()).optBoolean("serve", false);
+    }
+
+    public static int getRelayPort() {
+        return config.optJSONObject("relay", new JSONObject()).optInt("port", 8765);
+    }
+
+    public static int getRelayThreads() {
+        return config.optJSONObject("relay", new JSONObject()).optInt("threads", 16);
+    }
+
+    public static long getRelayCacheMillis() {
+        return config.optJSONObject("relay", new JSONObject()).optLong("cacheSeconds", 300) * 1000;
+    }
+
+    /**
+     * @return how long starting an exam waits for the exam code check before giving up
+     */
+    public static long getStartupValidateTimeoutMillis() {
+        return config.optJSONObject("startup", new JSONObject()).optLong("validateTimeoutSeconds", 10) * 1000;
+    }
+
+    /**
+     * @return how long starting an exam waits for its questions (network probe, relay and Firestore included)
+     */
+    public static long getStartupQuestionsTimeoutMillis() {
+        return config.optJSONObject("startup", new JSONObject()).optLong("questionsTimeoutSeconds", 30) * 1000;
+    }
+
+    /**
+     * @return delay before the first retry of a failed submission upload; later retries double it
+     */
+    public static long getSubmissionRetryBaseMillis() {
+        return config.optJSONObject("submission", new JSONObject()).optLong("retryBaseMillis", 1000);
+    }
+
+    public static long getSubmissionRetryMaxMillis() {
+        return config.optJSONObject("submission", new JSONObject()).optLong("retryMaxSeconds", 60) * 1000;
+    }
+
+    /**
+     * @return upload attempts before a submission is left for the next start's pending sync
+     */
+    public static int getSubmissionMaxAttempts() {
+        return config.optJSONObject("submission", new JSONObject()).optInt("maxAttempts", 8);
+    }
+
+    /**
+     * @return the window over which uploads of submissions committed at an exam's deadline are spread
+     */
+    public static long getSubmissionSpreadWindowMillis() {
+        return config.optJSONObject("submission", new JSONObject()).optLong("spreadWindowSeconds", 60) * 1000;
+    }
+
+    public static long getSubmissionUploadTimeoutMillis() {
+        return config.optJSONObject("submission", new JSONObject()).optLong("uploadTimeoutSeconds", 30) * 1000;
+    }
+}
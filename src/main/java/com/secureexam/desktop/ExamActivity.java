@@ -0,0 +1,34 @@
+package com.secureexam.desktop;
+
+/**
+ * Process-wide record of whether an exam is running and when the student last
+ * interacted with it. Background maintenance (cache expiry, compaction) consults it
+ * so it never competes with an active exam for the cache's write lock.
+ */
+public final class ExamActivity {
+    private static volatile boolean examActive = false;
+    private static volatile long lastActivityMillis = System.currentTimeMillis();
+
+    private ExamActivity() {
+    }
+
+    public static void setExamActive(boolean active) {
+        examActive = active;
+        markActivity();
+    }
+
+    public static boolean isExamActive() {
+        return examActive;
+    }
+
+    public static void markActivity() {
+        lastActivityMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * @return true when no exam is running and nothing has happened for at least {@code idleMillis}
+     */
+    public static boolean isIdle(long idleMillis) {
+        return !examActive && System.currentTimeMillis() - lastActivityMillis >= idleMillis;
+    }
+}
@@ -0,0 +1,244 @@
+package com.secureexam.desktop;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Staged start of an exam, run on background threads so the exam window stays responsive.
+ * <ol>
+ *   <li>{@link Stage#SESSION}: read the student's saved session, if any (local files only).</li>
+ *   <li>{@link Stage#VALIDATE} and {@link Stage#QUESTIONS} run concurrently, each under its own
+ *       deadline: the exam code is checked while the questions load. A saved session is first
+ *       laid out over the cached questions; only if that succeeds does the exam resume without
+ *       validating the code or fetching questions. A session that cannot be restored starts
+ *       over like a fresh start, code check included; if the code is then rejected the start
+ *       fails with {@link SessionNotRestoredException}.</li>
+ *   <li>{@link Stage#PREPARE}: the caller sets up answer storage for the loaded questions.</li>
+ * </ol>
+ * The returned future completes once every stage has finished, with whatever the caller's
+ * prepare step built; the {@link Result} it was given records the time each stage took. A
+ * failed or late stage fails it. Progress is reported from the worker threads as stages finish.
+ * Nothing here touches the caller's state: the prepare step returns what it built, and the
+ * caller takes it over from the completed future on its own thread.
+ */
+public class ExamBootstrap {
+    private static final Logger LOGGER = Logger.getLogger(ExamBootstrap.class.getName());
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "exam-bootstrap");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public enum Stage {
+        SESSION("Checking for a saved session"),
+        VALIDATE("Checking the exam code"),
+        QUESTIONS("Loading questions"),
+        PREPARE("Preparing answer storage");
+
+        private final String description;
+
+        Stage(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() { return description; }
+    }
+
+    @FunctionalInterface
+    public interface ProgressListener {
+        /**
+         * Called on a worker thread each time a stage finishes.
+         */
+        void stageFinished(Stage stage, int finished, int total);
+    }
+
+    /**
+     * Thrown (as the cause of the failed future) when the exam code does not match.
+     */
+    public static class InvalidCodeException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public InvalidCodeException(String examId) {
+            super("Invalid exam code for examId: " + examId);
+        }
+    }
+
+    /**
+     * Thrown (as the cause of the failed future) when a saved session could not be restored and the
+     * exam could not be started over with the code, typically because a resume has none.
+     */
+    public static class SessionNotRestoredException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public SessionNotRestoredException(String examId) {
+            super("Saved session for examId: " + examId + " could not be restored");
+        }
+    }
+
+    public static final class Result {
+        private final ExamSession saved;
+        private final List<Question> questions;
+        private final QuestionOrder order;
+        private final long contentVersion;
+        private final Map<Stage, Long> stageMillis = Collections.synchronizedMap(new EnumMap<>(Stage.class));
+
+        private Result(ExamSession saved, List<Question> questions, QuestionOrder order, long contentVersion) {
+            this.saved = saved;
+            this.questions = questions;
+            this.order = order;
+            this.contentVersion = contentVersion;
+        }
+
+        /**
+         * @return the session being resumed, or null when the exam starts fresh
+         */
+        public ExamSession getSaved() { return saved; }
+        public List<Question> getQuestions() { return questions; }
+
+        /**
+         * @return the layout the questions are shown in: the saved session's when resuming, otherwise
+         *         the one the question loader applied; null if it is unknown
+         */
+        public QuestionOrder getOrder() { return order; }
+
+        /**
+         * @return the content version of the canonical questions the layout was applied to
+         */
+        public long getContentVersion() { return contentVersion; }
+
+        /**
+         * @return milliseconds from the start of the bootstrap until the stage finished; skipped stages are absent
+         */
+        public Map<Stage, Long> getStageMillis() { return stageMillis; }
+    }
+
+    private final String examId;
+    private final Supplier<ExamSession> sessionLoader;
+    private final BooleanSupplier codeValidator;
+    private final Function<ExamSession, List<Question>> sessionRestorer;
+    private final Supplier<ExamLayout> questionLoader;
+    private final long validateTimeoutMillis;
+    private final long questionsTimeoutMillis;
+
+    /**
+     * @param sessionRestorer lays out the questions of a saved session, or returns null if it cannot be resumed
+     * @param questionLoader loads the questions and lays them out for the student, returning the layout it applied
+     */
+    public ExamBootstrap(String examId, Supplier<ExamSession> sessionLoader, BooleanSupplier codeValidator,
+                         Function<ExamSession, List<Question>> sessionRestorer, Supplier<ExamLayout> questionLoader,
+                         long validateTimeoutMillis, long questionsTimeoutMillis) {
+        this.examId = examId;
+        this.sessionLoader = sessionLoader;
+        this.codeValidator = codeValidator;
+        this.sessionRestorer = sessionRestorer;
+        this.questionLoader = questionLoader;
+        this.validateTimeoutMillis = validateTimeoutMillis;
+        this.questionsTimeoutMillis = questionsTimeoutMillis;
+    }
+
+    /**
+     * Runs the stages; returns at once.
+     * @param prepare sets up answer storage for the result on a worker thread and returns it; the
+     *                future completes with its return value
+     */
+    public <T> CompletableFuture<T> start(Function<Result, T> prepare, ProgressListener listener) {
+        long started = System.nanoTime();
+        int total = Stage.values().length;
+        AtomicInteger finished = new AtomicInteger();
+        Map<Stage, Long> timings = Collections.synchronizedMap(new EnumMap<>(Stage.class));
+        Consumer<Stage> done = stage -> {
+            timings.put(stage, (System.nanoTime() - started) / 1_000_000);
+            listener.stageFinished(stage, finished.incrementAndGet(), total);
+        };
+
+        CompletableFuture<ExamSession> session = CompletableFuture.supplyAsync(sessionLoader, EXECUTOR)
+            .whenComplete((saved, error) -> done.accept(Stage.SESSION));
+
+        // Local only; null unless the saved session lays out over the cached questions
+        AtomicBoolean unrestorable = new AtomicBoolean();
+        CompletableFuture<Result> restored = session.thenApplyAsync(saved -> {
+            List<Question> questions = saved != null ? sessionRestorer.apply(saved) : null;
+            unrestorable.set(saved != null && questions == null);
+            return questions != null
+                ? new Result(saved, questions, saved.getOrder(), saved.getQuestionsVersion()) : null;
+        }, EXECUTOR);
+
+        // A session that is actually resumed was validated when it began; anything else checks the code
+        CompletableFuture<Boolean> validated = restored.thenComposeAsync(resumed -> {
+            if (resumed != null) {
+                done.accept(Stage.VALIDATE);
+                return CompletableFuture.completedFuture(true);
+            }
+            return CompletableFuture.supplyAsync(codeValidator::getAsBoolean, EXECUTOR)
+                .orTimeout(validateTimeoutMillis, TimeUnit.MILLISECONDS)
+                .whenComplete((valid, error) -> done.accept(Stage.VALIDATE));
+        }, EXECUTOR);
+
+        CompletableFuture<Result> loaded = restored.thenComposeAsync(resumed -> {
+            if (resumed != null) {
+                done.accept(Stage.QUESTIONS);
+                return CompletableFuture.completedFuture(resumed);
+            }
+            return CompletableFuture.supplyAsync(questionLoader, EXECUTOR)
+                .orTimeout(questionsTimeoutMillis, TimeUnit.MILLISECONDS)
+                .whenComplete((layout, error) -> done.accept(Stage.QUESTIONS))
+                .thenApply(layout -> new Result(null, layout.getQuestions(), layout.getOrder(), layout.getContentVersion()));
+        }, EXECUTOR);
+
+        // Fails as soon as either branch fails, without waiting for the other one's deadline
+        CompletableFuture<Result> ready = new CompletableFuture<>();
+        validated.whenComplete((valid, error) -> {
+            if (error != null) {
+                ready.completeExceptionally(unwrap(error));
+            } else if (!valid) {
+                ready.completeExceptionally(unrestorable.get()
+                    ? new SessionNotRestoredException(examId) : new InvalidCodeException(examId));
+            }
+        });
+        loaded.whenComplete((result, error) -> {
+            if (error != null) {
+                ready.completeExceptionally(unwrap(error));
+            }
+        });
+        validated.thenAcceptBoth(loaded, (valid, result) -> {
+            if (!valid) {
+                return;
+            }
+            if (result.questions == null || result.questions.isEmpty()) {
+                ready.completeExceptionally(new IllegalStateException("No questions available for examId: " + examId));
+            } else {
+                ready.complete(result);
+            }
+        });
+
+        return ready.thenApplyAsync(result -> {
+            T prepared = prepare.apply(result);
+            done.accept(Stage.PREPARE);
+            result.stageMillis.putAll(timings);
+            LOGGER.info("Exam " + examId + " bootstrapped in " + (System.nanoTime() - started) / 1_000_000
+                + " ms; stage completion times: " + timings);
+            return prepared;
+        }, EXECUTOR);
+    }
+
+    /**
+     * @return the failure behind a bootstrap future's exception, without the completion wrapper
+     */
+    public static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+}
@@ -0,0 +1,349 @@
+package com.secureexam.desktop;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * One exam in a single signed file, for staging exams on USB or a local share instead of
+ * reading the Firestore {@code exams} document.
+ * <p>
+ * Layout (big-endian): a fixed header {@code [magic][format version][question count]
+ * [metadata length][index offset][signature offset][content version]}, the metadata as
+ * varint-prefixed key/value strings, an index of {@code [record offset][record length][SHA-256]}
+ * per question, the question records in {@link QuestionCodec#encodeQuestion} form, and finally
+ * {@code [signature length][Ed25519 signature]}.
+ * <p>
+ * The signature covers the header, metadata and index; each record is checked against its
+ * index digest when it is first read. Opening a bundle therefore maps the file and verifies
+ * only the index, and questions are decoded one at a time on demand.
+ */
+public class ExamBundle {
+    private static final Logger LOGGER = Logger.getLogger(ExamBundle.class.getName());
+    public static final String FILE_SUFFIX = ".seb";
+    private static final int MAGIC = 0x53454231; // "SEB1"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int DIGEST_BYTES = 32;
+    private static final int INDEX_ENTRY_BYTES = 8 + DIGEST_BYTES;
+    private static final String SIGNATURE_ALGORITHM = "Ed25519";
+    private static final Path SIGNING_KEY_FILE = Paths.get("./secureexam_bundle_signing.key");
+
+    private final String examId;
+    private final Map<String, String> metadata;
+    private final int questionCount;
+    private final int indexOffset;
+    private final long contentVersion;
+    private final ByteBuffer mapped;
+    private final Question[] decoded;
+
+    private ExamBundle(String examId, Map<String, String> metadata, int questionCount, int indexOffset,
+                       long contentVersion, ByteBuffer mapped) {
+        this.examId = examId;
+        this.metadata = metadata;
+        this.questionCount = questionCount;
+        this.indexOffset = indexOffset;
+        this.contentVersion = contentVersion;
+        this.mapped = mapped;
+        this.decoded = new Question[questionCount];
+    }
+
+    /**
+     * Writes a signed bundle, replacing {@code file} atomically.
+     * @param metadata descriptive fields (name, stream, course...); {@code examId} is always added
+     */
+    public static void write(Path file, String examId, Map<String, String> metadata, List<Question> questions,
+                             PrivateKey signingKey) throws IOException, GeneralSecurityException {
+        byte[] encoded = encode(examId, metadata, questions, signingKey);
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(encoded);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        LOGGER.info("Wrote exam bundle " + file + " with " + questions.size() + " questions");
+    }
+
+    /**
+     * @return the complete signed bundle, as {@link #write} stores it
+     */
+    public static byte[] encode(String examId, Map<String, String> metadata, List<Question> questions,
+                                PrivateKey signingKey) throws GeneralSecurityException {
+        Map<String, String> fields = new LinkedHashMap<>(metadata);
+        fields.put("examId", examId);
+        ByteArrayOutputStream meta = new ByteArrayOutputStream();
+        QuestionCodec.writeVarint(meta, fields.size());
+        fields.forEach((key, value) -> {
+            QuestionCodec.writeString(meta, key);
+            QuestionCodec.writeString(meta, value != null ? value : "");
+        });
+
+        int indexOffset = HEADER_BYTES + meta.size();
+        int recordsOffset = indexOffset + questions.size() * INDEX_ENTRY_BYTES;
+        ByteBuffer index = ByteBuffer.allocate(questions.size() * INDEX_ENTRY_BYTES);
+        ByteArrayOutputStream records = new ByteArrayOutputStream(64 * questions.size());
+        MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+        for (Question question : questions) {
+            byte[] record = QuestionCodec.encodeQuestion(question);
+            index.putInt(recordsOffset + records.size()).putInt(record.length).put(sha256.digest(record));
+            records.write(record, 0, record.length);
+        }
+        int signatureOffset = recordsOffset + records.size();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(questions.size()).putInt(meta.size())
+            .putInt(indexOffset).putInt(signatureOffset).putLong(QuestionCodec.contentHash(questions));
+
+        Signature signer = Signature.getInstance(SIGNATURE_ALGORITHM);
+        signer.initSign(signingKey);
+        signer.update(header.array());
+        signer.update(meta.toByteArray());
+        signer.update(index.array());
+        byte[] signature = signer.sign();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(signatureOffset + 4 + signature.length);
+        out.write(header.array(), 0, HEADER_BYTES);
+        out.write(meta.toByteArray(), 0, meta.size());
+        out.write(index.array(), 0, index.capacity());
+        out.write(records.toByteArray(), 0, records.size());
+        out.write(ByteBuffer.allocate(4).putInt(signature.length).array(), 0, 4);
+        out.write(signature, 0, signature.length);
+        return out.toByteArray();
+    }
+
+    /**
+     * Maps a bundle and checks its signature against the trusted keys.
+     * @throws GeneralSecurityException if no trusted key signed it or the header and index were altered
+     * @throws IOException if the file cannot be read or is not a bundle
+     */
+    public static ExamBundle open(Path file, Collection<PublicKey> trustedKeys) throws IOException, GeneralSecurityException {
+        ByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Not an exam bundle: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapped = buffer.asReadOnlyBuffer();
+        }
+        return read(mapped, file.toString(), trustedKeys);
+    }
+
+    /**
+     * Reads a bundle received over the network; the same checks as {@link #open} apply.
+     */
+    public static ExamBundle fromBytes(byte[] encoded, String source, Collection<PublicKey> trustedKeys)
+            throws IOException, GeneralSecurityException {
+        if (encoded.length < HEADER_BYTES) {
+            throw new IOException("Not an exam bundle: " + source);
+        }
+        return read(ByteBuffer.wrap(encoded).asReadOnlyBuffer(), source, trustedKeys);
+    }
+
+    private static ExamBundle read(ByteBuffer mapped, String file, Collection<PublicKey> trustedKeys)
+            throws IOException, GeneralSecurityException {
+        if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Not an exam bundle: " + file);
+        }
+        int count = mapped.getInt(8);
+        int metadataLength = mapped.getInt(12);
+        int indexOffset = mapped.getInt(16);
+        int signatureOffset = mapped.getInt(20);
+        long contentVersion = mapped.getLong(24);
+        int signedLength = indexOffset + count * INDEX_ENTRY_BYTES;
+        if (count < 0 || metadataLength < 0 || indexOffset != HEADER_BYTES + metadataLength
+                || signedLength > signatureOffset || signatureOffset + 4 > mapped.capacity()) {
+            throw new IOException("Damaged exam bundle header: " + file);
+        }
+        int signatureLength = mapped.getInt(signatureOffset);
+        if (signatureLength <= 0 || signatureOffset + 4 + signatureLength != mapped.capacity()) {
+            throw new IOException("Damaged exam bundle signature block: " + file);
+        }
+        byte[] signature = new byte[signatureLength];
+        mapped.get(signatureOffset + 4, signature);
+        if (!isSignedByTrustedKey(mapped.slice(0, signedLength), signature, trustedKeys)) {
+            throw new GeneralSecurityException("Exam bundle is not signed by a trusted key: " + file);
+        }
+
+        byte[] meta = new byte[metadataLength];
+        mapped.get(HEADER_BYTES, meta);
+        ByteBuffer in = ByteBuffer.wrap(meta);
+        Map<String, String> metadata = new LinkedHashMap<>();
+        for (int i = QuestionCodec.readVarint(in); i > 0; i--) {
+            metadata.put(QuestionCodec.readString(in), QuestionCodec.readString(in));
+        }
+        String examId = metadata.get("examId");
+        if (examId == null || examId.isEmpty()) {
+            throw new IOException("Exam bundle has no examId: " + file);
+        }
+        return new ExamBundle(examId, Collections.unmodifiableMap(metadata), count, indexOffset, contentVersion, mapped);
+    }
+
+    private static boolean isSignedByTrustedKey(ByteBuffer signed, byte[] signature, Collection<PublicKey> trustedKeys)
+            throws GeneralSecurityException {
+        for (PublicKey key : trustedKeys) {
+            Signature verifier = Signature.getInstance(SIGNATURE_ALGORITHM);
+            verifier.initVerify(key);
+            verifier.update(signed.duplicate());
+            if (verifier.verify(signature)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public String getExamId() { return examId; }
+    public Map<String, String> getMetadata() { return metadata; }
+    public int getQuestionCount() { return questionCount; }
+
+    /**
+     * @return {@link QuestionCodec#contentHash(List)} of the bundled questions, recorded when it was written
+     */
+    public long getContentVersion() { return contentVersion; }
+
+    /**
+     * Decodes one question, checking it against the signed index the first time it is read.
+     * @throws IllegalStateException if the record does not match its digest
+     */
+    public synchronized Question getQuestion(int index) {
+        Question question = index >= 0 && index < questionCount ? decoded[index] : null;
+        if (question == null) {
+            question = QuestionCodec.decodeQuestion(examId, getRecord(index));
+            decoded[index] = question;
+        }
+        return question;
+    }
+
+    /**
+     * @return one question in {@link QuestionCodec#encodeQuestion} form, checked against the signed
+     *         index but not decoded, for copying the exam into the cache as it is
+     * @throws IllegalStateException if the record does not match its digest
+     */
+    public byte[] getRecord(int index) {
+        if (index < 0 || index >= questionCount) {
+            throw new IndexOutOfBoundsException("Question " + index + " of " + questionCount);
+        }
+        int entry = indexOffset + index * INDEX_ENTRY_BYTES;
+        int offset = mapped.getInt(entry);
+        int length = mapped.getInt(entry + 4);
+        if (offset < indexOffset || length < 0 || (long) offset + length > mapped.capacity()) {
+            throw new IllegalStateException("Question " + index + " lies outside exam bundle " + examId);
+        }
+        byte[] record = new byte[length];
+        mapped.get(offset, record);
+        byte[] expected = new byte[DIGEST_BYTES];
+        mapped.get(entry + 8, expected);
+        try {
+            if (!MessageDigest.isEqual(expected, MessageDigest.getInstance("SHA-256").digest(record))) {
+                throw new IllegalStateException("Question " + index + " of exam bundle " + examId + " was altered");
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        return record;
+    }
+
+    /**
+     * @return the questions in canonical order; each is decoded when first accessed
+     */
+    public List<Question> asList() {
+        return new AbstractList<>() {
+            @Override
+            public Question get(int index) {
+                return getQuestion(index);
+            }
+
+            @Override
+            public int size() {
+                return questionCount;
+            }
+        };
+    }
+
+    /**
+     * The instructor's signing key pair, created once in {@code secureexam_bundle_signing.key}.
+     * Students trust bundles through the public half listed in {@code bundle.trustedKeys}.
+     */
+    public static KeyPair loadOrCreateSigningKey() throws IOException, GeneralSecurityException {
+        KeyFactory factory = KeyFactory.getInstance(SIGNATURE_ALGORITHM);
+        if (Files.exists(SIGNING_KEY_FILE)) {
+            List<String> lines = Files.readAllLines(SIGNING_KEY_FILE, StandardCharsets.UTF_8);
+            PrivateKey privateKey = factory.generatePrivate(new PKCS8EncodedKeySpec(Base64.getDecoder().decode(lines.get(0))));
+            PublicKey publicKey = factory.generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(lines.get(1))));
+            return new KeyPair(publicKey, privateKey);
+        }
+        KeyPair pair = KeyPairGenerator.getInstance(SIGNATURE_ALGORITHM).generateKeyPair();
+        Files.write(SIGNING_KEY_FILE, List.of(Base64.getEncoder().encodeToString(pair.getPrivate().getEncoded()),
+            encodePublicKey(pair.getPublic())), StandardCharsets.UTF_8);
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.setPosixFilePermissions(SIGNING_KEY_FILE, PosixFilePermissions.fromString("rw-------"));
+        }
+        LOGGER.info("Created exam bundle signing key " + SIGNING_KEY_FILE);
+        return pair;
+    }
+
+    public static String encodePublicKey(PublicKey key) {
+        return Base64.getEncoder().encodeToString(key.getEncoded());
+    }
+
+    /**
+     * @return the keys listed in {@code bundle.trustedKeys}; entries that do not parse are logged and skipped
+     */
+    public static List<PublicKey> trustedKeysFromConfig() {
+        List<PublicKey> keys = new ArrayList<>();
+        for (String encoded : ConfigLoader.getBundleTrustedKeys()) {
+            try {
+                keys.add(KeyFactory.getInstance(SIGNATURE_ALGORITHM)
+                    .generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(encoded))));
+            } catch (GeneralSecurityException | IllegalArgumentException e) {
+                LOGGER.warning("Ignoring malformed trusted bundle key: " + e.getMessage());
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * @return where a staged bundle for the exam is looked for
+     */
+    public static Path pathFor(String examId) {
+        return Paths.get(ConfigLoader.getBundleDirectory()).resolve(examId.replaceAll("[^A-Za-z0-9._-]", "_") + FILE_SUFFIX);
+    }
+}
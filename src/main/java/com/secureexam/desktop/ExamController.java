@@ -22,11 +22,15 @@ import javafx.stage.Stage;
 import javafx.util.Duration;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -35,6 +39,7 @@ public class ExamController {
     private static final int MOUSE_EDGE_BUFFER = 10;
     private static final int MAX_FOCUS_LOSSES = 3;
     private static final int EXAM_DURATION_SECONDS = 30 * 60;
+    private static final int SNAPSHOT_INTERVAL_SECONDS = 10;
 
     @FXML private Label timerLabel;
     @FXML private Label questionLabel;
@@ -48,15 +53,19 @@ public class ExamController {
     private int currentQuestionIndex = 0;
     private Timeline timer;
     private int timeRemaining = EXAM_DURATION_SECONDS;
-    private List<String> userAnswers;
-    private List<Boolean> flaggedQuestions;
+    private AnswerSheet answers; // option index and flag per displayed question
     private String testSeries;
     private String examId;
     private String examCode;
     private int focusLossCount = 0;
     private boolean isExamActive = false;
+    private boolean timeExpired = false; // the whole room submits at this moment, so uploads are spread
     private Firestore db;
     private String studentId; // Added to track student identity for sync
+    private AnswerAutosaver autosaver;
+    private AnswerJournal journal;
+    private ExamSession session;
+    private ScheduledExecutorService snapshotWriter; // rewrites the session snapshot off the FX thread
 
     public void setExamDetails(String testSeries, String examId, String examCode, String studentId) {
         this.testSeries = testSeries;
@@ -65,6 +74,14 @@ public class ExamController {
         this.studentId = studentId; // Store student ID for submission
     }
 
+    /**
+     * Takes over the logged-in student's own session, left behind by a crash; call {@link #startExam()}
+     * afterwards. No exam code is needed unless the session turns out not to be restorable.
+     */
+    public void resumeSession(ExamSession saved) {
+        setExamDetails(saved.getTestSeries(), saved.getExamId(), null, saved.getStudentId());
+    }
+
     @FXML
     private void initialize() {
         db = FirestoreClient.getFirestore();
@@ -77,28 +94,94 @@ public class ExamController {
             option3.setToggleGroup(optionsGroup);
             option4.setToggleGroup(optionsGroup);
         }
+    }
 
+    /**
+     * Starts the exam once the details are set and the exam scene is on the stage. Returns at
+     * once: an {@link ExamBootstrap} validates the code and loads the questions concurrently in
+     * the background while the window shows its progress, and lockdown and the timer engage only
+     * when the first question can be shown. If this student has a saved session for the exam it
+     * is restored from local files, without validating the code or fetching questions again.
+     */
+    public void startExam() {
+        long started = System.nanoTime();
         try {
-            if (examId == null || examCode == null || studentId == null) {
+            if (examId == null || studentId == null) {
                 throw new IllegalStateException("Exam details or student ID not set");
             }
-            if (!validateExamCode()) {
-                LOGGER.severe("Exam code validation failed; returning to dashboard");
-                returnToDashboard();
-                return;
-            }
-            initializeQuestions();
-            setupLockdown();
-            NetworkManager.disableInternet(); // Disable internet at exam start
+            ExamActivity.setExamActive(true); // cache maintenance stays out of the way while the exam loads
+            setLoading(true);
+            new ExamBootstrap(examId, () -> ExamSession.load(examId, studentId), this::validateExamCode,
+                    this::restoreQuestions, () -> TestManager.layOutQuestions(examId, studentId, examCode),
+                    ConfigLoader.getStartupValidateTimeoutMillis(), ConfigLoader.getStartupQuestionsTimeoutMillis())
+                .start(this::prepareExam, (stage, finished, total) -> Platform.runLater(() -> {
+                    questionLabel.setText(stage.getDescription() + ": done");
+                    progressBar.setProgress((double) finished / total);
+                }))
+                .whenComplete((prepared, error) -> Platform.runLater(() -> {
+                    if (error != null) {
+                        failStart(ExamBootstrap.unwrap(error));
+                    } else {
+                        beginExam(prepared, started);
+                    }
+                }));
         } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Failed to initialize exam", e);
-            showAlert(Alert.AlertType.ERROR, "Exam Error", "Failed to start exam: " + e.getMessage());
-            NetworkManager.enableInternet(); // Ensure internet is restored on failure
-            returnToDashboard();
+            failStart(e);
+        }
+    }
+
+    private void failStart(Throwable error) {
+        ExamActivity.setExamActive(false);
+        stopSnapshots(snapshotWriter);
+        snapshotWriter = null;
+        if (autosaver != null) {
+            autosaver.close();
+            autosaver = null;
+        }
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+        if (error instanceof ExamBootstrap.SessionNotRestoredException) {
+            LOGGER.warning("Saved session could not be restored; returning to dashboard for the exam code");
+            showAlert(Alert.AlertType.WARNING, "Session Not Restored",
+                "Your saved exam session could not be restored because the exam has changed. Enter the exam code to start again.");
+        } else if (error instanceof ExamBootstrap.InvalidCodeException) {
+            LOGGER.severe("Exam code validation failed; returning to dashboard");
+            showAlert(Alert.AlertType.ERROR, "Exam Code Error", "Invalid exam code. Please try again.");
+        } else {
+            LOGGER.log(Level.SEVERE, "Failed to initialize exam", error);
+            String message = error instanceof TimeoutException ? "Timed out loading the exam" : error.getMessage();
+            showAlert(Alert.AlertType.ERROR, "Exam Error", "Failed to start exam: " + message);
+        }
+        NetworkManager.enableInternet(); // Ensure internet is restored on failure
+        returnToDashboard();
+    }
+
+    // While the exam loads the window shows progress and nothing can be answered
+    private void setLoading(boolean loading) {
+        if (loading) {
+            questionNumberLabel.setText("Preparing your exam");
+            questionLabel.setText("Loading...");
+            progressBar.setProgress(0);
+        }
+        for (RadioButton option : new RadioButton[]{option1, option2, option3, option4}) {
+            option.setVisible(!loading);
+        }
+        for (Button button : new Button[]{previousButton, nextButton, submitButton, flagButton, quitButton}) {
+            button.setDisable(loading);
         }
     }
 
     private boolean validateExamCode() {
+        if (examCode == null) {
+            LOGGER.warning("No exam code to start examId: " + examId + " over with");
+            return false;
+        }
+        Boolean relayed = RelayClient.shared().validateCode(examId, examCode);
+        if (relayed != null) {
+            return relayed;
+        }
         try {
             DocumentSnapshot examDoc = db.collection("exams").document(examId).get().get();
             if (!examDoc.exists() || !examCode.equals(examDoc.getString("code"))) {
@@ -112,35 +195,215 @@ public class ExamController {
         }
     }
 
-    private void initializeQuestions() {
+    /**
+     * What {@link #prepareExam} builds on a bootstrap thread, taken over by {@link #beginExam} on
+     * the FX thread; the controller's own fields are only ever written there.
+     */
+    private static final class PreparedExam {
+        private final ExamBootstrap.Result result;
+        private final List<Question> questions;
+        private final AnswerSheet answers;
+        private ExamSession session;
+        private AnswerJournal journal;
+        private AnswerAutosaver autosaver;
+        private int currentIndex;
+        private int focusLossCount;
+        private int timeRemaining = EXAM_DURATION_SECONDS;
+
+        PreparedExam(ExamBootstrap.Result result) {
+            this.result = result;
+            this.questions = result.getQuestions();
+            this.answers = new AnswerSheet(questions.size());
+        }
+
+        void close() {
+            if (autosaver != null) {
+                autosaver.close();
+            }
+            if (journal != null) {
+                journal.close();
+            }
+        }
+    }
+
+    // Runs on a bootstrap thread once the questions are loaded; the exam is not on screen yet
+    private PreparedExam prepareExam(ExamBootstrap.Result result) {
+        PreparedExam exam = new PreparedExam(result);
         try {
-            questions = TestManager.getQuestionsForTestSeries(examId);
-            if (questions == null || questions.isEmpty()) {
-                throw new IllegalStateException("No questions available for examId: " + examId);
+            ExamSession saved = result.getSaved();
+            if (saved != null) {
+                restoreSession(exam, saved);
+            } else {
+                // The layout TestManager actually applied; a derived one is stored as its seed
+                exam.session = ExamSession.start(examId, studentId, testSeries, result.getContentVersion(),
+                    result.getOrder(), exam.questions.size(), System.currentTimeMillis() + EXAM_DURATION_SECONDS * 1000L);
+            }
+            openJournal(exam);
+            exam.session.setCurrentIndex(exam.currentIndex);
+            exam.session.setFocusLossCount(exam.focusLossCount);
+            try {
+                exam.session.save();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to save exam session snapshot", e);
             }
-            userAnswers = new ArrayList<>(questions.size());
-            flaggedQuestions = new ArrayList<>(questions.size());
-            for (int i = 0; i < questions.size(); i++) {
-                userAnswers.add(null);
-                flaggedQuestions.add(false);
+            // Initialize local cache with the current (empty or replayed) answers
+            AnswerSheet initial = canonicalAnswers(exam.answers, exam.session);
+            try {
+                LocalCache.saveAnswerSheet(examId, studentId, initial);
+            } catch (SQLException e) {
+                LOGGER.log(Level.SEVERE, "Failed to save answer sheet", e);
             }
+            ExamSession session = exam.session;
+            AnswerSheet answers = exam.answers;
+            exam.autosaver = new AnswerAutosaver(examId, studentId, ConfigLoader.getAutosaveMaxLossMillis(),
+                () -> canonicalAnswers(answers, session));
+            return exam;
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Failed to initialize questions", e);
+            exam.close();
+            throw e;
+        }
+    }
+
+    // Back on the FX thread with everything loaded: take over the prepared state, lock the machine down and show the first question
+    private void beginExam(PreparedExam exam, long started) {
+        questions = exam.questions;
+        answers = exam.answers;
+        session = exam.session;
+        journal = exam.journal;
+        autosaver = exam.autosaver;
+        currentQuestionIndex = exam.currentIndex;
+        focusLossCount = exam.focusLossCount;
+        timeRemaining = exam.timeRemaining;
+        try {
+            setLoading(false);
+            setupLockdown();
+            NetworkManager.disableInternet(); // Disable internet at exam start
             startTimer();
+            startSnapshots();
             loadQuestion(currentQuestionIndex);
             updateProgressBar();
             isExamActive = true;
-            // Initialize local cache with empty answers
-            Map<Integer, String> answersMap = new HashMap<>();
-            for (int i = 0; i < questions.size(); i++) {
-                answersMap.put(i, null);
-            }
-            LocalCache.saveSubmission(examId, studentId, answersMap);
-            LOGGER.info("Exam initialized with " + questions.size() + " questions for examId: " + examId);
+            LOGGER.info("Exam " + (exam.result.getSaved() != null ? "resumed" : "initialized") + " with " + questions.size()
+                + " questions for examId: " + examId + "; time to first question "
+                + (System.nanoTime() - started) / 1_000_000 + " ms (stages: " + exam.result.getStageMillis() + ")");
         } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Failed to initialize questions", e);
-            throw e;
+            failStart(e);
         }
     }
 
+    /**
+     * Lays out the cached questions exactly as the saved session showed them. A session that does not
+     * match them is discarded with its journal, so the next start asks for the code instead of trying
+     * the same snapshot again, and a fresh start does not replay its answers.
+     */
+    private List<Question> restoreQuestions(ExamSession saved) {
+        List<Question> shown = saved.layOut(LocalCache.getQuestions(examId));
+        if (shown == null) {
+            LOGGER.warning("Discarding saved session for examId: " + examId + "; starting over");
+            saved.delete();
+            try {
+                AnswerJournal.discard(examId, studentId);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to discard answer journal of the saved session", e);
+            }
+        }
+        return shown;
+    }
+
+    private void restoreSession(PreparedExam exam, ExamSession saved) {
+        exam.session = saved;
+        for (int i = 0; i < exam.questions.size(); i++) {
+            exam.answers.setAnswer(i, saved.getAnswer(i));
+            exam.answers.setFlag(i, saved.isFlagged(i));
+        }
+        if (saved.getCurrentIndex() < exam.questions.size()) {
+            exam.currentIndex = saved.getCurrentIndex();
+        }
+        exam.focusLossCount = saved.getFocusLossCount();
+        exam.timeRemaining = saved.getRemainingSeconds(System.currentTimeMillis());
+        LOGGER.info("Restored session for examId: " + examId + " with " + exam.timeRemaining + " seconds remaining");
+    }
+
+    // Rewrites the snapshot every few seconds in the background; between snapshots the journal holds each click
+    private void startSnapshots() {
+        ExamSession snapshot = session;
+        if (snapshot == null) {
+            return;
+        }
+        snapshotWriter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "exam-session-snapshot-" + examId);
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotWriter.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot.save();
+            } catch (IOException e) {
+                // The journal and the H2 autosave still hold the answers
+                LOGGER.log(Level.WARNING, "Failed to save exam session snapshot", e);
+            }
+        }, SNAPSHOT_INTERVAL_SECONDS, SNAPSHOT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    // Waits for a snapshot being written, so it cannot recreate a session file deleted after this
+    private void stopSnapshots(ScheduledExecutorService writer) {
+        if (writer == null) {
+            return;
+        }
+        writer.shutdownNow();
+        try {
+            if (!writer.awaitTermination(5, TimeUnit.SECONDS)) {
+                LOGGER.warning("Exam session snapshot still being written for examId: " + examId);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Opens the session journal, restoring answers, flags and position left by a crashed session
+    private void openJournal(PreparedExam exam) {
+        try {
+            boolean resuming = AnswerJournal.exists(examId, studentId);
+            exam.journal = AnswerJournal.open(examId, studentId);
+            if (resuming) {
+                // The journal holds every change since the session began, so it supersedes the snapshot
+                AnswerJournal.JournalState state = exam.journal.replay();
+                for (int i = 0; i < exam.questions.size(); i++) {
+                    int optionIndex = state.getAnswers().getOrDefault(i, -1);
+                    exam.answers.setAnswer(i, optionIndex < Question.OPTION_COUNT ? optionIndex : -1);
+                    exam.answers.setFlag(i, state.getFlags().get(i));
+                    exam.session.setAnswer(i, exam.answers.getAnswer(i));
+                    exam.session.setFlag(i, state.getFlags().get(i));
+                }
+                if (state.getCurrentIndex() < exam.questions.size()) {
+                    exam.currentIndex = state.getCurrentIndex();
+                }
+                exam.focusLossCount = Math.max(exam.focusLossCount, state.getFocusLossCount());
+                LOGGER.info("Replayed " + state.getRecordCount() + " journal records for examId: " + examId);
+            }
+        } catch (IOException e) {
+            // The H2 autosave still protects answers; the journal only tightens the loss window
+            LOGGER.log(Level.WARNING, "Answer journal unavailable; continuing without it", e);
+            exam.journal = null;
+        }
+    }
+
+    private void journal(JournalWrite write) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            write.run();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to append to answer journal", e);
+        }
+    }
+
+    private interface JournalWrite {
+        void run() throws IOException;
+    }
+
     private void setupLockdown() {
         Stage stage = (Stage) timerLabel.getScene().getWindow();
         Scene scene = stage.getScene();
@@ -168,6 +431,11 @@ public class ExamController {
         stage.focusedProperty().addListener((obs, oldVal, newVal) -> {
             if (!newVal && isExamActive) {
                 focusLossCount++;
+                int losses = focusLossCount;
+                journal(() -> journal.appendFocusLoss(losses));
+                if (session != null) {
+                    session.setFocusLossCount(losses);
+                }
                 LOGGER.warning("Focus lost; count: " + focusLossCount);
                 Platform.runLater(() -> {
                     stage.requestFocus();
@@ -191,6 +459,7 @@ public class ExamController {
             timerLabel.setText(String.format("Time Remaining: %02d:%02d", minutes, seconds));
             if (timeRemaining <= 0) {
                 timer.stop();
+                timeExpired = true;
                 LOGGER.info("Time expired; auto-submitting");
                 handleSubmit(null);
             }
@@ -208,18 +477,17 @@ public class ExamController {
         Platform.runLater(() -> {
             questionNumberLabel.setText(String.format("Question %d of %d", index + 1, questions.size()));
             questionLabel.setText(question.getText());
-            String[] options = question.getOptions();
-            option1.setText(options[0]);
-            option2.setText(options[1]);
-            option3.setText(options[2]);
-            option4.setText(options[3]);
-
-            String selectedAnswer = userAnswers.get(index);
-            if (selectedAnswer != null) {
-                option1.setSelected(options[0].equals(selectedAnswer));
-                option2.setSelected(options[1].equals(selectedAnswer));
-                option3.setSelected(options[2].equals(selectedAnswer));
-                option4.setSelected(options[3].equals(selectedAnswer));
+            option1.setText(question.getOption(0));
+            option2.setText(question.getOption(1));
+            option3.setText(question.getOption(2));
+            option4.setText(question.getOption(3));
+
+            int selectedIndex = answers.getAnswer(index);
+            if (selectedIndex >= 0) {
+                option1.setSelected(selectedIndex == 0);
+                option2.setSelected(selectedIndex == 1);
+                option3.setSelected(selectedIndex == 2);
+                option4.setSelected(selectedIndex == 3);
             } else {
                 optionsGroup.getToggles().forEach(toggle -> ((RadioButton) toggle).setSelected(false));
             }
@@ -227,7 +495,7 @@ public class ExamController {
             previousButton.setDisable(index == 0);
             nextButton.setDisable(index == questions.size() - 1);
             submitButton.setVisible(index == questions.size() - 1);
-            flagButton.setText(flaggedQuestions.get(index) ? "Unflag" : "Flag");
+            flagButton.setText(answers.isFlagged(index) ? "Unflag" : "Flag");
         });
     }
 
@@ -251,6 +519,10 @@ public class ExamController {
         int newIndex = currentQuestionIndex + direction;
         if (newIndex >= 0 && newIndex < questions.size()) {
             currentQuestionIndex = newIndex;
+            journal(() -> journal.appendNavigation(newIndex));
+            if (session != null) {
+                session.setCurrentIndex(newIndex);
+            }
             loadQuestion(currentQuestionIndex);
             LOGGER.info("Navigated to question: " + (currentQuestionIndex + 1));
         }
@@ -258,8 +530,12 @@ public class ExamController {
 
     @FXML
     private void handleFlag(ActionEvent event) {
-        boolean isFlagged = flaggedQuestions.get(currentQuestionIndex);
-        flaggedQuestions.set(currentQuestionIndex, !isFlagged);
+        boolean isFlagged = answers.isFlagged(currentQuestionIndex);
+        answers.setFlag(currentQuestionIndex, !isFlagged);
+        journal(() -> journal.appendFlag(currentQuestionIndex, !isFlagged));
+        if (session != null) {
+            session.setFlag(currentQuestionIndex, !isFlagged);
+        }
         flagButton.setText(!isFlagged ? "Unflag" : "Flag");
         LOGGER.info("Question " + (currentQuestionIndex + 1) + " " + (!isFlagged ? "flagged" : "unflagged"));
         showAlert(Alert.AlertType.INFORMATION, "Flag Status", "Question " + (currentQuestionIndex + 1) + " " + (!isFlagged ? "flagged" : "unflagged") + ".");
@@ -287,25 +563,48 @@ public class ExamController {
 
     private void saveAnswer() {
         RadioButton selected = (RadioButton) optionsGroup.getSelectedToggle();
-        String answer = selected != null ? selected.getText() : null;
-        userAnswers.set(currentQuestionIndex, answer);
-        // Update local cache
-        Map<Integer, String> answersMap = new HashMap<>();
-        for (int i = 0; i < userAnswers.size(); i++) {
-            answersMap.put(i, userAnswers.get(i));
-        }
-        LocalCache.saveSubmission(examId, studentId, answersMap);
+        int optionIndex = selected == option1 ? 0 : selected == option2 ? 1 : selected == option3 ? 2 : selected == option4 ? 3 : -1;
+        int previous = answers.getAnswer(currentQuestionIndex);
+        answers.setAnswer(currentQuestionIndex, optionIndex);
+        ExamActivity.markActivity();
+        // Queue only the changed question; the autosaver writes the sheet to the local cache in the background
+        if (previous != optionIndex) {
+            journal(() -> journal.appendAnswer(currentQuestionIndex, optionIndex));
+            if (session != null) {
+                session.setAnswer(currentQuestionIndex, optionIndex);
+            }
+            if (autosaver != null) {
+                autosaver.record(currentQuestionIndex);
+            }
+        }
         LOGGER.info("Saved answer for question " + (currentQuestionIndex + 1));
     }
 
     private int calculateScore() {
-        int score = 0;
-        for (int i = 0; i < questions.size(); i++) {
-            if (questions.get(i).getCorrectAnswer().equals(userAnswers.get(i))) {
-                score++;
-            }
+        return answers.score(questions);
+    }
+
+    /**
+     * The answers in canonical question and option order, as stored and uploaded. Falls back to the
+     * displayed order only if the layout could not be stored, which the session log reports.
+     */
+    private AnswerSheet canonicalAnswers(AnswerSheet displayed, ExamSession layoutSession) {
+        QuestionOrder order = layoutSession != null ? layoutSession.getOrder() : null;
+        if (order == null || order.size() != displayed.size()) {
+            LOGGER.warning("No stored layout for examId: " + examId + "; answers are kept in display order");
+            return displayed;
+        }
+        return displayed.toCanonical(order);
+    }
+
+    private boolean saveAnswerSheet(AnswerSheet canonical) {
+        try {
+            LocalCache.saveAnswerSheet(examId, studentId, canonical);
+            return true;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to save answer sheet", e);
+            return false;
         }
-        return score;
     }
 
     private void endExam(String reason, int score) {
@@ -313,18 +612,66 @@ public class ExamController {
             timer.stop();
         }
         isExamActive = false;
+        ExamActivity.setExamActive(false);
         LOGGER.info("Exam " + reason + "; score: " + score);
-        Platform.runLater(() -> {
+        for (Button button : new Button[]{previousButton, nextButton, submitButton, flagButton, quitButton}) {
+            button.setDisable(true);
+        }
+        questionNumberLabel.setText("Saving your answers");
+        // The worker owns the session's state from here; the FX thread only navigates once it is stored
+        EndedExam ended = new EndedExam(this);
+        autosaver = null;
+        journal = null;
+        session = null;
+        snapshotWriter = null;
+        CompletableFuture.supplyAsync(() -> persistSubmission(ended, score), runnable -> {
+            // Not a daemon: the JVM waits for the submission to reach the local cache before exiting
+            Thread thread = new Thread(runnable, "exam-submission-" + examId);
+            thread.start();
+        }).whenComplete((submission, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                LOGGER.log(Level.SEVERE, "Failed to save submission locally", error);
+                showAlert(Alert.AlertType.ERROR, "Submission Error", "Your answers could not be saved: " + error.getMessage());
+            }
             Alert resultAlert = new Alert(Alert.AlertType.INFORMATION);
             resultAlert.setTitle("Exam " + reason.substring(0, 1).toUpperCase() + reason.substring(1));
             resultAlert.setHeaderText("Exam Completed");
-            resultAlert.setContentText("You scored " + score + " out of " + questions.size() + ".\nFocus losses: " + focusLossCount);
+            resultAlert.setContentText("You scored " + score + " out of " + ended.questionCount + ".\nFocus losses: " + ended.focusLossCount);
             resultAlert.showAndWait();
             releaseLockdown();
             NetworkManager.enableInternet(); // Re-enable internet
-            syncSubmission(score); // Sync data with server
+            if (submission != null) {
+                // Uploaded in the background with retries, at the stored slot; the dashboard shows its progress
+                SubmissionQueue.shared().enqueueAt(examId, studentId, submission.toFirestore(), submission.getUploadAfterMillis());
+            }
             returnToDashboard();
-        });
+        }));
+    }
+
+    /**
+     * What {@link #endExam} hands to the thread that stores the submission: the state of the ended
+     * session, taken off the controller so nothing on the FX thread touches it while it is stored.
+     */
+    private static final class EndedExam {
+        private final AnswerSheet answers;
+        private final ExamSession session;
+        private final AnswerJournal journal;
+        private final AnswerAutosaver autosaver;
+        private final ScheduledExecutorService snapshotWriter;
+        private final int questionCount;
+        private final int focusLossCount;
+        private final boolean timeExpired;
+
+        EndedExam(ExamController controller) {
+            this.answers = controller.answers;
+            this.session = controller.session;
+            this.journal = controller.journal;
+            this.autosaver = controller.autosaver;
+            this.snapshotWriter = controller.snapshotWriter;
+            this.questionCount = controller.questions.size();
+            this.focusLossCount = controller.focusLossCount;
+            this.timeExpired = controller.timeExpired;
+        }
     }
 
     private void releaseLockdown() {
@@ -334,37 +681,49 @@ public class ExamController {
         LOGGER.info("Lockdown released");
     }
 
-    private void syncSubmission(int score) {
-        Map<Integer, String> answersMap = new HashMap<>();
-        for (int i = 0; i < userAnswers.size(); i++) {
-            answersMap.put(i, userAnswers.get(i));
+    /**
+     * Saves the final answers to the local cache, ends the session and its journal, and stores
+     * the submission as finished with the payload {@link SubmissionQueue} uploads, so a later
+     * {@link SubmissionSync} writes the same document if this upload never completes. Runs on a
+     * worker thread: the H2 save, journal compaction and waiting for the snapshot writer all block.
+     */
+    private FinishedSubmission persistSubmission(EndedExam exam, int score) {
+        if (exam.autosaver != null) {
+            exam.autosaver.close(); // Stop write-behind; the full save below supersedes its deltas
         }
-        LocalCache.saveSubmission(examId, studentId, answersMap); // Ensure latest answers are cached
-
-        if (!NetworkManager.isOnline()) {
-            LOGGER.info("Offline: Submission cached for later sync");
-            return;
+        AnswerSheet finalAnswers = canonicalAnswers(exam.answers, exam.session);
+        QuestionOrder layout = exam.session != null ? exam.session.getOrder() : null;
+        if (exam.journal != null) {
+            try {
+                if (saveAnswerSheet(finalAnswers)) {
+                    exam.journal.delete(); // The sheet holds everything the journal recorded
+                } else {
+                    exam.journal.compact(examId, studentId, layout, exam.questionCount); // Retry the save from the journal
+                }
+            } catch (IOException | SQLException e) {
+                LOGGER.log(Level.WARNING, "Failed to compact answer journal; it is left in place", e);
+            }
+        } else {
+            saveAnswerSheet(finalAnswers); // Ensure latest answers are cached
         }
-
+        // The timestamp is set once here, so every upload attempt writes identical data. When time ran
+        // out the whole room ends together, so the upload waits for this student's slot, kept across restarts.
+        long ended = System.currentTimeMillis();
+        FinishedSubmission finished = new FinishedSubmission(examId, studentId, testSeries, finalAnswers, score,
+            exam.questionCount, exam.focusLossCount, layout != null && layout.isDerived() ? layout.getSeed() : null,
+            ended, exam.timeExpired ? SubmissionQueue.shared().uploadSlot(examId, studentId, ended) : 0);
         try {
-            Map<String, Object> submission = new HashMap<>();
-            submission.put("examId", examId);
-            submission.put("studentId", studentId);
-            submission.put("testSeries", testSeries);
-            submission.put("answers", answersMap);
-            submission.put("score", score);
-            submission.put("maxScore", questions.size());
-            submission.put("focusLosses", focusLossCount);
-            submission.put("timestamp", System.currentTimeMillis());
-            submission.put("flaggedQuestions", flaggedQuestions);
-
-            db.collection("submissions").document(examId + "_" + studentId).set(submission).get();
-            LocalCache.markSubmissionAsSynced(examId, studentId);
-            LOGGER.info("Submission synced for examId: " + examId + ", studentId: " + studentId + ", score: " + score);
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Failed to sync submission", e);
-            // Submission remains cached for later sync
+            LocalCache.finishSubmission(finished);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to store finished submission; it is uploaded from memory only", e);
+        }
+        stopSnapshots(exam.snapshotWriter);
+        if (exam.session != null) {
+            exam.session.delete(); // The answers are in the local cache now; nothing left to resume
         }
+        LocalCache.requestSnapshot(); // persists an in-memory cache without waiting for the next interval
+        LOGGER.info("Submission saved locally for examId: " + examId + ", studentId: " + studentId + ", score: " + score);
+        return finished;
     }
 
     private void returnToDashboard() {
@@ -0,0 +1,30 @@
+package com.secureexam.desktop;
+
+import java.util.List;
+
+/**
+ * The questions of an exam as laid out for one student, together with the {@link QuestionOrder}
+ * that laid them out and the content version of the canonical questions it was applied to. An
+ * exam session records these rather than deriving them again, so its seed always describes the
+ * permutation the student was actually shown.
+ */
+public class ExamLayout {
+    private final List<Question> questions;
+    private final QuestionOrder order;
+    private final long contentVersion;
+
+    /**
+     * @param order the layout applied to the canonical questions, or null if there were none to lay out
+     */
+    public ExamLayout(List<Question> questions, QuestionOrder order, long contentVersion) {
+        this.questions = questions;
+        this.order = order;
+        this.contentVersion = contentVersion;
+    }
+
+    public List<Question> getQuestions() { return questions; }
+
+    public QuestionOrder getOrder() { return order; }
+
+    public long getContentVersion() { return contentVersion; }
+}
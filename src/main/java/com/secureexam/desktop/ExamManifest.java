@@ -0,0 +1,524 @@
+package com.secureexam.desktop;
+
+import com.google.api.core.ApiFuture;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldMask;
+import com.google.cloud.firestore.FieldValue;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.WriteBatch;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Paged, content-addressed question storage for an exam, replacing the {@code questions} array
+ * embedded in {@code exams/{examId}}, which is rewritten whole on every added question and cannot
+ * grow past Firestore's 1 MiB document limit.
+ * <ul>
+ *   <li>Each question is stored once under its content hash: {@code exams/{examId}/questionsByHash/{hash}}.</li>
+ *   <li>The canonical order is a list of hashes split into ordered pages of {@link #PAGE_SIZE}:
+ *   {@code exams/{examId}/questionPages/00000, 00001, ...}.</li>
+ *   <li>The exam document records {@code layout = "paged"}, {@code questionCount}, {@code pageCount}
+ *   and {@code manifestVersion}, which increases with every change.</li>
+ * </ul>
+ * The hash list is the exam's version vector: entry i changes exactly when question i does, so
+ * clients fetch only the questions they do not have ({@link QuestionDeltaSync}). Appends run in
+ * transactions that touch only the last page, and {@link #migrate} converts embedded exams.
+ */
+public class ExamManifest {
+    private static final Logger LOGGER = Logger.getLogger(ExamManifest.class.getName());
+    public static final String LAYOUT_PAGED = "paged";
+    public static final int PAGE_SIZE = 250;
+    static final String PAGES_COLLECTION = "questionPages";
+    static final String QUESTIONS_COLLECTION = "questionsByHash";
+    private static final int BATCH_LIMIT = 450; // Firestore allows 500 writes per batch or transaction
+    private static final int APPEND_CHUNK = 200; // questions per append transaction, leaving room for pages
+    private static final int PAGES_IN_FLIGHT = 4;
+    private static final FieldMask LAYOUT_FIELDS = FieldMask.of("layout", "questionCount", "pageCount", "manifestVersion");
+
+    /**
+     * Receives an exam's questions one page at a time, in canonical order.
+     */
+    @FunctionalInterface
+    public interface PageConsumer {
+        void accept(int pageIndex, List<Question> questions);
+    }
+
+    private final long version;
+    private final List<String> hashes;
+
+    public ExamManifest(long version, List<String> hashes) {
+        this.version = version;
+        this.hashes = Collections.unmodifiableList(new ArrayList<>(hashes));
+    }
+
+    public long getVersion() { return version; }
+    public List<String> getHashes() { return hashes; }
+
+    /**
+     * @return {@link QuestionCodec#contentHash(List)} of the questions the manifest lists, from their hashes alone
+     */
+    public long getContentVersion() {
+        long[] questionHashes = new long[hashes.size()];
+        for (int i = 0; i < questionHashes.length; i++) {
+            questionHashes[i] = Long.parseUnsignedLong(hashes.get(i), 16);
+        }
+        return QuestionCodec.contentHash(questionHashes);
+    }
+
+    public int getPageCount() {
+        return (hashes.size() + PAGE_SIZE - 1) / PAGE_SIZE;
+    }
+
+    public List<String> getPage(int pageIndex) {
+        return hashes.subList(pageIndex * PAGE_SIZE, Math.min(hashes.size(), (pageIndex + 1) * PAGE_SIZE));
+    }
+
+    /**
+     * @return the id a question is stored under: its {@link QuestionCodec#contentHash} in hex
+     */
+    public static String hashOf(Question question) {
+        return String.format("%016x", QuestionCodec.contentHash(question));
+    }
+
+    public static List<String> hashesOf(List<Question> questions) {
+        List<String> hashes = new ArrayList<>(questions.size());
+        for (Question question : questions) {
+            hashes.add(hashOf(question));
+        }
+        return hashes;
+    }
+
+    static Map<String, Object> toFirestore(Question question) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("text", question.getText());
+        data.put("options", List.of(question.getOptions()));
+        data.put("correctAnswer", question.getCorrectAnswer());
+        return data;
+    }
+
+    /**
+     * @return the document id of a page; zero-padded so ids sort in page order
+     */
+    static String pageId(int pageIndex) {
+        return String.format("%05d", pageIndex);
+    }
+
+    static DocumentReference examRef(Firestore db, String examId) {
+        return db.collection("exams").document(examId);
+    }
+
+    static CollectionReference pagesRef(Firestore db, String examId) {
+        return examRef(db, examId).collection(PAGES_COLLECTION);
+    }
+
+    static CollectionReference questionsRef(Firestore db, String examId) {
+        return examRef(db, examId).collection(QUESTIONS_COLLECTION);
+    }
+
+    private static boolean isPaged(DocumentSnapshot examDoc) {
+        return examDoc.exists() && LAYOUT_PAGED.equals(examDoc.getString("layout"));
+    }
+
+    private static int intField(DocumentSnapshot doc, String field) {
+        Long value = doc.getLong(field);
+        return value != null ? value.intValue() : 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<Map<String, Object>> questionData(DocumentSnapshot examDoc) {
+        return (List<Map<String, Object>>) examDoc.get("questions");
+    }
+
+    /**
+     * Builds MCQ questions from Firestore maps, skipping any without exactly four options
+     * or whose correct answer is not one of them.
+     */
+    @SuppressWarnings("unchecked")
+    static List<Question> parseQuestions(String examId, List<Map<String, Object>> questionData) {
+        List<Question> questions = new ArrayList<>();
+        if (questionData == null) {
+            return questions;
+        }
+        for (Map<String, Object> q : questionData) {
+            try {
+                List<String> options = (List<String>) q.get("options");
+                if (options == null || options.size() != 4) { // Enforce MCQ with exactly 4 options
+                    LOGGER.warning("Invalid MCQ format for question: " + q.get("text"));
+                    continue;
+                }
+                questions.add(new Question(examId, (String) q.get("text"), options.toArray(new String[0]),
+                    (String) q.get("correctAnswer")));
+            } catch (IllegalArgumentException | ClassCastException e) {
+                LOGGER.warning("Skipping invalid question for examId: " + examId + ": " + e.getMessage());
+            }
+        }
+        return questions;
+    }
+
+    /**
+     * Reads the exam's layout fields and page list, without the embedded question array.
+     * @return the manifest, or null if the exam does not exist or is not paged yet
+     */
+    @SuppressWarnings("unchecked")
+    public static ExamManifest fetch(Firestore db, String examId) throws InterruptedException, ExecutionException {
+        DocumentSnapshot examDoc = examRef(db, examId).get(LAYOUT_FIELDS).get();
+        if (!isPaged(examDoc)) {
+            return null;
+        }
+        int pageCount = intField(examDoc, "pageCount");
+        List<String> hashes = new ArrayList<>(pageCount * PAGE_SIZE);
+        if (pageCount > 0) {
+            DocumentReference[] refs = new DocumentReference[pageCount];
+            for (int i = 0; i < pageCount; i++) {
+                refs[i] = pagesRef(db, examId).document(pageId(i));
+            }
+            for (DocumentSnapshot page : db.getAll(refs).get()) {
+                List<String> pageHashes = (List<String>) page.get("hashes");
+                if (pageHashes == null) {
+                    throw new IllegalStateException("Missing question page " + page.getId() + " of examId: " + examId);
+                }
+                hashes.addAll(pageHashes);
+            }
+        }
+        Long version = examDoc.getLong("manifestVersion");
+        return new ExamManifest(version != null ? version : 0, hashes);
+    }
+
+    /**
+     * Streams the exam's questions page by page. Up to {@value #PAGES_IN_FLIGHT} pages are
+     * requested ahead, so later pages download while earlier ones are consumed.
+     */
+    public static void stream(Firestore db, String examId, ExamManifest manifest, PageConsumer consumer)
+            throws InterruptedException, ExecutionException {
+        Deque<ApiFuture<List<DocumentSnapshot>>> inFlight = new ArrayDeque<>();
+        int requested = 0;
+        for (int delivered = 0; delivered < manifest.getPageCount(); delivered++) {
+            while (requested < manifest.getPageCount() && inFlight.size() < PAGES_IN_FLIGHT) {
+                inFlight.add(db.getAll(questionRefs(db, examId, manifest.getPage(requested++))));
+            }
+            List<String> pageHashes = manifest.getPage(delivered);
+            Map<String, Question> byHash = parse(examId, inFlight.poll().get());
+            List<Question> page = new ArrayList<>(pageHashes.size());
+            for (String hash : pageHashes) {
+                Question question = byHash.get(hash);
+                if (question == null) {
+                    throw new IllegalStateException("Question " + hash + " of examId: " + examId + " is missing or altered");
+                }
+                page.add(question);
+            }
+            consumer.accept(delivered, page);
+        }
+    }
+
+    /**
+     * Reads every question of the exam in canonical order, from pages when the exam is paged and
+     * from the embedded {@code questions} array otherwise.
+     * @return the questions, or null if the exam does not exist
+     */
+    public static List<Question> readAll(Firestore db, String examId) throws InterruptedException, ExecutionException {
+        ExamManifest manifest = fetch(db, examId);
+        if (manifest == null) {
+            DocumentSnapshot examDoc = examRef(db, examId).get().get();
+            return examDoc.exists() ? parseQuestions(examId, questionData(examDoc)) : null;
+        }
+        List<Question> questions = new ArrayList<>(manifest.getHashes().size());
+        stream(db, examId, manifest, (pageIndex, page) -> questions.addAll(page));
+        return questions;
+    }
+
+    /**
+     * Reads the given question documents, several batches at a time.
+     * @return the questions found, keyed by hash
+     */
+    public static Map<String, Question> fetchQuestions(Firestore db, String examId, List<String> hashes)
+            throws InterruptedException, ExecutionException {
+        Map<String, Question> result = new HashMap<>();
+        Deque<ApiFuture<List<DocumentSnapshot>>> inFlight = new ArrayDeque<>();
+        for (int from = 0; from < hashes.size(); from += PAGE_SIZE) {
+            if (inFlight.size() == PAGES_IN_FLIGHT) {
+                result.putAll(parse(examId, inFlight.poll().get()));
+            }
+            inFlight.add(db.getAll(questionRefs(db, examId, hashes.subList(from, Math.min(hashes.size(), from + PAGE_SIZE)))));
+        }
+        while (!inFlight.isEmpty()) {
+            result.putAll(parse(examId, inFlight.poll().get()));
+        }
+        return result;
+    }
+
+    private static DocumentReference[] questionRefs(Firestore db, String examId, List<String> hashes) {
+        DocumentReference[] refs = new DocumentReference[hashes.size()];
+        for (int i = 0; i < refs.length; i++) {
+            refs[i] = questionsRef(db, examId).document(hashes.get(i));
+        }
+        return refs;
+    }
+
+    // Keys each question by the hash of what was actually read, so an altered document never matches
+    private static Map<String, Question> parse(String examId, List<DocumentSnapshot> docs) {
+        List<Map<String, Object>> data = new ArrayList<>(docs.size());
+        for (DocumentSnapshot doc : docs) {
+            if (doc.exists()) {
+                data.add(doc.getData());
+            }
+        }
+        Map<String, Question> byHash = new HashMap<>();
+        for (Question question : parseQuestions(examId, data)) {
+            byHash.put(hashOf(question), question);
+        }
+        return byHash;
+    }
+
+    /**
+     * Appends questions to a paged exam. Each transaction adds up to {@value #APPEND_CHUNK}
+     * questions and reads and writes only the exam's layout fields and its last page, so the cost
+     * does not grow with the exam. An exam still in the embedded layout is migrated first, which
+     * fails if {@link #migrate} has to refuse it.
+     * @return the exam's question count afterwards
+     */
+    public static int append(Firestore db, String examId, List<Question> added) throws InterruptedException, ExecutionException {
+        migrate(db, examId);
+        int count = 0;
+        for (int from = 0; from < added.size(); from += APPEND_CHUNK) {
+            List<Question> chunk = added.subList(from, Math.min(added.size(), from + APPEND_CHUNK));
+            count = db.runTransaction(transaction -> {
+                DocumentSnapshot examDoc = transaction.get(examRef(db, examId)).get();
+                if (!isPaged(examDoc)) {
+                    throw new IllegalStateException("Exam " + examId + " does not exist or is not paged");
+                }
+                int questionCount = intField(examDoc, "questionCount");
+                int pageCount = intField(examDoc, "pageCount");
+                List<String> lastPage = new ArrayList<>();
+                if (pageCount > 0 && questionCount % PAGE_SIZE != 0) {
+                    lastPage = readPageHashes(transaction.get(pagesRef(db, examId).document(pageId(pageCount - 1))).get());
+                } else if (pageCount > 0) {
+                    pageCount++; // the last page is full; start a new one
+                }
+                int pageIndex = Math.max(0, pageCount - 1);
+
+                for (Question question : chunk) {
+                    String hash = hashOf(question);
+                    transaction.set(questionsRef(db, examId).document(hash), toFirestore(question));
+                    if (lastPage.size() == PAGE_SIZE) {
+                        transaction.set(pagesRef(db, examId).document(pageId(pageIndex)), Map.of("hashes", lastPage));
+                        lastPage = new ArrayList<>();
+                        pageIndex++;
+                    }
+                    lastPage.add(hash);
+                }
+                transaction.set(pagesRef(db, examId).document(pageId(pageIndex)), Map.of("hashes", lastPage));
+                int newCount = questionCount + chunk.size();
+                transaction.update(examRef(db, examId), Map.of(
+                    "questionCount", newCount,
+                    "pageCount", pageIndex + 1,
+                    "manifestVersion", FieldValue.increment(1)));
+                return newCount;
+            }).get();
+        }
+        LOGGER.info("Appended " + added.size() + " questions to examId: " + examId + "; it now has " + count);
+        return count;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> readPageHashes(DocumentSnapshot page) {
+        List<String> hashes = page.exists() ? (List<String>) page.get("hashes") : null;
+        return hashes != null ? new ArrayList<>(hashes) : new ArrayList<>();
+    }
+
+    /**
+     * Replaces the exam's questions. Question documents are written first, then changed pages,
+     * then the layout fields that make them visible; stale pages and questions are removed last.
+     * The embedded {@code questions} array is dropped.
+     * @return the new manifest
+     */
+    public static ExamManifest publish(Firestore db, String examId, List<Question> questions)
+            throws InterruptedException, ExecutionException {
+        ExamManifest previous = fetch(db, examId);
+        List<String> oldHashes = previous != null ? previous.getHashes() : Collections.emptyList();
+        ExamManifest manifest = new ExamManifest(previous != null ? previous.getVersion() + 1 : 1, hashesOf(questions));
+
+        BatchWriter writer = new BatchWriter(db);
+        Set<String> existing = new HashSet<>(oldHashes);
+        Set<String> written = new HashSet<>();
+        for (int i = 0; i < questions.size(); i++) {
+            String hash = manifest.getHashes().get(i);
+            if (!existing.contains(hash) && written.add(hash)) {
+                writer.batch().set(questionsRef(db, examId).document(hash), toFirestore(questions.get(i)));
+                writer.counted();
+            }
+        }
+        ExamManifest old = new ExamManifest(0, oldHashes);
+        for (int page = 0; page < manifest.getPageCount(); page++) {
+            if (page >= old.getPageCount() || !old.getPage(page).equals(manifest.getPage(page))) {
+                writer.batch().set(pagesRef(db, examId).document(pageId(page)), Map.of("hashes", new ArrayList<>(manifest.getPage(page))));
+                writer.counted();
+            }
+        }
+        writer.flush();
+
+        Map<String, Object> layout = new HashMap<>();
+        layout.put("layout", LAYOUT_PAGED);
+        layout.put("questionCount", questions.size());
+        layout.put("pageCount", manifest.getPageCount());
+        layout.put("manifestVersion", manifest.getVersion());
+        layout.put("questions", FieldValue.delete());
+        examRef(db, examId).update(layout).get();
+
+        for (int page = manifest.getPageCount(); page < old.getPageCount(); page++) {
+            writer.batch().delete(pagesRef(db, examId).document(pageId(page)));
+            writer.counted();
+        }
+        Set<String> current = new HashSet<>(manifest.getHashes());
+        for (String hash : existing) {
+            if (!current.contains(hash)) {
+                writer.batch().delete(questionsRef(db, examId).document(hash));
+                writer.counted();
+            }
+        }
+        writer.flush();
+        LOGGER.info("Published manifest v" + manifest.getVersion() + " for examId: " + examId + " ("
+            + questions.size() + " questions in " + manifest.getPageCount() + " pages, " + written.size() + " written)");
+        return manifest;
+    }
+
+    /**
+     * Moves an exam from the embedded {@code questions} array to the paged layout. Every embedded
+     * question is carried over as it is; if any of them is not a valid four-option question the
+     * exam is left untouched and the migration is refused, since readers that skip such questions
+     * ({@link #parseQuestions}) would otherwise lose them for good.
+     * @return true if the exam was migrated, false if it was already paged
+     * @throws IllegalStateException if the exam does not exist or cannot be migrated without losing questions
+     */
+    public static boolean migrate(Firestore db, String examId) throws InterruptedException, ExecutionException {
+        DocumentSnapshot layout = examRef(db, examId).get(LAYOUT_FIELDS).get();
+        if (!layout.exists()) {
+            throw new IllegalStateException("Exam " + examId + " does not exist");
+        }
+        if (isPaged(layout)) {
+            return false;
+        }
+        DocumentSnapshot examDoc = examRef(db, examId).get().get();
+        List<Question> questions = embeddedQuestions(examId, examDoc.get("questions"));
+        publish(db, examId, questions);
+        LOGGER.info("Migrated examId: " + examId + " to paged question storage with " + questions.size() + " questions");
+        return true;
+    }
+
+    // Every embedded question in order, or a refusal naming each one that would be lost
+    @SuppressWarnings("unchecked")
+    static List<Question> embeddedQuestions(String examId, Object embedded) {
+        if (embedded == null) {
+            return new ArrayList<>();
+        }
+        if (!(embedded instanceof List)) {
+            throw new IllegalStateException("Exam " + examId + " cannot be migrated: its questions field is not a list");
+        }
+        List<Object> data = (List<Object>) embedded;
+        List<Question> questions = new ArrayList<>(data.size());
+        List<String> problems = new ArrayList<>();
+        for (int i = 0; i < data.size(); i++) {
+            try {
+                if (!(data.get(i) instanceof Map)) {
+                    throw new IllegalArgumentException("not a question");
+                }
+                Map<String, Object> q = (Map<String, Object>) data.get(i);
+                List<String> options = (List<String>) q.get("options");
+                if (options == null) {
+                    throw new IllegalArgumentException("MCQ must have exactly 4 options");
+                }
+                questions.add(new Question(examId, (String) q.get("text"), options.toArray(new String[0]),
+                    (String) q.get("correctAnswer")));
+            } catch (IllegalArgumentException | ClassCastException | ArrayStoreException e) {
+                problems.add("question " + (i + 1) + ": " + e.getMessage());
+            }
+        }
+        if (!problems.isEmpty()) {
+            throw new IllegalStateException("Exam " + examId + " cannot be migrated without losing questions; fix "
+                + String.join("; ", problems));
+        }
+        return questions;
+    }
+
+    /**
+     * What {@link #migrateAll} did: how many exams moved to the paged layout, and why the others did not.
+     */
+    public static final class MigrationReport {
+        private int migrated;
+        private final Map<String, String> refused = new LinkedHashMap<>();
+
+        public int getMigrated() { return migrated; }
+
+        /**
+         * @return examId to the reason it was left in the embedded layout
+         */
+        public Map<String, String> getRefused() { return Collections.unmodifiableMap(refused); }
+    }
+
+    /**
+     * Migrates every embedded exam created by the given instructor. Exams that cannot be migrated
+     * are left as they are and reported.
+     */
+    public static MigrationReport migrateAll(Firestore db, String createdBy) throws InterruptedException, ExecutionException {
+        MigrationReport report = new MigrationReport();
+        for (QueryDocumentSnapshot exam : db.collection("exams").whereEqualTo("createdBy", createdBy)
+                .select("layout").get().get().getDocuments()) {
+            if (LAYOUT_PAGED.equals(exam.getString("layout"))) {
+                continue;
+            }
+            try {
+                if (migrate(db, exam.getId())) {
+                    report.migrated++;
+                }
+            } catch (ExecutionException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Failed to migrate examId: " + exam.getId(), e);
+                report.refused.put(exam.getId(), e.getMessage());
+            }
+        }
+        return report;
+    }
+
+    // Splits writes into Firestore-sized batches
+    private static final class BatchWriter {
+        private final Firestore db;
+        private WriteBatch batch;
+        private int pending;
+
+        BatchWriter(Firestore db) {
+            this.db = db;
+            this.batch = db.batch();
+        }
+
+        WriteBatch batch() {
+            return batch;
+        }
+
+        void counted() throws InterruptedException, ExecutionException {
+            if (++pending == BATCH_LIMIT) {
+                flush();
+            }
+        }
+
+        void flush() throws InterruptedException, ExecutionException {
+            if (pending > 0) {
+                batch.commit().get();
+                batch = db.batch();
+                pending = 0;
+            }
+        }
+    }
+}
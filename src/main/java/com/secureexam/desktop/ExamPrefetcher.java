@@ -0,0 +1,226 @@
+package com.secureexam.desktop;
+
+import com.google.firebase.cloud.FirestoreClient;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Downloads, validates and caches the question sets of the exams a student is eligible for
+ * while they are still on the dashboard, so starting an exam reads its questions from
+ * LocalCache instead of waiting on Firestore.
+ * <p>
+ * Work runs on at most {@code concurrency} low-priority daemon threads, and downloads are paced
+ * to {@code bytesPerSecond} (measured on the question text received) so a room of students
+ * opening the dashboard together does not saturate the uplink: a download starts only once the
+ * shared budget has room for the expected size of an exam, and the difference to its actual size
+ * is settled when it ends. Exams already queued, or prefetched within the freshness window, are
+ * skipped; nothing is fetched while an exam is active.
+ */
+public class ExamPrefetcher {
+    private static final Logger LOGGER = Logger.getLogger(ExamPrefetcher.class.getName());
+    private static ExamPrefetcher shared;
+
+    /**
+     * Returns an exam's questions in canonical order, or null if the exam does not exist.
+     */
+    @FunctionalInterface
+    public interface Fetcher {
+        List<Question> fetch(String examId) throws Exception;
+    }
+
+    private final Fetcher fetcher;
+    private final long bytesPerSecond;
+    private final long freshMillis;
+    private final ThreadPoolExecutor executor;
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final Map<String, Long> prefetchedAt = new ConcurrentHashMap<>();
+    private final AtomicInteger fetched = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicLong bytesFetched = new AtomicLong();
+    private long nextSlotNanos = System.nanoTime();
+
+    public ExamPrefetcher(Fetcher fetcher, int concurrency, long bytesPerSecond, long freshMillis) {
+        if (concurrency <= 0 || bytesPerSecond <= 0) {
+            throw new IllegalArgumentException("Prefetch concurrency and bandwidth must be positive");
+        }
+        this.fetcher = fetcher;
+        this.bytesPerSecond = bytesPerSecond;
+        this.freshMillis = freshMillis;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), r -> {
+                Thread thread = new Thread(r, "exam-prefetch-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Reads exams through {@link ExamManifest#readAll}, the same path TestManager loads from.
+     */
+    public static ExamPrefetcher fromConfig() {
+        return new ExamPrefetcher(examId -> ExamManifest.readAll(FirestoreClient.getFirestore(), examId),
+            ConfigLoader.getPrefetchConcurrency(), ConfigLoader.getPrefetchBytesPerSecond(),
+            ConfigLoader.getPrefetchFreshMillis());
+    }
+
+    /**
+     * The process-wide prefetcher, shared by every dashboard and exam the student opens.
+     */
+    public static synchronized ExamPrefetcher shared() {
+        if (shared == null) {
+            shared = fromConfig();
+        }
+        return shared;
+    }
+
+    /**
+     * Queues the given exams for download and returns immediately.
+     * @return the number of exams queued; the rest were fresh or already queued
+     */
+    public int prefetch(Collection<String> examIds) {
+        int queued = 0;
+        for (String examId : examIds) {
+            if (examId == null || examId.trim().isEmpty() || isFresh(examId) || !inFlight.add(examId)) {
+                continue;
+            }
+            try {
+                executor.execute(() -> prefetchOne(examId));
+                queued++;
+            } catch (RejectedExecutionException e) {
+                inFlight.remove(examId);
+                LOGGER.fine("Prefetch request after shutdown ignored");
+            }
+        }
+        if (queued > 0) {
+            LOGGER.info("Queued " + queued + " exams for prefetch");
+        }
+        return queued;
+    }
+
+    /**
+     * @return true if the exam's questions were prefetched within the freshness window and are still cached
+     */
+    public boolean isFresh(String examId) {
+        Long at = prefetchedAt.get(examId);
+        return at != null && System.currentTimeMillis() - at < freshMillis && LocalCache.isCached(examId);
+    }
+
+    private void prefetchOne(String examId) {
+        long reserved = -1;
+        long bytes = 0;
+        try {
+            if (ExamActivity.isExamActive()) {
+                LOGGER.fine("Exam active; prefetch of " + examId + " deferred to the next dashboard load");
+                return;
+            }
+            reserved = reserve();
+            long start = System.nanoTime();
+            List<Question> questions = fetcher.fetch(examId);
+            if (questions == null || questions.isEmpty()) {
+                LOGGER.warning("No questions to prefetch for examId: " + examId);
+                failed.incrementAndGet();
+                return;
+            }
+            bytes = estimateBytes(questions);
+            LocalCache.saveQuestions(examId, questions);
+            prefetchedAt.put(examId, System.currentTimeMillis());
+            fetched.incrementAndGet();
+            bytesFetched.addAndGet(bytes);
+            LOGGER.info("Prefetched " + questions.size() + " questions (" + bytes + " bytes) for examId: " + examId
+                + " in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            LOGGER.log(Level.WARNING, "Prefetch failed for examId: " + examId, e);
+        } finally {
+            if (reserved >= 0) {
+                settle(reserved, bytes);
+            }
+            inFlight.remove(examId);
+        }
+    }
+
+    /**
+     * Books the expected size of the next download (the mean of those so far) in the shared
+     * byte budget and holds this worker until the budget reaches it, so downloads start paced
+     * instead of bursting and being paid for afterwards.
+     * @return the bytes reserved, to be settled when the download ends
+     */
+    private long reserve() throws InterruptedException {
+        long expected;
+        long waitNanos;
+        synchronized (this) {
+            int count = fetched.get();
+            expected = count > 0 ? bytesFetched.get() / count : 0;
+            long now = System.nanoTime();
+            long start = Math.max(now, nextSlotNanos);
+            nextSlotNanos = start + budgetNanos(expected);
+            waitNanos = start - now;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+        return expected;
+    }
+
+    // Charges what the download used beyond its reservation to later downloads, or refunds what it did not use
+    private synchronized void settle(long reserved, long bytes) {
+        nextSlotNanos += budgetNanos(bytes - reserved);
+    }
+
+    private long budgetNanos(long bytes) {
+        return bytes * 1_000_000_000L / bytesPerSecond;
+    }
+
+    private static long estimateBytes(List<Question> questions) {
+        long bytes = 0;
+        for (Question question : questions) {
+            bytes += question.getText().getBytes(StandardCharsets.UTF_8).length;
+            for (int i = 0; i < Question.OPTION_COUNT; i++) {
+                String option = question.getOption(i);
+                bytes += option.getBytes(StandardCharsets.UTF_8).length;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Waits until every queued exam has been handled.
+     * @return false if work was still pending when the timeout passed
+     */
+    boolean awaitIdle(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!inFlight.isEmpty()) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    public int getFetched() { return fetched.get(); }
+    public int getFailed() { return failed.get(); }
+    public long getBytesFetched() { return bytesFetched.get(); }
+}
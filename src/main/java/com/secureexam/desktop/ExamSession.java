@@ -0,0 +1,331 @@
+package com.secureexam.desktop;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Snapshot of one student's running exam: question and option layout, answers, flags,
+ * current question, focus-loss count and the absolute deadline. It is rewritten as a whole
+ * (write to a temporary file, then rename) at session start and then periodically from a
+ * background thread, so when the same student logs in again after a crash and starts the exam,
+ * it is restored from local files alone. {@link AnswerJournal} records every answer, flag,
+ * navigation and focus loss between snapshots and is replayed on top; setters only update memory.
+ * <p>
+ * The file is authenticated with an HMAC under the cache master key ({@link CacheCipher#authenticate}),
+ * so a snapshot that was edited, or written without the key, is ignored rather than resumed; without
+ * a key nothing is saved. The exam code is not stored: a resumed session skips the code check because
+ * the student already passed it, and a session that cannot be restored has to be validated again.
+ * <p>
+ * File layout: [magic][format version][body][HMAC-SHA256 of everything before it], where the body is
+ * examId, studentId, testSeries, questions version, deadline, saved-at time,
+ * focus losses, current index, the layout, one answer byte per question (display option index,
+ * or -1) and the flag bits. A {@linkplain QuestionOrder#derive derived} layout is stored as its
+ * seed alone, so the snapshot stays the same small size however long the exam; other layouts
+ * are stored as an encoded {@link QuestionOrder}.
+ */
+public class ExamSession {
+    private static final Logger LOGGER = Logger.getLogger(ExamSession.class.getName());
+    private static final Path SESSION_DIR = Path.of(ConfigLoader.getCacheDirectory(), "secureexam_session");
+    private static final int MAGIC = 0x53455331; // "SES1"
+    private static final int VERSION = 3;
+    private static final int LAYOUT_NONE = 0;
+    private static final int LAYOUT_DERIVED = 1;
+    private static final int LAYOUT_STORED = 2;
+    private static final String SUFFIX = ".session";
+    private static final String MAC_CONTEXT = "session";
+    private static final int MAC_BYTES = 32;
+
+    private final Path file;
+    private final CacheCipher key;
+    private final String examId;
+    private final String studentId;
+    private final String testSeries;
+    private final long questionsVersion;
+    private final QuestionOrder order;
+    private final long deadlineMillis;
+    private final byte[] answers;
+    private final BitSet flags;
+    private int currentIndex;
+    private int focusLossCount;
+    private long savedAtMillis;
+
+    private ExamSession(Path file, CacheCipher key, String examId, String studentId, String testSeries,
+                        long questionsVersion, QuestionOrder order, long deadlineMillis, int questionCount) {
+        this.file = file;
+        this.key = key;
+        this.examId = examId;
+        this.studentId = studentId;
+        this.testSeries = testSeries;
+        this.questionsVersion = questionsVersion;
+        this.order = order;
+        this.deadlineMillis = deadlineMillis;
+        this.answers = new byte[questionCount];
+        Arrays.fill(answers, (byte) -1);
+        this.flags = new BitSet(questionCount);
+    }
+
+    /**
+     * Begins a new session snapshot; nothing is written until {@link #save()}.
+     * @param order the layout the student is shown, or null if it is unknown, in which case a resume lays the exam out again
+     */
+    public static ExamSession start(String examId, String studentId, String testSeries, long questionsVersion,
+                                    QuestionOrder order, int questionCount, long deadlineMillis) {
+        return start(SESSION_DIR, SnapshotKey.CIPHER, examId, studentId, testSeries, questionsVersion, order,
+            questionCount, deadlineMillis);
+    }
+
+    static ExamSession start(Path dir, CacheCipher key, String examId, String studentId, String testSeries,
+                             long questionsVersion, QuestionOrder order, int questionCount, long deadlineMillis) {
+        return new ExamSession(pathFor(dir, examId, studentId), key, examId, studentId, testSeries,
+            questionsVersion, order, deadlineMillis, questionCount);
+    }
+
+    /**
+     * @param studentId the student who is logged in; only a snapshot of that student's own session is returned
+     * @return the saved session, or null if there is none or it is unreadable or fails authentication
+     */
+    public static ExamSession load(String examId, String studentId) {
+        return load(SESSION_DIR, SnapshotKey.CIPHER, examId, studentId);
+    }
+
+    static ExamSession load(Path dir, CacheCipher key, String examId, String studentId) {
+        if (key == null) {
+            return null;
+        }
+        ExamSession session = read(pathFor(dir, examId, studentId), key);
+        if (session != null && !(session.examId.equals(examId) && session.studentId.equals(studentId))) {
+            LOGGER.warning("Ignoring exam session of another exam or student in " + pathFor(dir, examId, studentId));
+            return null;
+        }
+        return session;
+    }
+
+    private static Path pathFor(Path dir, String examId, String studentId) {
+        // Same naming as the journal, so both files of a session sit side by side in a listing
+        String journalName = AnswerJournal.pathFor(examId, studentId).getFileName().toString();
+        return dir.resolve(journalName.substring(0, journalName.lastIndexOf('.')) + SUFFIX);
+    }
+
+    /**
+     * Atomically replaces the snapshot file with the current state.
+     */
+    public synchronized void save() throws IOException {
+        if (key == null) {
+            throw new IOException("No cache key to authenticate the exam session with");
+        }
+        savedAtMillis = System.currentTimeMillis();
+        byte[] encoded = encode();
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(encoded);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false); // off the FX thread, so the rename never exposes an unwritten file
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Removes the snapshot once the session has ended and its answers are in the local cache.
+     */
+    public void delete() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to delete exam session " + file, e);
+        }
+    }
+
+    private byte[] encode() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(128 + answers.length * 2);
+        QuestionCodec.writeLong(out, (long) MAGIC << 32 | VERSION);
+        QuestionCodec.writeString(out, examId);
+        QuestionCodec.writeString(out, studentId);
+        QuestionCodec.writeString(out, testSeries != null ? testSeries : "");
+        QuestionCodec.writeLong(out, questionsVersion);
+        QuestionCodec.writeLong(out, deadlineMillis);
+        QuestionCodec.writeLong(out, savedAtMillis);
+        QuestionCodec.writeVarint(out, focusLossCount);
+        QuestionCodec.writeVarint(out, currentIndex);
+        if (order == null) {
+            out.write(LAYOUT_NONE);
+        } else if (order.isDerived()) {
+            out.write(LAYOUT_DERIVED);
+            QuestionCodec.writeLong(out, order.getSeed());
+        } else {
+            out.write(LAYOUT_STORED);
+            byte[] encodedOrder = order.encode();
+            QuestionCodec.writeVarint(out, encodedOrder.length);
+            out.write(encodedOrder, 0, encodedOrder.length);
+        }
+        QuestionCodec.writeVarint(out, answers.length);
+        out.write(answers, 0, answers.length);
+        byte[] flagBytes = flags.toByteArray();
+        QuestionCodec.writeVarint(out, flagBytes.length);
+        out.write(flagBytes, 0, flagBytes.length);
+        byte[] body = out.toByteArray();
+        byte[] mac = key.authenticate(MAC_CONTEXT, body, body.length);
+        out.write(mac, 0, mac.length);
+        return out.toByteArray();
+    }
+
+    private static ExamSession read(Path file, CacheCipher key) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            byte[] encoded = Files.readAllBytes(file);
+            int bodyLength = encoded.length - MAC_BYTES;
+            ByteBuffer in = ByteBuffer.wrap(encoded, 0, Math.max(0, bodyLength));
+            long header = bodyLength < 8 ? 0 : in.getLong();
+            if (header != ((long) MAGIC << 32 | VERSION) || !MessageDigest.isEqual(
+                    key.authenticate(MAC_CONTEXT, encoded, bodyLength), Arrays.copyOfRange(encoded, bodyLength, encoded.length))) {
+                LOGGER.warning("Ignoring damaged or unauthenticated exam session " + file);
+                return null;
+            }
+            String examId = QuestionCodec.readString(in);
+            String studentId = QuestionCodec.readString(in);
+            String testSeries = QuestionCodec.readString(in);
+            long questionsVersion = in.getLong();
+            long deadline = in.getLong();
+            long savedAt = in.getLong();
+            int focusLosses = QuestionCodec.readVarint(in);
+            int currentIndex = QuestionCodec.readVarint(in);
+            int layout = in.get();
+            long seed = layout == LAYOUT_DERIVED ? in.getLong() : 0;
+            byte[] encodedOrder = new byte[layout == LAYOUT_STORED ? QuestionCodec.readVarint(in) : 0];
+            in.get(encodedOrder);
+            byte[] answers = new byte[QuestionCodec.readVarint(in)];
+            in.get(answers);
+            byte[] flagBytes = new byte[QuestionCodec.readVarint(in)];
+            in.get(flagBytes);
+
+            QuestionOrder order = null;
+            if (layout == LAYOUT_DERIVED) {
+                order = QuestionOrder.derive(examId, studentId, seed, answers.length);
+            } else if (encodedOrder.length > 0) {
+                order = QuestionOrder.decode(encodedOrder);
+            }
+            ExamSession session = new ExamSession(file, key, examId, studentId, testSeries, questionsVersion,
+                order, deadline, answers.length);
+            System.arraycopy(answers, 0, session.answers, 0, answers.length);
+            session.flags.or(BitSet.valueOf(flagBytes));
+            session.currentIndex = currentIndex;
+            session.focusLossCount = focusLosses;
+            session.savedAtMillis = savedAt;
+            return session;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to read exam session " + file, e);
+            return null;
+        }
+    }
+
+    public String getExamId() { return examId; }
+    public String getStudentId() { return studentId; }
+    public String getTestSeries() { return testSeries; }
+    public long getQuestionsVersion() { return questionsVersion; }
+    public QuestionOrder getOrder() { return order; }
+    public long getDeadlineMillis() { return deadlineMillis; }
+    public long getSavedAtMillis() { return savedAtMillis; }
+    public int getQuestionCount() { return answers.length; }
+    public synchronized int getCurrentIndex() { return currentIndex; }
+    public synchronized int getFocusLossCount() { return focusLossCount; }
+
+    /**
+     * Lays the canonical questions out as this session showed them.
+     * @return the displayed questions, or null if the session has no layout or the questions are not
+     *         the ones it was saved against, in which case its answers would land on other questions
+     */
+    public List<Question> layOut(List<Question> canonical) {
+        if (order == null || canonical.size() != answers.length || order.size() != canonical.size()) {
+            LOGGER.warning("Exam session for examId: " + examId + " does not match " + canonical.size() + " cached questions");
+            return null;
+        }
+        if (QuestionCodec.contentHash(canonical) != questionsVersion) {
+            LOGGER.warning("Cached questions for examId: " + examId + " changed since the session was saved");
+            return null;
+        }
+        return order.apply(canonical);
+    }
+
+    /**
+     * @return whole seconds left until the deadline, never negative
+     */
+    public int getRemainingSeconds(long nowMillis) {
+        return (int) Math.max(0, (deadlineMillis - nowMillis) / 1000);
+    }
+
+    public synchronized void setCurrentIndex(int currentIndex) { this.currentIndex = currentIndex; }
+    public synchronized void setFocusLossCount(int focusLossCount) { this.focusLossCount = focusLossCount; }
+
+    /**
+     * @param optionIndex index into the question's displayed options, or -1 when cleared
+     */
+    public synchronized void setAnswer(int questionIndex, int optionIndex) {
+        answers[questionIndex] = (byte) optionIndex;
+    }
+
+    /**
+     * @return the displayed option index chosen for the question, or -1 if unanswered
+     */
+    public synchronized int getAnswer(int questionIndex) {
+        return answers[questionIndex];
+    }
+
+    public synchronized void setFlag(int questionIndex, boolean flagged) {
+        flags.set(questionIndex, flagged);
+    }
+
+    public synchronized boolean isFlagged(int questionIndex) {
+        return flags.get(questionIndex);
+    }
+
+    /**
+     * Maps the stored option indices back to answer text for the displayed questions.
+     */
+    public synchronized Map<Integer, String> toAnswers(List<Question> questions) {
+        Map<Integer, String> result = new HashMap<>();
+        for (int i = 0; i < answers.length && i < questions.size(); i++) {
+            if (answers[i] >= 0) {
+                result.put(i, questions.get(i).getOption(answers[i]));
+            }
+        }
+        return result;
+    }
+
+    // Loaded on first use, so a client that never starts an exam does not touch the key
+    private static final class SnapshotKey {
+        static final CacheCipher CIPHER = load();
+
+        private static CacheCipher load() {
+            try {
+                return CacheCipher.fromConfig();
+            } catch (IOException | IllegalArgumentException e) {
+                LOGGER.log(Level.SEVERE, "Cache master key unavailable; exam sessions will not be saved or resumed", e);
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.secureexam.desktop;
+
+/**
+ * Outcome of one {@link CacheExpiryService} pass.
+ */
+public class ExpiryReport {
+    private int examsDeleted;
+    private int questionsDeleted;
+    private int submissionsDeleted;
+    private int chunks;
+    private long elapsedMillis;
+    private boolean interrupted;
+
+    void addExams(int exams, int questions) {
+        examsDeleted += exams;
+        questionsDeleted += questions;
+        chunks++;
+    }
+
+    void addSubmissions(int submissions) {
+        submissionsDeleted += submissions;
+        chunks++;
+    }
+
+    void setElapsedMillis(long elapsedMillis) { this.elapsedMillis = elapsedMillis; }
+    void setInterrupted(boolean interrupted) { this.interrupted = interrupted; }
+
+    public int getExamsDeleted() { return examsDeleted; }
+    public int getQuestionsDeleted() { return questionsDeleted; }
+    public int getSubmissionsDeleted() { return submissionsDeleted; }
+    public int getChunks() { return chunks; }
+    public long getElapsedMillis() { return elapsedMillis; }
+    /** True when the pass stopped early because an exam started. */
+    public boolean isInterrupted() { return interrupted; }
+
+    public int getRowsReclaimed() {
+        return examsDeleted + questionsDeleted + submissionsDeleted;
+    }
+
+    @Override
+    public String toString() {
+        return "Reclaimed " + getRowsReclaimed() + " rows (" + examsDeleted + " exams, " + questionsDeleted
+            + " questions, " + submissionsDeleted + " submissions) in " + chunks + " chunks, "
+            + elapsedMillis + " ms" + (interrupted ? "; stopped early for an active exam" : "");
+    }
+}
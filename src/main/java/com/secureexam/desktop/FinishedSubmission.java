@@ -0,0 +1,140 @@
+package com.secureexam.desktop;
+
+import com.google.cloud.firestore.Blob;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A finished exam exactly as it is uploaded to {@code submissions/<examId>_<studentId>}.
+ * It is built once when the exam ends and stored with the submission
+ * ({@link LocalCache#finishSubmission}); the background upload and the sync at a later launch
+ * both write {@link #toFirestore()} of that one copy, timestamp included, so every upload of a
+ * submission writes identical data. A submission made when time ran out also keeps its upload
+ * slot ({@link #getUploadAfterMillis()}), so a client relaunched before the slot still waits for it.
+ * <p>
+ * Wire format ({@link #encode()}): [format version][testSeries][AnswerSheet length varint][AnswerSheet]
+ * [score varint][maxScore varint][focusLosses varint][has layout seed][layout seed long]?[timestamp long]
+ * [upload after long].
+ * The exam and student ids are the submission's key and are not repeated.
+ */
+public final class FinishedSubmission {
+    private static final int FORMAT_VERSION = 1;
+
+    private final String examId;
+    private final String studentId;
+    private final String testSeries;
+    private final AnswerSheet answers;
+    private final int score;
+    private final int maxScore;
+    private final int focusLosses;
+    private final Long layoutSeed;
+    private final long timestamp;
+    private final long uploadAfterMillis;
+
+    public FinishedSubmission(String examId, String studentId, String testSeries, AnswerSheet answers, int score,
+                              int maxScore, int focusLosses, Long layoutSeed, long timestamp) {
+        this(examId, studentId, testSeries, answers, score, maxScore, focusLosses, layoutSeed, timestamp, 0);
+    }
+
+    /**
+     * @param answers option indices in canonical question order
+     * @param layoutSeed the seed of a derived layout ({@link QuestionOrder#derive}), or null if the layout was stored
+     * @param uploadAfterMillis epoch millis of the first upload attempt, 0 to upload at once; not uploaded itself
+     */
+    public FinishedSubmission(String examId, String studentId, String testSeries, AnswerSheet answers, int score,
+                              int maxScore, int focusLosses, Long layoutSeed, long timestamp, long uploadAfterMillis) {
+        this.examId = examId;
+        this.studentId = studentId;
+        this.testSeries = testSeries != null ? testSeries : "";
+        this.answers = answers;
+        this.score = score;
+        this.maxScore = maxScore;
+        this.focusLosses = focusLosses;
+        this.layoutSeed = layoutSeed;
+        this.timestamp = timestamp;
+        this.uploadAfterMillis = uploadAfterMillis;
+    }
+
+    public String getExamId() { return examId; }
+    public String getStudentId() { return studentId; }
+    public String getTestSeries() { return testSeries; }
+    public AnswerSheet getAnswers() { return answers; }
+    public int getScore() { return score; }
+    public int getMaxScore() { return maxScore; }
+    public long getTimestamp() { return timestamp; }
+
+    /**
+     * @return when the first upload may start (the student's slot in the deadline spread window), 0 for at once
+     */
+    public long getUploadAfterMillis() { return uploadAfterMillis; }
+
+    /**
+     * @return the submission document's fields
+     */
+    public Map<String, Object> toFirestore() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("examId", examId);
+        data.put("studentId", studentId);
+        data.put("testSeries", testSeries);
+        // Option indices in canonical order; see AnswerSheet for the encoding
+        data.put("answerSheet", Blob.fromBytes(answers.encode()));
+        data.put("answered", answers.getAnsweredCount());
+        data.put("flagged", answers.getFlaggedCount());
+        data.put("score", score);
+        data.put("maxScore", maxScore);
+        data.put("focusLosses", focusLosses);
+        if (layoutSeed != null) {
+            // With the studentId this regenerates the student's view (QuestionOrder.derive)
+            data.put("layoutSeed", layoutSeed);
+        }
+        data.put("timestamp", timestamp);
+        return data;
+    }
+
+    public byte[] encode() {
+        byte[] sheet = answers.encode();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(48 + testSeries.length() + sheet.length);
+        out.write(FORMAT_VERSION);
+        QuestionCodec.writeString(out, testSeries);
+        QuestionCodec.writeVarint(out, sheet.length);
+        out.write(sheet, 0, sheet.length);
+        QuestionCodec.writeVarint(out, score);
+        QuestionCodec.writeVarint(out, maxScore);
+        QuestionCodec.writeVarint(out, focusLosses);
+        out.write(layoutSeed != null ? 1 : 0);
+        if (layoutSeed != null) {
+            QuestionCodec.writeLong(out, layoutSeed);
+        }
+        QuestionCodec.writeLong(out, timestamp);
+        QuestionCodec.writeLong(out, uploadAfterMillis);
+        return out.toByteArray();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the bytes are not a finished submission this version can read
+     */
+    public static FinishedSubmission decode(String examId, String studentId, byte[] encoded) {
+        try {
+            ByteBuffer in = ByteBuffer.wrap(encoded);
+            int version = in.get();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unsupported finished submission format: " + version);
+            }
+            String testSeries = QuestionCodec.readString(in);
+            byte[] sheet = new byte[QuestionCodec.readVarint(in)];
+            in.get(sheet);
+            int score = QuestionCodec.readVarint(in);
+            int maxScore = QuestionCodec.readVarint(in);
+            int focusLosses = QuestionCodec.readVarint(in);
+            Long layoutSeed = in.get() != 0 ? in.getLong() : null;
+            long timestamp = in.getLong();
+            return new FinishedSubmission(examId, studentId, testSeries, AnswerSheet.decode(sheet), score, maxScore,
+                focusLosses, layoutSeed, timestamp, in.getLong());
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed finished submission", e);
+        }
+    }
+}
@@ -22,6 +22,7 @@ import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
 import java.io.*;
+import java.security.KeyPair;
 import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -45,7 +46,7 @@ public class InstructorDashboardController {
     @FXML private TextField evaluationExamId, passingScoreField;
     @FXML private Button pauseExamButton, resumeExamButton, endExamButton, evaluateButton, exportResultsButton;
 
-    @FXML private Button createExam, addQuestion, logoutButton, generateQuestionCSVButton, uploadQuestionCSVButton;
+    @FXML private Button createExam, addQuestion, logoutButton, generateQuestionCSVButton, uploadQuestionCSVButton, exportBundleButton, migrateExamsButton;
     @FXML private Label feedbackLabel;
 
     private Map<String, String> userAttributes;
@@ -73,6 +74,42 @@ public class InstructorDashboardController {
         }
     }
 
+    /**
+     * Moves this instructor's exams that still embed a questions array to paged storage, in the
+     * background, and reports any exam that was left as it is because migrating would lose questions.
+     */
+    @FXML
+    private void handleMigrateExams(ActionEvent event) {
+        String email = userAttributes != null ? userAttributes.get("email") : null;
+        if (email == null) {
+            showFeedback("User data not available. Please re-login.", true);
+            return;
+        }
+        migrateExamsButton.setDisable(true);
+        showFeedback("Migrating exams to paged question storage...", false);
+        Thread migration = new Thread(() -> {
+            try {
+                ExamManifest.MigrationReport report = ExamManifest.migrateAll(db, email);
+                LOGGER.info("Migrated " + report.getMigrated() + " exams to paged question storage for " + email
+                    + "; " + report.getRefused().size() + " refused");
+                logAudit("migrate_exams", email);
+                if (report.getRefused().isEmpty()) {
+                    showFeedback("Migrated " + report.getMigrated() + " exams.", false);
+                } else {
+                    showFeedback("Migrated " + report.getMigrated() + " exams. Not migrated: "
+                        + String.join(" ", report.getRefused().values()), true);
+                }
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Failed to migrate exams to paged question storage", e);
+                showFeedback("Failed to migrate exams: " + e.getMessage(), true);
+            } finally {
+                Platform.runLater(() -> migrateExamsButton.setDisable(false));
+            }
+        }, "exam-migration");
+        migration.setDaemon(true);
+        migration.start();
+    }
+
     @FXML
     private void handleCreateExam(ActionEvent event) {
         String name = examName.getText().trim();
@@ -99,7 +136,10 @@ public class InstructorDashboardController {
             examData.put("course", course.isEmpty() ? null : course);
             examData.put("class", className.isEmpty() ? null : className);
             examData.put("section", section.isEmpty() ? null : section);
-            examData.put("questions", new ArrayList<>());
+            examData.put("layout", ExamManifest.LAYOUT_PAGED); // questions are appended as pages, see ExamManifest
+            examData.put("questionCount", 0);
+            examData.put("pageCount", 0);
+            examData.put("manifestVersion", 0);
             examData.put("createdBy", userAttributes != null ? userAttributes.get("email") : "unknown");
             examData.put("createdAt", System.currentTimeMillis());
             examData.put("status", "active");
@@ -132,8 +172,8 @@ public class InstructorDashboardController {
                 .filter(opt -> !opt.isEmpty())
                 .collect(Collectors.toList());
 
-        if (options.size() < 2) {
-            showFeedback("At least two options are required.", true);
+        if (options.size() != 4) {
+            showFeedback("Exactly four options are required.", true);
             return;
         }
 
@@ -143,23 +183,14 @@ public class InstructorDashboardController {
         }
 
         try {
-            DocumentReference examRef = db.collection("exams").document(examId);
-            DocumentSnapshot examDoc = examRef.get().get();
+            DocumentSnapshot examDoc = db.collection("exams").document(examId).get(FieldMask.of("layout")).get();
             if (!examDoc.exists()) {
                 showFeedback("Exam ID " + examId + " does not exist.", true);
                 return;
             }
 
-            Map<String, Object> questionData = new HashMap<>();
-            questionData.put("text", text);
-            questionData.put("options", options);
-            questionData.put("correctAnswer", correct);
-
-            List<Map<String, Object>> questions = (List<Map<String, Object>>) examDoc.get("questions");
-            if (questions == null) questions = new ArrayList<>();
-            questions.add(questionData);
-
-            examRef.update("questions", questions).get();
+            Question question = new Question(examId, text, options.toArray(new String[0]), correct);
+            ExamManifest.append(db, examId, List.of(question));
             LOGGER.info("Added question to examId " + examId + " with " + options.size() + " options");
             logAudit("add_question", examId);
             showFeedback("Question added to exam " + examId + " successfully.", false);
@@ -218,6 +249,7 @@ public class InstructorDashboardController {
             int addedCount = 0;
             int lineNumber = 1;
             List<String> errors = new ArrayList<>();
+            Map<String, List<Question>> pendingQuestions = new LinkedHashMap<>();
 
             while ((line = reader.readNext()) != null) {
                 lineNumber++;
@@ -241,8 +273,8 @@ public class InstructorDashboardController {
                         .filter(opt -> !opt.isEmpty())
                         .collect(Collectors.toList());
 
-                if (options.size() < 2) {
-                    errors.add("Line " + lineNumber + ": At least two options are required.");
+                if (options.size() != 4) {
+                    errors.add("Line " + lineNumber + ": Exactly four options are required.");
                     continue;
                 }
 
@@ -251,28 +283,23 @@ public class InstructorDashboardController {
                     continue;
                 }
 
+                pendingQuestions.computeIfAbsent(examId, id -> new ArrayList<>())
+                    .add(new Question(examId, text, options.toArray(new String[0]), correct));
+            }
+
+            // Each exam's rows are appended in a few transactions instead of one document rewrite per line
+            for (Map.Entry<String, List<Question>> exam : pendingQuestions.entrySet()) {
+                String examId = exam.getKey();
                 try {
-                    DocumentReference examRef = db.collection("exams").document(examId);
-                    DocumentSnapshot examDoc = examRef.get().get();
-                    if (!examDoc.exists()) {
-                        errors.add("Line " + lineNumber + ": Exam ID " + examId + " does not exist.");
+                    if (!db.collection("exams").document(examId).get(FieldMask.of("layout")).get().exists()) {
+                        errors.add("Exam ID " + examId + " does not exist; skipped " + exam.getValue().size() + " questions.");
                         continue;
                     }
-
-                    Map<String, Object> question = new HashMap<>();
-                    question.put("text", text);
-                    question.put("options", options);
-                    question.put("correctAnswer", correct);
-
-                    List<Map<String, Object>> questions = (List<Map<String, Object>>) examDoc.get("questions");
-                    if (questions == null) questions = new ArrayList<>();
-                    questions.add(question);
-
-                    examRef.update("questions", questions).get();
+                    ExamManifest.append(db, examId, exam.getValue());
                     logAudit("add_question_bulk", examId);
-                    addedCount++;
+                    addedCount += exam.getValue().size();
                 } catch (Exception e) {
-                    errors.add("Line " + lineNumber + ": Failed to add question - " + e.getMessage());
+                    errors.add("Exam " + examId + ": Failed to add questions - " + e.getMessage());
                 }
             }
 
@@ -290,6 +317,53 @@ public class InstructorDashboardController {
         }
     }
 
+    // Export a signed exam bundle for offline distribution (USB stick or local share)
+    @FXML
+    private void handleExportExamBundle(ActionEvent event) {
+        String examId = csvExamIdField.getText().trim();
+        if (examId.isEmpty()) {
+            showFeedback("Enter the Exam ID to export.", true);
+            return;
+        }
+
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Export Exam Bundle");
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Exam Bundles", "*" + ExamBundle.FILE_SUFFIX));
+        fileChooser.setInitialFileName(ExamBundle.pathFor(examId).getFileName().toString());
+        File file = fileChooser.showSaveDialog(exportBundleButton.getScene().getWindow());
+
+        if (file == null) return;
+
+        try {
+            DocumentSnapshot examDoc = db.collection("exams").document(examId).get().get();
+            if (!examDoc.exists()) {
+                showFeedback("Exam ID " + examId + " does not exist.", true);
+                return;
+            }
+            List<Question> questions = ExamManifest.readAll(db, examId);
+            if (questions == null || questions.isEmpty()) {
+                showFeedback("Exam " + examId + " has no valid questions to export.", true);
+                return;
+            }
+
+            // The exam code stays out of the bundle; students still enter it to start
+            Map<String, String> metadata = new LinkedHashMap<>();
+            for (String field : new String[]{"name", "stream", "branch", "course", "class", "section"}) {
+                metadata.put(field, examDoc.getString(field));
+            }
+            KeyPair signingKey = ExamBundle.loadOrCreateSigningKey();
+            ExamBundle.write(file.toPath(), examId, metadata, questions, signingKey.getPrivate());
+            logAudit("export_bundle", examId);
+            String publicKey = ExamBundle.encodePublicKey(signingKey.getPublic());
+            showFeedback("Exported " + questions.size() + " questions to " + file.getAbsolutePath()
+                + ". Students need this key in bundle.trustedKeys: " + publicKey, false);
+            LOGGER.info("Exported exam bundle for " + examId + " to " + file.getAbsolutePath() + "; signing key " + publicKey);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Failed to export exam bundle", e);
+            showFeedback("Failed to export exam bundle: " + e.getMessage(), true);
+        }
+    }
+
     @FXML
     private void handleLogout(ActionEvent event) {
         Alert confirmation = new Alert(Alert.AlertType.CONFIRMATION, "Are you sure you want to logout?", ButtonType.YES, ButtonType.NO);
@@ -359,7 +433,10 @@ public class InstructorDashboardController {
         TableColumn<StudentResult, String> gradeCol = new TableColumn<>("Grade");
         gradeCol.setCellValueFactory(new PropertyValueFactory<>("grade"));
 
-        resultTable.getColumns().addAll(studentIdCol, examIdCol, scoreCol, gradeCol);
+        TableColumn<StudentResult, String> answersCol = new TableColumn<>("Answers");
+        answersCol.setCellValueFactory(new PropertyValueFactory<>("answers"));
+
+        resultTable.getColumns().addAll(studentIdCol, examIdCol, scoreCol, gradeCol, answersCol);
         resultTable.setItems(studentResults);
     }
 
@@ -384,7 +461,8 @@ public class InstructorDashboardController {
                         studentId,
                         examId,
                         score + "/" + maxScore,
-                        grade
+                        grade,
+                        readableAnswers(submission)
                 ));
             }
             LOGGER.info("Loaded " + studentResults.size() + " results for instructor");
@@ -394,6 +472,20 @@ public class InstructorDashboardController {
         }
     }
 
+    // The uploaded answer sheet holds option indices in canonical question order
+    private String readableAnswers(QueryDocumentSnapshot submission) {
+        Blob answerSheet = submission.getBlob("answerSheet");
+        if (answerSheet == null) {
+            return "";
+        }
+        try {
+            return AnswerSheet.decode(answerSheet.toBytes()).describe();
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.WARNING, "Unreadable answer sheet in submission " + submission.getId(), e);
+            return "Unreadable";
+        }
+    }
+
     // Monitoring of Students
     private void monitorActiveStudents() {
         if (userAttributes == null || userAttributes.get("email") == null) {
@@ -445,7 +537,11 @@ public class InstructorDashboardController {
                     .get().get().getDocuments();
 
             for (QueryDocumentSnapshot submission : submissions) {
-                long score = submission.getLong("score");
+                Long score = submission.getLong("score");
+                if (score == null) {
+                    LOGGER.warning("Submission " + submission.getId() + " has no score; not evaluated");
+                    continue;
+                }
                 String grade = (score >= passingScore) ? "Pass" : "Fail";
                 submission.getReference().update("grade", grade).get();
             }
@@ -523,11 +619,12 @@ public class InstructorDashboardController {
         if (file == null) return;
 
         try (CSVWriter writer = new CSVWriter(new FileWriter(file))) {
-            String[] headers = {"Student ID", "Exam ID", "Score", "Grade"};
+            String[] headers = {"Student ID", "Exam ID", "Score", "Grade", "Answers"};
             writer.writeNext(headers);
             for (StudentResult result : studentResults) {
                 writer.writeNext(new String[]{
-                        result.getStudentId(), result.getExamId(), result.getScore(), result.getGrade()
+                        result.getStudentId(), result.getExamId(), result.getScore(), result.getGrade(),
+                        result.getAnswers()
                 });
             }
             showFeedback("Results exported to " + file.getAbsolutePath(), false);
@@ -595,17 +692,20 @@ public class InstructorDashboardController {
         private final SimpleStringProperty examId;
         private final SimpleStringProperty score;
         private final SimpleStringProperty grade;
+        private final SimpleStringProperty answers;
 
-        public StudentResult(String studentId, String examId, String score, String grade) {
+        public StudentResult(String studentId, String examId, String score, String grade, String answers) {
             this.studentId = new SimpleStringProperty(studentId);
             this.examId = new SimpleStringProperty(examId);
             this.score = new SimpleStringProperty(score);
             this.grade = new SimpleStringProperty(grade);
+            this.answers = new SimpleStringProperty(answers);
         }
 
         public String getStudentId() { return studentId.get(); }
         public String getExamId() { return examId.get(); }
         public String getScore() { return score.get(); }
         public String getGrade() { return grade.get(); }
+        public String getAnswers() { return answers.get(); }
     }
 }
\ No newline at end of file
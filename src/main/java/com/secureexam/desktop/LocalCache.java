@@ -1,15 +1,18 @@
 package com.secureexam.desktop;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.sql.*;
-import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
@@ -18,183 +21,1354 @@ import java.util.stream.Collectors;
 
 public class LocalCache {
     private static final Logger LOGGER = Logger.getLogger(LocalCache.class.getName());
-    private static final String DB_URL = "jdbc:h2:./secureexam_cache";
-    private static Connection conn;
+    private static final Path CACHE_DIR = Path.of(ConfigLoader.getCacheDirectory()).toAbsolutePath().normalize();
+    private static final String DB_URL = "jdbc:h2:" + CACHE_DIR.resolve("secureexam_cache");
+    private static final String MEMORY_DB_URL = "jdbc:h2:mem:secureexam_cache;DB_CLOSE_DELAY=-1";
+    private static final String KEY_VALUE_FILE = CACHE_DIR.resolve("secureexam_cache.kv").toString();
+    static final Path SQL_SNAPSHOT_FILE = CACHE_DIR.resolve("secureexam_cache.snapshot.sql");
+    private static final Path KEY_VALUE_SNAPSHOT_FILE = CACHE_DIR.resolve("secureexam_cache.snapshot.kv");
+    private static final long POOL_ACQUIRE_TIMEOUT_MS = 10_000;
+    private static final int INSERT_BATCH_SIZE = 500;
+    private static final int PENDING_PAGE_SIZE = 200;
+    private static final String ALL_SEALED = "all_sealed";
+    private static volatile CachePool pool;
+    private static final QuestionCache questionCache = new QuestionCache(
+        ConfigLoader.getQuestionCacheMaxBytes(), ConfigLoader.getQuestionCacheTtlMillis());
     private static final ObjectMapper objectMapper = new ObjectMapper();
-    private static final long CACHE_EXPIRY_DAYS = 30; // Default expiry time in days
+    private static final PayloadCodec payloadCodec = PayloadCodec.fromConfig();
+    // Null when cache.encrypt is off; payloads are then stored compressed but in the clear
+    private static volatile CacheCipher cipher;
+    // Why the key could not be read when cache.encrypt is on; records are then neither read nor written
+    private static volatile String keyProblem;
+    // Non-null when the "mvstore" engine is configured; every public operation then goes to it
+    private static volatile MvStoreCache keyValueStore;
+    // With cache.storage "memory" nothing is written to disk except the snapshots taken by the snapshotter
+    private static volatile boolean inMemory = "memory".equalsIgnoreCase(ConfigLoader.getCacheStorage());
+    private static volatile CacheSnapshotter snapshotter;
 
     static {
         try {
-            conn = DriverManager.getConnection(DB_URL);
+            Files.createDirectories(CACHE_DIR);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Failed to create cache directory " + CACHE_DIR, e);
+        }
+        loadCipher();
+        pool = new CachePool(databaseUrl(), ConfigLoader.getCachePoolSize(), POOL_ACQUIRE_TIMEOUT_MS);
+        try {
+            if (inMemory) {
+                restoreSnapshot();
+            }
             initializeDatabase();
-        } catch (SQLException e) {
+            if (keyProblem != null) {
+                LOGGER.severe("Cache master key unavailable; the local cache will not read or write records");
+            } else if ("mvstore".equalsIgnoreCase(ConfigLoader.getCacheEngine())) {
+                MvStoreCache store = new MvStoreCache(inMemory ? null : KEY_VALUE_FILE, payloadCodec, cipher);
+                if (inMemory && Files.exists(KEY_VALUE_SNAPSHOT_FILE)) {
+                    LOGGER.info("Restored " + store.restoreFrom(KEY_VALUE_SNAPSHOT_FILE) + " entries from cache snapshot");
+                }
+                migrateToKeyValue(store);
+                keyValueStore = store;
+            }
+            if (inMemory) {
+                snapshotter = CacheSnapshotter.fromConfig();
+                snapshotter.start();
+            }
+        } catch (SQLException | RuntimeException e) {
+            // Not rethrown: a failed class initializer would leave every later use with NoClassDefFoundError
             LOGGER.log(Level.SEVERE, "Failed to initialize local cache", e);
         }
     }
 
-    // Ensure resources are released when the application exits
-    public static void shutdown() {
+    static String databaseUrl() {
+        return inMemory ? MEMORY_DB_URL : DB_URL;
+    }
+
+    /**
+     * @return true when the cache is held in memory and only persisted by periodic snapshots
+     */
+    public static boolean isInMemory() {
+        return inMemory;
+    }
+
+    /**
+     * Switches between the disk database and an empty or snapshot-restored in-memory one.
+     * Intended for tests and benchmarks that compare the two storage modes in one JVM.
+     */
+    static void useStorage(boolean memory) throws SQLException {
+        CachePool previous = pool;
+        inMemory = memory;
+        pool = new CachePool(databaseUrl(), previous.getMaxSize(), POOL_ACQUIRE_TIMEOUT_MS);
+        previous.close();
+        questionCache.clear();
+        if (memory) {
+            restoreSnapshot();
+        }
+        initializeDatabase();
+        LOGGER.info("LocalCache switched to " + (memory ? "memory" : "disk") + " storage");
+    }
+
+    /**
+     * Asks the snapshotter to persist the in-memory cache soon, for example right after an exam
+     * is submitted. Does nothing when the cache is on disk.
+     */
+    public static void requestSnapshot() {
+        CacheSnapshotter current = snapshotter;
+        if (current != null) {
+            current.requestSnapshot();
+        }
+    }
+
+    /**
+     * Writes the whole cache to its snapshot file: an H2 script for the SQL tables, a store file
+     * for the key-value engine. The previous snapshot is replaced only once the new one is complete.
+     * @return the size of the snapshot in bytes
+     */
+    static long writeSnapshot() throws SQLException, IOException {
+        MvStoreCache kv = keyValueStore;
+        if (kv != null) {
+            return kv.snapshotTo(KEY_VALUE_SNAPSHOT_FILE);
+        }
+        Path temp = SQL_SNAPSHOT_FILE.resolveSibling(SQL_SNAPSHOT_FILE.getFileName() + ".tmp");
+        try (CachePool.Lease lease = pool.acquire();
+             Statement stmt = lease.connection().createStatement()) {
+            // One statement, so it reads a single consistent version of every table
+            stmt.execute("SCRIPT DROP TO " + sqlString(temp) + " COMPRESSION DEFLATE");
+        }
         try {
-            if (conn != null && !conn.isClosed()) {
-                conn.close();
-                LOGGER.info("LocalCache connection closed");
+            Files.move(temp, SQL_SNAPSHOT_FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, SQL_SNAPSHOT_FILE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return Files.size(SQL_SNAPSHOT_FILE);
+    }
+
+    // Loads the last SQL snapshot into a fresh in-memory database
+    private static void restoreSnapshot() throws SQLException {
+        if (!Files.exists(SQL_SNAPSHOT_FILE)) {
+            return;
+        }
+        try (CachePool.Lease lease = pool.acquire();
+             Statement stmt = lease.connection().createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES " +
+                    "WHERE TABLE_SCHEMA = 'PUBLIC' AND TABLE_NAME = 'CACHED_EXAMS'")) {
+                if (rs.next() && rs.getInt(1) > 0) {
+                    return; // this JVM's in-memory database is still alive
+                }
+            }
+            long start = System.nanoTime();
+            stmt.execute("RUNSCRIPT FROM " + sqlString(SQL_SNAPSHOT_FILE) + " COMPRESSION DEFLATE");
+            LOGGER.info("Restored cache snapshot in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }
+    }
+
+    private static String sqlString(Path path) {
+        return "'" + path.toAbsolutePath().toString().replace("'", "''") + "'";
+    }
+
+    /**
+     * @return bytes of cached question, submission and answer records, which is what an
+     *         in-memory cache's memory budget is measured against
+     */
+    static long storedBytes() throws SQLException {
+        MvStoreCache kv = keyValueStore;
+        if (kv != null) {
+            return kv.getStoredBytes();
+        }
+        try (CachePool.Lease lease = pool.acquire()) {
+            PreparedStatement stmt = lease.prepare("SELECT " +
+                "(SELECT COALESCE(SUM(OCTET_LENGTH(payload)), 0) FROM cached_questions) + " +
+                "(SELECT COALESCE(SUM(OCTET_LENGTH(dictionary)), 0) FROM cached_exams) + " +
+                "(SELECT COALESCE(SUM(OCTET_LENGTH(answers)), 0) + COALESCE(SUM(OCTET_LENGTH(sheet)), 0) " +
+                    "+ COALESCE(SUM(OCTET_LENGTH(payload)), 0) FROM submissions) + " +
+                "(SELECT COALESCE(SUM(OCTET_LENGTH(answer)), 0) FROM submission_answers)");
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    /**
+     * @return cached exam ids, least recently cached first
+     */
+    static List<String> examsOldestFirst() throws SQLException {
+        MvStoreCache kv = keyValueStore;
+        if (kv != null) {
+            return kv.examsOldestFirst();
+        }
+        List<String> examIds = new ArrayList<>();
+        try (CachePool.Lease lease = pool.acquire();
+             ResultSet rs = lease.prepare("SELECT examId FROM cached_exams ORDER BY created").executeQuery()) {
+            while (rs.next()) {
+                examIds.add(rs.getString(1));
+            }
+        }
+        return examIds;
+    }
+
+    // Fails closed: with encryption on and no provisioned key, nothing is cached rather than cached in the clear.
+    // MainApp checks for the key before anything touches the cache and tells the user when it is missing.
+    private static void loadCipher() {
+        if (!ConfigLoader.isCacheEncrypted()) {
+            return;
+        }
+        try {
+            cipher = CacheCipher.fromConfig();
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.log(Level.SEVERE, "Cache master key unavailable", e);
+            keyProblem = e.getMessage();
+        }
+    }
+
+    /**
+     * Replaces the record cipher; null writes plaintext from now on. Intended for benchmarks and
+     * tests that compare the encrypted and plaintext paths. Existing records keep their form, so
+     * plaintext records written before are rejected while a cipher is in use.
+     */
+    static void useCipher(CacheCipher replacement) {
+        cipher = replacement;
+    }
+
+    private static byte[] seal(String examId, String context, byte[] payload) {
+        CacheCipher current = cipher;
+        if (current != null) {
+            return current.seal(examId, context, payload);
+        }
+        if (keyProblem != null) {
+            throw new IllegalStateException("Cache master key unavailable: " + keyProblem);
+        }
+        return payload;
+    }
+
+    private static byte[] open(String examId, String context, byte[] stored) {
+        CacheCipher current = cipher;
+        if (current != null) {
+            return current.open(examId, context, stored); // rejects unsealed records
+        }
+        if (keyProblem != null) {
+            throw new IllegalStateException("Cache master key unavailable: " + keyProblem);
+        }
+        if (CacheCipher.isSealed(stored)) {
+            throw new IllegalStateException("Cache record is encrypted but no cache key is available");
+        }
+        return stored;
+    }
+
+    /**
+     * Encrypts in place every record still stored in the clear, once, when a cache written with
+     * {@code cache.encrypt} off is opened with encryption on. This is the only code that reads an
+     * unsealed record while a key is in use: once it has run the cache is flagged as all sealed
+     * and {@link CacheCipher#open} rejects plaintext, so a plaintext row written into the database
+     * cannot stand in for a sealed one. Opening the cache without encryption clears the flag.
+     */
+    static void sealPlaintextRecords() throws SQLException {
+        CacheCipher current = cipher;
+        try (CachePool.Lease lease = pool.acquire()) {
+            if (current == null) {
+                PreparedStatement clear = lease.prepare("DELETE FROM cache_flags WHERE name = ?");
+                clear.setString(1, ALL_SEALED);
+                clear.executeUpdate();
+                return;
+            }
+            PreparedStatement check = lease.prepare("SELECT COUNT(*) FROM cache_flags WHERE name = ?");
+            check.setString(1, ALL_SEALED);
+            try (ResultSet rs = check.executeQuery()) {
+                rs.next();
+                if (rs.getInt(1) > 0) {
+                    return;
+                }
+            }
+            sealColumns(lease, current);
+        }
+    }
+
+    private static void sealColumns(CachePool.Lease lease, CacheCipher current) throws SQLException {
+        Connection conn = lease.connection();
+        conn.setAutoCommit(false);
+        try {
+            int sealed = sealColumn(lease, current,
+                "SELECT examId, dictionary, examKey FROM cached_exams WHERE dictionary IS NOT NULL",
+                "UPDATE cached_exams SET dictionary = ? WHERE examKey = ?", 1, rs -> "dictionary");
+            sealed += sealColumn(lease, current,
+                "SELECT e.examId, q.payload, q.examKey, q.ordinal FROM cached_questions q JOIN cached_exams e ON q.examKey = e.examKey",
+                "UPDATE cached_questions SET payload = ? WHERE examKey = ? AND ordinal = ?", 2, rs -> questionContext(rs.getInt(4)));
+            sealed += sealColumn(lease, current,
+                "SELECT examId, answers, examId, studentId FROM submissions WHERE answers IS NOT NULL",
+                "UPDATE submissions SET answers = ? WHERE examId = ? AND studentId = ?", 2, rs -> submissionContext(rs.getString(4)));
+            sealed += sealColumn(lease, current,
+                "SELECT examId, sheet, examId, studentId FROM submissions WHERE sheet IS NOT NULL",
+                "UPDATE submissions SET sheet = ? WHERE examId = ? AND studentId = ?", 2, rs -> sheetContext(rs.getString(4)));
+            sealed += sealColumn(lease, current,
+                "SELECT examId, payload, examId, studentId FROM submissions WHERE payload IS NOT NULL",
+                "UPDATE submissions SET payload = ? WHERE examId = ? AND studentId = ?", 2, rs -> payloadContext(rs.getString(4)));
+            sealed += sealColumn(lease, current,
+                "SELECT examId, answer, examId, studentId, questionIndex FROM submission_answers WHERE answer IS NOT NULL",
+                "UPDATE submission_answers SET answer = ? WHERE examId = ? AND studentId = ? AND questionIndex = ?", 3,
+                rs -> answerContext(rs.getString(4), rs.getInt(5)));
+            PreparedStatement flag = lease.prepare("INSERT INTO cache_flags (name) VALUES (?)");
+            flag.setString(1, ALL_SEALED);
+            flag.executeUpdate();
+            conn.commit();
+            if (sealed > 0) {
+                LOGGER.info("Encrypted " + sealed + " cached records that were stored in the clear");
+            }
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    @FunctionalInterface
+    private interface RecordContext {
+        String of(ResultSet row) throws SQLException;
+    }
+
+    // The query selects the examId, the stored value, then the row's key columns in the update's order
+    private static int sealColumn(CachePool.Lease lease, CacheCipher current, String select, String update,
+                                  int keyColumns, RecordContext context) throws SQLException {
+        PreparedStatement updateStmt = lease.prepare(update);
+        int sealed = 0;
+        try (ResultSet rs = lease.prepare(select).executeQuery()) {
+            while (rs.next()) {
+                byte[] stored = rs.getBytes(2);
+                if (CacheCipher.isSealed(stored)) {
+                    continue;
+                }
+                updateStmt.setBytes(1, current.seal(rs.getString(1), context.of(rs), stored));
+                for (int i = 0; i < keyColumns; i++) {
+                    updateStmt.setObject(2 + i, rs.getObject(3 + i));
+                }
+                updateStmt.addBatch();
+                if (++sealed % INSERT_BATCH_SIZE == 0) {
+                    updateStmt.executeBatch();
+                }
             }
-        } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error closing database connection", e);
         }
+        updateStmt.executeBatch();
+        return sealed;
+    }
+
+    private static String questionContext(int ordinal) {
+        return "question\0" + ordinal;
+    }
+
+    private static String submissionContext(String studentId) {
+        return "submission\0" + studentId;
+    }
+
+    private static String sheetContext(String studentId) {
+        return "sheet\0" + studentId;
+    }
+
+    private static String payloadContext(String studentId) {
+        return "payload\0" + studentId;
+    }
+
+    private static String answerContext(String studentId, int questionIndex) {
+        return "answer\0" + studentId + "\0" + questionIndex;
+    }
+
+    // Ensure resources are released when the application exits
+    public static void shutdown() {
+        CacheSnapshotter current = snapshotter;
+        if (current != null) {
+            current.stop(); // takes a final snapshot while the pool is still open
+        }
+        pool.close();
+        if (keyValueStore != null) {
+            keyValueStore.close();
+        }
+        LOGGER.info("LocalCache connection pool closed");
+    }
+
+    /**
+     * Compression applied to cached payloads; exposed for its size and ratio counters.
+     */
+    public static PayloadCodec getPayloadCodec() {
+        return payloadCodec;
+    }
+
+    /**
+     * @return the key-value engine, or null when the SQL tables are in use
+     */
+    static MvStoreCache keyValueStore() {
+        return keyValueStore;
+    }
+
+    /**
+     * In-memory L1 cache in front of {@link #getQuestions}; exposed for its hit/miss/eviction counters.
+     */
+    public static QuestionCache getQuestionCache() {
+        return questionCache;
+    }
+
+    // Lets maintenance services in this package run their own SQL on the cache pool
+    static CachePool.Lease acquire() throws SQLException {
+        return pool.acquire();
+    }
+
+    // Lets maintenance run SQL that needs the database to itself, once every lease is returned
+    static <T> T exclusive(CachePool.ConnectionWork<T> work, long waitMillis) throws SQLException {
+        return pool.exclusive(work, waitMillis);
+    }
+
+    /**
+     * Replaces the connection pool with one of the given size. Intended for benchmarks
+     * and tests that compare throughput across pool sizes.
+     */
+    static void reconfigurePool(int poolSize) {
+        CachePool previous = pool;
+        pool = new CachePool(databaseUrl(), poolSize, POOL_ACQUIRE_TIMEOUT_MS);
+        previous.close();
+        LOGGER.info("LocalCache pool resized to " + poolSize + " connections");
     }
 
     private static void initializeDatabase() throws SQLException {
-        try (Statement stmt = conn.createStatement()) {
-            // Create questions table with timestamp
-            stmt.execute("CREATE TABLE IF NOT EXISTS questions (" +
-                "examId VARCHAR(255), " +
-                "text VARCHAR(1024), " +
-                "options VARCHAR(2048), " +
-                "correctAnswer VARCHAR(255), " +
+        try (CachePool.Lease lease = pool.acquire();
+             Statement stmt = lease.connection().createStatement()) {
+            // One row per cached exam; the integer surrogate key keeps question keys narrow
+            stmt.execute("CREATE TABLE IF NOT EXISTS cached_exams (" +
+                "examKey INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                "examId VARCHAR(255) NOT NULL UNIQUE, " +
+                "questionCount INT NOT NULL, " +
+                "version BIGINT DEFAULT 0 NOT NULL, " + // QuestionCodec content hash of the question set
+                "dictionary VARBINARY, " + // encrypted PayloadCodec dictionary trained on this exam's questions
+                "rawBytes BIGINT DEFAULT 0 NOT NULL, " +
+                "storedBytes BIGINT DEFAULT 0 NOT NULL, " +
+                "created TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+
+            // Questions in canonical order; text, options and the correct index are one compressed,
+            // encrypted payload (see QuestionCodec, PayloadCodec, CacheCipher)
+            stmt.execute("CREATE TABLE IF NOT EXISTS cached_questions (" +
+                "examKey INT NOT NULL, " +
+                "ordinal INT NOT NULL, " +
+                "payload VARBINARY NOT NULL, " +
+                "created TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                "PRIMARY KEY (examKey, ordinal), " +
+                "FOREIGN KEY (examKey) REFERENCES cached_exams (examKey) ON DELETE CASCADE)");
+
+            // Each student's question and option permutation (see QuestionOrder)
+            stmt.execute("CREATE TABLE IF NOT EXISTS question_orders (" +
+                "examKey INT NOT NULL, " +
+                "studentId VARCHAR(255) NOT NULL, " +
+                "permutation VARBINARY(1048576) NOT NULL, " +
                 "created TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                "PRIMARY KEY (examId, text))");
+                "PRIMARY KEY (examKey, studentId), " +
+                "FOREIGN KEY (examKey) REFERENCES cached_exams (examKey) ON DELETE CASCADE)");
 
             // Create submissions table with timestamp
             stmt.execute("CREATE TABLE IF NOT EXISTS submissions (" +
                 "examId VARCHAR(255), " +
                 "studentId VARCHAR(255), " +
-                "answers VARCHAR(2048), " + // JSON string of answers
-                "submitted BOOLEAN, " +
+                "answers VARBINARY, " + // compressed, encrypted JSON of answers
+                "sheet VARBINARY, " + // encrypted AnswerSheet encoding, for sessions that record option indices
+                "finished BOOLEAN DEFAULT FALSE NOT NULL, " + // set only when the exam ends; only finished rows are uploaded
+                "payload VARBINARY, " + // encrypted FinishedSubmission, the exact upload payload
+                "unreadable BOOLEAN DEFAULT FALSE NOT NULL, " + // payload could not be decoded; kept, but not uploaded
+                "submitted BOOLEAN, " + // uploaded
                 "created TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
                 "PRIMARY KEY (examId, studentId))");
 
+            // Per-question autosave deltas layered over the submissions row until the next full save
+            stmt.execute("CREATE TABLE IF NOT EXISTS submission_answers (" +
+                "examId VARCHAR(255), " +
+                "studentId VARCHAR(255), " +
+                "questionIndex INT, " +
+                "answer VARBINARY, " + // compressed, encrypted answer text
+                "created TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                "PRIMARY KEY (examId, studentId, questionIndex))");
+
+            // Presence of a row sets the named flag, e.g. that every record is encrypted (see sealPlaintextRecords)
+            stmt.execute("CREATE TABLE IF NOT EXISTS cache_flags (name VARCHAR(64) PRIMARY KEY)");
+
+            // Expiry scans by age; without these every cleanup is a full table scan
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_cached_exams_created ON cached_exams (created)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_submissions_created ON submissions (created)");
+
             // Add timestamp column to existing tables if they don't have it
             try {
-                stmt.execute("ALTER TABLE questions ADD COLUMN IF NOT EXISTS created TIMESTAMP DEFAULT CURRENT_TIMESTAMP");
                 stmt.execute("ALTER TABLE submissions ADD COLUMN IF NOT EXISTS created TIMESTAMP DEFAULT CURRENT_TIMESTAMP");
             } catch (SQLException e) {
                 // This might fail if columns already exist or if H2 version doesn't support IF NOT EXISTS in ALTER TABLE
                 LOGGER.log(Level.INFO, "Timestamp columns might already exist", e);
             }
         }
+        if (keyProblem != null) {
+            return; // migrating would read and write records
+        }
+        migrateLegacySchema();
+        sealPlaintextRecords();
     }
 
-    public static void saveQuestions(String examId, List<Question> questions) {
+    private static String columnType(CachePool.Lease lease, String table, String column) throws SQLException {
+        PreparedStatement stmt = lease.prepare("SELECT DATA_TYPE, CHARACTER_MAXIMUM_LENGTH FROM INFORMATION_SCHEMA.COLUMNS " +
+            "WHERE TABLE_SCHEMA = 'PUBLIC' AND TABLE_NAME = ? AND COLUMN_NAME = ?");
+        stmt.setString(1, table);
+        stmt.setString(2, column);
+        try (ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getString(1) + "(" + rs.getLong(2) + ")" : null;
+        }
+    }
+
+    private static byte[] encodeAnswers(String examId, String studentId, String json) {
+        return seal(examId, submissionContext(studentId), payloadCodec.compress(json.getBytes(StandardCharsets.UTF_8), null));
+    }
+
+    private static String decodeAnswersJson(String examId, String studentId, byte[] stored) {
+        if (stored == null) {
+            return "{}";
+        }
+        byte[] compressed = open(examId, submissionContext(studentId), stored);
+        return new String(PayloadCodec.decompress(compressed, null), StandardCharsets.UTF_8);
+    }
+
+    // A single autosaved answer; null (a cleared answer) is stored as NULL
+    private static byte[] encodeAnswer(String examId, String studentId, int questionIndex, String answer) {
+        if (answer == null) {
+            return null;
+        }
+        byte[] framed = payloadCodec.compress(answer.getBytes(StandardCharsets.UTF_8), null);
+        return seal(examId, answerContext(studentId, questionIndex), framed);
+    }
+
+    private static String decodeAnswer(String examId, String studentId, int questionIndex, byte[] stored) {
+        if (stored == null) {
+            return null;
+        }
+        byte[] framed = open(examId, answerContext(studentId, questionIndex), stored);
+        return new String(PayloadCodec.decompress(framed, null), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * One-time migration of a cache written by the first release:
+     * <ul>
+     *   <li>the original {@code questions} table, keyed by (examId, text) with comma-joined options,
+     *       moves into the ordinal-keyed schema. Rows whose options no longer split into four parts
+     *       (an option contained a comma) cannot be recovered and are skipped;</li>
+     *   <li>submission answers kept as JSON in VARCHAR(2048), which overflowed on long exams, move
+     *       to an encrypted binary column, and the submission columns added since are created. The
+     *       new column is filled before the old one is dropped, so no answer is lost.</li>
+     * </ul>
+     */
+    static void migrateLegacySchema() throws SQLException {
+        try (CachePool.Lease lease = pool.acquire()) {
+            migrateLegacySubmissions(lease);
+            migrateLegacyQuestions(lease);
+        }
+    }
+
+    private static void migrateLegacySubmissions(CachePool.Lease lease) throws SQLException {
+        String answersType = columnType(lease, "SUBMISSIONS", "ANSWERS");
+        if (answersType == null || !answersType.startsWith("CHARACTER")) {
+            return;
+        }
+        try (Statement stmt = lease.connection().createStatement()) {
+            stmt.execute("ALTER TABLE submissions ADD COLUMN IF NOT EXISTS sheet VARBINARY");
+            stmt.execute("ALTER TABLE submissions ADD COLUMN IF NOT EXISTS finished BOOLEAN DEFAULT FALSE NOT NULL");
+            stmt.execute("ALTER TABLE submissions ADD COLUMN IF NOT EXISTS payload VARBINARY");
+            stmt.execute("ALTER TABLE submissions ADD COLUMN IF NOT EXISTS unreadable BOOLEAN DEFAULT FALSE NOT NULL");
+            stmt.execute("ALTER TABLE submissions ADD COLUMN IF NOT EXISTS answersData VARBINARY");
+            List<String[]> rows = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery("SELECT examId, studentId, answers FROM submissions WHERE answersData IS NULL")) {
+                while (rs.next()) {
+                    rows.add(new String[]{rs.getString(1), rs.getString(2), rs.getString(3)});
+                }
+            }
+            PreparedStatement update = lease.prepare("UPDATE submissions SET answersData = ? WHERE examId = ? AND studentId = ?");
+            for (String[] row : rows) {
+                update.setBytes(1, encodeAnswers(row[0], row[1], row[2] != null ? row[2] : "{}"));
+                update.setString(2, row[0]);
+                update.setString(3, row[1]);
+                update.addBatch();
+            }
+            update.executeBatch();
+            stmt.execute("ALTER TABLE submissions DROP COLUMN answers");
+            stmt.execute("ALTER TABLE submissions ALTER COLUMN answersData RENAME TO answers");
+            LOGGER.info("Converted " + rows.size() + " cached submissions to encrypted payloads");
+        }
+    }
+
+    private static void migrateLegacyQuestions(CachePool.Lease lease) throws SQLException {
+        PreparedStatement existsStmt = lease.prepare(
+            "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = 'PUBLIC' AND TABLE_NAME = 'QUESTIONS'");
+        try (ResultSet rs = existsStmt.executeQuery()) {
+            if (!rs.next() || rs.getInt(1) == 0) {
+                return;
+            }
+        }
+
+        Map<String, List<Question>> legacy = new LinkedHashMap<>();
+        int skipped = 0;
+        try (Statement stmt = lease.connection().createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT examId, text, options, correctAnswer FROM questions ORDER BY examId, created")) {
+            while (rs.next()) {
+                String examId = rs.getString("examId");
+                try {
+                    legacy.computeIfAbsent(examId, k -> new ArrayList<>()).add(new Question(
+                        examId, rs.getString("text"), rs.getString("options").split(","), rs.getString("correctAnswer")));
+                } catch (IllegalArgumentException e) {
+                    skipped++;
+                }
+            }
+        }
+
+        Connection conn = lease.connection();
+        conn.setAutoCommit(false);
         try {
-            // First delete existing questions for this exam to avoid duplicates
-            try (PreparedStatement deleteStmt = conn.prepareStatement(
-                "DELETE FROM questions WHERE examId = ?")) {
-                deleteStmt.setString(1, examId);
-                deleteStmt.executeUpdate();
-            }
-
-            // Then insert new questions
-            try (PreparedStatement insertStmt = conn.prepareStatement(
-                "INSERT INTO questions (examId, text, options, correctAnswer) VALUES (?, ?, ?, ?)")) {
-                for (Question q : questions) {
-                    insertStmt.setString(1, examId);
-                    insertStmt.setString(2, q.getText());
-                    insertStmt.setString(3, String.join(",", q.getOptions()));
-                    insertStmt.setString(4, q.getCorrectAnswer());
-                    insertStmt.executeUpdate();
+            for (Map.Entry<String, List<Question>> exam : legacy.entrySet()) {
+                writeQuestions(lease, exam.getKey(), exam.getValue());
+            }
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("DROP TABLE questions");
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        }
+        LOGGER.info("Migrated " + legacy.size() + " cached exams to the ordinal question schema; skipped "
+            + skipped + " unrecoverable rows");
+    }
+
+    /**
+     * Moves everything cached in the SQL tables into the key-value engine, keeping creation
+     * times and folding autosaved deltas into their submissions, then empties the SQL tables.
+     * The key-value store is committed before the SQL rows are deleted, so an interrupted
+     * migration is simply repeated on the next start.
+     */
+    static void migrateToKeyValue(MvStoreCache store) throws SQLException {
+        try (CachePool.Lease lease = pool.acquire()) {
+            int exams = 0;
+            int submissions = 0;
+            PreparedStatement examStmt = lease.prepare(
+                "SELECT examKey, examId, created FROM cached_exams ORDER BY examKey");
+            PreparedStatement orderStmt = lease.prepare(
+                "SELECT studentId, permutation FROM question_orders WHERE examKey = ?");
+            try (ResultSet exam = examStmt.executeQuery()) {
+                while (exam.next()) {
+                    String examId = exam.getString(2);
+                    List<Question> questions = readQuestions(lease, exam.getInt(1), examId);
+                    store.saveQuestions(examId, questions, exam.getTimestamp(3).getTime());
+                    orderStmt.setInt(1, exam.getInt(1));
+                    try (ResultSet rs = orderStmt.executeQuery()) {
+                        while (rs.next()) {
+                            store.saveQuestionOrder(examId, rs.getString(1), QuestionOrder.decode(rs.getBytes(2)));
+                        }
+                    }
+                    exams++;
                 }
             }
+
+            List<String[]> keys = new ArrayList<>();
+            PreparedStatement submissionStmt = lease.prepare(
+                "SELECT examId, studentId, submitted, created FROM submissions");
+            try (ResultSet rs = submissionStmt.executeQuery()) {
+                while (rs.next()) {
+                    keys.add(new String[]{rs.getString(1), rs.getString(2)});
+                    Timestamp created = rs.getTimestamp(4);
+                    // Answers are read back through getSubmission so deltas are applied
+                    store.saveSubmission(rs.getString(1), rs.getString(2), new HashMap<>(), rs.getBoolean(3),
+                        created != null ? created.getTime() : System.currentTimeMillis());
+                }
+            }
+            PreparedStatement sheetStmt = lease.prepare(
+                "SELECT sheet, finished, payload, submitted FROM submissions WHERE examId = ? AND studentId = ?");
+            for (String[] key : keys) {
+                store.saveAnswers(key[0], key[1], getSqlSubmission(lease, key[0], key[1]));
+                sheetStmt.setString(1, key[0]);
+                sheetStmt.setString(2, key[1]);
+                try (ResultSet rs = sheetStmt.executeQuery()) {
+                    if (rs.next()) {
+                        AnswerSheet sheet = decodeSheet(key[0], key[1], rs.getBytes(1));
+                        if (sheet != null) {
+                            store.saveAnswerSheet(key[0], key[1], sheet.encode());
+                        }
+                        FinishedSubmission finished = rs.getBoolean(2) ? decodeFinished(key[0], key[1], rs.getBytes(3)) : null;
+                        if (finished != null) {
+                            store.finishSubmission(key[0], key[1], finished.encode());
+                            if (rs.getBoolean(4)) {
+                                store.markSubmissionAsSynced(key[0], key[1]);
+                            }
+                        }
+                    }
+                }
+                submissions++;
+            }
+            if (exams == 0 && submissions == 0) {
+                return;
+            }
+            store.commit();
+
+            Connection conn = lease.connection();
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM cached_exams");
+                stmt.executeUpdate("DELETE FROM submissions");
+                stmt.executeUpdate("DELETE FROM submission_answers");
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+            questionCache.clear();
+            LOGGER.info("Migrated " + exams + " cached exams and " + submissions
+                + " submissions to the key-value cache");
+        }
+    }
+
+    public static void saveQuestions(String examId, List<Question> questions) {
+        replaceQuestions(examId, questions);
+    }
+
+    // Writes the whole question set; false if it could not be cached and the previous cache is kept
+    private static boolean replaceQuestions(String examId, List<Question> questions) {
+        MvStoreCache kv = keyValueStore;
+        if (kv != null) {
+            kv.saveQuestions(examId, questions);
+            LOGGER.info("Cached " + questions.size() + " questions for examId: " + examId);
+            return true;
+        }
+        try (CachePool.Lease lease = pool.acquire()) {
+            Connection conn = lease.connection();
+            // One transaction so getQuestions never observes a half-cached exam
+            conn.setAutoCommit(false);
+            try {
+                writeQuestions(lease, examId, questions);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
             LOGGER.info("Cached " + questions.size() + " questions for examId: " + examId);
+            return true;
+        } catch (SQLException | IllegalStateException e) {
+            LOGGER.log(Level.SEVERE, "Failed to save questions to cache; previous cache kept", e);
+            return false;
+        }
+    }
+
+    /**
+     * Caches questions already in {@link QuestionCodec#encodeQuestion} form without decoding them,
+     * e.g. the verified records of an exam bundle.
+     * @param version the questions' content version ({@link QuestionCodec#contentHash(List)})
+     */
+    public static void saveQuestionRecords(String examId, long version, List<byte[]> records) {
+        MvStoreCache kv = keyValueStore;
+        if (kv != null) {
+            kv.saveQuestionRecords(examId, version, records);
+            LOGGER.info("Cached " + records.size() + " questions for examId: " + examId);
+            return;
+        }
+        try (CachePool.Lease lease = pool.acquire()) {
+            Connection conn = lease.connection();
+            conn.setAutoCommit(false);
+            try {
+                writeQuestionBodies(lease, examId, records, version);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+            LOGGER.info("Cached " + records.size() + " questions for examId: " + examId);
         } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Failed to save questions to cache", e);
+            LOGGER.log(Level.SEVERE, "Failed to save questions to cache; previous cache kept", e);
         }
     }
 
+    /**
+     * Updates the cached questions to {@code questions}, rewriting only the rows whose content
+     * changed and dropping rows past the new end. Rows are compressed with the exam's existing
+     * dictionary. The whole exam is rewritten instead when it is not cached yet, when it changed
+     * since it was read here, or on the key-value engine, which stores an exam as one record.
+     * @return what was written, or null if the cache could not be updated
+     */
+    public static QuestionPatch patchQuestions(String examId, List<Question> questions) {
+        List<Question> current = getQuestions(examId);
+        Long currentVersion = getQuestionsVersion(examId);
+        if (keyValueStore != null || current.isEmpty() || currentVersion == null) {
+            return replaceQuestions(examId, questions) ? new QuestionPatch(questions.size(), true) : null;
+        }
+        Integer written;
+        try (CachePool.Lease lease = pool.acquire()) {
+            written = patchRows(lease, examId, questions, current, currentVersion);
+        } catch (SQLException | IllegalStateException e) {
+            LOGGER.log(Level.SEVERE, "Failed to patch cached questions for examId: " + examId, e);
+            return null;
+        }
+        if (written == null) {
+            LOGGER.info("Cached questions of examId: " + examId + " changed while patching; rewriting them");
+            return replaceQuestions(examId, questions) ? new QuestionPatch(questions.size(), true) : null;
+        }
+        questionCache.invalidate(examId);
+        LOGGER.info("Patched " + written + " of " + questions.size() + " cached questions for examId: " + examId);
+        return new QuestionPatch(written, false);
+    }
+
+    // Patches the rows in one transaction; null, with nothing written, if the cached version is no longer currentVersion
+    private static Integer patchRows(CachePool.Lease lease, String examId, List<Question> questions,
+                                     List<Question> current, long currentVersion) throws SQLException {
+        Connection conn = lease.connection();
+        conn.setAutoCommit(false);
+        try {
+            PreparedStatement examStmt = lease.prepare(
+                "SELECT examKey, version, dictionary FROM cached_exams WHERE examId = ? FOR UPDATE");
+            examStmt.setString(1, examId);
+            int examKey;
+            byte[] dictionary = null;
+            try (ResultSet rs = examStmt.executeQuery()) {
+                if (!rs.next() || rs.getLong(2) != currentVersion) {
+                    conn.rollback();
+                    return null;
+                }
+                examKey = rs.getInt(1);
+                if (rs.getBytes(3) != null) {
+                    dictionary = open(examId, "dictionary", rs.getBytes(3));
+                }
+            }
+
+            PreparedStatement upsert = lease.prepare(
+                "MERGE INTO cached_questions (examKey, ordinal, payload) KEY (examKey, ordinal) VALUES (?, ?, ?)");
+            int written = 0;
+            long rawDelta = 0;
+            for (int i = 0; i < questions.size(); i++) {
+                Question old = i < current.size() ? current.get(i) : null;
+                Question updated = questions.get(i);
+                if (old != null && QuestionCodec.contentHash(old) == QuestionCodec.contentHash(updated)) {
+                    continue;
+                }
+                byte[] body = QuestionCodec.encodeQuestion(updated);
+                rawDelta += body.length - (old != null ? QuestionCodec.encodeQuestion(old).length : 0);
+                upsert.setInt(1, examKey);
+                upsert.setInt(2, i);
+                upsert.setBytes(3, seal(examId, questionContext(i), payloadCodec.compress(body, dictionary)));
+                upsert.addBatch();
+                if (++written % INSERT_BATCH_SIZE == 0) {
+                    upsert.executeBatch();
+                }
+            }
+            upsert.executeBatch();
+            for (int i = questions.size(); i < current.size(); i++) {
+                rawDelta -= QuestionCodec.encodeQuestion(current.get(i)).length;
+            }
+
+            PreparedStatement trimStmt = lease.prepare("DELETE FROM cached_questions WHERE examKey = ? AND ordinal >= ?");
+            trimStmt.setInt(1, examKey);
+            trimStmt.setInt(2, questions.size());
+            trimStmt.executeUpdate();
+            if (questions.size() != current.size()) {
+                // Stored permutations no longer cover the exam
+                PreparedStatement orderStmt = lease.prepare("DELETE FROM question_orders WHERE examKey = ?");
+                orderStmt.setInt(1, examKey);
+                orderStmt.executeUpdate();
+            }
+
+            PreparedStatement updateStmt = lease.prepare(
+                "UPDATE cached_exams SET questionCount = ?, version = ?, rawBytes = rawBytes + ?, " +
+                "storedBytes = COALESCE(OCTET_LENGTH(dictionary), 0) + " +
+                "(SELECT COALESCE(SUM(OCTET_LENGTH(payload)), 0) FROM cached_questions WHERE examKey = ?) " +
+                "WHERE examKey = ?");
+            updateStmt.setInt(1, questions.size());
+            updateStmt.setLong(2, QuestionCodec.contentHash(questions));
+            updateStmt.setLong(3, rawDelta);
+            updateStmt.setInt(4, examKey);
+            updateStmt.setInt(5, examKey);
+            updateStmt.executeUpdate();
+            conn.commit();
+            return written;
+        } catch (SQLException | IllegalStateException e) {
+            conn.rollback();
+            throw e;
+        }
+    }
+
+    // Replaces an exam's cached questions inside the caller's transaction
+    private static void writeQuestions(CachePool.Lease lease, String examId, List<Question> questions) throws SQLException {
+        List<byte[]> bodies = new ArrayList<>(questions.size());
+        for (Question q : questions) {
+            bodies.add(QuestionCodec.encodeQuestion(q));
+        }
+        writeQuestionBodies(lease, examId, bodies, QuestionCodec.contentHash(questions));
+    }
+
+    // Replaces an exam's cached questions, given in QuestionCodec.encodeQuestion form, inside the caller's transaction
+    private static void writeQuestionBodies(CachePool.Lease lease, String examId, List<byte[]> bodies, long version)
+            throws SQLException {
+        Integer previousCount = null;
+        PreparedStatement countStmt = lease.prepare("SELECT questionCount FROM cached_exams WHERE examId = ?");
+        countStmt.setString(1, examId);
+        try (ResultSet rs = countStmt.executeQuery()) {
+            if (rs.next()) {
+                previousCount = rs.getInt(1);
+            }
+        }
+
+        // Question rows are too short to compress alone; a dictionary trained on the exam fixes that
+        byte[] dictionary = payloadCodec.getAlgorithm() == PayloadCodec.Algorithm.DEFLATE
+            ? PayloadCodec.trainDictionary(bodies, PayloadCodec.MAX_DICTIONARY_BYTES) : null;
+        // Each row is sealed on its own so one question can be read without decrypting the exam
+        List<byte[]> payloads = new ArrayList<>(bodies.size());
+        byte[] storedDictionary = dictionary != null ? seal(examId, "dictionary", dictionary) : null;
+        long rawBytes = 0;
+        long storedBytes = storedDictionary != null ? storedDictionary.length : 0;
+        for (int i = 0; i < bodies.size(); i++) {
+            byte[] payload = seal(examId, questionContext(i), payloadCodec.compress(bodies.get(i), dictionary));
+            payloads.add(payload);
+            rawBytes += bodies.get(i).length;
+            storedBytes += payload.length;
+        }
+
+        PreparedStatement examStmt = lease.prepare(
+            "MERGE INTO cached_exams (examId, questionCount, version, dictionary, rawBytes, storedBytes, created) " +
+            "KEY (examId) VALUES (?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)");
+        examStmt.setString(1, examId);
+        examStmt.setInt(2, bodies.size());
+        examStmt.setLong(3, version);
+        examStmt.setBytes(4, storedDictionary);
+        examStmt.setLong(5, rawBytes);
+        examStmt.setLong(6, storedBytes);
+        examStmt.executeUpdate();
+        questionCache.invalidate(examId);
+        int examKey = examKey(lease, examId);
+
+        // First delete existing questions for this exam to avoid duplicates
+        PreparedStatement deleteStmt = lease.prepare("DELETE FROM cached_questions WHERE examKey = ?");
+        deleteStmt.setInt(1, examKey);
+        deleteStmt.executeUpdate();
+        if (previousCount != null && previousCount != bodies.size()) {
+            // Stored permutations no longer cover the exam
+            PreparedStatement orderStmt = lease.prepare("DELETE FROM question_orders WHERE examKey = ?");
+            orderStmt.setInt(1, examKey);
+            orderStmt.executeUpdate();
+        }
+
+        // Then insert new questions in JDBC batches
+        PreparedStatement insertStmt = lease.prepare(
+            "INSERT INTO cached_questions (examKey, ordinal, payload) VALUES (?, ?, ?)");
+        int ordinal = 0;
+        for (byte[] payload : payloads) {
+            insertStmt.setInt(1, examKey);
+            insertStmt.setInt(2, ordinal);
+            insertStmt.setBytes(3, payload);
+            insertStmt.addBatch();
+            if (++ordinal % INSERT_BATCH_SIZE == 0) {
+                insertStmt.executeBatch();
+            }
+        }
+        insertStmt.executeBatch();
+    }
+
+    private static int examKey(CachePool.Lease lease, String examId) throws SQLException {
+        PreparedStatement stmt = lease.prepare("SELECT examKey FROM cached_exams WHERE examId = ?");
+        stmt.setString(1, examId);
+        try (ResultSet rs = stmt.executeQuery()) {
+            if (!rs.next()) {
+                throw new SQLException("No cached exam row for examId: " + examId);
+            }
+            return rs.getInt(1);
+        }
+    }
+
+    /**
+     * @return the exam's questions in canonical (ordinal) order. The list is unmodifiable and
+     * may be shared through the L1 cache, so callers must copy it before changing it.
+     */
     public static List<Question> getQuestions(String examId) {
-        List<Question> questions = new ArrayList<>();
-        try (PreparedStatement stmt = conn.prepareStatement(
-            "SELECT text, options, correctAnswer FROM questions WHERE examId = ?")) {
-            stmt.setString(1, examId);
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                String text = rs.getString("text");
-                String[] options = rs.getString("options").split(",");
-                String correctAnswer = rs.getString("correctAnswer");
-                questions.add(new Question(examId, text, options, correctAnswer));
+        MvStoreCache kv = keyValueStore;
+        if (kv != null) {
+            return getKeyValueQuestions(kv, examId);
+        }
+        try (CachePool.Lease lease = pool.acquire()) {
+            // A one-row primary-index lookup decides whether the decoded L1 copy is still current
+            PreparedStatement versionStmt = lease.prepare("SELECT examKey, version FROM cached_exams WHERE examId = ?");
+            versionStmt.setString(1, examId);
+            int examKey;
+            long version;
+            try (ResultSet rs = versionStmt.executeQuery()) {
+                if (!rs.next()) {
+                    LOGGER.info("No cached questions for examId: " + examId);
+                    return new ArrayList<>();
+                }
+                examKey = rs.getInt(1);
+                version = rs.getLong(2);
+            }
+            List<Question> cached = questionCache.get(examId, version);
+            if (cached != null) {
+                return cached;
             }
+
+            List<Question> questions = readQuestions(lease, examKey, examId);
             LOGGER.info("Retrieved " + questions.size() + " questions from cache for examId: " + examId);
-        } catch (SQLException e) {
+            return questionCache.put(examId, version, questions);
+        } catch (SQLException | IllegalStateException e) {
             LOGGER.log(Level.SEVERE, "Failed to retrieve questions from cache", e);
+            return new ArrayList<>();
+        }
+    }
+
+    private static List<Question> getKeyValueQuestions(MvStoreCache kv, String examId) {
+        Long version = kv.getVersion(examId);
+        if (version == null) {
+            LOGGER.info("No cached questions for examId: " + examId);
+            return new ArrayList<>();
+        }
+        List<Question> cached = questionCache.get(examId, version);
+        if (cached != null) {
+            return cached;
+        }
+        try {
+            MvStoreCache.VersionedQuestions loaded = kv.getQuestions(examId);
+            if (loaded == null) {
+                return new ArrayList<>();
+            }
+            return questionCache.put(examId, loaded.getVersion(), loaded.getQuestions());
+        } catch (IllegalStateException e) {
+            LOGGER.log(Level.SEVERE, "Failed to retrieve questions", e);
+            return new ArrayList<>();
+        }
+    }
+
+    private static List<Question> readQuestions(CachePool.Lease lease, int examKey, String examId) throws SQLException {
+        byte[] dictionary = null;
+        PreparedStatement dictionaryStmt = lease.prepare("SELECT dictionary FROM cached_exams WHERE examKey = ?");
+        dictionaryStmt.setInt(1, examKey);
+        try (ResultSet rs = dictionaryStmt.executeQuery()) {
+            if (rs.next() && rs.getBytes(1) != null) {
+                dictionary = open(examId, "dictionary", rs.getBytes(1));
+            }
+        }
+        List<Question> questions = new ArrayList<>();
+        PreparedStatement stmt = lease.prepare(
+            "SELECT ordinal, payload FROM cached_questions WHERE examKey = ? ORDER BY ordinal");
+        stmt.setInt(1, examKey);
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                byte[] compressed = open(examId, questionContext(rs.getInt(1)), rs.getBytes(2));
+                questions.add(QuestionCodec.decodeQuestion(examId, PayloadCodec.decompress(compressed, dictionary)));
+            }
         }
         return questions;
     }
 
+    /**
+     * @return raw and stored payload sizes of a cached exam (dictionary included), or null if it is not cached
+     */
+    public static CompressionStats getCompressionStats(String examId) {
+        MvStoreCache kv = keyValueStore;
+        if (kv != null) {
+            return kv.getCompressionStats(examId);
+        }
+        try (CachePool.Lease lease = pool.acquire()) {
+            PreparedStatement stmt = lease.prepare("SELECT rawBytes, storedBytes FROM cached_exams WHERE examId = ?");
+            stmt.setString(1, examId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? new CompressionStats(rs.getLong(1), rs.getLong(2)) : null;
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to read compression stats for examId: " + examId, e);
+            return null;
+        }
+    }
+
     public static boolean isCached(String examId) {
-        try (PreparedStatement stmt = conn.prepareStatement(
-            "SELECT COUNT(*) FROM questions WHERE examId = ?")) {
+        MvStoreCache kv = keyValueStore;
+        if (kv != null) {
+            return kv.isCached(examId);
+        }
+        try (CachePool.Lease lease = pool.acquire()) {
+            PreparedStatement stmt = lease.prepare("SELECT questionCount FROM cached_exams WHERE examId = ?");
             stmt.setString(1, examId);
-            ResultSet rs = stmt.executeQuery();
-            return rs.next() && rs.getInt(1) > 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) > 0;
+            }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error checking cache for examId: " + examId, e);
             return false;
         }
     }
 
-    public static void saveSubmission(String examId, String studentId, Map<Integer, String> answers) {
-        try {
-            // First check if submission exists
-            boolean exists = false;
-            try (PreparedStatement checkStmt = conn.prepareStatement(
-                "SELECT COUNT(*) FROM submissions WHERE examId = ? AND studentId = ?")) {
-                checkStmt.setString(1, examId);
-                checkStmt.setString(2, studentId);
-                ResultSet rs = checkStmt.executeQuery();
-                if (rs.next()) {
-                    exists = rs.getInt(1) > 0;
-                }
+    /**
+     * @return the content version ({@link QuestionCodec#contentHash(List)}) of the cached questions, or null if none are cached
+     */
+    public static Long getQuestionsVersion(String examId) {
+        MvStoreCache kv = keyValueStore;
+        if (kv != null) {
+            return kv.getVersion(examId);
+        }
+        try (CachePool.Lease lease = pool.acquire()) {
+            PreparedStatement stmt = lease.prepare("SELECT version FROM cached_exams WHERE examId = ?");
+            stmt.setString(1, examId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : null;
             }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error reading cached version for examId: " + examId, e);
+            return null;
+        }
+    }
 
-            // Then either update or insert
-            if (exists) {
-                try (PreparedStatement updateStmt = conn.prepareStatement(
-                    "UPDATE submissions SET answers = ?, submitted = ? WHERE examId = ? AND studentId = ?")) {
-                    updateStmt.setString(1, new JSONObject(answers).toString());
-                    updateStmt.setBoolean(2, false);
-                    updateStmt.setString(3, examId);
-                    updateStmt.setString(4, studentId);
-                    updateStmt.executeUpdate();
-                }
-            } else {
-                try (PreparedStatement insertStmt = conn.prepareStatement(
-                    "INSERT INTO submissions (examId, studentId, answers, submitted) VALUES (?, ?, ?, ?)")) {
-                    insertStmt.setString(1, examId);
-                    insertStmt.setString(2, studentId);
-                    insertStmt.setString(3, new JSONObject(answers).toString());
-                    insertStmt.setBoolean(4, false);
-                    insertStmt.executeUpdate();
-                }
+    public static void saveQuestionOrder(String examId, String studentId, QuestionOrder order) {
+        MvStoreCache kv = keyValueStore;
+        if (kv != null) {
+            if (!kv.saveQuestionOrder(examId, studentId, order)) {
+                LOGGER.warning("Cannot store question order; examId not cached: " + examId);
+            }
+            return;
+        }
+        try (CachePool.Lease lease = pool.acquire()) {
+            PreparedStatement stmt = lease.prepare(
+                "MERGE INTO question_orders (examKey, studentId, permutation) KEY (examKey, studentId) " +
+                "SELECT examKey, ?, ? FROM cached_exams WHERE examId = ?");
+            stmt.setString(1, studentId);
+            stmt.setBytes(2, order.encode());
+            stmt.setString(3, examId);
+            if (stmt.executeUpdate() == 0) {
+                LOGGER.warning("Cannot store question order; examId not cached: " + examId);
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to save question order", e);
+        }
+    }
+
+    /**
+     * @return the student's stored layout, or null if none has been stored
+     */
+    public static QuestionOrder getQuestionOrder(String examId, String studentId) {
+        MvStoreCache kv = keyValueStore;
+        if (kv != null) {
+            return kv.getQuestionOrder(examId, studentId);
+        }
+        try (CachePool.Lease lease = pool.acquire()) {
+            PreparedStatement stmt = lease.prepare(
+                "SELECT o.permutation FROM cached_exams e JOIN question_orders o ON o.examKey = e.examKey " +
+                "WHERE e.examId = ? AND o.studentId = ?");
+            stmt.setString(1, examId);
+            stmt.setString(2, studentId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? QuestionOrder.decode(rs.getBytes(1)) : null;
             }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to retrieve question order", e);
+            return null;
+        }
+    }
+
+    public static void saveSubmission(String examId, String studentId, Map<Integer, String> answers) {
+        MvStoreCache kv = keyValueStore;
+        if (kv != null) {
+            kv.saveSubmission(examId, studentId, answers);
+            return;
+        }
+        try (CachePool.Lease lease = pool.acquire()) {
+            Connection conn = lease.connection();
+            conn.setAutoCommit(false);
+            // Single upsert so concurrent savers cannot race between an existence check and the insert
+            PreparedStatement mergeStmt = lease.prepare(
+                "MERGE INTO submissions (examId, studentId, answers, submitted) KEY (examId, studentId) VALUES (?, ?, ?, ?)");
+            mergeStmt.setString(1, examId);
+            mergeStmt.setString(2, studentId);
+            mergeStmt.setBytes(3, encodeAnswers(examId, studentId, new JSONObject(answers).toString()));
+            mergeStmt.setBoolean(4, false);
+            mergeStmt.executeUpdate();
+
+            // The full answer set supersedes any autosaved deltas
+            PreparedStatement clearStmt = lease.prepare(
+                "DELETE FROM submission_answers WHERE examId = ? AND studentId = ?");
+            clearStmt.setString(1, examId);
+            clearStmt.setString(2, studentId);
+            clearStmt.executeUpdate();
+            conn.commit();
             LOGGER.info("Saved submission for examId: " + examId + ", studentId: " + studentId);
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to save submission", e);
         }
     }
 
+    /**
+     * Persists only the changed answers of an in-progress submission in a single transaction.
+     * A null answer clears that question. Reads through {@link #getSubmission} see the changes
+     * layered over the last full {@link #saveSubmission}.
+     * @throws SQLException so write-behind callers can retry the batch
+     */
+    public static void saveAnswers(String examId, String studentId, Map<Integer, String> changes) throws SQLException {
+        if (changes.isEmpty()) {
+            return;
+        }
+        MvStoreCache kv = keyValueStore;
+        if (kv != null) {
+            kv.saveAnswers(examId, studentId, changes);
+            return;
+        }
+        try (CachePool.Lease lease = pool.acquire()) {
+            Connection conn = lease.connection();
+            conn.setAutoCommit(false);
+            PreparedStatement mergeStmt = lease.prepare(
+                "MERGE INTO submission_answers (examId, studentId, questionIndex, answer) KEY (examId, studentId, questionIndex) VALUES (?, ?, ?, ?)");
+            for (Map.Entry<Integer, String> change : changes.entrySet()) {
+                mergeStmt.setString(1, examId);
+                mergeStmt.setString(2, studentId);
+                mergeStmt.setInt(3, change.getKey());
+                mergeStmt.setBytes(4, encodeAnswer(examId, studentId, change.getKey(), change.getValue()));
+                mergeStmt.addBatch();
+            }
+            mergeStmt.executeBatch();
+            conn.commit();
+        }
+    }
+
+    /**
+     * Stores the student's answer sheet (see {@link AnswerSheet#encode()}) in their submission,
+     * creating an unsynced submission if there is none. The whole sheet is one small value, so
+     * each autosave is a single-row write regardless of how many answers changed.
+     * @throws SQLException so write-behind callers can retry
+     */
+    public static void saveAnswerSheet(String examId, String studentId, AnswerSheet sheet) throws SQLException {
+        MvStoreCache kv = keyValueStore;
+        if (kv != null) {
+            kv.saveAnswerSheet(examId, studentId, sheet.encode());
+            return;
+        }
+        try (CachePool.Lease lease = pool.acquire()) {
+            PreparedStatement mergeStmt = lease.prepare(
+                "MERGE INTO submissions (examId, studentId, sheet, submitted) KEY (examId, studentId) VALUES (?, ?, ?, ?)");
+            mergeStmt.setString(1, examId);
+            mergeStmt.setString(2, studentId);
+            mergeStmt.setBytes(3, seal(examId, sheetContext(studentId), sheet.encode()));
+            mergeStmt.setBoolean(4, false);
+            mergeStmt.executeUpdate();
+        }
+    }
+
+    /**
+     * @return the student's stored answer sheet, or null if they have none or it is unreadable
+     */
+    public static AnswerSheet getAnswerSheet(String examId, String studentId) {
+        MvStoreCache kv = keyValueStore;
+        try {
+            if (kv != null) {
+                byte[] encoded = kv.getAnswerSheet(examId, studentId);
+                return encoded != null ? AnswerSheet.decode(encoded) : null;
+            }
+            try (CachePool.Lease lease = pool.acquire()) {
+                PreparedStatement stmt = lease.prepare("SELECT sheet FROM submissions WHERE examId = ? AND studentId = ?");
+                stmt.setString(1, examId);
+                stmt.setString(2, studentId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    return rs.next() ? decodeSheet(examId, studentId, rs.getBytes(1)) : null;
+                }
+            }
+        } catch (SQLException | IllegalStateException | IllegalArgumentException e) {
+            LOGGER.log(Level.SEVERE, "Failed to retrieve answer sheet", e);
+            return null;
+        }
+    }
+
+    private static AnswerSheet decodeSheet(String examId, String studentId, byte[] stored) {
+        return stored != null ? AnswerSheet.decode(open(examId, sheetContext(studentId), stored)) : null;
+    }
+
+    /**
+     * Marks the student's submission finished and stores the payload to upload for it. This is the
+     * only way a submission becomes finished; {@link SubmissionSync} uploads finished submissions
+     * only, so an exam still in progress (or being resumed after a crash) is never uploaded.
+     * @throws SQLException so the caller can report that the submission was not saved
+     */
+    public static void finishSubmission(FinishedSubmission submission) throws SQLException {
+        String examId = submission.getExamId();
+        String studentId = submission.getStudentId();
+        MvStoreCache kv = keyValueStore;
+        if (kv != null) {
+            kv.finishSubmission(examId, studentId, submission.encode());
+            return;
+        }
+        try (CachePool.Lease lease = pool.acquire()) {
+            PreparedStatement mergeStmt = lease.prepare("MERGE INTO submissions (examId, studentId, finished, payload, unreadable, submitted) " +
+                "KEY (examId, studentId) VALUES (?, ?, true, ?, false, false)");
+            mergeStmt.setString(1, examId);
+            mergeStmt.setString(2, studentId);
+            mergeStmt.setBytes(3, seal(examId, payloadContext(studentId), submission.encode()));
+            mergeStmt.executeUpdate();
+        }
+    }
+
+    private static FinishedSubmission decodeFinished(String examId, String studentId, byte[] stored) {
+        return stored != null ? FinishedSubmission.decode(examId, studentId, open(examId, payloadContext(studentId), stored)) : null;
+    }
+
+    // Reads autosaved per-question deltas; a null value means the answer was cleared
+    private static Map<Integer, String> readAnswerDeltas(CachePool.Lease lease, String examId, String studentId)
+            throws SQLException {
+        Map<Integer, String> deltas = new HashMap<>();
+        PreparedStatement stmt = lease.prepare(
+            "SELECT questionIndex, answer FROM submission_answers WHERE examId = ? AND studentId = ?");
+        stmt.setString(1, examId);
+        stmt.setString(2, studentId);
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                int questionIndex = rs.getInt("questionIndex");
+                deltas.put(questionIndex, decodeAnswer(examId, studentId, questionIndex, rs.getBytes("answer")));
+            }
+        }
+        return deltas;
+    }
+
     public static Map<Integer, String> getSubmission(String examId, String studentId) {
-        try (PreparedStatement stmt = conn.prepareStatement(
-            "SELECT answers FROM submissions WHERE examId = ? AND studentId = ?")) {
-            stmt.setString(1, examId);
-            stmt.setString(2, studentId);
-            ResultSet rs = stmt.executeQuery();
+        MvStoreCache kv = keyValueStore;
+        if (kv != null) {
+            try {
+                return kv.getSubmission(examId, studentId);
+            } catch (IllegalStateException e) {
+                LOGGER.log(Level.SEVERE, "Failed to retrieve submission", e);
+                return new HashMap<>();
+            }
+        }
+        try (CachePool.Lease lease = pool.acquire()) {
+            return getSqlSubmission(lease, examId, studentId);
+        } catch (SQLException | IllegalStateException e) {
+            LOGGER.log(Level.SEVERE, "Failed to retrieve submission", e);
+            return new HashMap<>();
+        }
+    }
+
+    // The submissions row with its autosaved deltas applied
+    private static Map<Integer, String> getSqlSubmission(CachePool.Lease lease, String examId, String studentId)
+            throws SQLException {
+        PreparedStatement stmt = lease.prepare(
+            "SELECT answers FROM submissions WHERE examId = ? AND studentId = ?");
+        stmt.setString(1, examId);
+        stmt.setString(2, studentId);
+        Map<Integer, String> answers = new HashMap<>();
+        try (ResultSet rs = stmt.executeQuery()) {
             if (rs.next()) {
-                return new JSONObject(rs.getString("answers")).toMap().entrySet().stream()
+                answers = new JSONObject(decodeAnswersJson(examId, studentId, rs.getBytes("answers"))).toMap().entrySet().stream()
                     .collect(Collectors.toMap(
                         e -> Integer.parseInt(e.getKey()),
-                        e -> (String) e.getValue()
+                        e -> (String) e.getValue(),
+                        (a, b) -> b,
+                        HashMap::new
                     ));
             }
-            return new HashMap<>();
-        } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Failed to retrieve submission", e);
-            return new HashMap<>();
         }
+        for (Map.Entry<Integer, String> delta : readAnswerDeltas(lease, examId, studentId).entrySet()) {
+            if (delta.getValue() == null) {
+                answers.remove(delta.getKey());
+            } else {
+                answers.put(delta.getKey(), delta.getValue());
+            }
+        }
+        return answers;
     }
 
     public static void markSubmissionAsSynced(String examId, String studentId) {
-        try (PreparedStatement stmt = conn.prepareStatement(
-            "UPDATE submissions SET submitted = true WHERE examId = ? AND studentId = ?")) {
+        MvStoreCache kv = keyValueStore;
+        if (kv != null) {
+            kv.markSubmissionAsSynced(examId, studentId);
+            return;
+        }
+        try (CachePool.Lease lease = pool.acquire()) {
+            PreparedStatement stmt = lease.prepare(
+                "UPDATE submissions SET submitted = true WHERE examId = ? AND studentId = ?");
             stmt.setString(1, examId);
             stmt.setString(2, studentId);
             stmt.executeUpdate();
@@ -203,50 +1377,150 @@ public class LocalCache {
         }
     }
 
-    public static List<Map<String, Object>> getPendingSubmissions() {
-        List<Map<String, Object>> pending = new ArrayList<>();
-        try (Statement stmt = conn.createStatement()) {
-            ResultSet rs = stmt.executeQuery("SELECT examId, studentId, answers FROM submissions WHERE submitted = false");
-            while (rs.next()) {
-                Map<String, Object> submission = new HashMap<>();
-                submission.put("examId", rs.getString("examId"));
-                submission.put("studentId", rs.getString("studentId"));
-                submission.put("answers", new JSONObject(rs.getString("answers")).toMap());
-                pending.add(submission);
-            }
+    /**
+     * Takes a finished submission whose stored payload cannot be decoded out of
+     * {@link #openFinishedSubmissions}, so it no longer stops every sync at the same row. The row is
+     * kept as it is for recovery; finishing the exam again replaces the payload and clears the mark.
+     */
+    public static void setAsideSubmission(String examId, String studentId) {
+        MvStoreCache kv = keyValueStore;
+        if (kv != null) {
+            kv.setAsideSubmission(examId, studentId);
+            return;
+        }
+        try (CachePool.Lease lease = pool.acquire()) {
+            PreparedStatement stmt = lease.prepare(
+                "UPDATE submissions SET unreadable = true WHERE examId = ? AND studentId = ?");
+            stmt.setString(1, examId);
+            stmt.setString(2, studentId);
+            stmt.executeUpdate();
         } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Failed to retrieve pending submissions", e);
+            LOGGER.log(Level.SEVERE, "Failed to set aside unreadable submission", e);
         }
-        return pending;
     }
 
     /**
-     * Cleans up expired cache entries based on the configured expiry time
+     * Materializes every unsynced submission. Prefer {@link #openPendingSubmissions} for sync
+     * loops; this is kept for callers that need the whole list.
      */
-    public static void cleanupExpiredCache() {
-        try {
-            // Calculate the cutoff date
-            LocalDateTime cutoffDate = LocalDateTime.now().minusDays(CACHE_EXPIRY_DAYS);
-            Timestamp cutoffTimestamp = Timestamp.valueOf(cutoffDate);
+    public static List<Map<String, Object>> getPendingSubmissions() {
+        PendingSubmissionCursor cursor = openPendingSubmissions(null, PENDING_PAGE_SIZE);
+        return cursor.stream().map(PendingSubmission::toMap).collect(Collectors.toList());
+    }
 
-            // Delete expired questions
-            try (PreparedStatement stmt = conn.prepareStatement(
-                "DELETE FROM questions WHERE created < ?")) {
-                stmt.setTimestamp(1, cutoffTimestamp);
-                int deletedQuestions = stmt.executeUpdate();
-                LOGGER.info("Cleaned up " + deletedQuestions + " expired question entries");
+    /**
+     * Opens a paged cursor over unsynced submissions, finished or still in progress, in (examId, studentId) order.
+     * @param resumeAfter a {@link PendingSubmissionCursor#getHighWaterMark()} to continue after, or null to start over
+     */
+    public static PendingSubmissionCursor openPendingSubmissions(String resumeAfter, int pageSize) {
+        return openPendingSubmissions(resumeAfter, pageSize, false);
+    }
+
+    /**
+     * Opens a paged cursor over finished, unsynced submissions in (examId, studentId) order:
+     * the ones that still need uploading. Each carries its stored {@link FinishedSubmission}.
+     * Submissions set aside by {@link #setAsideSubmission} are left out.
+     * @param resumeAfter a {@link PendingSubmissionCursor#getHighWaterMark()} to continue after, or null to start over
+     */
+    public static PendingSubmissionCursor openFinishedSubmissions(String resumeAfter, int pageSize) {
+        return openPendingSubmissions(resumeAfter, pageSize, true);
+    }
+
+    private static PendingSubmissionCursor openPendingSubmissions(String resumeAfter, int pageSize, boolean finishedOnly) {
+        MvStoreCache kv = keyValueStore;
+        return new PendingSubmissionCursor(resumeAfter, pageSize, kv != null
+            ? (afterExamId, afterStudentId, size) -> kv.pendingSubmissionPage(afterExamId, afterStudentId, size, finishedOnly)
+            : (afterExamId, afterStudentId, size) -> pendingSubmissionPage(afterExamId, afterStudentId, size, finishedOnly));
+    }
+
+    private static List<PendingSubmission> pendingSubmissionPage(String afterExamId, String afterStudentId, int pageSize,
+                                                                 boolean finishedOnly) throws SQLException {
+        List<Object[]> rows = new ArrayList<>(pageSize);
+        String pending = "SELECT examId, studentId, answers, sheet, finished, payload FROM submissions WHERE submitted = false "
+            + (finishedOnly ? "AND finished = true AND unreadable = false " : "");
+        try (CachePool.Lease lease = pool.acquire()) {
+            PreparedStatement stmt;
+            if (afterExamId == null) {
+                stmt = lease.prepare(pending + "ORDER BY examId, studentId FETCH FIRST ? ROWS ONLY");
+                stmt.setInt(1, pageSize);
+            } else {
+                stmt = lease.prepare(pending + "AND (examId, studentId) > (?, ?) ORDER BY examId, studentId FETCH FIRST ? ROWS ONLY");
+                stmt.setString(1, afterExamId);
+                stmt.setString(2, afterStudentId);
+                stmt.setInt(3, pageSize);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new Object[]{rs.getString(1), rs.getString(2), rs.getBytes(3), rs.getBytes(4),
+                        rs.getBoolean(5) ? rs.getBytes(6) : null});
+                }
+            }
+            if (rows.isEmpty()) {
+                return new ArrayList<>();
             }
 
-            // Delete expired submissions that have been successfully submitted
-            try (PreparedStatement stmt = conn.prepareStatement(
-                "DELETE FROM submissions WHERE created < ? AND submitted = true")) {
-                stmt.setTimestamp(1, cutoffTimestamp);
-                int deletedSubmissions = stmt.executeUpdate();
-                LOGGER.info("Cleaned up " + deletedSubmissions + " expired submission entries");
+            // One range read picks up the autosaved deltas of the whole page
+            Map<String, Map<Integer, String>> deltas = new HashMap<>();
+            Object[] first = rows.get(0);
+            Object[] last = rows.get(rows.size() - 1);
+            PreparedStatement deltaStmt = lease.prepare(
+                "SELECT examId, studentId, questionIndex, answer FROM submission_answers " +
+                "WHERE (examId, studentId) >= (?, ?) AND (examId, studentId) <= (?, ?)");
+            deltaStmt.setString(1, (String) first[0]);
+            deltaStmt.setString(2, (String) first[1]);
+            deltaStmt.setString(3, (String) last[0]);
+            deltaStmt.setString(4, (String) last[1]);
+            try (ResultSet rs = deltaStmt.executeQuery()) {
+                while (rs.next()) {
+                    String examId = rs.getString(1);
+                    String studentId = rs.getString(2);
+                    int questionIndex = rs.getInt(3);
+                    deltas.computeIfAbsent(PendingSubmissionCursor.mark(examId, studentId), k -> new HashMap<>())
+                        .put(questionIndex, decodeAnswer(examId, studentId, questionIndex, rs.getBytes(4)));
+                }
+            }
+
+            List<PendingSubmission> page = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                String examId = (String) row[0];
+                String studentId = (String) row[1];
+                byte[] stored = (byte[]) row[2];
+                byte[] sheet = (byte[]) row[3];
+                byte[] payload = (byte[]) row[4];
+                Map<Integer, String> rowDeltas = deltas.get(PendingSubmissionCursor.mark(examId, studentId));
+                page.add(new PendingSubmission(examId, studentId, () -> decodeAnswers(examId, studentId, stored, rowDeltas),
+                    () -> decodeSheet(examId, studentId, sheet), () -> decodeFinished(examId, studentId, payload)));
+            }
+            return page;
+        }
+    }
+
+    // Parses a stored submissions answers payload and applies autosaved deltas (a null delta clears the answer)
+    private static Map<Integer, String> decodeAnswers(String examId, String studentId, byte[] stored,
+                                                      Map<Integer, String> deltas) {
+        Map<Integer, String> answers = new HashMap<>();
+        JSONObject parsed = new JSONObject(decodeAnswersJson(examId, studentId, stored));
+        for (String key : parsed.keySet()) {
+            answers.put(Integer.parseInt(key), parsed.getString(key));
+        }
+        if (deltas != null) {
+            for (Map.Entry<Integer, String> delta : deltas.entrySet()) {
+                if (delta.getValue() == null) {
+                    answers.remove(delta.getKey());
+                } else {
+                    answers.put(delta.getKey(), delta.getValue());
+                }
             }
-        } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Failed to clean up expired cache", e);
         }
+        return answers;
+    }
+
+    /**
+     * Cleans up expired cache entries based on the configured expiry time.
+     * Runs in bounded chunks through {@link CacheExpiryService}.
+     */
+    public static ExpiryReport cleanupExpiredCache() {
+        return CacheExpiryService.fromConfig().runOnce();
     }
 
     /**
@@ -254,22 +1528,34 @@ public class LocalCache {
      * @param examId The ID of the exam to clean up
      */
     public static void cleanupExamCache(String examId) {
-        try {
-            // Delete questions for the exam
-            try (PreparedStatement stmt = conn.prepareStatement(
-                "DELETE FROM questions WHERE examId = ?")) {
-                stmt.setString(1, examId);
-                int deletedQuestions = stmt.executeUpdate();
-                LOGGER.info("Cleaned up " + deletedQuestions + " question entries for examId: " + examId);
-            }
+        MvStoreCache kv = keyValueStore;
+        if (kv != null) {
+            int deletedExams = kv.cleanupExam(examId);
+            questionCache.invalidate(examId);
+            LOGGER.info("Cleaned up " + deletedExams + " exam entries for examId: " + examId);
+            return;
+        }
+        try (CachePool.Lease lease = pool.acquire()) {
+            // Delete the exam; its questions and orders cascade
+            PreparedStatement questionStmt = lease.prepare("DELETE FROM cached_exams WHERE examId = ?");
+            questionStmt.setString(1, examId);
+            int deletedExams = questionStmt.executeUpdate();
+            questionCache.invalidate(examId);
+            LOGGER.info("Cleaned up " + deletedExams + " exam entries for examId: " + examId);
 
             // Delete submissions for the exam that have been successfully submitted
-            try (PreparedStatement stmt = conn.prepareStatement(
-                "DELETE FROM submissions WHERE examId = ? AND submitted = true")) {
-                stmt.setString(1, examId);
-                int deletedSubmissions = stmt.executeUpdate();
-                LOGGER.info("Cleaned up " + deletedSubmissions + " submission entries for examId: " + examId);
-            }
+            PreparedStatement submissionStmt = lease.prepare(
+                "DELETE FROM submissions WHERE examId = ? AND submitted = true");
+            submissionStmt.setString(1, examId);
+            int deletedSubmissions = submissionStmt.executeUpdate();
+            LOGGER.info("Cleaned up " + deletedSubmissions + " submission entries for examId: " + examId);
+
+            // Drop autosave deltas whose submission row no longer exists
+            PreparedStatement deltaStmt = lease.prepare(
+                "DELETE FROM submission_answers a WHERE a.examId = ? AND NOT EXISTS " +
+                "(SELECT 1 FROM submissions s WHERE s.examId = a.examId AND s.studentId = a.studentId)");
+            deltaStmt.setString(1, examId);
+            deltaStmt.executeUpdate();
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to clean up exam cache for examId: " + examId, e);
         }
@@ -279,14 +1565,27 @@ public class LocalCache {
      * Performs a complete cleanup of all cache data
      */
     public static void cleanupAllCache() {
-        try (Statement stmt = conn.createStatement()) {
-            // Delete all questions
-            int deletedQuestions = stmt.executeUpdate("DELETE FROM questions");
-            LOGGER.info("Cleaned up " + deletedQuestions + " question entries");
+        MvStoreCache kv = keyValueStore;
+        if (kv != null) {
+            kv.cleanupAll();
+            questionCache.clear();
+            LOGGER.info("Cleaned up all key-value cache entries");
+            return;
+        }
+        try (CachePool.Lease lease = pool.acquire();
+             Statement stmt = lease.connection().createStatement()) {
+            // Delete all exams; their questions and orders cascade
+            int deletedExams = stmt.executeUpdate("DELETE FROM cached_exams");
+            questionCache.clear();
+            LOGGER.info("Cleaned up " + deletedExams + " exam entries");
 
             // Delete all submissions that have been successfully submitted
             int deletedSubmissions = stmt.executeUpdate("DELETE FROM submissions WHERE submitted = true");
             LOGGER.info("Cleaned up " + deletedSubmissions + " submission entries");
+
+            // Drop autosave deltas whose submission row no longer exists
+            stmt.executeUpdate("DELETE FROM submission_answers a WHERE NOT EXISTS " +
+                "(SELECT 1 FROM submissions s WHERE s.examId = a.examId AND s.studentId = a.studentId)");
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to clean up all cache", e);
         }
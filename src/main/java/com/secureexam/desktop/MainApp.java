@@ -1,15 +1,26 @@
 package com.secureexam.desktop;
 //https://grok.com/share/bGVnYWN5_2175083d-503e-45d3-ab3d-64e17afdc25e
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.control.Alert;
 import javafx.stage.Stage;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class MainApp extends Application {
+    private static final Logger LOGGER = Logger.getLogger(MainApp.class.getName());
+    private boolean cacheAvailable;
+    private CacheExpiryService cacheExpiryService;
+    private CacheCompactionService cacheCompactionService;
+    private RelayServer relayServer;
+
     @Override
     public void start(Stage primaryStage) throws Exception {
         /*if (!Files.exists(Path.of("src/main/resources/settings.json"))) {
@@ -20,13 +31,84 @@ public class MainApp extends Application {
             setupStage.showAndWait();
         }*/
 
+        // Checked before anything touches LocalCache: without its key the cache cannot be opened
+        // and no exam can be taken, which an install upgraded from an unencrypted cache must be told
+        String keyProblem = cacheKeyProblem();
+        if (keyProblem != null) {
+            Alert alert = new Alert(Alert.AlertType.ERROR);
+            alert.setTitle(ConfigLoader.getInstituteName());
+            alert.setHeaderText("This computer is not set up to store exams yet");
+            alert.setContentText(keyProblem + "\n\nAsk an administrator to provision the cache key, running once as the "
+                + "account SecureExam runs under:\njava -cp <SecureExam jar> com.secureexam.desktop.CacheCipher "
+                + ConfigLoader.getCacheKeyFile());
+            alert.showAndWait();
+            Platform.exit();
+            return;
+        }
+        cacheAvailable = true;
+
         FirebaseInitializer.initialize();
-        Parent root = FXMLLoader.load(getClass().getResource("/fxml/login.fxml"));
+        cacheExpiryService = CacheExpiryService.fromConfig();
+        cacheExpiryService.start(ConfigLoader.getMaintenanceIntervalMillis(), ConfigLoader.getMaintenanceIdleMillis());
+        cacheCompactionService = CacheCompactionService.fromConfig();
+        cacheCompactionService.start(ConfigLoader.getMaintenanceIntervalMillis(), ConfigLoader.getMaintenanceIdleMillis());
+        if (ConfigLoader.isRelayServer()) {
+            // Proctor machine: serve exams to the room so students do not all hit Firestore at once
+            relayServer = RelayServer.fromConfig();
+            relayServer.start(ConfigLoader.getRelayPort(), ConfigLoader.getRelayThreads());
+        }
+        // Upload submissions cached while offline without delaying the login screen. Deadline uploads
+        // whose spread slot is still ahead go back on the queue to wait for it; the sync takes the rest.
+        Thread pendingSync = new Thread(() -> {
+            SubmissionQueue.shared().resumeScheduled();
+            if (NetworkManager.isOnline()) {
+                SubmissionSync.toFirestore().syncPending();
+            }
+        }, "pending-sync");
+        pendingSync.setDaemon(true);
+        pendingSync.start();
         primaryStage.setTitle(ConfigLoader.getInstituteName());
+        // A session left by a crash is resumed from the dashboard once its student has logged in again
+        Parent root = FXMLLoader.load(getClass().getResource("/fxml/login.fxml"));
         primaryStage.setScene(new Scene(root, 800, 600));
         primaryStage.show();
     }
 
+    @Override
+    public void stop() {
+        if (!cacheAvailable) {
+            return;
+        }
+        if (cacheExpiryService != null) {
+            cacheExpiryService.stop();
+        }
+        if (relayServer != null) {
+            relayServer.stop();
+        }
+        SubmissionQueue.stopShared(); // queued uploads stay finished in the cache for the next start's sync
+        if (cacheCompactionService != null) {
+            cacheCompactionService.stop();
+            cacheCompactionService.runOnce(); // the file is closed right after, so compacting costs nothing visible
+        }
+        LocalCache.shutdown();
+    }
+
+    /**
+     * @return why the cache master key cannot be used, or null if encryption is off or the key is readable
+     */
+    private static String cacheKeyProblem() {
+        if (!ConfigLoader.isCacheEncrypted()) {
+            return null;
+        }
+        try {
+            CacheCipher.fromConfig();
+            return null;
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.log(Level.SEVERE, "Cache master key unavailable", e);
+            return e.getMessage();
+        }
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
@@ -0,0 +1,722 @@
+package com.secureexam.desktop;
+
+import org.h2.mvstore.Cursor;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Key-value storage engine for {@link LocalCache} on H2's MVStore.
+ * Every cache access is a key lookup, so records are stored as binary values under their
+ * natural keys instead of going through JDBC, SQL planning and JSON:
+ * <ul>
+ *   <li>{@code exam_versions}: examId -> content version</li>
+ *   <li>{@code exam_records}: examId -> [created millis][question count][compressed, encrypted question set]
+ *       (see {@link QuestionCodec#encodeQuestions}, {@link PayloadCodec}, {@link CacheCipher})</li>
+ *   <li>{@code question_orders}: examId + NUL + studentId -> {@link QuestionOrder#encode()}</li>
+ *   <li>{@code submissions}: examId + NUL + studentId -> [flags][created millis][answers], the answers being
+ *       {@code [count]{[index][answer]}} followed, when the sheet flag is set, by {@code [length][AnswerSheet]}
+ *       and, when the finished flag is set, by {@code [length][FinishedSubmission]}; encrypted when the sealed flag is set.
+ *       The unreadable flag marks a submission set aside by {@link #setAsideSubmission}</li>
+ * </ul>
+ * Autosaved answer changes are applied to the submission record in place, so there is no
+ * delta table to overlay on reads. Writes are visible immediately and reach the file through
+ * MVStore's background commit within {@link #WRITE_DELAY_MS}, the same window as H2's default
+ * write delay for the SQL tables; the answer journal covers that window on a crash.
+ * Without a file name the store lives only in memory and is persisted through {@link #snapshotTo}.
+ */
+public class MvStoreCache implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(MvStoreCache.class.getName());
+    private static final char KEY_SEPARATOR = '\u0000';
+    private static final int EXAM_HEADER_BYTES = 12;
+    static final int WRITE_DELAY_MS = 500;
+    private static final int SUBMITTED = 1;
+    private static final int SEALED = 2;
+    private static final int SHEET = 4;
+    private static final int FINISHED = 8;
+    private static final int UNREADABLE = 16;
+    private static final String ALL_SEALED = "all_sealed";
+
+    private final MVStore store;
+    private final PayloadCodec codec;
+    private final CacheCipher cipher;
+    private final MVMap<String, Long> examVersions;
+    private final MVMap<String, byte[]> exams;
+    private final MVMap<String, byte[]> questionOrders;
+    private final MVMap<String, byte[]> submissions;
+
+    public MvStoreCache(String fileName) {
+        this(fileName, PayloadCodec.fromConfig(), null);
+    }
+
+    /**
+     * @param fileName the store file, or null to keep the store in memory only
+     * @param cipher encrypts exam and submission records, or null to store them in the clear
+     */
+    public MvStoreCache(String fileName, PayloadCodec codec, CacheCipher cipher) {
+        this.codec = codec;
+        this.cipher = cipher;
+        store = new MVStore.Builder().fileName(fileName).open();
+        store.setAutoCommitDelay(WRITE_DELAY_MS);
+        examVersions = store.openMap("exam_versions");
+        exams = store.openMap("exam_records");
+        questionOrders = store.openMap("question_orders");
+        submissions = store.openMap("submissions");
+        sealPlaintextRecords();
+        LOGGER.info("Opened key-value cache " + (fileName != null ? fileName : "in memory") + " with " + exams.size() + " exams");
+    }
+
+    /**
+     * Writes a consistent copy of every map to a new store file, replacing {@code target} only
+     * once the copy is complete.
+     * @return the size of the snapshot file in bytes
+     */
+    public long snapshotTo(Path target) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.deleteIfExists(temp);
+        MVStore copy = new MVStore.Builder().fileName(temp.toString()).open();
+        try {
+            for (String name : store.getMapNames()) {
+                MVMap<Object, Object> source = store.openMap(name);
+                MVMap<Object, Object> destination = copy.openMap(name);
+                // Iterating a map sees the version current when the cursor was opened
+                Cursor<Object, Object> cursor = source.cursor(null);
+                while (cursor.hasNext()) {
+                    destination.put(cursor.next(), cursor.getValue());
+                }
+            }
+            copy.commit();
+        } finally {
+            copy.close();
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return Files.size(target);
+    }
+
+    /**
+     * Loads a snapshot written by {@link #snapshotTo} into this store, overwriting entries with the same key.
+     * @return the number of entries loaded
+     */
+    public synchronized int restoreFrom(Path snapshot) {
+        int entries = 0;
+        MVStore source = new MVStore.Builder().fileName(snapshot.toString()).readOnly().open();
+        try {
+            for (String name : source.getMapNames()) {
+                MVMap<Object, Object> from = source.openMap(name);
+                MVMap<Object, Object> to = store.openMap(name);
+                Cursor<Object, Object> cursor = from.cursor(null);
+                while (cursor.hasNext()) {
+                    to.put(cursor.next(), cursor.getValue());
+                    entries++;
+                }
+            }
+        } finally {
+            source.close();
+        }
+        // The snapshot may have been written with encryption set differently
+        store.openMap("cache_flags").remove(ALL_SEALED);
+        sealPlaintextRecords();
+        return entries;
+    }
+
+    /**
+     * @return bytes of stored exam and submission records, the bulk of what the store keeps in memory
+     */
+    public long getStoredBytes() {
+        long bytes = 0;
+        for (MVMap<String, byte[]> map : List.of(exams, questionOrders, submissions)) {
+            Cursor<String, byte[]> cursor = map.cursor(null);
+            while (cursor.hasNext()) {
+                bytes += cursor.next().length() * 2L + cursor.getValue().length;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return cached exam ids, least recently cached first
+     */
+    public List<String> examsOldestFirst() {
+        List<Map.Entry<String, Long>> created = new ArrayList<>();
+        Cursor<String, byte[]> cursor = exams.cursor(null);
+        while (cursor.hasNext()) {
+            String examId = cursor.next();
+            created.add(Map.entry(examId, ByteBuffer.wrap(cursor.getValue()).getLong(0)));
+        }
+        created.sort(Map.Entry.comparingByValue());
+        List<String> examIds = new ArrayList<>(created.size());
+        created.forEach(entry -> examIds.add(entry.getKey()));
+        return examIds;
+    }
+
+    private byte[] examRecord(String examId, long createdMillis, int questionCount, byte[] encoded) {
+        byte[] compressed = codec.compress(encoded, null);
+        byte[] stored = cipher != null ? cipher.seal(examId, "exam", compressed) : compressed;
+        return ByteBuffer.allocate(EXAM_HEADER_BYTES + stored.length)
+            .putLong(createdMillis).putInt(questionCount).put(stored).array();
+    }
+
+    // The compressed question set of an exam record, decrypted if needed
+    private byte[] examPayload(String examId, byte[] record) {
+        byte[] stored = new byte[record.length - EXAM_HEADER_BYTES];
+        System.arraycopy(record, EXAM_HEADER_BYTES, stored, 0, stored.length);
+        if (cipher != null) {
+            return cipher.open(examId, "exam", stored); // rejects unsealed records
+        }
+        if (CacheCipher.isSealed(stored)) {
+            throw new IllegalStateException("Exam record is encrypted but no cache key is available: " + examId);
+        }
+        return stored;
+    }
+
+    /**
+     * Encrypts in place, once, every record stored in the clear while encryption was off; see
+     * {@code LocalCache.sealPlaintextRecords}. Afterwards unsealed records are rejected.
+     */
+    private void sealPlaintextRecords() {
+        MVMap<String, Boolean> flags = store.openMap("cache_flags");
+        if (cipher == null) {
+            flags.remove(ALL_SEALED);
+            return;
+        }
+        if (flags.containsKey(ALL_SEALED)) {
+            return;
+        }
+        int sealed = 0;
+        Cursor<String, byte[]> examCursor = exams.cursor(null);
+        Map<String, byte[]> resealed = new HashMap<>();
+        while (examCursor.hasNext()) {
+            String examId = examCursor.next();
+            byte[] record = examCursor.getValue();
+            byte[] stored = new byte[record.length - EXAM_HEADER_BYTES];
+            System.arraycopy(record, EXAM_HEADER_BYTES, stored, 0, stored.length);
+            if (!CacheCipher.isSealed(stored)) {
+                byte[] encrypted = cipher.seal(examId, "exam", stored);
+                resealed.put(examId, ByteBuffer.allocate(EXAM_HEADER_BYTES + encrypted.length)
+                    .put(record, 0, EXAM_HEADER_BYTES).put(encrypted).array());
+            }
+        }
+        exams.putAll(resealed);
+        sealed += resealed.size();
+        resealed.clear();
+        Cursor<String, byte[]> submissionCursor = submissions.cursor(null);
+        while (submissionCursor.hasNext()) {
+            String key = submissionCursor.next();
+            byte[] encoded = submissionCursor.getValue();
+            if ((encoded[0] & SEALED) == 0) {
+                int separator = key.indexOf(KEY_SEPARATOR);
+                byte[] section = new byte[encoded.length - 9];
+                System.arraycopy(encoded, 9, section, 0, section.length);
+                byte[] encrypted = cipher.seal(key.substring(0, separator), submissionContext(key.substring(separator + 1)), section);
+                resealed.put(key, ByteBuffer.allocate(9 + encrypted.length)
+                    .put((byte) (encoded[0] | SEALED)).put(encoded, 1, 8).put(encrypted).array());
+            }
+        }
+        submissions.putAll(resealed);
+        sealed += resealed.size();
+        flags.put(ALL_SEALED, true);
+        store.commit();
+        if (sealed > 0) {
+            LOGGER.info("Encrypted " + sealed + " key-value records that were stored in the clear");
+        }
+    }
+
+    private static String key(String examId, String studentId) {
+        return examId + KEY_SEPARATOR + studentId;
+    }
+
+    private static String examIdOf(String key) {
+        return key.substring(0, key.indexOf(KEY_SEPARATOR));
+    }
+
+    public synchronized void saveQuestions(String examId, List<Question> questions) {
+        saveQuestions(examId, questions, System.currentTimeMillis());
+    }
+
+    synchronized void saveQuestions(String examId, List<Question> questions, long createdMillis) {
+        long version = QuestionCodec.contentHash(questions);
+        putExam(examId, version, questions.size(), QuestionCodec.encodeQuestions(version, questions), createdMillis);
+    }
+
+    /**
+     * Caches questions already in {@link QuestionCodec#encodeQuestion} form, such as a verified
+     * exam bundle's records, under a version the caller already knows.
+     */
+    public synchronized void saveQuestionRecords(String examId, long version, List<byte[]> records) {
+        putExam(examId, version, records.size(), QuestionCodec.encodeQuestionRecords(version, records),
+            System.currentTimeMillis());
+    }
+
+    private void putExam(String examId, long version, int questionCount, byte[] encoded, long createdMillis) {
+        byte[] previous = exams.get(examId);
+        if (previous != null && ByteBuffer.wrap(previous).getInt(8) != questionCount) {
+            // Stored permutations no longer cover the exam
+            removeByPrefix(questionOrders, examId);
+        }
+        exams.put(examId, examRecord(examId, createdMillis, questionCount, encoded));
+        // The record carries its own version, so readers never pair a version with the wrong questions
+        examVersions.put(examId, version);
+    }
+
+    /**
+     * @return the exam's content version, or null if it is not cached
+     */
+    public Long getVersion(String examId) {
+        return examVersions.get(examId);
+    }
+
+    /**
+     * @return the decoded exam in canonical order with the version it was stored under, or null if not cached
+     */
+    public VersionedQuestions getQuestions(String examId) {
+        byte[] record = exams.get(examId);
+        if (record == null) {
+            return null;
+        }
+        byte[] encoded = PayloadCodec.decompress(examPayload(examId, record), null);
+        return new VersionedQuestions(QuestionCodec.questionsVersion(encoded),
+            QuestionCodec.decodeQuestions(examId, encoded));
+    }
+
+    /**
+     * @return raw and stored sizes of the exam's question set, or null if it is not cached
+     */
+    public CompressionStats getCompressionStats(String examId) {
+        byte[] record = exams.get(examId);
+        if (record == null) {
+            return null;
+        }
+        ByteBuffer frame = ByteBuffer.wrap(examPayload(examId, record));
+        frame.get(); // PayloadCodec header
+        return new CompressionStats(QuestionCodec.readVarint(frame), record.length - EXAM_HEADER_BYTES);
+    }
+
+    public boolean isCached(String examId) {
+        byte[] record = exams.get(examId);
+        return record != null && ByteBuffer.wrap(record).getInt(8) > 0;
+    }
+
+    public synchronized boolean saveQuestionOrder(String examId, String studentId, QuestionOrder order) {
+        if (!exams.containsKey(examId)) {
+            return false;
+        }
+        questionOrders.put(key(examId, studentId), order.encode());
+        return true;
+    }
+
+    public QuestionOrder getQuestionOrder(String examId, String studentId) {
+        byte[] encoded = questionOrders.get(key(examId, studentId));
+        return encoded != null ? QuestionOrder.decode(encoded) : null;
+    }
+
+    public synchronized void saveSubmission(String examId, String studentId, Map<Integer, String> answers) {
+        saveSubmission(examId, studentId, answers, false, System.currentTimeMillis());
+    }
+
+    synchronized void saveSubmission(String examId, String studentId, Map<Integer, String> answers,
+                                     boolean submitted, long createdMillis) {
+        String key = key(examId, studentId);
+        byte[] existing = submissions.get(key);
+        Submission submission = new Submission(submitted, createdMillis, answers);
+        if (existing != null && (existing[0] & (SHEET | FINISHED)) != 0) {
+            // A full save of the answers keeps the sheet and the finished payload
+            Submission previous = decodeSubmission(examId, studentId, existing);
+            submission.sheet = previous.sheet;
+            submission.payload = previous.payload;
+        }
+        submissions.put(key, encodeSubmission(examId, studentId, submission));
+    }
+
+    /**
+     * Stores an encoded {@link AnswerSheet} in the submission, creating an unsynced submission if none exists yet.
+     */
+    public synchronized void saveAnswerSheet(String examId, String studentId, byte[] sheet) {
+        String key = key(examId, studentId);
+        byte[] existing = submissions.get(key);
+        Submission submission = existing != null
+            ? decodeSubmission(examId, studentId, existing)
+            : new Submission(false, System.currentTimeMillis(), new HashMap<>());
+        submission.sheet = sheet;
+        submissions.put(key, encodeSubmission(examId, studentId, submission));
+    }
+
+    /**
+     * Marks the submission finished with its encoded {@link FinishedSubmission} upload payload and
+     * as not yet synced, creating the submission if none exists yet.
+     */
+    public synchronized void finishSubmission(String examId, String studentId, byte[] payload) {
+        String key = key(examId, studentId);
+        byte[] existing = submissions.get(key);
+        Submission previous = existing != null ? decodeSubmission(examId, studentId, existing) : null;
+        Submission submission = new Submission(false,
+            previous != null ? previous.createdMillis : System.currentTimeMillis(),
+            previous != null ? previous.answers : new HashMap<>());
+        submission.sheet = previous != null ? previous.sheet : null;
+        submission.payload = payload;
+        submissions.put(key, encodeSubmission(examId, studentId, submission));
+    }
+
+    /**
+     * @return the encoded answer sheet of the submission, or null if it has none
+     */
+    public byte[] getAnswerSheet(String examId, String studentId) {
+        byte[] encoded = submissions.get(key(examId, studentId));
+        return encoded != null && (encoded[0] & SHEET) != 0 ? decodeSubmission(examId, studentId, encoded).sheet : null;
+    }
+
+    /**
+     * Applies answer changes to the stored submission; a null answer clears that question.
+     * Creates an unsynced submission if none exists yet.
+     */
+    public synchronized void saveAnswers(String examId, String studentId, Map<Integer, String> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        String key = key(examId, studentId);
+        byte[] existing = submissions.get(key);
+        Submission submission = existing != null
+            ? decodeSubmission(examId, studentId, existing)
+            : new Submission(false, System.currentTimeMillis(), new HashMap<>());
+        for (Map.Entry<Integer, String> change : changes.entrySet()) {
+            if (change.getValue() == null) {
+                submission.answers.remove(change.getKey());
+            } else {
+                submission.answers.put(change.getKey(), change.getValue());
+            }
+        }
+        submissions.put(key, encodeSubmission(examId, studentId, submission));
+    }
+
+    public Map<Integer, String> getSubmission(String examId, String studentId) {
+        byte[] encoded = submissions.get(key(examId, studentId));
+        return encoded != null ? decodeSubmission(examId, studentId, encoded).answers : new HashMap<>();
+    }
+
+    public synchronized void markSubmissionAsSynced(String examId, String studentId) {
+        String key = key(examId, studentId);
+        byte[] encoded = submissions.get(key);
+        if (encoded != null && (encoded[0] & SUBMITTED) == 0) {
+            byte[] synced = encoded.clone();
+            synced[0] |= SUBMITTED;
+            submissions.put(key, synced);
+        }
+    }
+
+    /**
+     * Leaves the submission out of finished-only pages until it is finished again; see {@link LocalCache#setAsideSubmission}.
+     */
+    public synchronized void setAsideSubmission(String examId, String studentId) {
+        String key = key(examId, studentId);
+        byte[] encoded = submissions.get(key);
+        if (encoded != null && (encoded[0] & UNREADABLE) == 0) {
+            byte[] marked = encoded.clone();
+            marked[0] |= UNREADABLE;
+            submissions.put(key, marked);
+        }
+    }
+
+    /**
+     * Page loader for {@link PendingSubmissionCursor}; answers are decoded only when read.
+     * @param finishedOnly skip submissions of exams still in progress, and those set aside as unreadable
+     */
+    List<PendingSubmission> pendingSubmissionPage(String afterExamId, String afterStudentId, int pageSize,
+                                                  boolean finishedOnly) {
+        List<PendingSubmission> page = new ArrayList<>(pageSize);
+        String after = afterExamId != null ? key(afterExamId, afterStudentId) : null;
+        Cursor<String, byte[]> cursor = submissions.cursor(after);
+        while (page.size() < pageSize && cursor.hasNext()) {
+            String key = cursor.next();
+            byte[] encoded = cursor.getValue();
+            if ((encoded[0] & SUBMITTED) != 0 || key.equals(after)
+                    || (finishedOnly && (encoded[0] & (FINISHED | UNREADABLE)) != FINISHED)) {
+                continue;
+            }
+            int separator = key.indexOf(KEY_SEPARATOR);
+            String examId = key.substring(0, separator);
+            String studentId = key.substring(separator + 1);
+            page.add(new PendingSubmission(examId, studentId, () -> decodeSubmission(examId, studentId, encoded).answers,
+                () -> {
+                    byte[] sheet = decodeSubmission(examId, studentId, encoded).sheet;
+                    return sheet != null ? AnswerSheet.decode(sheet) : null;
+                },
+                () -> {
+                    byte[] payload = decodeSubmission(examId, studentId, encoded).payload;
+                    return payload != null ? FinishedSubmission.decode(examId, studentId, payload) : null;
+                }));
+        }
+        return page;
+    }
+
+    /**
+     * Removes up to about {@code chunkRows} rows' worth of exams created before the cutoff,
+     * counting each exam as one row plus its questions. Returns true if more may remain.
+     * There is no age index; the scan is over the in-memory key space.
+     */
+    synchronized boolean expireExamChunk(long cutoffMillis, int chunkRows, ExpiryReport report,
+                                         Consumer<String> onRemoved) {
+        int rows = 0;
+        int deleted = 0;
+        Cursor<String, byte[]> cursor = exams.cursor(null);
+        while (cursor.hasNext()) {
+            String examId = cursor.next();
+            ByteBuffer header = ByteBuffer.wrap(cursor.getValue());
+            if (header.getLong(0) >= cutoffMillis) {
+                continue;
+            }
+            int questionCount = header.getInt(8);
+            if (deleted > 0 && rows + 1 + questionCount > chunkRows) {
+                commitExpiredExams(deleted, rows, report);
+                return true;
+            }
+            removeExam(examId);
+            onRemoved.accept(examId);
+            rows += 1 + questionCount;
+            deleted++;
+        }
+        commitExpiredExams(deleted, rows, report);
+        return false;
+    }
+
+    private void commitExpiredExams(int deleted, int rows, ExpiryReport report) {
+        if (deleted > 0) {
+            store.commit();
+            report.addExams(deleted, rows - deleted);
+        }
+    }
+
+    synchronized boolean expireSubmissionChunk(long cutoffMillis, int chunkRows, ExpiryReport report) {
+        List<String> expired = new ArrayList<>();
+        Cursor<String, byte[]> cursor = submissions.cursor(null);
+        while (cursor.hasNext() && expired.size() < chunkRows) {
+            String key = cursor.next();
+            ByteBuffer record = ByteBuffer.wrap(cursor.getValue());
+            if ((record.get(0) & SUBMITTED) != 0 && record.getLong(1) < cutoffMillis) {
+                expired.add(key);
+            }
+        }
+        expired.forEach(submissions::remove);
+        if (!expired.isEmpty()) {
+            store.commit();
+            report.addSubmissions(expired.size());
+        }
+        return expired.size() == chunkRows;
+    }
+
+    /**
+     * Removes a cached exam with its question orders, plus its synced submissions.
+     * @return the number of exams removed (0 or 1)
+     */
+    public synchronized int cleanupExam(String examId) {
+        int removed = removeExam(examId) ? 1 : 0;
+        Iterator<String> keys = submissions.keyIterator(examId + KEY_SEPARATOR);
+        List<String> synced = new ArrayList<>();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            if (!examIdOf(key).equals(examId)) {
+                break;
+            }
+            if ((submissions.get(key)[0] & SUBMITTED) != 0) {
+                synced.add(key);
+            }
+        }
+        synced.forEach(submissions::remove);
+        store.commit();
+        return removed;
+    }
+
+    /**
+     * Removes every cached exam and every synced submission.
+     */
+    public synchronized void cleanupAll() {
+        examVersions.clear();
+        exams.clear();
+        questionOrders.clear();
+        List<String> synced = new ArrayList<>();
+        Cursor<String, byte[]> cursor = submissions.cursor(null);
+        while (cursor.hasNext()) {
+            String key = cursor.next();
+            if ((cursor.getValue()[0] & SUBMITTED) != 0) {
+                synced.add(key);
+            }
+        }
+        synced.forEach(submissions::remove);
+        store.commit();
+    }
+
+    private boolean removeExam(String examId) {
+        examVersions.remove(examId);
+        removeByPrefix(questionOrders, examId);
+        return exams.remove(examId) != null;
+    }
+
+    private static void removeByPrefix(MVMap<String, byte[]> map, String examId) {
+        List<String> keys = new ArrayList<>();
+        Iterator<String> iterator = map.keyIterator(examId + KEY_SEPARATOR);
+        while (iterator.hasNext()) {
+            String key = iterator.next();
+            if (!examIdOf(key).equals(examId)) {
+                break;
+            }
+            keys.add(key);
+        }
+        keys.forEach(map::remove);
+    }
+
+    /**
+     * Writes all pending changes to the file now.
+     */
+    public void commit() {
+        store.commit();
+    }
+
+    public long getFileSize() {
+        return store.getFileStore() != null ? store.getFileStore().size() : 0;
+    }
+
+    /**
+     * @return percentage of the file occupied by chunks
+     */
+    public int getFillRate() {
+        return store.getFileStore() != null ? store.getFillRate() : 100;
+    }
+
+    /**
+     * @return percentage of live data inside the file's chunks
+     */
+    public int getChunksFillRate() {
+        return store.getFileStore() != null ? store.getFileStore().getChunksFillRate() : 100;
+    }
+
+    /**
+     * Rewrites live chunks towards the start of the file and truncates the free tail, spending
+     * at most {@code maxMillis}. Readers and writers keep working while it runs.
+     */
+    public void compactFile(int maxMillis) {
+        if (store.getFileStore() == null) {
+            return;
+        }
+        store.commit();
+        store.compactFile(maxMillis);
+    }
+
+    @Override
+    public void close() {
+        store.close();
+    }
+
+    private static String submissionContext(String studentId) {
+        return "submission" + KEY_SEPARATOR + studentId;
+    }
+
+    private byte[] encodeSubmission(String examId, String studentId, Submission submission) {
+        ByteArrayOutputStream answers = new ByteArrayOutputStream(8 + 8 * submission.answers.size());
+        QuestionCodec.writeVarint(answers, submission.answers.size());
+        for (Map.Entry<Integer, String> answer : submission.answers.entrySet()) {
+            QuestionCodec.writeVarint(answers, answer.getKey());
+            QuestionCodec.writeString(answers, answer.getValue());
+        }
+        if (submission.sheet != null) {
+            QuestionCodec.writeVarint(answers, submission.sheet.length);
+            answers.write(submission.sheet, 0, submission.sheet.length);
+        }
+        if (submission.payload != null) {
+            QuestionCodec.writeVarint(answers, submission.payload.length);
+            answers.write(submission.payload, 0, submission.payload.length);
+        }
+        byte[] section = answers.toByteArray();
+        if (cipher != null) {
+            section = cipher.seal(examId, submissionContext(studentId), section);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(9 + section.length);
+        out.write((submission.submitted ? SUBMITTED : 0) | (cipher != null ? SEALED : 0)
+            | (submission.sheet != null ? SHEET : 0) | (submission.payload != null ? FINISHED : 0));
+        QuestionCodec.writeLong(out, submission.createdMillis);
+        out.write(section, 0, section.length);
+        return out.toByteArray();
+    }
+
+    private Submission decodeSubmission(String examId, String studentId, byte[] encoded) {
+        ByteBuffer header = ByteBuffer.wrap(encoded);
+        int flags = header.get();
+        long created = header.getLong();
+        byte[] section = new byte[encoded.length - 9];
+        System.arraycopy(encoded, 9, section, 0, section.length);
+        if (cipher != null) {
+            if ((flags & SEALED) == 0) {
+                throw new IllegalStateException("Submission is not encrypted: " + examId);
+            }
+            section = cipher.open(examId, submissionContext(studentId), section);
+        } else if ((flags & SEALED) != 0) {
+            throw new IllegalStateException("Submission is encrypted but no cache key is available: " + examId);
+        }
+        ByteBuffer in = ByteBuffer.wrap(section);
+        int count = QuestionCodec.readVarint(in);
+        Map<Integer, String> answers = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            answers.put(QuestionCodec.readVarint(in), QuestionCodec.readString(in));
+        }
+        Submission submission = new Submission((flags & SUBMITTED) != 0, created, answers);
+        if ((flags & SHEET) != 0) {
+            submission.sheet = new byte[QuestionCodec.readVarint(in)];
+            in.get(submission.sheet);
+        }
+        if ((flags & FINISHED) != 0) {
+            submission.payload = new byte[QuestionCodec.readVarint(in)];
+            in.get(submission.payload);
+        }
+        return submission;
+    }
+
+    private static class Submission {
+        private final boolean submitted;
+        private final long createdMillis;
+        private final Map<Integer, String> answers;
+        private byte[] sheet;
+        private byte[] payload; // FinishedSubmission, set once the exam has ended
+
+        Submission(boolean submitted, long createdMillis, Map<Integer, String> answers) {
+            this.submitted = submitted;
+            this.createdMillis = createdMillis;
+            this.answers = new HashMap<>();
+            answers.forEach((index, answer) -> {
+                if (answer != null) {
+                    this.answers.put(index, answer);
+                }
+            });
+        }
+    }
+
+    /**
+     * A decoded question set together with the content version it was stored under.
+     */
+    public static class VersionedQuestions {
+        private final long version;
+        private final List<Question> questions;
+
+        VersionedQuestions(long version, List<Question> questions) {
+            this.version = version;
+            this.questions = questions;
+        }
+
+        public long getVersion() { return version; }
+        public List<Question> getQuestions() { return questions; }
+    }
+}
@@ -0,0 +1,203 @@
+package com.secureexam.desktop;
+
+import org.h2.compress.CompressLZF;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Transparent compression for LocalCache payload columns.
+ * Every stored value is framed as {@code [header][raw length varint][data]}, where the header
+ * names the algorithm and whether a dictionary was used, so values written under one
+ * configured algorithm stay readable after the setting changes. Values that would not shrink
+ * are stored as-is.
+ * <p>
+ * Deflate can use a preset dictionary trained from an exam's own questions
+ * ({@link #trainDictionary}); that is what makes individual question rows, which are far too
+ * short to compress on their own, shrink. LZF (H2's bundled LZ codec) is faster but has no
+ * dictionary support.
+ */
+public class PayloadCodec {
+    public enum Algorithm {
+        NONE, DEFLATE, LZF;
+
+        static Algorithm fromConfig(String name) {
+            for (Algorithm algorithm : values()) {
+                if (algorithm.name().equalsIgnoreCase(name)) {
+                    return algorithm;
+                }
+            }
+            throw new IllegalArgumentException("Unknown compression algorithm: " + name);
+        }
+    }
+
+    /** Deflate only looks back 32 KiB, so a larger dictionary would never be referenced. */
+    public static final int MAX_DICTIONARY_BYTES = 32 * 1024;
+    private static final int DICTIONARY_FLAG = 0x10;
+    private static final ThreadLocal<CompressLZF> LZF = ThreadLocal.withInitial(CompressLZF::new);
+
+    private final Algorithm algorithm;
+    private final AtomicLong rawBytes = new AtomicLong();
+    private final AtomicLong storedBytes = new AtomicLong();
+
+    public PayloadCodec(Algorithm algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public static PayloadCodec fromConfig() {
+        return new PayloadCodec(Algorithm.fromConfig(ConfigLoader.getCacheCompression()));
+    }
+
+    public Algorithm getAlgorithm() { return algorithm; }
+
+    /**
+     * @param dictionary a preset dictionary from {@link #trainDictionary}, or null; only deflate uses it
+     */
+    public byte[] compress(byte[] raw, byte[] dictionary) {
+        byte[] stored = null;
+        if (algorithm == Algorithm.DEFLATE) {
+            stored = frame(Algorithm.DEFLATE, dictionary != null, raw.length, deflate(raw, dictionary));
+        } else if (algorithm == Algorithm.LZF) {
+            stored = frame(Algorithm.LZF, false, raw.length, lzf(raw));
+        }
+        if (stored == null || stored.length >= raw.length + 2) {
+            stored = frame(Algorithm.NONE, false, raw.length, raw);
+        }
+        rawBytes.addAndGet(raw.length);
+        storedBytes.addAndGet(stored.length);
+        return stored;
+    }
+
+    /**
+     * Restores a value written by {@link #compress}; {@code dictionary} must be the one it was compressed with.
+     */
+    public static byte[] decompress(byte[] stored, byte[] dictionary) {
+        ByteBuffer in = ByteBuffer.wrap(stored);
+        int header = in.get() & 0xFF;
+        Algorithm algorithm = Algorithm.values()[header & 0x0F];
+        int rawLength = QuestionCodec.readVarint(in);
+        int offset = in.position();
+        int length = stored.length - offset;
+        byte[] raw = new byte[rawLength];
+        switch (algorithm) {
+            case NONE:
+                System.arraycopy(stored, offset, raw, 0, rawLength);
+                break;
+            case LZF:
+                LZF.get().expand(stored, offset, length, raw, 0, rawLength);
+                break;
+            case DEFLATE:
+                if ((header & DICTIONARY_FLAG) != 0 && dictionary == null) {
+                    throw new IllegalStateException("Payload needs its exam dictionary");
+                }
+                inflate(stored, offset, length, raw, dictionary);
+                break;
+            default:
+                throw new IllegalStateException("Unsupported payload algorithm " + algorithm);
+        }
+        return raw;
+    }
+
+    private static byte[] frame(Algorithm algorithm, boolean dictionary, int rawLength, byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length + 6);
+        out.write(algorithm.ordinal() | (dictionary ? DICTIONARY_FLAG : 0));
+        QuestionCodec.writeVarint(out, rawLength);
+        out.write(data, 0, data.length);
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] raw, byte[] dictionary) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 16);
+            byte[] buffer = new byte[Math.max(64, Math.min(raw.length + 16, 8192))];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void inflate(byte[] in, int offset, int length, byte[] raw, byte[] dictionary) {
+        // Raw deflate streams carry no dictionary request, so the dictionary is set up front
+        Inflater inflater = new Inflater(true);
+        try {
+            if (dictionary != null) {
+                inflater.setDictionary(dictionary);
+            }
+            inflater.setInput(in, offset, length);
+            int written = 0;
+            while (written < raw.length) {
+                int n = inflater.inflate(raw, written, raw.length - written);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    break;
+                }
+                written += n;
+            }
+            if (written != raw.length) {
+                throw new IllegalStateException("Truncated payload: " + written + " of " + raw.length + " bytes");
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt payload", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] lzf(byte[] raw) {
+        byte[] out = new byte[raw.length * 2 + 16];
+        int length = LZF.get().compress(raw, 0, raw.length, out, 0);
+        byte[] trimmed = new byte[length];
+        System.arraycopy(out, 0, trimmed, 0, length);
+        return trimmed;
+    }
+
+    /**
+     * Builds a deflate dictionary from sample records of one exam. Samples are taken evenly
+     * across the set until {@code maxBytes} is filled, so wording shared by the exam's questions
+     * and options (stems, units, option phrasing) is available to every row.
+     * @return the dictionary, or null if there is nothing to train on
+     */
+    public static byte[] trainDictionary(List<byte[]> samples, int maxBytes) {
+        long total = 0;
+        for (byte[] sample : samples) {
+            total += sample.length;
+        }
+        if (total == 0) {
+            return null;
+        }
+        int budget = (int) Math.min(total, Math.min(maxBytes, MAX_DICTIONARY_BYTES));
+        ByteArrayOutputStream dictionary = new ByteArrayOutputStream(budget);
+        // Take every step-th sample; deflate prefers the end of the dictionary, which holds the latest picks
+        int step = (int) Math.max(1, total / budget);
+        for (int i = 0; i < samples.size() && dictionary.size() < budget; i += step) {
+            byte[] sample = samples.get(i);
+            dictionary.write(sample, 0, Math.min(sample.length, budget - dictionary.size()));
+        }
+        return dictionary.toByteArray();
+    }
+
+    public long getRawBytes() { return rawBytes.get(); }
+    public long getStoredBytes() { return storedBytes.get(); }
+
+    /**
+     * @return stored bytes divided by raw bytes for everything compressed so far (1.0 before any)
+     */
+    public double getRatio() {
+        long raw = rawBytes.get();
+        return raw == 0 ? 1.0 : (double) storedBytes.get() / raw;
+    }
+}
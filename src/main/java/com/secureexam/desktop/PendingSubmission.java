@@ -0,0 +1,76 @@
+package com.secureexam.desktop;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * One unsynced submission read through a {@link PendingSubmissionCursor}.
+ * The answers payload is kept in its stored form and decoded on first access, so walking
+ * the cursor without touching answers costs only the keys.
+ */
+public class PendingSubmission {
+    private final String examId;
+    private final String studentId;
+    private Supplier<Map<Integer, String>> decoder;
+    private Supplier<AnswerSheet> sheetDecoder;
+    private Supplier<FinishedSubmission> finishedDecoder;
+    private Map<Integer, String> answers;
+    private AnswerSheet sheet;
+    private FinishedSubmission finished;
+
+    PendingSubmission(String examId, String studentId, Supplier<Map<Integer, String>> decoder,
+                      Supplier<AnswerSheet> sheetDecoder, Supplier<FinishedSubmission> finishedDecoder) {
+        this.examId = examId;
+        this.studentId = studentId;
+        this.decoder = decoder;
+        this.sheetDecoder = sheetDecoder;
+        this.finishedDecoder = finishedDecoder;
+    }
+
+    public String getExamId() { return examId; }
+    public String getStudentId() { return studentId; }
+
+    public synchronized Map<Integer, String> getAnswers() {
+        if (answers == null) {
+            answers = decoder.get();
+            decoder = null; // release the stored payload
+        }
+        return answers;
+    }
+
+    /**
+     * @return the submission's answer sheet in canonical order, or null if it was saved as answer text only
+     */
+    public synchronized AnswerSheet getAnswerSheet() {
+        if (sheetDecoder != null) {
+            sheet = sheetDecoder.get();
+            sheetDecoder = null;
+        }
+        return sheet;
+    }
+
+    /**
+     * @return the upload payload stored when the exam ended, or null if the exam is still in progress
+     */
+    public synchronized FinishedSubmission getFinished() {
+        if (finishedDecoder != null) {
+            finished = finishedDecoder.get();
+            finishedDecoder = null;
+        }
+        return finished;
+    }
+
+    /**
+     * @return the legacy {@link LocalCache#getPendingSubmissions()} shape, with string answer keys
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> stringKeyed = new HashMap<>();
+        getAnswers().forEach((index, answer) -> stringKeyed.put(String.valueOf(index), answer));
+        Map<String, Object> submission = new HashMap<>();
+        submission.put("examId", examId);
+        submission.put("studentId", studentId);
+        submission.put("answers", stringKeyed);
+        return submission;
+    }
+}
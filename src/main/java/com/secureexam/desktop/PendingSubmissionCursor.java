@@ -0,0 +1,121 @@
+package com.secureexam.desktop;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterates unsynced submissions in (examId, studentId) order one page at a time.
+ * Pages are fetched by key ("after the last row seen"), not by offset, so rows being marked
+ * as synced while the cursor is open never shift or repeat a page, and memory stays at one
+ * page regardless of how many submissions are pending. No connection is held between pages.
+ * <p>
+ * {@link #getHighWaterMark()} names the last submission returned; passing it to
+ * {@link LocalCache#openPendingSubmissions(String, int)} resumes right after it.
+ */
+public class PendingSubmissionCursor implements Iterator<PendingSubmission> {
+    private static final Logger LOGGER = Logger.getLogger(PendingSubmissionCursor.class.getName());
+    private static final char MARK_SEPARATOR = '\u0000';
+
+    @FunctionalInterface
+    interface PageLoader {
+        // Returns a mutable list of up to pageSize pending submissions strictly after the given key (null = from the start)
+        List<PendingSubmission> load(String afterExamId, String afterStudentId, int pageSize) throws SQLException;
+    }
+
+    private final PageLoader loader;
+    private final int pageSize;
+    private String lastLoadedExamId;
+    private String lastLoadedStudentId;
+    private List<PendingSubmission> page = List.of();
+    private int position;
+    private boolean exhausted;
+    private boolean failed;
+    private String highWaterMark;
+    private long returned;
+
+    PendingSubmissionCursor(String resumeAfter, int pageSize, PageLoader loader) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1");
+        }
+        this.loader = loader;
+        this.pageSize = pageSize;
+        this.highWaterMark = resumeAfter;
+        if (resumeAfter != null) {
+            int separator = resumeAfter.indexOf(MARK_SEPARATOR);
+            if (separator < 0) {
+                throw new IllegalArgumentException("Not a pending submission high-water mark: " + resumeAfter);
+            }
+            lastLoadedExamId = resumeAfter.substring(0, separator);
+            lastLoadedStudentId = resumeAfter.substring(separator + 1);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (position < page.size()) {
+            return true;
+        }
+        if (exhausted) {
+            return false;
+        }
+        try {
+            page = loader.load(lastLoadedExamId, lastLoadedStudentId, pageSize);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to read pending submissions after " + highWaterMark, e);
+            page = List.of();
+            failed = true;
+        }
+        position = 0;
+        exhausted = page.size() < pageSize;
+        if (!page.isEmpty()) {
+            PendingSubmission last = page.get(page.size() - 1);
+            lastLoadedExamId = last.getExamId();
+            lastLoadedStudentId = last.getStudentId();
+        }
+        return !page.isEmpty();
+    }
+
+    @Override
+    public PendingSubmission next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        PendingSubmission submission = page.get(position);
+        page.set(position++, null); // let consumed rows be collected before the page ends
+        highWaterMark = mark(submission.getExamId(), submission.getStudentId());
+        returned++;
+        return submission;
+    }
+
+    /**
+     * @return a sequential stream over the remaining submissions; it shares this cursor's position
+     */
+    public Stream<PendingSubmission> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+            Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * @return the key of the last submission returned (or the resume point if none yet), null at the very start
+     */
+    public String getHighWaterMark() { return highWaterMark; }
+
+    /**
+     * @return true if a page could not be read; the cursor then ends early
+     */
+    public boolean hasFailed() { return failed; }
+
+    public long getReturnedCount() { return returned; }
+
+    static String mark(String examId, String studentId) {
+        return examId + MARK_SEPARATOR + studentId;
+    }
+}
@@ -1,41 +1,142 @@
 package com.secureexam.desktop;
 
-import java.util.Arrays;
+/**
+ * An immutable multiple-choice question with exactly four options.
+ * Option strings are interned, so options repeated across a bank ("True", "None of the above")
+ * share one instance, and the correct option is kept as an index. A shuffled question
+ * ({@link #withOptionOrder}) shares the canonical options array and stores only a packed
+ * permutation, so displaying, shuffling and scoring never copy the options.
+ */
+public final class Question {
+    public static final int OPTION_COUNT = 4;
+    private static final byte IDENTITY_ORDER = (byte) 0xE4; // 0, 1, 2, 3 packed 2 bits each
 
-public class Question {
-    private String examId;
-    private String text;
-    private String[] options; // Always 4 options for MCQ
-    private String correctAnswer;
+    private final String examId;
+    private final String text;
+    private final String[] options; // canonical order; shared by every shuffled copy
+    private final byte order;       // display option -> canonical option, 2 bits per option
+    private final byte correctIndex; // display index of the correct option
 
     public Question(String examId, String text, String[] options, String correctAnswer) {
         if (examId == null || text == null || options == null || correctAnswer == null) {
             throw new IllegalArgumentException("All question fields must be non-null");
         }
-        if (options.length != 4) {
+        if (options.length != OPTION_COUNT) {
             throw new IllegalArgumentException("MCQ must have exactly 4 options");
         }
-        if (!Arrays.asList(options).contains(correctAnswer)) {
+        String[] interned = new String[OPTION_COUNT];
+        int correct = -1;
+        for (int i = 0; i < OPTION_COUNT; i++) {
+            if (options[i] == null) {
+                throw new IllegalArgumentException("All question fields must be non-null");
+            }
+            interned[i] = options[i].intern();
+            if (correct < 0 && options[i].equals(correctAnswer)) {
+                correct = i;
+            }
+        }
+        if (correct < 0) {
             throw new IllegalArgumentException("Correct answer must be one of the options");
         }
         this.examId = examId;
         this.text = text;
-        this.options = options.clone();
-        this.correctAnswer = correctAnswer;
+        this.options = interned;
+        this.order = IDENTITY_ORDER;
+        this.correctIndex = (byte) correct;
+    }
+
+    private Question(Question source, byte order, byte correctIndex) {
+        this.examId = source.examId;
+        this.text = source.text;
+        this.options = source.options;
+        this.order = order;
+        this.correctIndex = correctIndex;
     }
 
     public String getExamId() { return examId; }
     public String getText() { return text; }
-    public String[] getOptions() { return options.clone(); }
-    public String getCorrectAnswer() { return correctAnswer; }
 
-    public void setOptions(String[] options) {
-        if (options == null || options.length != 4) {
+    /**
+     * @return the option shown at {@code index}, without copying the options
+     */
+    public String getOption(int index) {
+        return options[canonicalIndex(index)];
+    }
+
+    /**
+     * @return a copy of the options in display order; prefer {@link #getOption(int)} on hot paths
+     */
+    public String[] getOptions() {
+        String[] copy = new String[OPTION_COUNT];
+        for (int i = 0; i < OPTION_COUNT; i++) {
+            copy[i] = getOption(i);
+        }
+        return copy;
+    }
+
+    public int getCorrectIndex() { return correctIndex; }
+    public String getCorrectAnswer() { return getOption(correctIndex); }
+
+    public boolean isCorrect(int optionIndex) {
+        return optionIndex == correctIndex;
+    }
+
+    /**
+     * @return the display index of the option with the given text, or -1 if it is not an option
+     */
+    public int indexOf(String option) {
+        if (option == null) {
+            return -1;
+        }
+        for (int i = 0; i < OPTION_COUNT; i++) {
+            String candidate = getOption(i);
+            if (candidate == option || candidate.equals(option)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int canonicalIndex(int index) {
+        return (order >> (index * 2)) & 0x3;
+    }
+
+    /**
+     * Shows this question's options in another order.
+     * @param packedOrder for each display option, 2 bits selecting which of this question's options is shown there
+     * @return a question sharing this one's text and options
+     */
+    public Question withOptionOrder(byte packedOrder) {
+        int seen = 0;
+        int composed = 0;
+        int correct = -1;
+        for (int i = 0; i < OPTION_COUNT; i++) {
+            int source = (packedOrder >> (i * 2)) & 0x3;
+            seen |= 1 << source;
+            composed |= canonicalIndex(source) << (i * 2);
+            if (source == correctIndex) {
+                correct = i;
+            }
+        }
+        if (seen != 0xF) {
+            throw new IllegalArgumentException("Option order must be a permutation of the four options");
+        }
+        return new Question(this, (byte) composed, (byte) correct);
+    }
+
+    /**
+     * @return a question with the same text and correct answer but different options
+     */
+    public Question withOptions(String[] newOptions) {
+        if (newOptions == null || newOptions.length != OPTION_COUNT) {
             throw new IllegalArgumentException("MCQ options must be non-null and exactly 4");
         }
-        if (!Arrays.asList(options).contains(correctAnswer)) {
-            throw new IllegalArgumentException("New options must include the correct answer");
+        String correctAnswer = getCorrectAnswer();
+        for (String option : newOptions) {
+            if (correctAnswer.equals(option)) {
+                return new Question(examId, text, newOptions, correctAnswer);
+            }
         }
-        this.options = options.clone();
+        throw new IllegalArgumentException("New options must include the correct answer");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,125 @@
+package com.secureexam.desktop;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process L1 cache of decoded question sets in front of the H2 cache.
+ * Entries are keyed by examId and only served while their content version matches the
+ * version stored in H2, so a re-cached exam is never served stale. The cache is bounded by
+ * an estimated byte size (least recently used entries are evicted first) and entries expire
+ * after a TTL. Cached lists are unmodifiable and shared; callers must not mutate the questions.
+ */
+public class QuestionCache {
+    // Rough per-object overheads used to estimate the retained size of a question set
+    private static final int QUESTION_OVERHEAD_BYTES = 96;
+    private static final int STRING_OVERHEAD_BYTES = 40;
+
+    private final long maxBytes;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long sizeBytes = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public QuestionCache(long maxBytes, long ttlMillis) {
+        this.maxBytes = maxBytes;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * @return the cached questions for this exam version, or null on a miss
+     */
+    public synchronized List<Question> get(String examId, long version) {
+        Entry entry = entries.get(examId);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (entry.version != version || System.currentTimeMillis() - entry.loadedAt > ttlMillis) {
+            remove(examId);
+            evictions.incrementAndGet();
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.questions;
+    }
+
+    /**
+     * Caches a decoded question set and returns the shared unmodifiable view that was stored.
+     * Sets larger than the whole cache are returned but not retained.
+     */
+    public synchronized List<Question> put(String examId, long version, List<Question> questions) {
+        List<Question> frozen = List.copyOf(questions);
+        long bytes = estimateBytes(frozen);
+        remove(examId);
+        if (bytes > maxBytes) {
+            return frozen;
+        }
+        entries.put(examId, new Entry(version, frozen, bytes, System.currentTimeMillis()));
+        sizeBytes += bytes;
+
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (sizeBytes > maxBytes && eldest.hasNext()) {
+            Entry evicted = eldest.next().getValue();
+            eldest.remove();
+            sizeBytes -= evicted.bytes;
+            evictions.incrementAndGet();
+        }
+        return frozen;
+    }
+
+    public synchronized void invalidate(String examId) {
+        remove(examId);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        sizeBytes = 0;
+    }
+
+    private void remove(String examId) {
+        Entry removed = entries.remove(examId);
+        if (removed != null) {
+            sizeBytes -= removed.bytes;
+        }
+    }
+
+    static long estimateBytes(List<Question> questions) {
+        long bytes = 0;
+        for (Question q : questions) {
+            bytes += QUESTION_OVERHEAD_BYTES + STRING_OVERHEAD_BYTES + 2L * q.getText().length();
+            for (int i = 0; i < Question.OPTION_COUNT; i++) {
+                String option = q.getOption(i);
+                bytes += STRING_OVERHEAD_BYTES + 2L * option.length();
+            }
+        }
+        return bytes;
+    }
+
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+    public long getEvictions() { return evictions.get(); }
+    public synchronized long getSizeBytes() { return sizeBytes; }
+    public synchronized int getEntryCount() { return entries.size(); }
+
+    private static class Entry {
+        private final long version;
+        private final List<Question> questions;
+        private final long bytes;
+        private final long loadedAt;
+
+        Entry(long version, List<Question> questions, long bytes, long loadedAt) {
+            this.version = version;
+            this.questions = questions;
+            this.bytes = bytes;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
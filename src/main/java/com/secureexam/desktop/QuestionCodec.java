@@ -0,0 +1,215 @@
+package com.secureexam.desktop;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary encodings used by the local question cache.
+ * Options are stored as a count followed by length-prefixed UTF-8 strings, so option
+ * text may contain any character (commas included). Lengths and counts are unsigned varints.
+ */
+public final class QuestionCodec {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private QuestionCodec() {
+    }
+
+    /**
+     * 64-bit FNV-1a hash of a question's text, options and correct answer.
+     */
+    public static long contentHash(Question question) {
+        long hash = FNV_OFFSET;
+        hash = hashString(hash, question.getText());
+        for (int i = 0; i < Question.OPTION_COUNT; i++) {
+            String option = question.getOption(i);
+            hash = hashString(hash, option);
+        }
+        return hashString(hash, question.getCorrectAnswer());
+    }
+
+    /**
+     * Order-sensitive content version of a whole question set.
+     */
+    public static long contentHash(List<Question> questions) {
+        long hash = FNV_OFFSET;
+        for (Question question : questions) {
+            hash = hashLong(hash, contentHash(question));
+        }
+        return hashLong(hash, questions.size());
+    }
+
+    /**
+     * {@link #contentHash(List)} computed from the questions' own hashes (a manifest's, say) without the questions.
+     */
+    public static long contentHash(long[] questionHashes) {
+        long hash = FNV_OFFSET;
+        for (long questionHash : questionHashes) {
+            hash = hashLong(hash, questionHash);
+        }
+        return hashLong(hash, questionHashes.length);
+    }
+
+    private static long hashString(long hash, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            hash = (hash ^ (c & 0xFF)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        // Separator so ("ab", "c") and ("a", "bc") hash differently
+        return (hash ^ 0xFF) * FNV_PRIME;
+    }
+
+    private static long hashLong(long hash, long value) {
+        for (int i = 0; i < 8; i++) {
+            hash = (hash ^ (value & 0xFF)) * FNV_PRIME;
+            value >>>= 8;
+        }
+        return hash;
+    }
+
+    public static byte[] encodeOptions(String[] options) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 * options.length);
+        writeVarint(out, options.length);
+        for (String option : options) {
+            writeString(out, option);
+        }
+        return out.toByteArray();
+    }
+
+    public static String[] decodeOptions(byte[] encoded) {
+        return decodeOptions(ByteBuffer.wrap(encoded));
+    }
+
+    private static String[] decodeOptions(ByteBuffer in) {
+        String[] options = new String[readVarint(in)];
+        for (int i = 0; i < options.length; i++) {
+            options[i] = readString(in);
+        }
+        return options;
+    }
+
+    /**
+     * Encodes one question's text, options and the index of the correct option.
+     */
+    public static byte[] encodeQuestion(Question question) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(question.getText().length() + 64);
+        writeString(out, question.getText());
+        writeVarint(out, Question.OPTION_COUNT);
+        for (int i = 0; i < Question.OPTION_COUNT; i++) {
+            writeString(out, question.getOption(i));
+        }
+        out.write(question.getCorrectIndex());
+        return out.toByteArray();
+    }
+
+    public static Question decodeQuestion(String examId, byte[] encoded) {
+        ByteBuffer in = ByteBuffer.wrap(encoded);
+        String text = readString(in);
+        String[] options = decodeOptions(in);
+        return new Question(examId, text, options, options[in.get()]);
+    }
+
+    /**
+     * Encodes a whole question set as one record: the content version, the question count,
+     * then per question its text, options and the index of the correct option.
+     */
+    public static byte[] encodeQuestions(long version, List<Question> questions) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * questions.size() + 16);
+        writeLong(out, version);
+        writeVarint(out, questions.size());
+        for (Question q : questions) {
+            writeString(out, q.getText());
+            writeVarint(out, Question.OPTION_COUNT);
+            for (int i = 0; i < Question.OPTION_COUNT; i++) {
+                writeString(out, q.getOption(i));
+            }
+            out.write(q.getCorrectIndex());
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @return the content version stored in a record written by {@link #encodeQuestions}
+     */
+    public static long questionsVersion(byte[] encoded) {
+        return ByteBuffer.wrap(encoded).getLong();
+    }
+
+    /**
+     * {@link #encodeQuestions} from questions already in {@link #encodeQuestion} form, without decoding them.
+     */
+    public static byte[] encodeQuestionRecords(long version, List<byte[]> records) {
+        int size = 16;
+        for (byte[] record : records) {
+            size += record.length;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+        writeLong(out, version);
+        writeVarint(out, records.size());
+        for (byte[] record : records) {
+            out.write(record, 0, record.length);
+        }
+        return out.toByteArray();
+    }
+
+    public static List<Question> decodeQuestions(String examId, byte[] encoded) {
+        ByteBuffer in = ByteBuffer.wrap(encoded);
+        in.getLong();
+        int count = readVarint(in);
+        List<Question> questions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String text = readString(in);
+            String[] options = decodeOptions(in);
+            questions.add(new Question(examId, text, options, options[in.get()]));
+        }
+        return questions;
+    }
+
+    public static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    // Expects a buffer created by ByteBuffer.wrap, so array offsets equal positions
+    public static String readString(ByteBuffer in) {
+        int length = readVarint(in);
+        String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    public static void writeLong(ByteArrayOutputStream out, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift));
+        }
+    }
+
+    public static void writeVarint(ByteArrayOutputStream out, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Varint must not be negative: " + value);
+        }
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    public static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+}
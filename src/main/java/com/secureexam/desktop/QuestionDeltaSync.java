@@ -0,0 +1,139 @@
+package com.secureexam.desktop;
+
+import com.google.firebase.cloud.FirestoreClient;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Brings an exam's cached questions up to date from its {@link ExamManifest}. The manifest is
+ * compared with the hashes of the cached questions; only questions whose hash is not already
+ * cached are downloaded, and {@link LocalCache#patchQuestions} rewrites only the rows that
+ * changed. Fixing a typo in one question therefore costs one question document and one row.
+ */
+public class QuestionDeltaSync {
+    private static final Logger LOGGER = Logger.getLogger(QuestionDeltaSync.class.getName());
+
+    /**
+     * Where manifests and hash-addressed questions come from.
+     */
+    public interface Remote {
+        /** @return the exam's manifest, or null if it has none */
+        ExamManifest fetchManifest(String examId) throws Exception;
+
+        /** @return the questions found for the hashes, keyed by hash */
+        Map<String, Question> fetchQuestions(String examId, List<String> hashes) throws Exception;
+    }
+
+    private final Remote remote;
+    private volatile int lastQuestionsFetched;
+    private volatile int lastRowsWritten;
+    private volatile long lastBytesFetched;
+
+    public QuestionDeltaSync(Remote remote) {
+        this.remote = remote;
+    }
+
+    public static QuestionDeltaSync toFirestore() {
+        return new QuestionDeltaSync(new Remote() {
+            @Override
+            public ExamManifest fetchManifest(String examId) throws Exception {
+                return ExamManifest.fetch(FirestoreClient.getFirestore(), examId);
+            }
+
+            @Override
+            public Map<String, Question> fetchQuestions(String examId, List<String> hashes) throws Exception {
+                return ExamManifest.fetchQuestions(FirestoreClient.getFirestore(), examId, hashes);
+            }
+        });
+    }
+
+    public int getLastQuestionsFetched() { return lastQuestionsFetched; }
+    public int getLastRowsWritten() { return lastRowsWritten; }
+
+    /**
+     * @return approximate payload bytes downloaded by the last sync: manifest hashes plus question text
+     */
+    public long getLastBytesFetched() { return lastBytesFetched; }
+
+    /**
+     * @return the exam's questions in canonical order, or null if the exam has no manifest or the
+     * sync failed, in which case the caller downloads the whole exam instead
+     */
+    public List<Question> sync(String examId) {
+        try {
+            ExamManifest manifest = remote.fetchManifest(examId);
+            if (manifest == null) {
+                return null;
+            }
+            List<String> wanted = manifest.getHashes();
+            long bytes = 17L * wanted.size();
+
+            List<Question> cached = LocalCache.getQuestions(examId);
+            Map<String, Question> byHash = new HashMap<>();
+            List<String> cachedHashes = ExamManifest.hashesOf(cached);
+            for (int i = 0; i < cached.size(); i++) {
+                byHash.put(cachedHashes.get(i), cached.get(i));
+            }
+            if (cachedHashes.equals(wanted)) {
+                record(0, 0, bytes);
+                LOGGER.info("Cached questions match manifest v" + manifest.getVersion() + " for examId: " + examId);
+                return cached;
+            }
+
+            Set<String> missing = new LinkedHashSet<>();
+            for (String hash : wanted) {
+                if (!byHash.containsKey(hash)) {
+                    missing.add(hash);
+                }
+            }
+            if (!missing.isEmpty()) {
+                Map<String, Question> fetched = remote.fetchQuestions(examId, new ArrayList<>(missing));
+                if (!fetched.keySet().containsAll(missing)) {
+                    Set<String> absent = new HashSet<>(missing);
+                    absent.removeAll(fetched.keySet());
+                    LOGGER.warning("Manifest of examId: " + examId + " references " + absent.size() + " unavailable questions");
+                    return null;
+                }
+                for (Question question : fetched.values()) {
+                    bytes += question.getText().getBytes(StandardCharsets.UTF_8).length;
+                    for (int i = 0; i < Question.OPTION_COUNT; i++) {
+                        String option = question.getOption(i);
+                        bytes += option.getBytes(StandardCharsets.UTF_8).length;
+                    }
+                }
+                byHash.putAll(fetched);
+            }
+
+            List<Question> questions = new ArrayList<>(wanted.size());
+            for (String hash : wanted) {
+                questions.add(byHash.get(hash));
+            }
+            QuestionPatch patch = LocalCache.patchQuestions(examId, questions);
+            if (patch == null) {
+                return null;
+            }
+            record(missing.size(), patch.getRowsWritten(), bytes);
+            LOGGER.info("Synced examId: " + examId + " to manifest v" + manifest.getVersion() + ": fetched "
+                + missing.size() + " of " + wanted.size() + " questions, " + patch);
+            return LocalCache.getQuestions(examId);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Delta sync failed for examId: " + examId, e);
+            return null;
+        }
+    }
+
+    private void record(int questionsFetched, int rowsWritten, long bytesFetched) {
+        lastQuestionsFetched = questionsFetched;
+        lastRowsWritten = rowsWritten;
+        lastBytesFetched = bytesFetched;
+    }
+}
@@ -0,0 +1,237 @@
+package com.secureexam.desktop;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * One student's view of an exam: the order in which canonical questions are shown
+ * and, for each shown question, the order of its four options.
+ * <p>
+ * Layouts are normally {@linkplain #derive derived} from (examId, studentId, seed), so the client,
+ * the instructor tools or a grader can regenerate any student's view on demand and nothing
+ * per student has to be stored or transferred. {@link #shuffle} draws an unreproducible layout,
+ * which then has to be stored ({@link #encode()}) to be shown again.
+ */
+public class QuestionOrder {
+    private static final int OPTIONS = 4;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final byte[] OPTION_PERMUTATIONS = optionPermutations(); // all 24 packed orders of 4 options
+
+    private final int[] questionOrder;  // display position -> canonical ordinal
+    private final byte[] optionOrders;  // display position -> packed option permutation, 2 bits per option
+    private final boolean derived;
+    private final long seed;
+
+    public QuestionOrder(int[] questionOrder, byte[] optionOrders) {
+        this(questionOrder.clone(), optionOrders.clone(), false, 0);
+        if (questionOrder.length != optionOrders.length) {
+            throw new IllegalArgumentException("Question and option orders must have the same length");
+        }
+    }
+
+    private QuestionOrder(int[] questionOrder, byte[] optionOrders, boolean derived, long seed) {
+        this.questionOrder = questionOrder;
+        this.optionOrders = optionOrders;
+        this.derived = derived;
+        this.seed = seed;
+    }
+
+    /**
+     * The layout of the student's exam as seeded by its canonical questions: the seed is their
+     * {@link QuestionCodec#contentHash}, so a student keeps the same layout for as long as the exam
+     * is unchanged, and anyone holding the exam can regenerate it.
+     */
+    public static QuestionOrder forStudent(String examId, String studentId, List<Question> canonical) {
+        return forStudent(examId, studentId, QuestionCodec.contentHash(canonical), canonical.size());
+    }
+
+    /**
+     * {@link #forStudent(String, String, List)} for a question set whose content version is already known,
+     * such as a bundle's or the cache's, so the questions need not be read and hashed again.
+     */
+    public static QuestionOrder forStudent(String examId, String studentId, long contentVersion, int questionCount) {
+        return derive(examId, studentId, contentVersion, questionCount);
+    }
+
+    /**
+     * Derives a student's layout from (examId, studentId, seed) alone. The same inputs give the same
+     * layout on every machine and JVM; different students (or seeds) get independent layouts.
+     */
+    public static QuestionOrder derive(String examId, String studentId, long seed, int questionCount) {
+        int[] order = new int[questionCount];
+        byte[] optionOrders = new byte[questionCount];
+        derive(examId, studentId, seed, order, optionOrders);
+        return new QuestionOrder(order, optionOrders, true, seed);
+    }
+
+    /**
+     * Allocation-free form of {@link #derive(String, String, long, int)} for tools that lay out many
+     * students in a row: fills the caller's arrays, which must have the same length.
+     * <p>
+     * A SplitMix64 stream keyed by the inputs drives a Fisher-Yates shuffle of the questions, then
+     * picks each option order from the 24 permutations of four options. Bounded draws use the high
+     * 32 bits of each output multiplied by the bound, whose bias (below bound / 2^32) is far under
+     * anything a layout could show.
+     */
+    public static void derive(String examId, String studentId, long seed, int[] questionOrder, byte[] optionOrders) {
+        if (questionOrder.length != optionOrders.length) {
+            throw new IllegalArgumentException("Question and option orders must have the same length");
+        }
+        long state = mix64(studentKey(examId, studentId) ^ mix64(seed));
+
+        for (int i = 0; i < questionOrder.length; i++) {
+            questionOrder[i] = i;
+        }
+        for (int i = questionOrder.length - 1; i > 0; i--) {
+            state += GOLDEN_GAMMA;
+            int j = (int) (((mix64(state) >>> 32) * (i + 1)) >>> 32);
+            int tmp = questionOrder[i];
+            questionOrder[i] = questionOrder[j];
+            questionOrder[j] = tmp;
+        }
+        for (int i = 0; i < optionOrders.length; i++) {
+            state += GOLDEN_GAMMA;
+            optionOrders[i] = OPTION_PERMUTATIONS[(int) (((mix64(state) >>> 32) * OPTION_PERMUTATIONS.length) >>> 32)];
+        }
+    }
+
+    /**
+     * FNV-1a over examId, a separator and studentId: a stable per-student key for deterministic choices.
+     */
+    static long studentKey(String examId, String studentId) {
+        long key = 0xcbf29ce484222325L;
+        for (int i = 0; i < examId.length(); i++) {
+            key = (key ^ examId.charAt(i)) * 0x100000001b3L;
+        }
+        key *= 0x100000001b3L;
+        for (int i = 0; i < studentId.length(); i++) {
+            key = (key ^ studentId.charAt(i)) * 0x100000001b3L;
+        }
+        return key;
+    }
+
+    // SplitMix64 finalizer
+    static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static byte[] optionPermutations() {
+        byte[] permutations = new byte[24];
+        int count = 0;
+        for (int packed = 0; packed < 256; packed++) {
+            int seen = 0;
+            for (int j = 0; j < OPTIONS; j++) {
+                seen |= 1 << ((packed >> (j * 2)) & 0x3);
+            }
+            if (seen == 0xF) {
+                permutations[count++] = (byte) packed;
+            }
+        }
+        return permutations;
+    }
+
+    /**
+     * Draws a uniformly random layout for an exam with the given number of questions.
+     */
+    public static QuestionOrder shuffle(int questionCount, Random random) {
+        int[] order = new int[questionCount];
+        for (int i = 0; i < questionCount; i++) {
+            order[i] = i;
+        }
+        shuffleInPlace(order, random);
+
+        byte[] optionOrders = new byte[questionCount];
+        int[] perm = new int[OPTIONS];
+        for (int i = 0; i < questionCount; i++) {
+            for (int j = 0; j < OPTIONS; j++) {
+                perm[j] = j;
+            }
+            shuffleInPlace(perm, random);
+            optionOrders[i] = pack(perm);
+        }
+        return new QuestionOrder(order, optionOrders);
+    }
+
+    private static void shuffleInPlace(int[] values, Random random) {
+        for (int i = values.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = values[i];
+            values[i] = values[j];
+            values[j] = tmp;
+        }
+    }
+
+    private static byte pack(int[] perm) {
+        return (byte) (perm[0] | perm[1] << 2 | perm[2] << 4 | perm[3] << 6);
+    }
+
+    public int size() { return questionOrder.length; }
+
+    /**
+     * @return whether this layout came from {@link #derive}, in which case it can be regenerated from its seed
+     */
+    public boolean isDerived() { return derived; }
+
+    /**
+     * @return the seed the layout was derived from; only meaningful if {@link #isDerived()}
+     */
+    public long getSeed() { return seed; }
+
+    public int canonicalOrdinal(int displayIndex) { return questionOrder[displayIndex]; }
+
+    /**
+     * @return the canonical option index shown at {@code displayOption} of the question at {@code displayIndex}
+     */
+    public int canonicalOption(int displayIndex, int displayOption) {
+        return (optionOrders[displayIndex] >> (displayOption * 2)) & 0x3;
+    }
+
+    /**
+     * @return the packed option permutation of the question at {@code displayIndex}, as taken by
+     * {@link Question#withOptionOrder}
+     */
+    public byte optionOrder(int displayIndex) { return optionOrders[displayIndex]; }
+
+    /**
+     * Builds the student's shuffled question list from the canonical (cached) order.
+     * The shuffled questions share the canonical questions' options.
+     */
+    public List<Question> apply(List<Question> canonical) {
+        if (canonical.size() != questionOrder.length) {
+            throw new IllegalArgumentException("Order covers " + questionOrder.length
+                + " questions but the exam has " + canonical.size());
+        }
+        List<Question> shuffled = new ArrayList<>(canonical.size());
+        for (int i = 0; i < questionOrder.length; i++) {
+            shuffled.add(canonical.get(questionOrder[i]).withOptionOrder(optionOrders[i]));
+        }
+        return shuffled;
+    }
+
+    public byte[] encode() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(questionOrder.length * 3 + 4);
+        QuestionCodec.writeVarint(out, questionOrder.length);
+        for (int ordinal : questionOrder) {
+            QuestionCodec.writeVarint(out, ordinal);
+        }
+        out.write(optionOrders, 0, optionOrders.length);
+        return out.toByteArray();
+    }
+
+    public static QuestionOrder decode(byte[] encoded) {
+        ByteBuffer in = ByteBuffer.wrap(encoded);
+        int count = QuestionCodec.readVarint(in);
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = QuestionCodec.readVarint(in);
+        }
+        byte[] optionOrders = new byte[count];
+        in.get(optionOrders);
+        return new QuestionOrder(order, optionOrders);
+    }
+}
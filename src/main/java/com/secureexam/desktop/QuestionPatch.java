@@ -0,0 +1,28 @@
+package com.secureexam.desktop;
+
+/**
+ * Outcome of {@link LocalCache#patchQuestions}: the question rows written, and whether the exam
+ * was rewritten in full rather than patched row by row.
+ */
+public class QuestionPatch {
+    private final int rowsWritten;
+    private final boolean fullRewrite;
+
+    QuestionPatch(int rowsWritten, boolean fullRewrite) {
+        this.rowsWritten = rowsWritten;
+        this.fullRewrite = fullRewrite;
+    }
+
+    public int getRowsWritten() { return rowsWritten; }
+
+    /**
+     * @return true if every row was written, because the exam was not cached, is held by the
+     *         key-value engine, or changed while it was being patched
+     */
+    public boolean isFullRewrite() { return fullRewrite; }
+
+    @Override
+    public String toString() {
+        return fullRewrite ? "rewrote all " + rowsWritten + " rows" : "rewrote " + rowsWritten + " rows";
+    }
+}
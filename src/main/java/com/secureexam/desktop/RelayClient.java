@@ -0,0 +1,136 @@
+package com.secureexam.desktop;
+
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.net.Proxy;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Student side of the {@link RelayServer}. Every call returns null when no relay is configured
+ * or it cannot answer, and the caller falls back to Firestore. Bundles are accepted only when
+ * signed by a key in {@code bundle.trustedKeys}, so a rogue relay on the LAN cannot hand out
+ * its own questions. The relay is contacted directly, bypassing the exam lockdown proxy.
+ */
+public class RelayClient {
+    private static final Logger LOGGER = Logger.getLogger(RelayClient.class.getName());
+    private static final MediaType TEXT = MediaType.get("text/plain; charset=utf-8");
+    private static RelayClient shared;
+
+    private final HttpUrl baseUrl;
+    private final List<PublicKey> trustedKeys;
+    private final OkHttpClient client;
+
+    /**
+     * @param baseUrl the relay, e.g. {@code http://192.168.1.10:8765}, or null/empty to disable it
+     */
+    public RelayClient(String baseUrl, List<PublicKey> trustedKeys) {
+        this.baseUrl = baseUrl == null || baseUrl.isEmpty() ? null : HttpUrl.parse(baseUrl);
+        if (baseUrl != null && !baseUrl.isEmpty() && this.baseUrl == null) {
+            LOGGER.warning("Ignoring malformed relay URL: " + baseUrl);
+        }
+        this.trustedKeys = trustedKeys;
+        this.client = new OkHttpClient.Builder()
+            .proxy(Proxy.NO_PROXY)
+            .connectTimeout(2, TimeUnit.SECONDS)
+            .readTimeout(10, TimeUnit.SECONDS)
+            .build();
+    }
+
+    public static synchronized RelayClient shared() {
+        if (shared == null) {
+            shared = new RelayClient(ConfigLoader.getRelayUrl(), ExamBundle.trustedKeysFromConfig());
+        }
+        return shared;
+    }
+
+    public boolean isEnabled() {
+        return baseUrl != null;
+    }
+
+    /**
+     * Checks an exam code with the relay.
+     * @return whether the code is valid, or null if the relay could not say
+     */
+    public Boolean validateCode(String examId, String code) {
+        if (!isEnabled()) {
+            return null;
+        }
+        Request request = new Request.Builder().url(examUrl(examId, "validate")).post(RequestBody.create(code, TEXT)).build();
+        try (Response response = client.newCall(request).execute()) {
+            if (response.code() == 204) {
+                return true;
+            }
+            if (response.code() == 403) {
+                return false;
+            }
+            if (response.code() == 429) {
+                // Falling back to Firestore would only sidestep the relay's limit on wrong codes
+                LOGGER.warning("Relay refused code validation for examId: " + examId + " after too many wrong codes");
+                return false;
+            }
+            LOGGER.warning("Relay could not validate examId: " + examId + " (HTTP " + response.code() + ")");
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Relay unreachable for code validation", e);
+        }
+        return null;
+    }
+
+    /**
+     * Brings the exam's cached questions up to date from the relay. The relay only hands out the
+     * bundle for the exam code; a conditional request against the cached content version means an
+     * unchanged exam costs one empty 304 reply.
+     * @return the exam's questions in canonical order, or null if the relay could not provide them
+     */
+    public List<Question> fetchQuestions(String examId, String code) {
+        if (!isEnabled() || code == null) {
+            return null;
+        }
+        Request.Builder request = new Request.Builder().url(examUrl(examId, "bundle")).post(RequestBody.create(code, TEXT));
+        Long cachedVersion = LocalCache.getQuestionsVersion(examId);
+        if (cachedVersion != null) {
+            request.header("If-None-Match", RelayServer.etagFor(cachedVersion));
+        }
+        try (Response response = client.newCall(request.build()).execute()) {
+            if (response.code() == 304) {
+                LOGGER.info("Relay confirmed cached questions are current for examId: " + examId);
+                return LocalCache.getQuestions(examId);
+            }
+            if (response.code() == 403 || response.code() == 429) {
+                LOGGER.warning("Relay refused the exam code for examId: " + examId + " (HTTP " + response.code() + ")");
+                return null;
+            }
+            if (response.code() != 200 || response.body() == null) {
+                LOGGER.warning("Relay has no bundle for examId: " + examId + " (HTTP " + response.code() + ")");
+                return null;
+            }
+            ExamBundle bundle = ExamBundle.fromBytes(response.body().bytes(), "relay " + baseUrl, trustedKeys);
+            if (!examId.equals(bundle.getExamId())) {
+                LOGGER.warning("Relay returned a bundle for examId: " + bundle.getExamId() + " instead of " + examId);
+                return null;
+            }
+            List<Question> questions = new ArrayList<>(bundle.asList());
+            LocalCache.saveQuestions(examId, questions);
+            LOGGER.info("Loaded " + questions.size() + " questions from relay for examId: " + examId);
+            return questions;
+        } catch (IOException | GeneralSecurityException | IllegalStateException e) {
+            LOGGER.log(Level.WARNING, "Relay bundle unusable for examId: " + examId, e);
+            return null;
+        }
+    }
+
+    private HttpUrl examUrl(String examId, String action) {
+        return baseUrl.newBuilder().addPathSegment("exams").addPathSegment(examId).addPathSegment(action).build();
+    }
+}
@@ -0,0 +1,326 @@
+package com.secureexam.desktop;
+
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.firebase.cloud.FirestoreClient;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Exam relay for the proctor machine. Instead of every student in the room reading
+ * {@code exams/{examId}} from Firestore at the start of an exam, clients ask this server,
+ * which fetches each exam once, keeps it for {@code cacheMillis} and serves:
+ * <ul>
+ *   <li>{@code POST /exams/{examId}/bundle}: the questions as a signed {@link ExamBundle}, for the
+ *   exam code in the request body, with an ETag of the content version so a client that already
+ *   has them gets 304 Not Modified;</li>
+ *   <li>{@code POST /exams/{examId}/validate}: checks the exam code in the request body,
+ *   answering 204 if it matches.</li>
+ * </ul>
+ * A wrong code is answered 403. The bundle holds the answer key, so it is never served without
+ * the code. A client that sends {@value #MAX_FAILED_CODES} wrong codes within a minute is answered
+ * 429 with a Retry-After until the minute is over, so codes cannot be guessed at LAN speed.
+ * Concurrent requests for an exam that is not cached yet wait on the same fetch.
+ */
+public class RelayServer {
+    private static final Logger LOGGER = Logger.getLogger(RelayServer.class.getName());
+    private static final String PREFIX = "/exams/";
+    static final int MAX_FAILED_CODES = 5;
+    private static final long FAILED_CODE_WINDOW_MILLIS = 60_000;
+
+    /**
+     * One exam as the relay serves it.
+     */
+    public static final class SourceExam {
+        private final String code;
+        private final Map<String, String> metadata;
+        private final List<Question> questions;
+
+        public SourceExam(String code, Map<String, String> metadata, List<Question> questions) {
+            this.code = code;
+            this.metadata = metadata;
+            this.questions = questions;
+        }
+    }
+
+    /**
+     * Loads an exam from the source of truth; returns null if it does not exist.
+     */
+    @FunctionalInterface
+    public interface ExamSource {
+        SourceExam fetch(String examId) throws Exception;
+    }
+
+    private static final class CachedExam {
+        final String code;
+        final byte[] bundle;
+        final String etag;
+        final long fetchedAt = System.currentTimeMillis();
+
+        CachedExam(String code, byte[] bundle, long version) {
+            this.code = code;
+            this.bundle = bundle;
+            this.etag = etagFor(version);
+        }
+    }
+
+    // Wrong codes one client sent in the window starting at windowStart
+    private static final class FailedCodes {
+        final long windowStart;
+        final int count;
+
+        FailedCodes(long windowStart, int count) {
+            this.windowStart = windowStart;
+            this.count = count;
+        }
+    }
+
+    private final ExamSource source;
+    private final KeyPair signingKey;
+    private final long cacheMillis;
+    private final Map<String, CompletableFuture<CachedExam>> exams = new ConcurrentHashMap<>();
+    private final AtomicInteger sourceFetches = new AtomicInteger();
+    private final AtomicInteger bundlesServed = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+    private final AtomicInteger rateLimited = new AtomicInteger();
+    private final Map<String, FailedCodes> failedCodes = new ConcurrentHashMap<>();
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public RelayServer(ExamSource source, KeyPair signingKey, long cacheMillis) {
+        this.source = source;
+        this.signingKey = signingKey;
+        this.cacheMillis = cacheMillis;
+    }
+
+    /**
+     * Reads exams from Firestore and signs bundles with the instructor's bundle key.
+     */
+    public static RelayServer fromConfig() throws Exception {
+        return new RelayServer(examId -> {
+            DocumentSnapshot examDoc = FirestoreClient.getFirestore().collection("exams").document(examId).get().get();
+            if (!examDoc.exists()) {
+                return null;
+            }
+            Map<String, String> metadata = new LinkedHashMap<>();
+            metadata.put("name", examDoc.getString("name"));
+            return new SourceExam(examDoc.getString("code"), metadata,
+                ExamManifest.readAll(FirestoreClient.getFirestore(), examId));
+        }, ExamBundle.loadOrCreateSigningKey(), ConfigLoader.getRelayCacheMillis());
+    }
+
+    static String etagFor(long version) {
+        return "\"" + Long.toHexString(version) + "\"";
+    }
+
+    /**
+     * @param port the port to listen on, or 0 for any free port (see {@link #getPort()})
+     */
+    public synchronized void start(int port, int threads) throws IOException {
+        if (server != null) {
+            return;
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "exam-relay-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(new InetSocketAddress(port), 128);
+        server.createContext(PREFIX, this::handle);
+        server.setExecutor(executor);
+        server.start();
+        LOGGER.info("Exam relay listening on port " + getPort() + " with " + threads + " threads");
+    }
+
+    public synchronized int getPort() {
+        return server != null ? server.getAddress().getPort() : -1;
+    }
+
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        server.stop(1);
+        executor.shutdown();
+        server = null;
+        LOGGER.info("Exam relay stopped after " + sourceFetches.get() + " source fetches, " + bundlesServed.get()
+            + " bundles served, " + notModified.get() + " not-modified replies and " + rateLimited.get()
+            + " rate-limited code checks");
+    }
+
+    public int getSourceFetches() { return sourceFetches.get(); }
+    public int getBundlesServed() { return bundlesServed.get(); }
+    public int getNotModified() { return notModified.get(); }
+    public int getRateLimited() { return rateLimited.get(); }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getRawPath().substring(PREFIX.length());
+            int slash = path.lastIndexOf('/');
+            if (slash <= 0) {
+                reply(exchange, 404, null);
+                return;
+            }
+            String examId = URLDecoder.decode(path.substring(0, slash), StandardCharsets.UTF_8);
+            String action = path.substring(slash + 1);
+            if ("bundle".equals(action) && "POST".equals(exchange.getRequestMethod())) {
+                serveBundle(exchange, examId);
+            } else if ("validate".equals(action) && "POST".equals(exchange.getRequestMethod())) {
+                validate(exchange, examId);
+            } else {
+                reply(exchange, 404, null);
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Relay request failed: " + exchange.getRequestURI(), e);
+            reply(exchange, 502, null);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void serveBundle(HttpExchange exchange, String examId) throws Exception {
+        CachedExam exam = authorize(exchange, examId);
+        if (exam == null) {
+            return;
+        }
+        exchange.getResponseHeaders().set("ETag", exam.etag);
+        if (exam.etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            notModified.incrementAndGet();
+            reply(exchange, 304, null);
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+        bundlesServed.incrementAndGet();
+        reply(exchange, 200, exam.bundle);
+    }
+
+    private void validate(HttpExchange exchange, String examId) throws Exception {
+        if (authorize(exchange, examId) != null) {
+            reply(exchange, 204, null);
+        }
+    }
+
+    // Checks the exam code in the request body; replies itself and returns null if the request may not go on
+    private CachedExam authorize(HttpExchange exchange, String examId) throws Exception {
+        String client = exchange.getRemoteAddress().getAddress().getHostAddress();
+        long lockedOut = lockedOutMillis(client);
+        if (lockedOut > 0) {
+            rateLimited.incrementAndGet();
+            exchange.getResponseHeaders().set("Retry-After", Long.toString((lockedOut + 999) / 1000));
+            reply(exchange, 429, null);
+            return null;
+        }
+        String code;
+        try (InputStream body = exchange.getRequestBody()) {
+            code = new String(body.readNBytes(1024), StandardCharsets.UTF_8).trim();
+        }
+        CachedExam exam = exam(examId);
+        if (exam == null) {
+            reply(exchange, 404, null);
+            return null;
+        }
+        boolean valid = exam.code != null && MessageDigest.isEqual(exam.code.getBytes(StandardCharsets.UTF_8),
+            code.getBytes(StandardCharsets.UTF_8));
+        if (!valid) {
+            recordFailedCode(client);
+            reply(exchange, 403, null);
+            return null;
+        }
+        return exam;
+    }
+
+    // How long the client must wait before its next code check, 0 if it may try now
+    private long lockedOutMillis(String client) {
+        FailedCodes failed = failedCodes.get(client);
+        if (failed == null || failed.count < MAX_FAILED_CODES) {
+            return 0;
+        }
+        return Math.max(0, failed.windowStart + FAILED_CODE_WINDOW_MILLIS - System.currentTimeMillis());
+    }
+
+    private void recordFailedCode(String client) {
+        long now = System.currentTimeMillis();
+        failedCodes.compute(client, (c, failed) -> failed == null || now - failed.windowStart >= FAILED_CODE_WINDOW_MILLIS
+            ? new FailedCodes(now, 1) : new FailedCodes(failed.windowStart, failed.count + 1));
+        if (failedCodes.size() > 1024) {
+            failedCodes.values().removeIf(failed -> now - failed.windowStart >= FAILED_CODE_WINDOW_MILLIS);
+        }
+    }
+
+    // One fetch per exam per cache period, however many clients ask at once
+    private CachedExam exam(String examId) throws Exception {
+        CompletableFuture<CachedExam> created = new CompletableFuture<>();
+        CompletableFuture<CachedExam> entry = exams.compute(examId,
+            (id, current) -> current != null && (!current.isDone() || isFresh(current)) ? current : created);
+        if (entry == created) {
+            // The request that created the entry does the fetch; the others wait on it
+            try {
+                created.complete(load(examId));
+            } catch (RuntimeException e) {
+                created.completeExceptionally(e);
+            }
+        }
+        try {
+            return entry.get(30, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            exams.remove(examId, entry);
+            throw e;
+        }
+    }
+
+    private boolean isFresh(CompletableFuture<CachedExam> done) {
+        if (done.isCompletedExceptionally()) {
+            return false;
+        }
+        CachedExam exam = done.join();
+        return exam != null && System.currentTimeMillis() - exam.fetchedAt < cacheMillis;
+    }
+
+    private CachedExam load(String examId) {
+        try {
+            sourceFetches.incrementAndGet();
+            SourceExam exam = source.fetch(examId);
+            if (exam == null || exam.questions.isEmpty()) {
+                LOGGER.warning("Relay has nothing to serve for examId: " + examId);
+                return null;
+            }
+            byte[] bundle = ExamBundle.encode(examId, exam.metadata, exam.questions, signingKey.getPrivate());
+            LOGGER.info("Relay cached " + exam.questions.size() + " questions (" + bundle.length + " bytes) for examId: " + examId);
+            return new CachedExam(exam.code, bundle, QuestionCodec.contentHash(exam.questions));
+        } catch (Exception e) {
+            throw new IllegalStateException("Relay failed to fetch examId: " + examId, e);
+        }
+    }
+
+    private static void reply(HttpExchange exchange, int status, byte[] body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
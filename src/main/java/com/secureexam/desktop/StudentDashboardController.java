@@ -29,6 +29,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 public class StudentDashboardController {
@@ -42,6 +43,7 @@ public class StudentDashboardController {
     @FXML private ComboBox<String> sortComboBox;
     @FXML private ComboBox<String> filterComboBox;
     @FXML private Label examCountLabel;
+    @FXML private Label submissionStatusLabel;
     @FXML private Button refreshButton;
     @FXML private StackPane emptyResultsPlaceholder;
     @FXML private VBox resultCard1;
@@ -73,6 +75,11 @@ public class StudentDashboardController {
 
             loadExams();
 
+            // Uploads of finished exams carry on in the background; show how they are going
+            SubmissionQueue submissions = SubmissionQueue.shared();
+            submissions.setListener(update -> Platform.runLater(() -> showSubmissionStatus(update)));
+            showSubmissionStatus(submissions.getLastUpdate());
+
             tokenRefreshScheduler = Executors.newSingleThreadScheduledExecutor();
             tokenRefreshScheduler.scheduleAtFixedRate(() -> {
                 Stage stage = (Stage) examListView.getScene().getWindow();
@@ -114,6 +121,7 @@ public class StudentDashboardController {
                     .whereEqualTo("course", course)
                     .whereEqualTo("class", className)
                     .whereEqualTo("section", section)
+                    .select("name", "examId") // Questions are fetched by the prefetcher, not with the list
                     .get()
                     .get()
                     .getDocuments();
@@ -137,6 +145,9 @@ public class StudentDashboardController {
                 }
             }
             updateExamList(testSeries, testSeries.size());
+            if (!examIdMap.isEmpty()) {
+                ExamPrefetcher.shared().prefetch(new ArrayList<>(examIdMap.values()));
+            }
         } catch (InterruptedException | ExecutionException e) {
             LOGGER.log(Level.SEVERE, "Error loading exams from Firestore", e);
             showAlert(Alert.AlertType.ERROR, "Exam Load Error", "Failed to load exams: " + e.getMessage());
@@ -159,6 +170,16 @@ public class StudentDashboardController {
             return;
         }
 
+        // A session this student left behind in a crash is resumed without the code, which they already entered
+        String studentId = userAttributes != null ? userAttributes.get("email") : null;
+        String listedExamId = examIdMap.get(selectedTestSeries);
+        ExamSession saved = listedExamId != null && studentId != null ? ExamSession.load(listedExamId, studentId) : null;
+        if (saved != null) {
+            openExam(saved.getTestSeries(), controller -> controller.resumeSession(saved));
+            LOGGER.info("Resumed exam: " + selectedTestSeries + " with examId: " + listedExamId);
+            return;
+        }
+
         String enteredCode = examCodeField.getText().trim();
         if (enteredCode.isEmpty()) {
             showAlert(Alert.AlertType.WARNING, "Exam Code Error", "Please enter the exam code.");
@@ -173,6 +194,7 @@ public class StudentDashboardController {
                 .whereEqualTo("course", userAttributes.get("course"))
                 .whereEqualTo("class", userAttributes.get("class"))
                 .whereEqualTo("section", userAttributes.get("section"))
+                .select("code", "examId")
                 .get()
                 .get()
                 .getDocuments();
@@ -190,11 +212,22 @@ public class StudentDashboardController {
             }
 
             String examId = examDoc.getString("examId");
+            openExam(selectedTestSeries,
+                controller -> controller.setExamDetails(selectedTestSeries, examId, correctCode, studentId));
+            LOGGER.info("Started exam: " + selectedTestSeries + " with examId: " + examId);
+        } catch (InterruptedException | ExecutionException e) {
+            LOGGER.log(Level.SEVERE, "Error querying exam data", e);
+            showAlert(Alert.AlertType.ERROR, "Exam Error", "Failed to start exam: " + e.getMessage());
+        }
+    }
+
+    private void openExam(String testSeries, Consumer<ExamController> details) {
+        try {
             NetworkManager.disableInternet(); // Cut off internet
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/exam.fxml"));
             Parent root = loader.load();
             ExamController examController = loader.getController();
-            examController.setExamDetails(selectedTestSeries, examId, correctCode, userAttributes.get("email"));
+            details.accept(examController);
             Stage stage = (Stage) startExamButton.getScene().getWindow();
             Scene newScene = new Scene(root);
             stage.setScene(newScene);
@@ -202,16 +235,39 @@ public class StudentDashboardController {
             stage.setFullScreenExitHint("");
             stage.setFullScreenExitKeyCombination(KeyCombination.NO_MATCH);
             stage.setOnCloseRequest(e -> e.consume());
-            LOGGER.info("Started exam: " + selectedTestSeries + " with examId: " + examId);
+            examController.startExam();
         } catch (IOException e) {
-            LOGGER.log(Level.SEVERE, "Error loading exam FXML", e);
-            showAlert(Alert.AlertType.ERROR, "Exam Error", "Failed to start exam: " + e.getMessage());
-        } catch (InterruptedException | ExecutionException e) {
-            LOGGER.log(Level.SEVERE, "Error querying exam data", e);
+            LOGGER.log(Level.SEVERE, "Error loading exam FXML for " + testSeries, e);
             showAlert(Alert.AlertType.ERROR, "Exam Error", "Failed to start exam: " + e.getMessage());
         }
     }
 
+    private void showSubmissionStatus(SubmissionQueue.Update update) {
+        if (update == null) {
+            return;
+        }
+        String text;
+        switch (update.getStatus()) {
+            case QUEUED:
+            case UPLOADING:
+                text = "Uploading submission...";
+                break;
+            case SCHEDULED:
+                text = String.format("Submission saved; uploading in %d s", Math.max(1, update.getDelayMillis() / 1000));
+                break;
+            case RETRY_SCHEDULED:
+                text = String.format("Upload failed; retrying in %d s", Math.max(1, update.getDelayMillis() / 1000));
+                break;
+            case UPLOADED:
+                text = update.getPendingCount() > 0 ? "Uploading submission..." : "Submission uploaded";
+                break;
+            default:
+                text = "Submission saved; it will upload when the app next starts online";
+        }
+        submissionStatusLabel.setText(text);
+        submissionStatusLabel.setVisible(true);
+    }
+
     private void logFailedAttempt(String examName, String enteredCode) {
         try {
             String idToken = LoginController.getIdToken();
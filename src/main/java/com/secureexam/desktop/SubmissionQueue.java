@@ -0,0 +1,380 @@
+package com.secureexam.desktop;
+
+import com.google.api.gax.rpc.ApiException;
+import com.google.firebase.cloud.FirestoreClient;
+import com.google.rpc.RetryInfo;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Uploads finished exams in the background, so ending an exam never waits on the network.
+ * The caller first stores the submission as finished in {@link LocalCache}, together with the
+ * payload it then enqueues; a daemon thread uploads it and marks it synced. A failed attempt is
+ * retried after an exponentially growing, jittered delay (doubling from the base, capped). After
+ * the last attempt, or when the application stops with uploads still queued ({@link #stopShared}),
+ * the submission stays finished and unsynced in the cache, and {@link SubmissionSync} uploads
+ * that stored payload on the next start; nothing exists only in this queue.
+ * <p>
+ * Uploads are idempotent: the document is always {@code submissions/<examId>_<studentId>} and
+ * its payload, timestamp included, is fixed when it is enqueued, so retrying a write that did
+ * land rewrites the same document with the same data. Each status change is reported to the
+ * {@link Listener}, which the student dashboard uses to show upload progress.
+ * <p>
+ * When an exam's timer runs out, every student's submission is committed locally at the same
+ * second. Each upload is then delayed to a per-student slot within the configured spread window
+ * ({@link #uploadSlot}), derived from (examId, studentId) alone, so the same student always gets
+ * the same slot and the room's writes arrive spread over the window instead of at once. The slot
+ * is stored with the finished submission; {@link #resumeScheduled} re-queues submissions whose
+ * slot is still ahead when the client is relaunched, so closing the kiosk does not lose the
+ * upload or make it jump the queue.
+ * A server backoff hint (gRPC {@code RetryInfo}, or a {@link RetryAfterException} from the
+ * uploader) is honoured as the minimum delay before that retry and pauses every other upload
+ * of this queue until it has passed.
+ */
+public class SubmissionQueue {
+    private static final Logger LOGGER = Logger.getLogger(SubmissionQueue.class.getName());
+    private static final long JITTER_SALT = 0x5375626d6974L; // keeps upload slots independent of question layouts
+    private static final int RESUME_PAGE_SIZE = 200;
+    private static SubmissionQueue shared;
+
+    public enum Status { QUEUED, SCHEDULED, UPLOADING, RETRY_SCHEDULED, UPLOADED, DEFERRED }
+
+    /**
+     * Thrown by an {@link Uploader} when the server asked the client to wait before retrying.
+     */
+    public static class RetryAfterException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private final long retryAfterMillis;
+
+        public RetryAfterException(String message, long retryAfterMillis) {
+            super(message);
+            this.retryAfterMillis = retryAfterMillis;
+        }
+
+        public long getRetryAfterMillis() { return retryAfterMillis; }
+    }
+
+    @FunctionalInterface
+    public interface Uploader {
+        void upload(String documentId, Map<String, Object> data) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * Called on the upload thread, or on the enqueuing thread for the first update of a submission.
+         */
+        void onUpdate(Update update);
+    }
+
+    public static final class Update {
+        private final String examId;
+        private final String studentId;
+        private final Status status;
+        private final int attempt;
+        private final long delayMillis;
+        private final int pendingCount;
+
+        private Update(String examId, String studentId, Status status, int attempt, long delayMillis, int pendingCount) {
+            this.examId = examId;
+            this.studentId = studentId;
+            this.status = status;
+            this.attempt = attempt;
+            this.delayMillis = delayMillis;
+            this.pendingCount = pendingCount;
+        }
+
+        public String getExamId() { return examId; }
+        public String getStudentId() { return studentId; }
+        public Status getStatus() { return status; }
+        public int getAttempt() { return attempt; }
+
+        /**
+         * @return for {@link Status#SCHEDULED} and {@link Status#RETRY_SCHEDULED}, how long until the next attempt
+         */
+        public long getDelayMillis() { return delayMillis; }
+
+        /**
+         * @return submissions enqueued and not yet uploaded or deferred, after this update
+         */
+        public int getPendingCount() { return pendingCount; }
+    }
+
+    private final Uploader uploader;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final int maxAttempts;
+    private final long spreadWindowMillis;
+    private final ScheduledThreadPoolExecutor executor;
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile Listener listener = update -> { };
+    private volatile Update lastUpdate;
+    private volatile long pausedUntilMillis; // set from server backoff hints
+
+    public SubmissionQueue(Uploader uploader, long baseDelayMillis, long maxDelayMillis, int maxAttempts) {
+        this(uploader, baseDelayMillis, maxDelayMillis, maxAttempts, 0);
+    }
+
+    /**
+     * @param spreadWindowMillis the window {@link #uploadSlot} spreads deadline uploads over; 0 uploads at once
+     */
+    public SubmissionQueue(Uploader uploader, long baseDelayMillis, long maxDelayMillis, int maxAttempts,
+                           long spreadWindowMillis) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("At least one upload attempt is required");
+        }
+        this.uploader = uploader;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.maxAttempts = maxAttempts;
+        this.spreadWindowMillis = spreadWindowMillis;
+        this.executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "submission-upload");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Writes to the same Firestore document an online submit always has, replacing it whole,
+     * with each attempt bounded by the configured upload timeout.
+     */
+    public static SubmissionQueue toFirestore() {
+        return new SubmissionQueue(firestoreUploader(),
+            ConfigLoader.getSubmissionRetryBaseMillis(), ConfigLoader.getSubmissionRetryMaxMillis(),
+            ConfigLoader.getSubmissionMaxAttempts(), ConfigLoader.getSubmissionSpreadWindowMillis());
+    }
+
+    /**
+     * The write every submission upload goes through, here and in {@link SubmissionSync}.
+     */
+    static Uploader firestoreUploader() {
+        long timeoutMillis = ConfigLoader.getSubmissionUploadTimeoutMillis();
+        return (documentId, data) -> FirestoreClient.getFirestore().collection("submissions")
+            .document(documentId).set(data).get(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized SubmissionQueue shared() {
+        if (shared == null) {
+            shared = toFirestore();
+        }
+        return shared;
+    }
+
+    /**
+     * Stops the shared queue, if one was created, when the application exits.
+     */
+    public static synchronized void stopShared() {
+        if (shared != null) {
+            shared.stop(ConfigLoader.getSubmissionUploadTimeoutMillis());
+            shared = null;
+        }
+    }
+
+    /**
+     * Lets an upload already in flight finish for up to {@code waitMillis} and drops the scheduled
+     * ones. Every submission handed to this queue is stored as finished in the local cache, so
+     * the dropped ones are uploaded from there by {@link SubmissionSync} on the next start.
+     */
+    public void stop(long waitMillis) {
+        executor.shutdown(); // cancels the scheduled attempts; their payloads are in the cache
+        try {
+            if (!executor.awaitTermination(waitMillis, TimeUnit.MILLISECONDS)) {
+                LOGGER.warning("Submission upload still running at shutdown; it is retried on the next start");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int left = pending.get();
+        if (left > 0) {
+            LOGGER.info(left + " submission uploads left to the next start's sync");
+        }
+    }
+
+    /**
+     * Replaces the listener; the current dashboard registers itself when it opens.
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener != null ? listener : update -> { };
+    }
+
+    /**
+     * @return the most recent status change, or null before anything was enqueued
+     */
+    public Update getLastUpdate() { return lastUpdate; }
+
+    public int getPendingCount() { return pending.get(); }
+
+    /**
+     * Queues an upload and returns at once. The submission must already be finished in the local
+     * cache ({@link LocalCache#finishSubmission}) with this payload.
+     */
+    public void enqueue(String examId, String studentId, Map<String, Object> data) {
+        Map<String, Object> payload = Collections.unmodifiableMap(new HashMap<>(data));
+        pending.incrementAndGet();
+        report(examId, studentId, Status.QUEUED, 0, 0);
+        schedule(examId, studentId, () -> attempt(examId, studentId, payload, 1), 0);
+    }
+
+    /**
+     * Queues an upload whose first attempt waits until {@code uploadAfterMillis}; a time already
+     * passed uploads at once. Returns at once.
+     */
+    public void enqueueAt(String examId, String studentId, Map<String, Object> data, long uploadAfterMillis) {
+        long delay = uploadAfterMillis - System.currentTimeMillis();
+        if (delay <= 0) {
+            enqueue(examId, studentId, data);
+            return;
+        }
+        Map<String, Object> payload = Collections.unmodifiableMap(new HashMap<>(data));
+        pending.incrementAndGet();
+        report(examId, studentId, Status.SCHEDULED, 0, delay);
+        schedule(examId, studentId, () -> attempt(examId, studentId, payload, 1), delay);
+    }
+
+    /**
+     * @return when the upload of a submission committed at {@code endedMillis} because time ran out
+     *         should start: the student's slot in this queue's spread window
+     */
+    public long uploadSlot(String examId, String studentId, long endedMillis) {
+        return endedMillis + jitterMillis(examId, studentId, spreadWindowMillis);
+    }
+
+    /**
+     * Re-queues finished submissions whose upload slot is still ahead, for a client relaunched
+     * within the spread window. Submissions already due are left to {@link SubmissionSync}.
+     * @return the number of submissions scheduled
+     */
+    public int resumeScheduled() {
+        long now = System.currentTimeMillis();
+        int scheduled = 0;
+        PendingSubmissionCursor cursor = LocalCache.openFinishedSubmissions(null, RESUME_PAGE_SIZE);
+        while (cursor.hasNext()) {
+            PendingSubmission submission = cursor.next();
+            try {
+                FinishedSubmission finished = submission.getFinished();
+                if (finished.getUploadAfterMillis() > now) {
+                    enqueueAt(finished.getExamId(), finished.getStudentId(), finished.toFirestore(),
+                        finished.getUploadAfterMillis());
+                    scheduled++;
+                }
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                LOGGER.log(Level.WARNING, "Unreadable finished submission for examId: " + submission.getExamId(), e);
+            }
+        }
+        if (scheduled > 0) {
+            LOGGER.info("Resumed " + scheduled + " submission uploads waiting for their slot");
+        }
+        return scheduled;
+    }
+
+    private void attempt(String examId, String studentId, Map<String, Object> payload, int attempt) {
+        long paused = pausedUntilMillis - System.currentTimeMillis();
+        if (paused > 0) {
+            // The server asked for a pause after another upload; wait it out without spending an attempt
+            report(examId, studentId, Status.SCHEDULED, attempt - 1, paused);
+            schedule(examId, studentId, () -> attempt(examId, studentId, payload, attempt), paused);
+            return;
+        }
+        report(examId, studentId, Status.UPLOADING, attempt, 0);
+        try {
+            uploader.upload(examId + "_" + studentId, payload);
+        } catch (Exception e) {
+            long hint = retryAfterMillis(e);
+            if (hint > 0) {
+                pausedUntilMillis = Math.max(pausedUntilMillis, System.currentTimeMillis() + hint);
+            }
+            if (attempt >= maxAttempts) {
+                pending.decrementAndGet();
+                LOGGER.log(Level.WARNING, "Giving up on uploading examId: " + examId + ", studentId: " + studentId
+                    + " after " + attempt + " attempts; its stored payload is uploaded by the next sync", e);
+                report(examId, studentId, Status.DEFERRED, attempt, 0);
+                return;
+            }
+            long delay = Math.max(hint, backoffMillis(attempt, baseDelayMillis, maxDelayMillis,
+                ThreadLocalRandom.current().nextDouble()));
+            LOGGER.log(Level.WARNING, "Upload attempt " + attempt + " failed for examId: " + examId
+                + "; retrying in " + delay + " ms", e);
+            report(examId, studentId, Status.RETRY_SCHEDULED, attempt, delay);
+            schedule(examId, studentId, () -> attempt(examId, studentId, payload, attempt + 1), delay);
+            return;
+        }
+        LocalCache.markSubmissionAsSynced(examId, studentId);
+        pending.decrementAndGet();
+        LOGGER.info("Submission uploaded for examId: " + examId + ", studentId: " + studentId + " on attempt " + attempt);
+        report(examId, studentId, Status.UPLOADED, attempt, 0);
+    }
+
+    private void schedule(String examId, String studentId, Runnable attempt, long delayMillis) {
+        try {
+            executor.schedule(attempt, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            pending.decrementAndGet();
+            LOGGER.info("Upload queue stopped; examId: " + examId + ", studentId: " + studentId
+                + " is uploaded from the local cache on the next start");
+        }
+    }
+
+    /**
+     * Delay before the retry that follows {@code attempt}: the base doubled per failed attempt,
+     * capped, of which the upper half is jittered so clients that failed together retry apart.
+     * @param random uniform in [0, 1)
+     */
+    static long backoffMillis(int attempt, long baseDelayMillis, long maxDelayMillis, double random) {
+        long delay = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 30));
+        return delay / 2 + (long) (random * (delay - delay / 2));
+    }
+
+    /**
+     * The student's upload offset within the window: uniform over the window across students, and
+     * always the same for the same (examId, studentId), so a relaunched client keeps its slot.
+     */
+    static long jitterMillis(String examId, String studentId, long windowMillis) {
+        if (windowMillis <= 0) {
+            return 0;
+        }
+        long bits = QuestionOrder.mix64(QuestionOrder.studentKey(examId, studentId) ^ JITTER_SALT) >>> 11;
+        return (long) (bits * 0x1.0p-53 * windowMillis);
+    }
+
+    /**
+     * @return the wait the server asked for with this failure, or 0 if it gave none
+     */
+    static long retryAfterMillis(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RetryAfterException) {
+                return ((RetryAfterException) cause).getRetryAfterMillis();
+            }
+            if (cause instanceof ApiException && ((ApiException) cause).getErrorDetails() != null) {
+                RetryInfo retryInfo = ((ApiException) cause).getErrorDetails().getRetryInfo();
+                if (retryInfo != null && retryInfo.hasRetryDelay()) {
+                    return retryInfo.getRetryDelay().getSeconds() * 1000 + retryInfo.getRetryDelay().getNanos() / 1_000_000;
+                }
+            }
+        }
+        return 0;
+    }
+
+    private void report(String examId, String studentId, Status status, int attempt, long delayMillis) {
+        Update update = new Update(examId, studentId, status, attempt, delayMillis, pending.get());
+        lastUpdate = update;
+        try {
+            listener.onUpdate(update);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Submission progress listener failed", e);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.secureexam.desktop;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Uploads finished submissions that were not uploaded when their exam ended.
+ * Walks {@link LocalCache#openFinishedSubmissions} one page at a time, so memory does not grow
+ * with the backlog. Exams still in progress are never read, so a session being resumed after a
+ * crash is not uploaded half done, and submissions whose deadline upload slot is still ahead are
+ * left to {@link SubmissionQueue#resumeScheduled}. If an upload fails the pass stops and remembers the
+ * high-water mark of the last uploaded submission; the next pass resumes from there instead of
+ * rescanning, and starts over from the beginning once it has reached the end. A submission whose
+ * stored payload cannot be decoded would fail the same way on every pass, so it is set aside
+ * ({@link LocalCache#setAsideSubmission}) and the pass moves on past it.
+ */
+public class SubmissionSync {
+    private static final Logger LOGGER = Logger.getLogger(SubmissionSync.class.getName());
+    private static final int PAGE_SIZE = 200;
+
+    @FunctionalInterface
+    public interface Uploader {
+        void upload(PendingSubmission submission) throws Exception;
+    }
+
+    private final Uploader uploader;
+    private final int pageSize;
+    private String highWaterMark;
+
+    public SubmissionSync(Uploader uploader, int pageSize) {
+        this.uploader = uploader;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Writes the payload stored when the exam ended through the same write {@link SubmissionQueue}
+     * uses, so the document is exactly what the background upload would have written.
+     */
+    public static SubmissionSync toFirestore() {
+        SubmissionQueue.Uploader firestore = SubmissionQueue.firestoreUploader();
+        return new SubmissionSync(submission -> firestore.upload(
+            submission.getExamId() + "_" + submission.getStudentId(), submission.getFinished().toFirestore()), PAGE_SIZE);
+    }
+
+    public synchronized String getHighWaterMark() { return highWaterMark; }
+
+    /**
+     * Runs one pass over the finished submissions that are not uploaded yet.
+     * @return the number of submissions uploaded and marked as synced
+     */
+    public synchronized int syncPending() {
+        PendingSubmissionCursor cursor = LocalCache.openFinishedSubmissions(highWaterMark, pageSize);
+        int uploaded = 0;
+        while (cursor.hasNext()) {
+            PendingSubmission submission = cursor.next();
+            FinishedSubmission finished;
+            try {
+                finished = submission.getFinished();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Setting aside unreadable submission examId: " + submission.getExamId()
+                    + ", studentId: " + submission.getStudentId(), e);
+                LocalCache.setAsideSubmission(submission.getExamId(), submission.getStudentId());
+                highWaterMark = cursor.getHighWaterMark();
+                continue;
+            }
+            if (finished.getUploadAfterMillis() > System.currentTimeMillis()) {
+                continue; // waiting in the upload queue for its slot
+            }
+            try {
+                uploader.upload(submission);
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Stopped pending sync at examId: " + submission.getExamId()
+                    + ", studentId: " + submission.getStudentId(), e);
+                LOGGER.info("Uploaded " + uploaded + " finished submissions before stopping");
+                return uploaded;
+            }
+            LocalCache.markSubmissionAsSynced(submission.getExamId(), submission.getStudentId());
+            highWaterMark = cursor.getHighWaterMark();
+            uploaded++;
+        }
+        if (!cursor.hasFailed()) {
+            highWaterMark = null; // reached the end; the next pass starts over
+        }
+        LOGGER.info("Uploaded " + uploaded + " finished submissions");
+        return uploaded;
+    }
+}
@@ -1,9 +1,12 @@
 package com.secureexam.desktop;
 
-import com.google.cloud.firestore.DocumentSnapshot;
 import com.google.cloud.firestore.Firestore;
 import com.google.firebase.cloud.FirestoreClient;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
 import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -11,52 +14,80 @@ import java.util.logging.Logger;
 public class TestManager {
     private static final Logger LOGGER = Logger.getLogger(TestManager.class.getName());
     private static final Firestore db = FirestoreClient.getFirestore();
+    private static final QuestionDeltaSync deltaSync = QuestionDeltaSync.toFirestore();
 
     public static List<Question> getQuestionsForTestSeries(String examId) {
+        return getQuestionsForTestSeries(examId, null, null);
+    }
+
+    /**
+     * Loads the exam's questions and lays them out for the student. The student's question
+     * and option order is derived from the exam and the studentId (see
+     * {@link QuestionOrder#forStudent}), so reopening the exam (for example after a crash) shows
+     * the same layout and a grader can regenerate it without anything being stored.
+     * Without a studentId a fresh random layout is drawn.
+     * @param examCode the code the student entered, which the exam relay needs to hand out the questions; may be null
+     */
+    public static List<Question> getQuestionsForTestSeries(String examId, String studentId, String examCode) {
+        return layOutQuestions(examId, studentId, examCode).getQuestions();
+    }
+
+    /**
+     * {@link #getQuestionsForTestSeries(String, String, String)}, also returning the order that was
+     * applied and the content version it was derived from, for the exam session to record.
+     */
+    public static ExamLayout layOutQuestions(String examId, String studentId, String examCode) {
         if (examId == null || examId.trim().isEmpty()) {
             LOGGER.warning("Exam ID is null or empty; returning empty list");
-            return new ArrayList<>();
+            return new ExamLayout(new ArrayList<>(), null, QuestionCodec.contentHash(List.of()));
         }
 
+        ExamBundle bundle = loadBundle(examId);
+        List<Question> canonical = bundle != null ? bundle.asList() : loadQuestions(examId, examCode);
+        if (canonical.isEmpty()) {
+            return new ExamLayout(canonical, null, QuestionCodec.contentHash(canonical));
+        }
+
+        // The signed header already holds the content version; no need to decode and hash every question
+        long contentVersion = bundle != null ? bundle.getContentVersion() : QuestionCodec.contentHash(canonical);
+        QuestionOrder order = studentId == null
+            ? QuestionOrder.shuffle(canonical.size(), new Random())
+            : QuestionOrder.forStudent(examId, studentId, contentVersion, canonical.size());
+        return new ExamLayout(order.apply(canonical), order, contentVersion);
+    }
+
+    // Returns the exam's questions in canonical order, refreshing the local cache when online
+    private static List<Question> loadQuestions(String examId, String examCode) {
         try {
             if (!NetworkManager.isOnline() && LocalCache.isCached(examId)) {
                 LOGGER.info("Offline mode: Loading questions from cache for examId: " + examId);
                 return LocalCache.getQuestions(examId);
             }
-
-            DocumentSnapshot examDoc = db.collection("exams").document(examId).get().get();
-            if (!examDoc.exists()) {
-                LOGGER.warning("No exam found for examId: " + examId);
-                return LocalCache.getQuestions(examId); // Fallback to cache
+            if (ExamPrefetcher.shared().isFresh(examId)) {
+                LOGGER.info("Loading prefetched questions from cache for examId: " + examId);
+                return LocalCache.getQuestions(examId);
             }
 
-            List<Map<String, Object>> questionData = (List<Map<String, Object>>) examDoc.get("questions");
-            if (questionData == null || questionData.isEmpty()) {
-                LOGGER.warning("No questions found for examId: " + examId);
-                return LocalCache.getQuestions(examId); // Fallback to cache
+            List<Question> relayed = RelayClient.shared().fetchQuestions(examId, examCode);
+            if (relayed != null && !relayed.isEmpty()) {
+                return relayed;
             }
 
-            List<Question> questions = new ArrayList<>();
-            for (Map<String, Object> q : questionData) {
-                List<String> options = (List<String>) q.get("options");
-                if (options.size() != 4) { // Enforce MCQ with exactly 4 options
-                    LOGGER.warning("Invalid MCQ format for question: " + q.get("text"));
-                    continue;
-                }
-                Question question = new Question(
-                    examId,
-                    (String) q.get("text"),
-                    options.toArray(new String[0]),
-                    (String) q.get("correctAnswer")
-                );
-                questions.add(question);
+            // Exams with a published manifest only download the questions that changed
+            List<Question> synced = deltaSync.sync(examId);
+            if (synced != null && !synced.isEmpty()) {
+                return synced;
             }
 
-            Collections.shuffle(questions);
-            for (Question q : questions) {
-                List<String> opts = new ArrayList<>(Arrays.asList(q.getOptions()));
-                Collections.shuffle(opts);
-                q.setOptions(opts.toArray(new String[0]));
+            // Paged exams arrive page by page with later pages already in flight; embedded exams in one read
+            List<Question> questions = ExamManifest.readAll(db, examId);
+            if (questions == null) {
+                LOGGER.warning("No exam found for examId: " + examId);
+                return LocalCache.getQuestions(examId); // Fallback to cache
+            }
+            if (questions.isEmpty()) {
+                LOGGER.warning("No questions found for examId: " + examId);
+                return LocalCache.getQuestions(examId); // Fallback to cache
             }
 
             LocalCache.saveQuestions(examId, questions);
@@ -68,4 +99,61 @@ public class TestManager {
             return LocalCache.getQuestions(examId); // Fallback to cache
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Opens a staged exam bundle for the exam, if one is present and signed by a trusted key,
+     * and caches its questions so a resumed session finds them in LocalCache. When online the
+     * bundle is only used if it still matches the exam's published manifest, so a bundle staged
+     * before the instructor edited the exam does not hand out the old questions.
+     * @return the bundle, or null to fall back to Firestore and the cache
+     */
+    private static ExamBundle loadBundle(String examId) {
+        Path file = ExamBundle.pathFor(examId);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            ExamBundle bundle = ExamBundle.open(file, ExamBundle.trustedKeysFromConfig());
+            if (!examId.equals(bundle.getExamId())) {
+                LOGGER.warning("Exam bundle " + file + " belongs to examId: " + bundle.getExamId());
+                return null;
+            }
+            Long published = publishedVersion(examId);
+            if (published != null && published != bundle.getContentVersion()) {
+                LOGGER.warning("Exam bundle " + file + " is out of date; loading examId: " + examId + " from the network");
+                return null;
+            }
+            Long cachedVersion = LocalCache.getQuestionsVersion(examId);
+            if (cachedVersion == null || cachedVersion != bundle.getContentVersion()) {
+                // The records are verified against the signed index and cached as they are, not decoded
+                List<byte[]> records = new ArrayList<>(bundle.getQuestionCount());
+                for (int i = 0; i < bundle.getQuestionCount(); i++) {
+                    records.add(bundle.getRecord(i));
+                }
+                LocalCache.saveQuestionRecords(examId, bundle.getContentVersion(), records);
+            }
+            LOGGER.info("Loaded " + bundle.getQuestionCount() + " questions from exam bundle " + file);
+            return bundle;
+        } catch (IOException | GeneralSecurityException | IllegalStateException e) {
+            LOGGER.log(Level.WARNING, "Ignoring exam bundle " + file, e);
+            return null;
+        }
+    }
+
+    // The content version of the exam's published manifest; null when offline, unpublished or unreachable
+    private static Long publishedVersion(String examId) {
+        if (!NetworkManager.isOnline()) {
+            return null;
+        }
+        try {
+            ExamManifest manifest = ExamManifest.fetch(db, examId);
+            return manifest != null ? manifest.getContentVersion() : null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Could not check exam bundle against the manifest for examId: " + examId, e);
+            return null;
+        }
+    }
+}
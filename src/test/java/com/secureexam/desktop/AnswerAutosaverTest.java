@@ -0,0 +1,110 @@
+package com.secureexam.desktop;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tests for the AnswerAutosaver class to verify coalescing write-behind autosave.
+ */
+public class AnswerAutosaverTest {
+
+    private String examId;
+    private String studentId;
+
+    @BeforeEach
+    public void setUp() {
+        examId = "autosave-exam-" + System.nanoTime();
+        studentId = "autosave-student";
+        Map<Integer, String> initial = new HashMap<>();
+        initial.put(0, "A");
+        LocalCache.saveSubmission(examId, studentId, initial);
+        System.out.println("[DEBUG_LOG] Test setup complete with examId: " + examId);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        LocalCache.markSubmissionAsSynced(examId, studentId);
+        LocalCache.cleanupExamCache(examId);
+        System.out.println("[DEBUG_LOG] Test cleanup complete for examId: " + examId);
+    }
+
+    @Test
+    public void testRepeatedChangesCoalesceIntoOneFlush() throws Exception {
+        try (AnswerAutosaver autosaver = new AnswerAutosaver(examId, studentId, 60_000)) {
+            autosaver.record(1, "A");
+            autosaver.record(1, "B");
+            autosaver.record(1, "C");
+            autosaver.record(2, "D");
+            autosaver.record(0, null);
+            autosaver.flush();
+
+            assertEquals(5, autosaver.getRecordedChanges(), "Every change should be counted");
+            assertEquals(3, autosaver.getFlushedChanges(), "Repeats of one question should collapse to one write");
+            assertEquals(1, autosaver.getFlushCount(), "Pending changes should be written in one flush");
+            assertTrue(autosaver.getFlushLatencyMicros(99) > 0, "Flush latency should be reported");
+        }
+
+        Map<Integer, String> answers = LocalCache.getSubmission(examId, studentId);
+        assertEquals("C", answers.get(1), "Latest value should win");
+        assertEquals("D", answers.get(2), "Other questions should be saved");
+        assertFalse(answers.containsKey(0), "A cleared answer should remove the earlier full-save value");
+        System.out.println("[DEBUG_LOG] Coalescing test passed");
+    }
+
+    @Test
+    public void testBackgroundWriterRespectsLossBound() throws Exception {
+        try (AnswerAutosaver autosaver = new AnswerAutosaver(examId, studentId, 50)) {
+            autosaver.record(3, "B");
+            long deadline = System.currentTimeMillis() + 2_000;
+            while (autosaver.getFlushCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, autosaver.getFlushCount(), "Background writer should flush without an explicit call");
+        }
+        assertEquals("B", LocalCache.getSubmission(examId, studentId).get(3), "Flushed answer should be readable");
+        System.out.println("[DEBUG_LOG] Loss bound test passed");
+    }
+
+    @Test
+    public void testFullSaveSupersedesDeltas() throws Exception {
+        try (AnswerAutosaver autosaver = new AnswerAutosaver(examId, studentId, 0)) {
+            autosaver.record(1, "B");
+        }
+        Map<Integer, String> full = new HashMap<>();
+        full.put(1, "C");
+        LocalCache.saveSubmission(examId, studentId, full);
+
+        assertEquals(full, LocalCache.getSubmission(examId, studentId), "Full save should replace autosaved deltas");
+        System.out.println("[DEBUG_LOG] Full save test passed");
+    }
+
+    @Test
+    public void testSheetChangesFlushAsOneSheet() throws Exception {
+        AnswerSheet sheet = new AnswerSheet(10);
+        try (AnswerAutosaver autosaver = new AnswerAutosaver(examId, studentId, 60_000, () -> sheet)) {
+            sheet.setAnswer(1, 0);
+            autosaver.record(1);
+            sheet.setAnswer(1, 2);
+            autosaver.record(1);
+            sheet.setAnswer(4, 3);
+            autosaver.record(4);
+            autosaver.flush();
+
+            assertEquals(3, autosaver.getRecordedChanges());
+            assertEquals(2, autosaver.getFlushedChanges(), "Repeats of one question should collapse");
+            assertEquals(1, autosaver.getFlushCount());
+            assertThrows(IllegalStateException.class, () -> new AnswerAutosaver(examId, studentId, 0).record(1),
+                "A text autosaver has no sheet to store");
+        }
+        AnswerSheet stored = LocalCache.getAnswerSheet(examId, studentId);
+        assertEquals(2, stored.getAnswer(1), "Latest value should win");
+        assertEquals(3, stored.getAnswer(4));
+        assertEquals("A", LocalCache.getSubmission(examId, studentId).get(0), "Answer text saved earlier is kept");
+        System.out.println("[DEBUG_LOG] Sheet autosave test passed");
+    }
+}
@@ -0,0 +1,155 @@
+package com.secureexam.desktop;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests for the AnswerJournal class to verify append, crash replay and compaction.
+ */
+public class AnswerJournalTest {
+
+    private Path file;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        file = Files.createTempDirectory("journal-test").resolve("session.journal");
+        System.out.println("[DEBUG_LOG] Test setup complete with journal: " + file);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(file.getParent());
+        System.out.println("[DEBUG_LOG] Test cleanup complete");
+    }
+
+    @Test
+    public void testReplayRebuildsLatestState() throws Exception {
+        try (AnswerJournal journal = new AnswerJournal(file, false)) {
+            journal.appendAnswer(0, 1);
+            journal.appendAnswer(0, 3);
+            journal.appendAnswer(1, 2);
+            journal.appendAnswer(1, -1);
+            journal.appendFlag(4, true);
+            journal.appendFlag(5, true);
+            journal.appendFlag(5, false);
+            journal.appendNavigation(7);
+            journal.appendFocusLoss(1);
+            journal.appendFocusLoss(2);
+        }
+
+        try (AnswerJournal reopened = new AnswerJournal(file, false)) {
+            AnswerJournal.JournalState state = reopened.replay();
+            assertEquals(10, state.getRecordCount(), "All records should be replayed");
+            assertEquals(Map.of(0, 3), state.getAnswers(), "Latest answer should win and cleared answers drop out");
+            assertTrue(state.getFlags().get(4), "Flag should be set");
+            assertFalse(state.getFlags().get(5), "Unflagged question should be cleared");
+            assertEquals(7, state.getCurrentIndex(), "Last navigation should be restored");
+            assertEquals(2, state.getFocusLossCount(), "Focus losses should be restored");
+
+            reopened.appendAnswer(2, 0);
+            assertEquals(11, reopened.replay().getLastSequence(), "Appends should continue after replayed records");
+        }
+        System.out.println("[DEBUG_LOG] Replay test passed");
+    }
+
+    @Test
+    public void testTornRecordIsDiscarded() throws Exception {
+        try (AnswerJournal journal = new AnswerJournal(file, false)) {
+            journal.appendAnswer(0, 1);
+            journal.appendAnswer(1, 2);
+        }
+        // Corrupt the second record as if power failed mid-write
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(AnswerJournal.RECORD_SIZE * 2L + 5);
+            raf.write(0x7F);
+        }
+
+        try (AnswerJournal reopened = new AnswerJournal(file, false)) {
+            AnswerJournal.JournalState state = reopened.replay();
+            assertEquals(1, state.getRecordCount(), "Replay should stop at the torn record");
+            assertEquals(Map.of(0, 1), state.getAnswers(), "Only the intact record should be applied");
+        }
+        System.out.println("[DEBUG_LOG] Torn record test passed");
+    }
+
+    @Test
+    public void testBlankedJournalDoesNotReplayStaleRecords() throws Exception {
+        AnswerJournal journal = new AnswerJournal(file, false);
+        journal.appendAnswer(0, 1);
+        journal.appendAnswer(1, 2);
+        journal.appendAnswer(2, 3);
+        journal.delete();
+
+        try (AnswerJournal reused = new AnswerJournal(file, false)) {
+            assertEquals(0, reused.replay().getRecordCount(), "A blanked journal should replay empty");
+            reused.appendAnswer(5, 0);
+        }
+        try (AnswerJournal reopened = new AnswerJournal(file, false)) {
+            assertEquals(Map.of(5, 0), reopened.replay().getAnswers(), "Stale records must not follow new ones");
+        }
+        System.out.println("[DEBUG_LOG] Stale record test passed");
+    }
+
+    @Test
+    public void testBackgroundFlushForcesNewRecords() throws Exception {
+        try (AnswerJournal journal = new AnswerJournal(file, false, 20)) {
+            journal.appendAnswer(0, 1);
+            journal.flush();
+            journal.appendAnswer(1, 2);
+            Thread.sleep(100); // the flusher picks up the second record
+            journal.flush(); // nothing left to force
+        }
+        try (AnswerJournal reopened = new AnswerJournal(file, false)) {
+            assertEquals(Map.of(0, 1, 1, 2), reopened.replay().getAnswers());
+        }
+        System.out.println("[DEBUG_LOG] Background flush test passed");
+    }
+
+    @Test
+    public void testJournalGrowsBeyondOneSegment() throws Exception {
+        int records = 5_000;
+        try (AnswerJournal journal = new AnswerJournal(file, false)) {
+            for (int i = 0; i < records; i++) {
+                journal.appendAnswer(i % 200, i % 4);
+            }
+        }
+        try (AnswerJournal reopened = new AnswerJournal(file, false)) {
+            assertEquals(records, reopened.replay().getRecordCount(), "Records past the first segment should survive");
+        }
+        System.out.println("[DEBUG_LOG] Segment growth test passed");
+    }
+
+    @Test
+    public void testCompactWritesCanonicalAnswerSheetAndDeletesJournal() throws Exception {
+        String examId = "journal-exam-" + System.nanoTime();
+        String studentId = "journal-student";
+        QuestionOrder order = QuestionOrder.shuffle(3, new Random(5));
+
+        AnswerJournal journal = new AnswerJournal(file, false);
+        journal.appendAnswer(0, 2);
+        journal.appendAnswer(1, 1);
+        journal.appendFlag(2, true);
+        journal.compact(examId, studentId, order, 3);
+
+        AnswerSheet displayed = new AnswerSheet(3);
+        displayed.setAnswer(0, 2);
+        displayed.setAnswer(1, 1);
+        displayed.setFlag(2, true);
+        assertFalse(Files.exists(file), "Journal file should be removed after compaction");
+        assertArrayEquals(displayed.toCanonical(order).encode(), LocalCache.getAnswerSheet(examId, studentId).encode(),
+                "Compacted answers should be stored in canonical order");
+
+        LocalCache.markSubmissionAsSynced(examId, studentId);
+        LocalCache.cleanupExamCache(examId);
+        System.out.println("[DEBUG_LOG] Compaction test passed");
+    }
+}
@@ -0,0 +1,119 @@
+package com.secureexam.desktop;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for AnswerSheet: scoring, canonical mapping, the wire encoding and its storage in LocalCache.
+ */
+public class AnswerSheetTest {
+
+    @Test
+    public void testEncodingIsAnOrderOfMagnitudeSmallerThanAnswerText() {
+        List<Question> questions = questions("sheet-size", 200);
+        AnswerSheet sheet = new AnswerSheet(200);
+        Random random = new Random(7);
+        for (int i = 0; i < 190; i++) { // a few questions left unanswered
+            sheet.setAnswer(i, random.nextInt(Question.OPTION_COUNT));
+        }
+        sheet.setFlag(3, true);
+        sheet.setFlag(150, true);
+
+        // What a submission used to upload: answer text per question and one boolean per flag
+        JSONObject text = new JSONObject(sheet.toAnswers(questions));
+        JSONArray flags = new JSONArray();
+        for (int i = 0; i < 200; i++) {
+            flags.put(sheet.isFlagged(i));
+        }
+        int textBytes = text.toString().getBytes(StandardCharsets.UTF_8).length
+            + flags.toString().getBytes(StandardCharsets.UTF_8).length;
+        byte[] encoded = sheet.encode();
+        System.out.println("[DEBUG_LOG] 200-question submission: " + textBytes + " bytes as text, " + encoded.length + " as a sheet");
+        assertTrue(encoded.length * 10 <= textBytes, "The sheet should be at least ten times smaller");
+
+        AnswerSheet decoded = AnswerSheet.decode(encoded);
+        assertEquals(190, decoded.getAnsweredCount());
+        assertEquals(2, decoded.getFlaggedCount());
+        for (int i = 0; i < 200; i++) {
+            assertEquals(sheet.getAnswer(i), decoded.getAnswer(i), "Answer " + i);
+            assertEquals(sheet.isFlagged(i), decoded.isFlagged(i), "Flag " + i);
+        }
+        assertThrows(IllegalArgumentException.class, () -> AnswerSheet.decode(new byte[]{9, 1}));
+    }
+
+    @Test
+    public void testCanonicalSheetScoresTheSameAgainstCanonicalQuestions() {
+        List<Question> canonical = questions("sheet-canonical", 50);
+        QuestionOrder order = QuestionOrder.shuffle(50, new Random(11));
+        List<Question> shown = order.apply(canonical);
+
+        AnswerSheet sheet = new AnswerSheet(50);
+        for (int i = 0; i < 50; i++) {
+            // Answer the first 30 displayed questions correctly and the rest wrongly
+            int correct = shown.get(i).getCorrectIndex();
+            sheet.setAnswer(i, i < 30 ? correct : (correct + 1) % Question.OPTION_COUNT);
+        }
+        sheet.setFlag(0, true);
+
+        AnswerSheet mapped = sheet.toCanonical(order);
+        assertEquals(30, sheet.score(shown));
+        assertEquals(30, mapped.score(canonical), "Canonical answers should be scored with only the exam");
+        assertTrue(mapped.isFlagged(order.canonicalOrdinal(0)));
+        assertEquals(shown.get(7).getOption(sheet.getAnswer(7)),
+            canonical.get(order.canonicalOrdinal(7)).getOption(mapped.getAnswer(order.canonicalOrdinal(7))));
+    }
+
+    @Test
+    public void testSheetIsStoredWithTheSubmission() throws Exception {
+        String examId = "sheet-cache-" + System.nanoTime();
+        String studentId = "sheet-student";
+        try {
+            AnswerSheet sheet = new AnswerSheet(4);
+            sheet.setAnswer(1, 2);
+            sheet.setFlag(3, true);
+            LocalCache.saveAnswerSheet(examId, studentId, sheet);
+            sheet.setAnswer(0, 3);
+            LocalCache.saveAnswerSheet(examId, studentId, sheet);
+
+            AnswerSheet stored = LocalCache.getAnswerSheet(examId, studentId);
+            assertNotNull(stored);
+            assertEquals(3, stored.getAnswer(0));
+            assertEquals(2, stored.getAnswer(1));
+            assertTrue(stored.isFlagged(3));
+            assertEquals("1:D 2:C 3:- 4:-*", stored.describe(), "Instructors read the sheet as option letters");
+
+            PendingSubmissionCursor cursor = LocalCache.openPendingSubmissions(null, 100);
+            boolean found = false;
+            while (cursor.hasNext()) {
+                PendingSubmission pending = cursor.next();
+                if (pending.getExamId().equals(examId)) {
+                    found = true;
+                    assertEquals(2, pending.getAnswerSheet().getAnsweredCount(), "Pending uploads should carry the sheet");
+                }
+            }
+            assertTrue(found, "A saved sheet should make the submission pending");
+            assertNull(LocalCache.getAnswerSheet(examId, "someone-else"));
+        } finally {
+            LocalCache.markSubmissionAsSynced(examId, studentId);
+            LocalCache.cleanupExamCache(examId);
+        }
+    }
+
+    private static List<Question> questions(String examId, int count) {
+        List<Question> questions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            questions.add(new Question(examId, "Sheet question " + i,
+                new String[]{"First option for question " + i, "Second option for question " + i,
+                    "Third option for question " + i, "Fourth option for question " + i},
+                "Second option for question " + i));
+        }
+        return questions;
+    }
+}
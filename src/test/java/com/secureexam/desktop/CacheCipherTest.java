@@ -0,0 +1,87 @@
+package com.secureexam.desktop;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Tests for per-exam AES-GCM sealing of cache records.
+ */
+public class CacheCipherTest {
+
+    private final CacheCipher cipher = new CacheCipher(new byte[32]);
+    private final byte[] plaintext = "What is 2 + 2?".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testSealedRecordsRoundTrip() {
+        byte[] sealed = cipher.seal("exam-1", "question\u00000", plaintext);
+        assertTrue(CacheCipher.isSealed(sealed));
+        assertFalse(Arrays.equals(sealed, cipher.seal("exam-1", "question\u00000", plaintext)),
+            "Each seal should use a fresh nonce");
+        assertArrayEquals(plaintext, cipher.open("exam-1", "question\u00000", sealed));
+        assertArrayEquals(plaintext, new CacheCipher(new byte[32]).open("exam-1", "question\u00000", sealed),
+            "The same master key should derive the same exam key");
+        System.out.println("[DEBUG_LOG] Round trip test passed");
+    }
+
+    @Test
+    public void testTamperedOrMovedRecordsFailAuthentication() {
+        byte[] sealed = cipher.seal("exam-1", "question\u00000", plaintext);
+        byte[] tampered = sealed.clone();
+        tampered[tampered.length - 1] ^= 1;
+
+        assertThrows(IllegalStateException.class, () -> cipher.open("exam-1", "question\u00000", tampered));
+        assertThrows(IllegalStateException.class, () -> cipher.open("exam-2", "question\u00000", sealed),
+            "Another exam's key should not open the record");
+        assertThrows(IllegalStateException.class, () -> cipher.open("exam-1", "question\u00001", sealed),
+            "A record copied to another row should not open");
+        byte[] otherKey = new byte[32];
+        otherKey[0] = 1;
+        assertThrows(IllegalStateException.class, () -> new CacheCipher(otherKey).open("exam-1", "question\u00000", sealed));
+        System.out.println("[DEBUG_LOG] Tamper detection test passed");
+    }
+
+    @Test
+    public void testUnsealedPayloadsAreRejected() {
+        byte[] legacy = new PayloadCodec(PayloadCodec.Algorithm.DEFLATE).compress(plaintext, null);
+        assertFalse(CacheCipher.isSealed(legacy), "Compressed frames should never look sealed");
+        assertThrows(IllegalStateException.class, () -> cipher.open("exam-1", "question\u00000", legacy),
+            "A plaintext record must not stand in for a sealed one");
+        assertThrows(IllegalArgumentException.class, () -> new CacheCipher(new byte[16]));
+        System.out.println("[DEBUG_LOG] Unsealed payload test passed");
+    }
+
+    @Test
+    public void testOnlyAProvisionedOwnerOnlyKeyIsUsed() throws Exception {
+        Path dir = Files.createTempDirectory("cache-key-test");
+        Path keyFile = dir.resolve("cache.key");
+        try {
+            assertThrows(IOException.class, () -> CacheCipher.fromKeyFile(keyFile), "No key should be generated on demand");
+            assertFalse(Files.exists(keyFile));
+
+            CacheCipher.provisionKeyFile(keyFile);
+            byte[] sealed = CacheCipher.fromKeyFile(keyFile).seal("exam-1", "question\u00000", plaintext);
+            assertArrayEquals(plaintext, CacheCipher.fromKeyFile(keyFile).open("exam-1", "question\u00000", sealed));
+            assertThrows(FileAlreadyExistsException.class, () -> CacheCipher.provisionKeyFile(keyFile),
+                "Provisioning should never replace the key the cache is encrypted with");
+
+            if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+                Files.setPosixFilePermissions(keyFile, PosixFilePermissions.fromString("rw-r--r--"));
+                assertThrows(IOException.class, () -> CacheCipher.fromKeyFile(keyFile),
+                    "A key others can read should be refused");
+            }
+        } finally {
+            Files.deleteIfExists(keyFile);
+            Files.delete(dir);
+        }
+        System.out.println("[DEBUG_LOG] Key provisioning test passed");
+    }
+}
@@ -0,0 +1,77 @@
+package com.secureexam.desktop;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for the CacheCompactionService to verify it reclaims space and respects active exams.
+ */
+public class CacheCompactionServiceTest {
+
+    private final List<String> examIds = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() {
+        ExamActivity.setExamActive(false);
+        examIds.forEach(LocalCache::cleanupExamCache);
+        System.out.println("[DEBUG_LOG] Test cleanup complete");
+    }
+
+    @Test
+    public void testCompactionReclaimsSpaceFromDeletedExams() throws Exception {
+        // Random text defeats compression, so the deleted exams leave megabytes of free space behind
+        Random random = new Random(5);
+        for (int e = 0; e < 40; e++) {
+            String examId = "compaction-exam-" + System.nanoTime();
+            List<Question> questions = new ArrayList<>();
+            for (int i = 0; i < 25; i++) {
+                questions.add(new Question(examId, randomText(random, 4000), new String[]{"A", "B", "C", "D"}, "A"));
+            }
+            LocalCache.saveQuestions(examId, questions);
+            examIds.add(examId);
+        }
+        String keptExam = examIds.remove(examIds.size() - 1);
+        examIds.forEach(LocalCache::cleanupExamCache);
+        examIds.clear();
+        examIds.add(keptExam);
+
+        CacheCompactionService service = new CacheCompactionService(60, 1024 * 1024);
+        assertTrue(service.needsCompaction(service.measure()), "Deleted exams should show up as fragmentation");
+        CompactionReport report = service.runOnce();
+        assertNotNull(report);
+        assertTrue(report.isCompacted(), "The cache should be compacted: " + report);
+        assertTrue(report.getBytesReclaimed() > 0, "Deleted exams should be reclaimed: " + report);
+        assertSame(report, service.getLastReport());
+        LocalCache.getQuestionCache().invalidate(keptExam);
+        assertEquals(25, LocalCache.getQuestions(keptExam).size(), "The cache should reopen with its data intact after compaction");
+        System.out.println("[DEBUG_LOG] " + report);
+    }
+
+    @Test
+    public void testNoCompactionDuringActiveExamOrBelowThreshold() throws Exception {
+        ExamActivity.setExamActive(true);
+        CompactionReport report = new CacheCompactionService(101, 0).runOnce();
+        assertTrue(report.isSkippedForExam(), "Compaction must not run during an exam");
+        assertFalse(report.isCompacted());
+        ExamActivity.setExamActive(false);
+
+        CacheCompactionService lenient = new CacheCompactionService(0, 0);
+        assertFalse(lenient.runOnce().isCompacted(), "Nothing is below a 0% threshold");
+        assertFalse(new CacheCompactionService(101, Long.MAX_VALUE).needsCompaction(lenient.measure()),
+            "Small files are not worth compacting");
+        System.out.println("[DEBUG_LOG] Skip conditions test passed");
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append((char) ('!' + random.nextInt(90)));
+        }
+        return text.toString();
+    }
+}
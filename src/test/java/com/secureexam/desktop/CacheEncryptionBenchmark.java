@@ -0,0 +1,88 @@
+package com.secureexam.desktop;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Manual benchmark of the cost of encrypting LocalCache records: a cold getQuestions (L1
+ * cleared, so every row is read and decrypted) and one autosave flush, each with and without
+ * a cipher. Runs are interleaved so both variants see the same disk and JIT state.
+ * Not picked up by surefire; run with:
+ * mvn test-compile exec:java -Dexec.mainClass=com.secureexam.desktop.CacheEncryptionBenchmark -Dexec.classpathScope=test
+ */
+public class CacheEncryptionBenchmark {
+
+    private static final int QUESTIONS = 100;
+    private static final int ROUNDS = 300;
+
+    public static void main(String[] args) throws Exception {
+        String plainExam = "bench-plain";
+        String sealedExam = "bench-sealed";
+        CacheCipher cipher = new CacheCipher(new byte[32]);
+        try {
+            LocalCache.useCipher(null);
+            LocalCache.saveQuestions(plainExam, questions(plainExam));
+            LocalCache.saveSubmission(plainExam, "student", Map.of());
+            LocalCache.useCipher(cipher);
+            LocalCache.saveQuestions(sealedExam, questions(sealedExam));
+            LocalCache.saveSubmission(sealedExam, "student", Map.of());
+
+            long[] readPlain = new long[ROUNDS];
+            long[] readSealed = new long[ROUNDS];
+            long[] savePlain = new long[ROUNDS];
+            long[] saveSealed = new long[ROUNDS];
+            for (int warmup = 0; warmup < 2; warmup++) {
+                for (int i = 0; i < ROUNDS; i++) {
+                    Map<Integer, String> change = Map.of(i % QUESTIONS, "Option C " + i);
+                    LocalCache.useCipher(null);
+                    readPlain[i] = coldRead(plainExam);
+                    savePlain[i] = save(plainExam, change);
+                    LocalCache.useCipher(cipher);
+                    readSealed[i] = coldRead(sealedExam);
+                    saveSealed[i] = save(sealedExam, change);
+                }
+            }
+            System.out.printf("getQuestions (cold, %d questions) plain:  %s%n", QUESTIONS, percentiles(readPlain));
+            System.out.printf("getQuestions (cold, %d questions) sealed: %s%n", QUESTIONS, percentiles(readSealed));
+            System.out.printf("autosave flush plain:  %s%n", percentiles(savePlain));
+            System.out.printf("autosave flush sealed: %s%n", percentiles(saveSealed));
+        } finally {
+            for (String examId : new String[]{plainExam, sealedExam}) {
+                LocalCache.markSubmissionAsSynced(examId, "student");
+                LocalCache.cleanupExamCache(examId);
+            }
+            LocalCache.shutdown();
+        }
+    }
+
+    private static List<Question> questions(String examId) {
+        List<Question> questions = new ArrayList<>(QUESTIONS);
+        for (int i = 0; i < QUESTIONS; i++) {
+            questions.add(new Question(examId, "Benchmark question number " + i + " about a fairly typical topic?",
+                new String[]{"Option A " + i, "Option B " + i, "Option C " + i, "Option D " + i}, "Option A " + i));
+        }
+        return questions;
+    }
+
+    private static long coldRead(String examId) {
+        LocalCache.getQuestionCache().clear();
+        long start = System.nanoTime();
+        LocalCache.getQuestions(examId);
+        return System.nanoTime() - start;
+    }
+
+    private static long save(String examId, Map<Integer, String> change) throws Exception {
+        long start = System.nanoTime();
+        LocalCache.saveAnswers(examId, "student", change);
+        return System.nanoTime() - start;
+    }
+
+    private static String percentiles(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return String.format("p50=%.1f us p99=%.1f us",
+            sorted[sorted.length / 2] / 1e3, sorted[sorted.length * 99 / 100] / 1e3);
+    }
+}
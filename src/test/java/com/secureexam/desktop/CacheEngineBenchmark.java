@@ -0,0 +1,76 @@
+package com.secureexam.desktop;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Manual benchmark comparing the SQL tables with the MVStore key-value engine on the
+ * autosave path (one changed answer per flush) and on stored bytes per cached exam.
+ * Not picked up by surefire; run with:
+ * mvn test-compile exec:java -Dexec.mainClass=com.secureexam.desktop.CacheEngineBenchmark -Dexec.classpathScope=test
+ */
+public class CacheEngineBenchmark {
+
+    private static final int QUESTIONS = 100;
+    private static final int FLUSHES = 2_000;
+    private static final String STORE_FILE = "./target/cache_engine_benchmark.kv";
+
+    public static void main(String[] args) throws Exception {
+        new File(STORE_FILE).delete();
+        String examId = "bench-engine";
+        List<Question> questions = new ArrayList<>(QUESTIONS);
+        for (int i = 0; i < QUESTIONS; i++) {
+            questions.add(new Question(examId, "Benchmark question number " + i + " about a fairly typical topic?",
+                new String[]{"Option A " + i, "Option B " + i, "Option C " + i, "Option D " + i}, "Option A " + i));
+        }
+
+        try (MvStoreCache store = new MvStoreCache(STORE_FILE)) {
+            LocalCache.saveSubmission(examId, "student", Map.of());
+            store.saveSubmission(examId, "student", Map.of());
+            // Warm up both paths before measuring
+            for (int i = 0; i < FLUSHES; i++) {
+                LocalCache.saveAnswers(examId, "student", Map.of(i % QUESTIONS, "Option B " + i));
+                store.saveAnswers(examId, "student", Map.of(i % QUESTIONS, "Option B " + i));
+            }
+
+            long[] sql = new long[FLUSHES];
+            long[] kv = new long[FLUSHES];
+            for (int i = 0; i < FLUSHES; i++) {
+                Map<Integer, String> change = Map.of(i % QUESTIONS, "Option C " + i);
+                long start = System.nanoTime();
+                LocalCache.saveAnswers(examId, "student", change);
+                sql[i] = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                store.saveAnswers(examId, "student", change);
+                kv[i] = System.nanoTime() - start;
+            }
+            System.out.printf("autosave flush sql: %s%n", percentiles(sql));
+            System.out.printf("autosave flush kv:  %s%n", percentiles(kv));
+
+            long sqlBytes = 0;
+            for (Question q : questions) {
+                // cached_questions row payload: key columns, text, binary options, correct index
+                sqlBytes += 8 + q.getText().length() + QuestionCodec.encodeOptions(q.getOptions()).length + 1;
+            }
+            int kvBytes = QuestionCodec.encodeQuestions(0, questions).length + 12;
+            System.out.printf("stored bytes per %d-question exam: sql rows ~%d, kv record %d%n", QUESTIONS, sqlBytes, kvBytes);
+            System.out.printf("decoded question set retained in memory: ~%d bytes%n", QuestionCache.estimateBytes(questions));
+        } finally {
+            LocalCache.cleanupExamCache(examId);
+            LocalCache.markSubmissionAsSynced(examId, "student");
+            LocalCache.cleanupExamCache(examId);
+            LocalCache.shutdown();
+        }
+    }
+
+    private static String percentiles(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return String.format("p50=%.1f us p99=%.1f us",
+            sorted[sorted.length / 2] / 1e3, sorted[sorted.length * 99 / 100] / 1e3);
+    }
+}
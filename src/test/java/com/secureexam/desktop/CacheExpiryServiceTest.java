@@ -0,0 +1,92 @@
+package com.secureexam.desktop;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for the CacheExpiryService class to verify chunked expiry and exam-aware scheduling.
+ */
+public class CacheExpiryServiceTest {
+
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+    private final List<String> examIds = new ArrayList<>();
+    private String prefix;
+
+    @BeforeEach
+    public void setUp() {
+        prefix = "expiry-" + System.nanoTime() + "-";
+        System.out.println("[DEBUG_LOG] Test setup complete with prefix: " + prefix);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        ExamActivity.setExamActive(false);
+        examIds.forEach(LocalCache::cleanupExamCache);
+        System.out.println("[DEBUG_LOG] Test cleanup complete");
+    }
+
+    private String cacheExam(int questionCount, boolean expired) throws Exception {
+        String examId = prefix + examIds.size();
+        examIds.add(examId);
+        List<Question> questions = new ArrayList<>();
+        for (int i = 0; i < questionCount; i++) {
+            questions.add(new Question(examId, "Question " + i, new String[]{"A", "B", "C", "D"}, "A"));
+        }
+        LocalCache.saveQuestions(examId, questions);
+        LocalCache.saveSubmission(examId, "student", Map.of(0, "A"));
+        LocalCache.markSubmissionAsSynced(examId, "student");
+        if (expired) {
+            try (Connection conn = DriverManager.getConnection(LocalCache.databaseUrl())) {
+                for (String table : new String[]{"cached_exams", "submissions"}) {
+                    try (PreparedStatement stmt = conn.prepareStatement(
+                            "UPDATE " + table + " SET created = DATEADD(DAY, -400, CURRENT_TIMESTAMP) WHERE examId = ?")) {
+                        stmt.setString(1, examId);
+                        stmt.executeUpdate();
+                    }
+                }
+            }
+        }
+        return examId;
+    }
+
+    @Test
+    public void testExpiredEntriesAreReclaimedInChunks() throws Exception {
+        String oldA = cacheExam(3, true);
+        String oldB = cacheExam(3, true);
+        String fresh = cacheExam(3, false);
+
+        ExpiryReport report = new CacheExpiryService(365 * DAY_MS, 4, 0).runOnce();
+
+        assertFalse(LocalCache.isCached(oldA), "Expired exam should be removed");
+        assertFalse(LocalCache.isCached(oldB), "Expired exam should be removed");
+        assertTrue(LocalCache.isCached(fresh), "Fresh exam must be kept");
+        assertTrue(report.getExamsDeleted() >= 2, "Report should count the expired exams");
+        assertTrue(report.getSubmissionsDeleted() >= 2, "Report should count the expired submissions");
+        assertTrue(report.getChunks() >= 3, "Each 4-row chunk holds one 3-question exam, so work should be split");
+        assertFalse(report.isInterrupted(), "Nothing should interrupt an idle pass");
+        System.out.println("[DEBUG_LOG] " + report);
+    }
+
+    @Test
+    public void testPassStopsWhileExamIsActive() throws Exception {
+        String old = cacheExam(2, true);
+        ExamActivity.setExamActive(true);
+
+        ExpiryReport report = new CacheExpiryService(365 * DAY_MS, 100, 0).runOnce();
+
+        assertTrue(report.isInterrupted(), "Pass should stop for an active exam");
+        assertEquals(0, report.getRowsReclaimed(), "Nothing should be deleted during an exam");
+        assertTrue(LocalCache.isCached(old), "Expired exam should be left alone during an exam");
+        assertFalse(ExamActivity.isIdle(0), "An active exam is never idle");
+        System.out.println("[DEBUG_LOG] Active exam test passed");
+    }
+}
@@ -0,0 +1,93 @@
+package com.secureexam.desktop;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Tests for the CachePool class to verify connection bounding and statement reuse.
+ */
+public class CachePoolTest {
+
+    private CachePool pool;
+
+    @BeforeEach
+    public void setUp() {
+        pool = new CachePool("jdbc:h2:mem:cache-pool-test-" + System.nanoTime(), 2, 200);
+        System.out.println("[DEBUG_LOG] Test setup complete with pool of size " + pool.getMaxSize());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pool.close();
+        System.out.println("[DEBUG_LOG] Test cleanup complete");
+    }
+
+    @Test
+    public void testPreparedStatementsAreReusedPerConnection() throws SQLException {
+        PreparedStatement first;
+        try (CachePool.Lease lease = pool.acquire()) {
+            first = lease.prepare("SELECT 1");
+        }
+        try (CachePool.Lease lease = pool.acquire()) {
+            assertSame(first, lease.prepare("SELECT 1"), "Returned connection should hand back its cached statement");
+        }
+        assertEquals(1, pool.getCreatedCount(), "Sequential leases should share one connection");
+        System.out.println("[DEBUG_LOG] Statement reuse test passed");
+    }
+
+    @Test
+    public void testPoolIsBounded() throws SQLException {
+        try (CachePool.Lease a = pool.acquire(); CachePool.Lease b = pool.acquire()) {
+            assertNotSame(a.connection(), b.connection(), "Concurrent leases must not share a connection");
+            SQLException exception = assertThrows(SQLException.class, () -> pool.acquire());
+            assertTrue(exception.getMessage().contains("Timed out"), "Exhausted pool should time out");
+        }
+        assertEquals(2, pool.getCreatedCount(), "Pool should never open more than its bound");
+        System.out.println("[DEBUG_LOG] Pool bound test passed");
+    }
+
+    @Test
+    public void testUncommittedTransactionIsRolledBackOnRelease() throws SQLException {
+        try (CachePool.Lease lease = pool.acquire()) {
+            lease.prepare("CREATE TABLE t (id INT)").execute();
+        }
+        try (CachePool.Lease lease = pool.acquire()) {
+            lease.connection().setAutoCommit(false);
+            lease.prepare("INSERT INTO t VALUES (1)").executeUpdate();
+        }
+        try (CachePool.Lease lease = pool.acquire()) {
+            assertTrue(lease.connection().getAutoCommit(), "Released connection should be back in auto-commit");
+            try (var rs = lease.prepare("SELECT COUNT(*) FROM t").executeQuery()) {
+                rs.next();
+                assertEquals(0, rs.getInt(1), "Forgotten transaction should have been rolled back");
+            }
+        }
+        System.out.println("[DEBUG_LOG] Rollback on release test passed");
+    }
+
+    @Test
+    public void testAbandonedBatchIsNotExecutedByTheNextCaller() throws SQLException {
+        try (CachePool.Lease lease = pool.acquire()) {
+            lease.prepare("CREATE TABLE b (id INT)").execute();
+            PreparedStatement insert = lease.prepare("INSERT INTO b VALUES (?)");
+            insert.setInt(1, 1);
+            insert.addBatch(); // the loop fails here without executing the batch
+        }
+        try (CachePool.Lease lease = pool.acquire()) {
+            PreparedStatement insert = lease.prepare("INSERT INTO b VALUES (?)");
+            insert.setInt(1, 2);
+            insert.addBatch();
+            assertEquals(1, insert.executeBatch().length, "Only this caller's rows should be executed");
+            try (var rs = lease.prepare("SELECT COUNT(*) FROM b").executeQuery()) {
+                rs.next();
+                assertEquals(1, rs.getInt(1));
+            }
+        }
+        System.out.println("[DEBUG_LOG] Abandoned batch test passed");
+    }
+}
@@ -0,0 +1,105 @@
+package com.secureexam.desktop;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for the in-memory cache mode and its CacheSnapshotter.
+ */
+public class CacheSnapshotterTest {
+
+    private static final Path SNAPSHOT = LocalCache.SQL_SNAPSHOT_FILE;
+
+    private String examId;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Files.deleteIfExists(SNAPSHOT);
+        LocalCache.useStorage(true);
+        examId = "memory-exam-" + System.nanoTime();
+        System.out.println("[DEBUG_LOG] Test setup complete with in-memory cache");
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        ExamActivity.setExamActive(false);
+        dropMemoryDatabase();
+        LocalCache.useStorage(false);
+        Files.deleteIfExists(SNAPSHOT);
+        System.out.println("[DEBUG_LOG] Test cleanup complete");
+    }
+
+    @Test
+    public void testSnapshotRestoresMemoryCacheAfterRestart() throws Exception {
+        assertTrue(LocalCache.isInMemory());
+        LocalCache.saveQuestions(examId, questions(examId, 3));
+        LocalCache.saveSubmission(examId, "student", Map.of(0, "A0"));
+        LocalCache.saveAnswers(examId, "student", Map.of(1, "B1"));
+
+        CacheSnapshotter snapshotter = new CacheSnapshotter(60_000, Long.MAX_VALUE);
+        assertTrue(snapshotter.snapshotNow() > 0, "Snapshot should be written to disk");
+
+        // Simulate a restart: the in-memory database is gone and comes back from the snapshot
+        dropMemoryDatabase();
+        LocalCache.useStorage(true);
+
+        assertEquals(3, LocalCache.getQuestions(examId).size(), "Questions should be restored");
+        assertEquals(Map.of(0, "A0", 1, "B1"), LocalCache.getSubmission(examId, "student"), "Answers should be restored");
+        String another = examId + "-after";
+        LocalCache.saveQuestions(another, questions(another, 2));
+        assertEquals(2, LocalCache.getQuestions(another).size(), "New exams should be cached after a restore");
+        System.out.println("[DEBUG_LOG] Snapshot of " + snapshotter.getLastSnapshotBytes() + " bytes took "
+            + snapshotter.getLastSnapshotMillis() + " ms");
+    }
+
+    @Test
+    public void testBudgetEvictsOldestExamsButNeverSubmissions() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            LocalCache.saveQuestions(examId + i, questions(examId + i, 20));
+            Thread.sleep(5);
+        }
+        LocalCache.saveSubmission(examId + "0", "student", Map.of(0, "A0"));
+        long perExam = LocalCache.storedBytes() / 3;
+
+        ExamActivity.setExamActive(true);
+        new CacheSnapshotter(60_000, perExam).snapshotNow();
+        assertTrue(LocalCache.isCached(examId + "0"), "Nothing should be evicted during an exam");
+
+        ExamActivity.setExamActive(false);
+        CacheSnapshotter snapshotter = new CacheSnapshotter(60_000, perExam * 2);
+        snapshotter.snapshotNow();
+        assertTrue(snapshotter.getExamsEvicted() >= 1);
+        assertFalse(LocalCache.isCached(examId + "0"), "The oldest exam should be evicted first");
+        assertTrue(LocalCache.isCached(examId + "2"), "The newest exam should be kept");
+        assertEquals(Map.of(0, "A0"), LocalCache.getSubmission(examId + "0", "student"),
+            "Unsynced submissions must survive eviction");
+        System.out.println("[DEBUG_LOG] Budget test passed");
+    }
+
+    private static List<Question> questions(String examId, int count) {
+        List<Question> questions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            questions.add(new Question(examId, "Question " + i + " for " + examId,
+                new String[]{"A" + i, "B" + i, "C" + i, "D" + i}, "A" + i));
+        }
+        return questions;
+    }
+
+    private static void dropMemoryDatabase() throws Exception {
+        LocalCache.exclusive(connection -> {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("SHUTDOWN");
+            }
+            return null;
+        }, 5_000);
+    }
+}
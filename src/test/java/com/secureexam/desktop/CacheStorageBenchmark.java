@@ -0,0 +1,58 @@
+package com.secureexam.desktop;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Manual benchmark of autosave latency with the cache on disk and in memory, plus the cost
+ * of one background snapshot of the in-memory cache, to help choose cache.storage per lab.
+ * Both modes run through {@link AnswerAutosaver} with write-through flushes, alternating
+ * rounds so they see the same JIT state. Not picked up by surefire; run with:
+ * mvn test-compile exec:java -Dexec.mainClass=com.secureexam.desktop.CacheStorageBenchmark -Dexec.classpathScope=test
+ */
+public class CacheStorageBenchmark {
+
+    private static final int QUESTIONS = 100;
+    private static final int FLUSHES = 2_000;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+        String examId = "bench-storage";
+        List<Question> questions = new ArrayList<>(QUESTIONS);
+        for (int i = 0; i < QUESTIONS; i++) {
+            questions.add(new Question(examId, "Benchmark question number " + i + " about a fairly typical topic?",
+                new String[]{"Option A " + i, "Option B " + i, "Option C " + i, "Option D " + i}, "Option A " + i));
+        }
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                for (boolean memory : new boolean[]{false, true}) {
+                    LocalCache.useStorage(memory);
+                    LocalCache.saveQuestions(examId, questions);
+                    LocalCache.saveSubmission(examId, "student", Map.of());
+                    try (AnswerAutosaver autosaver = new AnswerAutosaver(examId, "student", 0)) {
+                        for (int i = 0; i < FLUSHES; i++) {
+                            autosaver.record(i % QUESTIONS, "Option B " + i);
+                        }
+                        System.out.printf("round %d %-6s autosave flush p50=%.1f us p99=%.1f us%n", round,
+                            memory ? "memory" : "disk", autosaver.getFlushLatencyMicros(50), autosaver.getFlushLatencyMicros(99));
+                    }
+                    if (memory) {
+                        CacheSnapshotter snapshotter = new CacheSnapshotter(60_000, Long.MAX_VALUE);
+                        snapshotter.snapshotNow();
+                        System.out.printf("round %d memory snapshot %d bytes in %d ms (background, off the autosave path)%n",
+                            round, snapshotter.getLastSnapshotBytes(), snapshotter.getLastSnapshotMillis());
+                    }
+                    LocalCache.markSubmissionAsSynced(examId, "student");
+                    LocalCache.cleanupExamCache(examId);
+                }
+            }
+        } finally {
+            LocalCache.useStorage(false);
+            Files.deleteIfExists(LocalCache.SQL_SNAPSHOT_FILE);
+            LocalCache.shutdown();
+        }
+    }
+}
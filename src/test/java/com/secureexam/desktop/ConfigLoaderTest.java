@@ -18,8 +18,8 @@ import java.nio.file.Paths;
 public class ConfigLoaderTest {
     
     private static final String TEST_CONFIG_PATH = "src/test/resources/test_settings.json";
-    private static final String ORIGINAL_CONFIG_PATH = "src/main/resources/settings.json";
-    private static final String BACKUP_CONFIG_PATH = "src/main/resources/settings.json.bak";
+    private static final String ORIGINAL_CONFIG_PATH = ConfigLoader.SETTINGS_FILE.toString();
+    private static final String BACKUP_CONFIG_PATH = ORIGINAL_CONFIG_PATH + ".bak";
     
     private boolean originalConfigExists;
     
@@ -52,6 +52,7 @@ public class ConfigLoaderTest {
         // Copy test config to original location
         Files.copy(Paths.get(TEST_CONFIG_PATH), Paths.get(ORIGINAL_CONFIG_PATH), 
                 java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        ConfigLoader.reload();
         
         System.out.println("[DEBUG_LOG] Test setup complete with test config");
     }
@@ -69,6 +70,7 @@ public class ConfigLoaderTest {
         } else {
             Files.deleteIfExists(Paths.get(ORIGINAL_CONFIG_PATH));
         }
+        ConfigLoader.reload();
         
         System.out.println("[DEBUG_LOG] Test cleanup complete");
     }
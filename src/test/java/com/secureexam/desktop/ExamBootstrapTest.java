@@ -0,0 +1,136 @@
+package com.secureexam.desktop;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tests for ExamBootstrap: concurrent stages, resume without network steps, deadlines and fast failure.
+ */
+public class ExamBootstrapTest {
+
+    private List<Question> questions;
+
+    @BeforeEach
+    public void setUp() {
+        questions = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            questions.add(new Question("boot", "Question " + i, new String[]{"A", "B", "C", "D"}, "A"));
+        }
+        System.out.println("[DEBUG_LOG] Test setup complete with " + questions.size() + " questions");
+    }
+
+    @Test
+    public void testValidationAndQuestionsLoadConcurrently() throws Exception {
+        List<ExamBootstrap.Stage> finished = new CopyOnWriteArrayList<>();
+        AtomicBoolean prepared = new AtomicBoolean();
+        long version = QuestionCodec.contentHash(questions);
+        QuestionOrder order = QuestionOrder.forStudent("boot", "student", version, questions.size());
+        List<Question> shown = order.apply(questions);
+        ExamBootstrap bootstrap = new ExamBootstrap("boot", () -> null,
+            () -> { sleep(300); return true; },
+            saved -> { throw new AssertionError("Nothing to restore"); },
+            () -> { sleep(300); return new ExamLayout(shown, order, version); },
+            5_000, 5_000);
+
+        long start = System.nanoTime();
+        ExamBootstrap.Result result = bootstrap.start(r -> { prepared.set(true); return r; },
+            (stage, done, total) -> finished.add(stage)).get(5, TimeUnit.SECONDS);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.println("[DEBUG_LOG] Two 300 ms steps finished in " + elapsedMillis + " ms; stages " + result.getStageMillis());
+        assertTrue(elapsedMillis < 550, "Validation and question loading should overlap");
+        assertTrue(prepared.get(), "Answer storage should be prepared before the exam is shown");
+        assertSame(shown, result.getQuestions());
+        assertSame(order, result.getOrder(), "The session should record the layout the loader applied");
+        assertEquals(version, result.getContentVersion());
+        assertNull(result.getSaved());
+        assertEquals(4, finished.size(), "Every stage should report progress");
+        assertEquals(ExamBootstrap.Stage.PREPARE, finished.get(3));
+        assertEquals(4, result.getStageMillis().size());
+    }
+
+    @Test
+    public void testResumedSessionSkipsNetworkSteps() throws Exception {
+        ExamSession saved = ExamSession.start(Path.of("unused"), null, "boot", "student", "Series",
+            QuestionCodec.contentHash(questions), null, questions.size(), System.currentTimeMillis() + 60_000);
+        ExamBootstrap bootstrap = new ExamBootstrap("boot", () -> saved,
+            () -> { throw new AssertionError("A resumed session should not be validated again"); },
+            session -> questions,
+            () -> { throw new AssertionError("A resumed session should not fetch questions"); },
+            5_000, 5_000);
+
+        ExamBootstrap.Result result = bootstrap.start(r -> r, (stage, done, total) -> { }).get(5, TimeUnit.SECONDS);
+        assertSame(saved, result.getSaved());
+        assertSame(questions, result.getQuestions());
+        assertEquals(saved.getQuestionsVersion(), result.getContentVersion());
+        System.out.println("[DEBUG_LOG] Resume test passed");
+    }
+
+    @Test
+    public void testSessionThatCannotBeRestoredIsValidatedAgain() throws Exception {
+        ExamSession saved = ExamSession.start(Path.of("unused"), null, "boot", "student", "Series",
+            QuestionCodec.contentHash(questions), null, questions.size(), System.currentTimeMillis() + 60_000);
+        AtomicBoolean validated = new AtomicBoolean();
+        ExamBootstrap bootstrap = new ExamBootstrap("boot", () -> saved,
+            () -> { validated.set(true); return false; },
+            session -> null, // e.g. the cached questions no longer match the saved layout
+            () -> layout(), 5_000, 5_000);
+
+        ExecutionException rejected = assertThrows(ExecutionException.class,
+            () -> bootstrap.start(r -> fail("Nothing should be prepared"), (stage, done, total) -> { }).get(5, TimeUnit.SECONDS));
+        assertTrue(validated.get(), "A session that is not resumed should not skip the code check");
+        assertInstanceOf(ExamBootstrap.SessionNotRestoredException.class, ExamBootstrap.unwrap(rejected.getCause()),
+            "The student should be told to start over with the code rather than that a code was wrong");
+
+        // With the code at hand the exam starts over with freshly loaded questions
+        ExamBootstrap withCode = new ExamBootstrap("boot", () -> saved, () -> true, session -> null,
+            () -> layout(), 5_000, 5_000);
+        ExamBootstrap.Result result = withCode.start(r -> r, (stage, done, total) -> { }).get(5, TimeUnit.SECONDS);
+        assertNull(result.getSaved(), "A session that cannot be restored should not be resumed");
+        assertSame(questions, result.getQuestions());
+        System.out.println("[DEBUG_LOG] Unrestorable session was validated");
+    }
+
+    @Test
+    public void testFailuresDoNotWaitForTheOtherStage() throws Exception {
+        ExamBootstrap invalid = new ExamBootstrap("boot", () -> null, () -> false, saved -> null,
+            () -> { sleep(3_000); return layout(); }, 5_000, 5_000);
+        long start = System.nanoTime();
+        ExecutionException rejected = assertThrows(ExecutionException.class,
+            () -> invalid.start(r -> fail("Nothing should be prepared"), (stage, done, total) -> { }).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(ExamBootstrap.InvalidCodeException.class, ExamBootstrap.unwrap(rejected.getCause()));
+        assertTrue((System.nanoTime() - start) / 1_000_000 < 1_000, "An invalid code should fail without waiting for questions");
+
+        ExamBootstrap late = new ExamBootstrap("boot", () -> null, () -> true, saved -> null,
+            () -> { sleep(3_000); return layout(); }, 5_000, 200);
+        start = System.nanoTime();
+        ExecutionException timedOut = assertThrows(ExecutionException.class,
+            () -> late.start(r -> r, (stage, done, total) -> { }).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, ExamBootstrap.unwrap(timedOut.getCause()));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(elapsedMillis < 1_000, "Question loading should give up at its deadline");
+        System.out.println("[DEBUG_LOG] Late question load failed after " + elapsedMillis + " ms");
+    }
+
+    private ExamLayout layout() {
+        return new ExamLayout(questions, null, QuestionCodec.contentHash(questions));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
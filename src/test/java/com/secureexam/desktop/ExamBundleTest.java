@@ -0,0 +1,132 @@
+package com.secureexam.desktop;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for the signed exam bundle format.
+ */
+public class ExamBundleTest {
+
+    private Path dir;
+    private KeyPair instructorKey;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("bundle-test");
+        instructorKey = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+        System.out.println("[DEBUG_LOG] Test setup complete in " + dir);
+    }
+
+    @Test
+    public void testBundleRoundTrip() throws Exception {
+        Path file = dir.resolve("exam-1.seb");
+        List<Question> questions = questions("exam-1", 50);
+        ExamBundle.write(file, "exam-1", Map.of("name", "Midterm"), questions, instructorKey.getPrivate());
+
+        ExamBundle bundle = ExamBundle.open(file, List.of(instructorKey.getPublic()));
+        assertEquals("exam-1", bundle.getExamId());
+        assertEquals("Midterm", bundle.getMetadata().get("name"));
+        assertEquals(50, bundle.getQuestionCount());
+        assertEquals(QuestionCodec.contentHash(questions), bundle.getContentVersion());
+        assertEquals(QuestionCodec.contentHash(questions), QuestionCodec.contentHash(bundle.asList()),
+            "Bundled questions should match what was written");
+    }
+
+    @Test
+    public void testUntrustedOrAlteredBundleIsRejected() throws Exception {
+        Path file = dir.resolve("exam-2.seb");
+        ExamBundle.write(file, "exam-2", Map.of(), questions("exam-2", 10), instructorKey.getPrivate());
+
+        KeyPair other = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+        assertThrows(GeneralSecurityException.class, () -> ExamBundle.open(file, List.of(other.getPublic())),
+            "A bundle signed by another key must not open");
+
+        // Flip one byte inside the last question record, which the signature covers only through its digest
+        int signatureOffset;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(32);
+            channel.read(header, 0);
+            signatureOffset = header.getInt(20);
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, signatureOffset - 3);
+            b.put(0, (byte) (b.get(0) ^ 0x20));
+            b.rewind();
+            channel.write(b, signatureOffset - 3);
+        }
+        ExamBundle altered = ExamBundle.open(file, List.of(instructorKey.getPublic()));
+        assertEquals("exam-2", altered.getExamId());
+        assertNotNull(altered.getQuestion(0), "Untouched questions should still read");
+        assertThrows(IllegalStateException.class, () -> altered.getQuestion(9), "The altered question must be rejected");
+    }
+
+    @Test
+    public void testRecordsAreCachedWithoutDecoding() throws Exception {
+        Path file = dir.resolve("exam-3.seb");
+        String examId = "bundle-cache-" + System.nanoTime();
+        List<Question> questions = questions(examId, 20);
+        ExamBundle.write(file, examId, Map.of(), questions, instructorKey.getPrivate());
+        ExamBundle bundle = ExamBundle.open(file, List.of(instructorKey.getPublic()));
+
+        List<byte[]> records = new ArrayList<>();
+        for (int i = 0; i < bundle.getQuestionCount(); i++) {
+            records.add(bundle.getRecord(i));
+        }
+        try {
+            LocalCache.saveQuestionRecords(examId, bundle.getContentVersion(), records);
+            assertEquals(bundle.getContentVersion(), LocalCache.getQuestionsVersion(examId).longValue());
+            assertEquals(QuestionCodec.contentHash(questions), QuestionCodec.contentHash(LocalCache.getQuestions(examId)),
+                "Cached records should decode to the bundled questions");
+
+            MvStoreCache store = new MvStoreCache(null);
+            store.saveQuestionRecords(examId, bundle.getContentVersion(), records);
+            assertEquals(QuestionCodec.contentHash(questions),
+                QuestionCodec.contentHash(store.getQuestions(examId).getQuestions()));
+            store.close();
+        } finally {
+            LocalCache.cleanupExamCache(examId);
+        }
+        assertArrayEquals(QuestionOrder.forStudent(examId, "student", questions).encode(),
+            QuestionOrder.forStudent(examId, "student", bundle.getContentVersion(), 20).encode(),
+            "The bundle's version should give the same layout as hashing its questions");
+    }
+
+    @Test
+    public void testLargeBundleOpensWithoutDecodingQuestions() throws Exception {
+        Path file = dir.resolve("exam-large.seb");
+        ExamBundle.write(file, "exam-large", Map.of(), questions("exam-large", 5000), instructorKey.getPrivate());
+
+        long start = System.nanoTime();
+        ExamBundle bundle = ExamBundle.open(file, List.of(instructorKey.getPublic()));
+        long openMicros = (System.nanoTime() - start) / 1000;
+        start = System.nanoTime();
+        Question last = bundle.getQuestion(4999);
+        long readMicros = (System.nanoTime() - start) / 1000;
+
+        assertEquals("exam-large question 4999", last.getText());
+        System.out.println("[DEBUG_LOG] Opened " + Files.size(file) + " byte bundle in " + openMicros
+            + " us, read one question in " + readMicros + " us");
+    }
+
+    private static List<Question> questions(String examId, int count) {
+        List<Question> questions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            questions.add(new Question(examId, examId + " question " + i,
+                new String[]{"A" + i, "B" + i, "C" + i, "D" + i}, "A" + i));
+        }
+        return questions;
+    }
+}
@@ -0,0 +1,184 @@
+package com.secureexam.desktop;
+
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for how ExamManifest splits a question bank into ordered pages, and for its storage
+ * operations against an in-memory Firestore.
+ */
+public class ExamManifestTest {
+
+    @Test
+    public void testPagesCoverBankInOrder() {
+        List<Question> questions = questions(5_000);
+        ExamManifest manifest = new ExamManifest(1, ExamManifest.hashesOf(questions));
+
+        assertEquals(20, manifest.getPageCount(), "5,000 questions should fit in 20 pages");
+        List<String> joined = new ArrayList<>();
+        for (int page = 0; page < manifest.getPageCount(); page++) {
+            assertTrue(manifest.getPage(page).size() <= ExamManifest.PAGE_SIZE);
+            joined.addAll(manifest.getPage(page));
+        }
+        assertEquals(manifest.getHashes(), joined, "Pages read in order should give back the canonical order");
+        System.out.println("[DEBUG_LOG] " + questions.size() + " questions in " + manifest.getPageCount() + " pages");
+    }
+
+    @Test
+    public void testPartialLastPageAndEmptyExam() {
+        ExamManifest manifest = new ExamManifest(3, ExamManifest.hashesOf(questions(ExamManifest.PAGE_SIZE + 7)));
+        assertEquals(2, manifest.getPageCount());
+        assertEquals(7, manifest.getPage(1).size());
+
+        assertEquals(0, new ExamManifest(0, List.of()).getPageCount(), "A new exam has no pages");
+        assertTrue(ExamManifest.pageId(9).compareTo(ExamManifest.pageId(10)) < 0, "Page ids should sort in page order");
+    }
+
+    @Test
+    public void testContentVersionMatchesQuestionsWithoutThem() {
+        List<Question> questions = questions(300);
+        ExamManifest manifest = new ExamManifest(4, ExamManifest.hashesOf(questions));
+        assertEquals(QuestionCodec.contentHash(questions), manifest.getContentVersion(),
+            "A bundle can be checked against the manifest without downloading the questions");
+        assertEquals(QuestionCodec.contentHash(List.of()), new ExamManifest(0, List.of()).getContentVersion());
+    }
+
+    @Test
+    public void testAppendRollsPagesOverAndFillsPartialLastPage() throws Exception {
+        Firestore db = new InMemoryFirestore().client();
+        createExam(db, "append-exam", Map.of("layout", ExamManifest.LAYOUT_PAGED, "questionCount", 0, "pageCount", 0,
+            "manifestVersion", 0));
+        List<Question> questions = questions(2 * ExamManifest.PAGE_SIZE + 1);
+
+        // 260 questions: two transactions, the second tops up page 0 and starts page 1
+        assertEquals(260, ExamManifest.append(db, "append-exam", questions.subList(0, 260)));
+        ExamManifest manifest = ExamManifest.fetch(db, "append-exam");
+        assertEquals(2, manifest.getPageCount());
+        assertEquals(10, manifest.getPage(1).size(), "The last page should be partial");
+        assertEquals(2, manifest.getVersion(), "Each transaction should bump the manifest version");
+
+        // Fill page 1 exactly, then one more question must open page 2
+        ExamManifest.append(db, "append-exam", questions.subList(260, 2 * ExamManifest.PAGE_SIZE));
+        assertEquals(2, ExamManifest.fetch(db, "append-exam").getPageCount());
+        ExamManifest.append(db, "append-exam", questions.subList(2 * ExamManifest.PAGE_SIZE, questions.size()));
+        manifest = ExamManifest.fetch(db, "append-exam");
+        assertEquals(3, manifest.getPageCount());
+        assertEquals(1, manifest.getPage(2).size());
+        assertEquals(ExamManifest.hashesOf(questions), manifest.getHashes(), "Appends should keep the canonical order");
+        assertEquals(QuestionCodec.contentHash(questions), QuestionCodec.contentHash(ExamManifest.readAll(db, "append-exam")));
+    }
+
+    @Test
+    public void testPublishRewritesOnlyChangesAndRemovesStaleDocuments() throws Exception {
+        InMemoryFirestore store = new InMemoryFirestore();
+        Firestore db = store.client();
+        createExam(db, "publish-exam", Map.of("name", "Publish"));
+        List<Question> questions = questions(ExamManifest.PAGE_SIZE + 50);
+        ExamManifest first = ExamManifest.publish(db, "publish-exam", questions);
+        assertEquals(1, first.getVersion());
+        assertEquals(2, first.getPageCount());
+
+        // Edit one question and drop the last 60: one new question document, page 0 rewritten, page 1 gone
+        List<Question> edited = new ArrayList<>(questions.subList(0, ExamManifest.PAGE_SIZE - 10));
+        edited.set(3, new Question("paged-exam", "Edited question", new String[]{"A", "B", "C", "D"}, "A"));
+        int writesBefore = store.getDocumentWrites();
+        ExamManifest second = ExamManifest.publish(db, "publish-exam", edited);
+        assertEquals(2, second.getVersion());
+        assertEquals(1, second.getPageCount());
+        assertEquals(ExamManifest.hashesOf(edited), ExamManifest.fetch(db, "publish-exam").getHashes());
+        // 1 question + 1 page + layout, then 1 stale page and 61 stale questions
+        assertEquals(1 + 1 + 1 + 1 + 61, store.getDocumentWrites() - writesBefore, "Unchanged questions should not be rewritten");
+        assertFalse(db.collection("exams").document("publish-exam").collection(ExamManifest.PAGES_COLLECTION)
+            .document(ExamManifest.pageId(1)).get().get().exists(), "The stale page should be deleted");
+        assertFalse(db.collection("exams").document("publish-exam").collection(ExamManifest.QUESTIONS_COLLECTION)
+            .document(ExamManifest.hashOf(questions.get(3))).get().get().exists(), "The replaced question should be deleted");
+        assertEquals(QuestionCodec.contentHash(edited), QuestionCodec.contentHash(ExamManifest.readAll(db, "publish-exam")));
+    }
+
+    @Test
+    public void testMigrationKeepsEveryQuestionOrRefuses() throws Exception {
+        Firestore db = new InMemoryFirestore().client();
+        List<Question> questions = questions(ExamManifest.PAGE_SIZE + 3);
+        createExam(db, "embedded-ok", embedded(questions, "teacher@school.edu"));
+        Map<String, Object> broken = embedded(questions(4), "teacher@school.edu");
+        List<Object> data = new ArrayList<>((List<?>) broken.get("questions"));
+        data.set(2, Map.of("text", "Three options", "options", List.of("x", "y", "z"), "correctAnswer", "x"));
+        broken.put("questions", data);
+        createExam(db, "embedded-broken", broken);
+        createExam(db, "already-paged", Map.of("layout", ExamManifest.LAYOUT_PAGED, "createdBy", "teacher@school.edu"));
+
+        ExamManifest.MigrationReport report = ExamManifest.migrateAll(db, "teacher@school.edu");
+        assertEquals(1, report.getMigrated());
+        assertEquals(List.of("embedded-broken"), new ArrayList<>(report.getRefused().keySet()));
+        assertTrue(report.getRefused().get("embedded-broken").contains("question 3"), "The refusal should name the question");
+
+        assertEquals(QuestionCodec.contentHash(questions), QuestionCodec.contentHash(ExamManifest.readAll(db, "embedded-ok")),
+            "Every embedded question should be migrated in order");
+        DocumentSnapshot migrated = db.collection("exams").document("embedded-ok").get().get();
+        assertNull(migrated.get("questions"), "The embedded array should be dropped");
+        assertEquals("Embedded", migrated.getString("name"), "Other exam fields should be kept");
+
+        DocumentSnapshot refused = db.collection("exams").document("embedded-broken").get().get();
+        assertNull(refused.getString("layout"), "A refused exam should be left as it was");
+        assertEquals(4, ((List<?>) refused.get("questions")).size());
+        assertThrows(IllegalStateException.class,
+            () -> ExamManifest.append(db, "embedded-broken", questions(1)), "Appending must not drop questions either");
+        assertFalse(ExamManifest.migrate(db, "embedded-ok"), "A paged exam is not migrated again");
+    }
+
+    @Test
+    public void testStreamDeliversPagesInOrderAndRejectsAlteredQuestions() throws Exception {
+        Firestore db = new InMemoryFirestore().client();
+        createExam(db, "stream-exam", Map.of("name", "Stream"));
+        List<Question> questions = questions(2 * ExamManifest.PAGE_SIZE + 7);
+        ExamManifest manifest = ExamManifest.publish(db, "stream-exam", questions);
+
+        List<Integer> pageSizes = new ArrayList<>();
+        List<Question> streamed = new ArrayList<>();
+        ExamManifest.stream(db, "stream-exam", manifest, (pageIndex, page) -> {
+            assertEquals(pageSizes.size(), pageIndex, "Pages should arrive in order");
+            pageSizes.add(page.size());
+            streamed.addAll(page);
+        });
+        assertEquals(List.of(ExamManifest.PAGE_SIZE, ExamManifest.PAGE_SIZE, 7), pageSizes);
+        assertEquals(QuestionCodec.contentHash(questions), QuestionCodec.contentHash(streamed));
+
+        // A question document edited behind the manifest no longer matches its hash
+        db.collection("exams").document("stream-exam").collection(ExamManifest.QUESTIONS_COLLECTION)
+            .document(ExamManifest.hashOf(questions.get(ExamManifest.PAGE_SIZE + 2)))
+            .set(ExamManifest.toFirestore(new Question("stream-exam", "Altered", new String[]{"A", "B", "C", "D"}, "D"))).get();
+        assertThrows(IllegalStateException.class, () -> ExamManifest.readAll(db, "stream-exam"));
+    }
+
+    private static void createExam(Firestore db, String examId, Map<String, Object> fields) throws Exception {
+        db.collection("exams").document(examId).set(fields).get();
+    }
+
+    private static Map<String, Object> embedded(List<Question> questions, String createdBy) {
+        List<Object> data = new ArrayList<>();
+        for (Question question : questions) {
+            data.add(ExamManifest.toFirestore(question));
+        }
+        Map<String, Object> exam = new HashMap<>();
+        exam.put("name", "Embedded");
+        exam.put("createdBy", createdBy);
+        exam.put("questions", data);
+        return exam;
+    }
+
+    private static List<Question> questions(int count) {
+        List<Question> questions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            questions.add(new Question("paged-exam", "Paged question " + i,
+                new String[]{"A" + i, "B" + i, "C" + i, "D" + i}, "C" + i));
+        }
+        return questions;
+    }
+}
@@ -0,0 +1,131 @@
+package com.secureexam.desktop;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for ExamPrefetcher against a fake Firestore fetcher.
+ */
+public class ExamPrefetcherTest {
+
+    private final List<String> examIds = new ArrayList<>();
+    private ExamPrefetcher prefetcher;
+
+    @BeforeEach
+    public void setUp() {
+        long run = System.nanoTime();
+        for (int i = 0; i < 6; i++) {
+            examIds.add("prefetch-exam-" + run + "-" + i);
+        }
+        System.out.println("[DEBUG_LOG] Test setup complete");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (prefetcher != null) {
+            prefetcher.stop();
+        }
+        ExamActivity.setExamActive(false);
+        examIds.forEach(LocalCache::cleanupExamCache);
+        System.out.println("[DEBUG_LOG] Test cleanup complete");
+    }
+
+    @Test
+    public void testPrefetchValidatesAndCachesWithinConcurrencyLimit() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger calls = new AtomicInteger();
+        prefetcher = new ExamPrefetcher(examId -> {
+            calls.incrementAndGet();
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(50);
+                return questions(examId, 5);
+            } finally {
+                running.decrementAndGet();
+            }
+        }, 2, Long.MAX_VALUE / 2_000_000_000L, 60_000);
+
+        assertEquals(6, prefetcher.prefetch(examIds));
+        assertEquals(0, prefetcher.prefetch(examIds), "Queued exams should not be queued twice");
+        assertTrue(prefetcher.awaitIdle(10_000), "Prefetch should finish");
+
+        assertTrue(maxRunning.get() <= 2, "At most 2 downloads should run at once, saw " + maxRunning.get());
+        assertEquals(6, calls.get());
+        for (String examId : examIds) {
+            assertTrue(prefetcher.isFresh(examId));
+            assertEquals(5, LocalCache.getQuestions(examId).size());
+        }
+        assertEquals(0, prefetcher.prefetch(examIds), "Fresh exams should not be fetched again");
+        System.out.println("[DEBUG_LOG] Prefetched " + prefetcher.getFetched() + " exams, "
+            + prefetcher.getBytesFetched() + " bytes, max " + maxRunning.get() + " concurrent");
+    }
+
+    @Test
+    public void testDownloadsArePacedToBandwidth() throws Exception {
+        long bytesPerExam = 0;
+        for (Question question : questions("prefetch-exam-sample-0", 20)) {
+            bytesPerExam += question.getText().length();
+            for (String option : question.getOptions()) {
+                bytesPerExam += option.length();
+            }
+        }
+        // Each exam uses 100 ms of the budget. The first two start together, before any size is
+        // known; the third waits until the first is paid for, and the sixth until five are.
+        long bytesPerSecond = bytesPerExam * 10;
+        List<Long> startNanos = java.util.Collections.synchronizedList(new ArrayList<>());
+        prefetcher = new ExamPrefetcher(examId -> {
+            startNanos.add(System.nanoTime());
+            return questions("prefetch-exam-sample-" + examId.substring(examId.length() - 1), 20);
+        }, 2, bytesPerSecond, 60_000);
+
+        long start = System.nanoTime();
+        prefetcher.prefetch(examIds);
+        assertTrue(prefetcher.awaitIdle(10_000), "Prefetch should finish");
+
+        assertEquals(6, prefetcher.getFetched());
+        List<Long> starts = new ArrayList<>(startNanos);
+        java.util.Collections.sort(starts);
+        long thirdMillis = (starts.get(2) - start) / 1_000_000;
+        long lastMillis = (starts.get(5) - start) / 1_000_000;
+        assertTrue(thirdMillis >= 90, "The third download should wait for the budget, started at " + thirdMillis + " ms");
+        assertTrue(lastMillis >= 480, "Six exams at 100 ms of budget each should start over 500 ms, last at " + lastMillis);
+        System.out.println("[DEBUG_LOG] Paced " + prefetcher.getBytesFetched() + " bytes at " + bytesPerSecond
+            + " B/s; last download started at " + lastMillis + " ms");
+    }
+
+    @Test
+    public void testNothingIsFetchedDuringAnExam() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        prefetcher = new ExamPrefetcher(examId -> {
+            calls.incrementAndGet();
+            return questions(examId, 3);
+        }, 2, 1_000_000, 60_000);
+
+        ExamActivity.setExamActive(true);
+        prefetcher.prefetch(examIds);
+        assertTrue(prefetcher.awaitIdle(10_000));
+        assertEquals(0, calls.get(), "No download should start while an exam is active");
+        assertFalse(prefetcher.isFresh(examIds.get(0)));
+
+        ExamActivity.setExamActive(false);
+        assertEquals(6, prefetcher.prefetch(examIds), "Deferred exams should be queued again later");
+        assertTrue(prefetcher.awaitIdle(10_000));
+        assertEquals(6, calls.get());
+    }
+
+    private static List<Question> questions(String examId, int count) {
+        List<Question> questions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            questions.add(new Question(examId, examId + " question " + i,
+                new String[]{"A" + i, "B" + i, "C" + i, "D" + i}, "A" + i));
+        }
+        return questions;
+    }
+}
@@ -0,0 +1,172 @@
+package com.secureexam.desktop;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Tests for the ExamSession snapshot used to resume a crashed exam.
+ */
+public class ExamSessionTest {
+
+    private Path dir;
+    private CacheCipher key;
+    private List<Question> canonical;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("session-test");
+        key = new CacheCipher(new byte[32]);
+        canonical = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            canonical.add(new Question("exam-1", "Question " + i, new String[]{"A" + i, "B" + i, "C" + i, "D" + i}, "A" + i));
+        }
+        System.out.println("[DEBUG_LOG] Test setup complete with session dir: " + dir);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+        System.out.println("[DEBUG_LOG] Test cleanup complete");
+    }
+
+    @Test
+    public void testSnapshotRestoresLayoutAnswersAndDeadline() throws Exception {
+        QuestionOrder order = QuestionOrder.shuffle(canonical.size(), new Random(11));
+        long deadline = System.currentTimeMillis() + 20 * 60_000;
+        ExamSession session = ExamSession.start(dir, key, "exam-1", "student", "Series",
+            QuestionCodec.contentHash(canonical), order, canonical.size(), deadline);
+        session.setAnswer(0, 2);
+        session.setAnswer(3, 1);
+        session.setAnswer(3, -1);
+        session.setAnswer(4, 0);
+        session.setFlag(1, true);
+        session.setCurrentIndex(4);
+        session.setFocusLossCount(2);
+        session.save();
+
+        long start = System.nanoTime();
+        ExamSession restored = ExamSession.load(dir, key, "exam-1", "student");
+        List<Question> shown = restored.getOrder().apply(canonical);
+        long elapsedMicros = (System.nanoTime() - start) / 1000;
+
+        List<Question> expected = order.apply(canonical);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getText(), shown.get(i).getText(), "Question order should be restored");
+            assertArrayEquals(expected.get(i).getOptions(), shown.get(i).getOptions(), "Option order should be restored");
+        }
+        assertEquals(Map.of(0, shown.get(0).getOptions()[2], 4, shown.get(4).getOptions()[0]), restored.toAnswers(shown));
+        assertTrue(restored.isFlagged(1));
+        assertFalse(restored.isFlagged(0));
+        assertEquals(4, restored.getCurrentIndex());
+        assertEquals(2, restored.getFocusLossCount());
+        assertEquals(deadline, restored.getDeadlineMillis(), "The deadline is absolute, so downtime counts against it");
+        assertEquals(QuestionCodec.contentHash(canonical), restored.getQuestionsVersion());
+        assertTrue(restored.getRemainingSeconds(System.currentTimeMillis()) > 19 * 60);
+        assertEquals(0, restored.getRemainingSeconds(deadline + 5_000));
+        System.out.println("[DEBUG_LOG] Session restored in " + elapsedMicros + " us");
+    }
+
+    @Test
+    public void testSnapshotThatDoesNotMatchTheCachedQuestionsIsNotLaidOut() throws Exception {
+        QuestionOrder order = QuestionOrder.forStudent("exam-1", "student", canonical);
+        ExamSession session = ExamSession.start(dir, key, "exam-1", "student", "Series",
+            QuestionCodec.contentHash(canonical), order, canonical.size(), System.currentTimeMillis() + 60_000);
+        session.setAnswer(2, 3);
+        session.save();
+        ExamSession restored = ExamSession.load(dir, key, "exam-1", "student");
+        assertNotNull(restored.layOut(canonical), "A snapshot of the cached questions should be laid out");
+
+        // The instructor edited one question: same count, different content
+        List<Question> edited = new ArrayList<>(canonical);
+        edited.set(2, new Question("exam-1", "Question 2, reworded", new String[]{"A2", "B2", "C2", "D2"}, "B2"));
+        assertNull(restored.layOut(edited), "Answers saved against other questions should not be restored");
+        assertNull(restored.layOut(canonical.subList(0, 4)), "A layout over a different question count should not be restored");
+
+        ExamSession unordered = ExamSession.start(dir, key, "exam-1", "other", "Series",
+            QuestionCodec.contentHash(canonical), null, canonical.size(), System.currentTimeMillis() + 60_000);
+        assertNull(unordered.layOut(canonical), "A session without a layout cannot be shown as it was");
+        System.out.println("[DEBUG_LOG] Mismatched snapshot was not laid out");
+    }
+
+    @Test
+    public void testDerivedLayoutIsStoredAsItsSeed() throws Exception {
+        List<Question> bank = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            bank.add(new Question("exam-1", "Question " + i, new String[]{"A", "B", "C", "D"}, "B"));
+        }
+        QuestionOrder order = QuestionOrder.forStudent("exam-1", "student", bank);
+        ExamSession session = ExamSession.start(dir, key, "exam-1", "student", "Series",
+            QuestionCodec.contentHash(bank), order, bank.size(), System.currentTimeMillis() + 60_000);
+        session.save();
+
+        long snapshotBytes;
+        try (Stream<Path> files = Files.list(dir)) {
+            snapshotBytes = Files.size(files.findFirst().orElseThrow());
+        }
+        System.out.println("[DEBUG_LOG] 2000-question snapshot: " + snapshotBytes + " bytes, stored order alone: "
+            + order.encode().length + " bytes");
+        assertTrue(snapshotBytes < bank.size() + 200, "Only the seed of a derived layout should be stored");
+
+        QuestionOrder restored = ExamSession.load(dir, key, "exam-1", "student").getOrder();
+        assertTrue(restored.isDerived());
+        assertArrayEquals(order.encode(), restored.encode(), "The layout should be regenerated from its seed");
+    }
+
+    @Test
+    public void testEditedForgedOrMisplacedSnapshotsAreIgnored() throws Exception {
+        ExamSession session = ExamSession.start(dir, key, "exam-1", "student", "Series", 1, null, 5, 0);
+        session.setAnswer(0, 1);
+        session.save();
+        assertNotNull(ExamSession.load(dir, key, "exam-1", "student"));
+        assertNull(ExamSession.load(dir, new CacheCipher(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16,
+            17, 18, 19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 32}), "exam-1", "student"),
+            "A snapshot should only be trusted under the key it was written with");
+        assertNull(ExamSession.load(dir, null, "exam-1", "student"), "Without a key nothing is resumed");
+        assertThrows(java.io.IOException.class,
+            () -> ExamSession.start(dir, null, "exam-1", "other", "Series", 1, null, 5, 0).save());
+
+        Path file;
+        try (Stream<Path> files = Files.list(dir)) {
+            file = files.findFirst().orElseThrow();
+        }
+        // This student's snapshot under another student's file name is not theirs to resume
+        ExamSession other = ExamSession.start(dir, key, "exam-1", "other", "Series", 1, null, 5, 0);
+        other.save();
+        Path otherFile;
+        try (Stream<Path> files = Files.list(dir)) {
+            otherFile = files.filter(f -> !f.equals(file)).findFirst().orElseThrow();
+        }
+        Files.copy(file, otherFile, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        assertNull(ExamSession.load(dir, key, "exam-1", "other"), "A snapshot should only resume for its own student");
+        other.delete();
+
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 33] ^= 1; // the last byte before the tag
+        Files.write(file, bytes);
+        assertNull(ExamSession.load(dir, key, "exam-1", "student"), "An edited snapshot should not be restored");
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(20);
+        }
+        assertNull(ExamSession.load(dir, key, "exam-1", "student"), "A truncated snapshot should not be restored");
+
+        session.delete();
+        assertNull(ExamSession.load(dir, key, "exam-1", "student"), "Ended sessions should leave nothing to resume");
+        System.out.println("[DEBUG_LOG] Snapshot authentication test passed");
+    }
+}
@@ -0,0 +1,341 @@
+package com.secureexam.desktop;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.rpc.ApiCallContext;
+import com.google.api.gax.rpc.BidiStreamingCallable;
+import com.google.api.gax.rpc.ResponseObserver;
+import com.google.api.gax.rpc.ServerStreamingCallable;
+import com.google.api.gax.rpc.StreamController;
+import com.google.api.gax.rpc.UnaryCallable;
+import com.google.cloud.NoCredentials;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.FirestoreOptions;
+import com.google.cloud.firestore.spi.v1.FirestoreRpc;
+import com.google.cloud.firestore.v1.FirestoreClient;
+import com.google.firestore.v1.BatchGetDocumentsRequest;
+import com.google.firestore.v1.BatchGetDocumentsResponse;
+import com.google.firestore.v1.BatchWriteRequest;
+import com.google.firestore.v1.BatchWriteResponse;
+import com.google.firestore.v1.BeginTransactionRequest;
+import com.google.firestore.v1.BeginTransactionResponse;
+import com.google.firestore.v1.CommitRequest;
+import com.google.firestore.v1.CommitResponse;
+import com.google.firestore.v1.Document;
+import com.google.firestore.v1.DocumentTransform;
+import com.google.firestore.v1.ListCollectionIdsRequest;
+import com.google.firestore.v1.ListDocumentsRequest;
+import com.google.firestore.v1.ListenRequest;
+import com.google.firestore.v1.ListenResponse;
+import com.google.firestore.v1.PartitionQueryRequest;
+import com.google.firestore.v1.RollbackRequest;
+import com.google.firestore.v1.RunAggregationQueryRequest;
+import com.google.firestore.v1.RunAggregationQueryResponse;
+import com.google.firestore.v1.RunQueryRequest;
+import com.google.firestore.v1.RunQueryResponse;
+import com.google.firestore.v1.StructuredQuery;
+import com.google.firestore.v1.Value;
+import com.google.firestore.v1.Write;
+import com.google.firestore.v1.WriteResult;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Empty;
+import com.google.protobuf.Timestamp;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A Firestore client backed by an in-memory document store, for tests. The real client library
+ * does the encoding, batching and transaction handling; only the RPC layer underneath is
+ * replaced, so code under test runs exactly as it would against Firestore. Supports the calls
+ * the app makes: document reads with field masks, commits (sets, updates with masks, deletes,
+ * increments, existence preconditions), transactions and single-collection equality queries.
+ * Transactions are not isolated from each other.
+ */
+final class InMemoryFirestore implements FirestoreRpc {
+    private final Map<String, Document> documents = new TreeMap<>();
+    private final AtomicLong clock = new AtomicLong(1);
+    private final AtomicInteger documentReads = new AtomicInteger();
+    private final AtomicInteger documentWrites = new AtomicInteger();
+    private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(2, r -> {
+        Thread thread = new Thread(r, "in-memory-firestore");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @return a client whose documents live in this store
+     */
+    Firestore client() {
+        return FirestoreOptions.newBuilder()
+            .setProjectId("in-memory")
+            .setCredentials(NoCredentials.getInstance())
+            .setServiceRpcFactory(options -> this)
+            .build()
+            .getService();
+    }
+
+    private Timestamp tick() {
+        return Timestamp.newBuilder().setSeconds(clock.incrementAndGet()).build();
+    }
+
+    private synchronized CommitResponse commit(CommitRequest request) {
+        Timestamp time = tick();
+        Map<String, Document> staged = new TreeMap<>(documents);
+        CommitResponse.Builder response = CommitResponse.newBuilder().setCommitTime(time);
+        for (Write write : request.getWritesList()) {
+            String name = write.hasUpdate() ? write.getUpdate().getName() : write.getDelete();
+            Document current = staged.get(name);
+            if (write.hasCurrentDocument() && write.getCurrentDocument().hasExists()
+                    && write.getCurrentDocument().getExists() != (current != null)) {
+                throw new IllegalStateException("Precondition failed for " + name);
+            }
+            if (write.getOperationCase() == Write.OperationCase.DELETE) {
+                staged.remove(name);
+            } else {
+                Map<String, Value> fields = new HashMap<>();
+                if (write.hasUpdateMask() && current != null) {
+                    fields.putAll(current.getFieldsMap());
+                }
+                if (write.hasUpdateMask()) {
+                    for (String path : write.getUpdateMask().getFieldPathsList()) {
+                        Value value = write.getUpdate().getFieldsMap().get(path);
+                        if (value != null) {
+                            fields.put(path, value);
+                        } else {
+                            fields.remove(path);
+                        }
+                    }
+                } else {
+                    fields.putAll(write.getUpdate().getFieldsMap());
+                }
+                for (DocumentTransform.FieldTransform transform : write.getUpdateTransformsList()) {
+                    if (transform.getTransformTypeCase() != DocumentTransform.FieldTransform.TransformTypeCase.INCREMENT) {
+                        throw new UnsupportedOperationException("Transform " + transform.getTransformTypeCase());
+                    }
+                    Value old = fields.get(transform.getFieldPath());
+                    long base = old != null && old.hasIntegerValue() ? old.getIntegerValue() : 0;
+                    fields.put(transform.getFieldPath(),
+                        Value.newBuilder().setIntegerValue(base + transform.getIncrement().getIntegerValue()).build());
+                }
+                staged.put(name, Document.newBuilder().setName(name).putAllFields(fields)
+                    .setCreateTime(current != null ? current.getCreateTime() : time).setUpdateTime(time).build());
+            }
+            documentWrites.incrementAndGet();
+            response.addWriteResults(WriteResult.newBuilder().setUpdateTime(time));
+        }
+        documents.clear();
+        documents.putAll(staged);
+        return response.build();
+    }
+
+    private synchronized List<BatchGetDocumentsResponse> batchGet(BatchGetDocumentsRequest request) {
+        Timestamp time = tick();
+        List<BatchGetDocumentsResponse> responses = new ArrayList<>();
+        for (String name : request.getDocumentsList()) {
+            documentReads.incrementAndGet();
+            BatchGetDocumentsResponse.Builder response = BatchGetDocumentsResponse.newBuilder().setReadTime(time);
+            if (request.hasNewTransaction()) {
+                response.setTransaction(ByteString.copyFromUtf8("tx-" + time.getSeconds()));
+            }
+            Document document = documents.get(name);
+            if (document == null) {
+                response.setMissing(name);
+            } else {
+                response.setFound(request.hasMask() ? project(document, request.getMask().getFieldPathsList()) : document);
+            }
+            responses.add(response.build());
+        }
+        return responses;
+    }
+
+    private synchronized List<RunQueryResponse> runQuery(RunQueryRequest request) {
+        Timestamp time = tick();
+        StructuredQuery query = request.getStructuredQuery();
+        if (query.getFromCount() != 1 || query.getFrom(0).getAllDescendants()) {
+            throw new UnsupportedOperationException("Only single-collection queries are supported");
+        }
+        String prefix = request.getParent() + "/" + query.getFrom(0).getCollectionId() + "/";
+        List<StructuredQuery.FieldFilter> filters = new ArrayList<>();
+        if (query.hasWhere()) {
+            if (query.getWhere().hasFieldFilter()) {
+                filters.add(query.getWhere().getFieldFilter());
+            } else {
+                for (StructuredQuery.Filter filter : query.getWhere().getCompositeFilter().getFiltersList()) {
+                    filters.add(filter.getFieldFilter());
+                }
+            }
+        }
+        List<String> selected = new ArrayList<>();
+        for (StructuredQuery.FieldReference field : query.getSelect().getFieldsList()) {
+            selected.add(field.getFieldPath());
+        }
+        List<RunQueryResponse> responses = new ArrayList<>();
+        for (Document document : documents.values()) {
+            String name = document.getName();
+            if (!name.startsWith(prefix) || name.indexOf('/', prefix.length()) >= 0 || !matches(document, filters)) {
+                continue;
+            }
+            documentReads.incrementAndGet();
+            responses.add(RunQueryResponse.newBuilder().setReadTime(time)
+                .setDocument(query.hasSelect() ? project(document, selected) : document).build());
+        }
+        if (responses.isEmpty()) {
+            responses.add(RunQueryResponse.newBuilder().setReadTime(time).build());
+        }
+        return responses;
+    }
+
+    private static boolean matches(Document document, List<StructuredQuery.FieldFilter> filters) {
+        for (StructuredQuery.FieldFilter filter : filters) {
+            if (filter.getOp() != StructuredQuery.FieldFilter.Operator.EQUAL) {
+                throw new UnsupportedOperationException("Filter " + filter.getOp());
+            }
+            if (!filter.getValue().equals(document.getFieldsMap().get(filter.getField().getFieldPath()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Document project(Document document, List<String> fieldPaths) {
+        Document.Builder projected = document.toBuilder().clearFields();
+        for (String path : fieldPaths) {
+            Value value = document.getFieldsMap().get(path);
+            if (value != null) {
+                projected.putFields(path, value);
+            }
+        }
+        return projected.build();
+    }
+
+    /**
+     * @return documents read since the store was created, counting each document of a batch read or query
+     */
+    int getDocumentReads() { return documentReads.get(); }
+
+    /**
+     * @return document writes committed since the store was created
+     */
+    int getDocumentWrites() { return documentWrites.get(); }
+
+    private static <Q, R> UnaryCallable<Q, R> unary(java.util.function.Function<Q, R> handler) {
+        return new UnaryCallable<Q, R>() {
+            @Override
+            public ApiFuture<R> futureCall(Q request, ApiCallContext context) {
+                try {
+                    return ApiFutures.immediateFuture(handler.apply(request));
+                } catch (RuntimeException e) {
+                    return ApiFutures.immediateFailedFuture(e);
+                }
+            }
+        };
+    }
+
+    private static <Q, R> ServerStreamingCallable<Q, R> streaming(java.util.function.Function<Q, List<R>> handler) {
+        return new ServerStreamingCallable<Q, R>() {
+            @Override
+            public void call(Q request, ResponseObserver<R> observer, ApiCallContext context) {
+                observer.onStart(new StreamController() {
+                    @Override public void cancel() { }
+                    @Override public void disableAutoInboundFlowControl() { }
+                    @Override public void request(int count) { }
+                });
+                List<R> responses;
+                try {
+                    responses = handler.apply(request);
+                } catch (RuntimeException e) {
+                    observer.onError(e);
+                    return;
+                }
+                for (R response : responses) {
+                    observer.onResponse(response);
+                }
+                observer.onComplete();
+            }
+        };
+    }
+
+    @Override
+    public UnaryCallable<CommitRequest, CommitResponse> commitCallable() {
+        return unary(this::commit);
+    }
+
+    @Override
+    public ServerStreamingCallable<BatchGetDocumentsRequest, BatchGetDocumentsResponse> batchGetDocumentsCallable() {
+        return streaming(this::batchGet);
+    }
+
+    @Override
+    public ServerStreamingCallable<RunQueryRequest, RunQueryResponse> runQueryCallable() {
+        return streaming(this::runQuery);
+    }
+
+    @Override
+    public UnaryCallable<BeginTransactionRequest, BeginTransactionResponse> beginTransactionCallable() {
+        return unary(request -> BeginTransactionResponse.newBuilder()
+            .setTransaction(ByteString.copyFromUtf8("tx-" + tick().getSeconds())).build());
+    }
+
+    @Override
+    public UnaryCallable<RollbackRequest, Empty> rollbackCallable() {
+        return unary(request -> Empty.getDefaultInstance());
+    }
+
+    @Override
+    public ScheduledExecutorService getExecutor() {
+        return executor;
+    }
+
+    @Override
+    public UnaryCallable<BatchWriteRequest, BatchWriteResponse> batchWriteCallable() {
+        throw new UnsupportedOperationException("batchWrite");
+    }
+
+    @Override
+    public ServerStreamingCallable<RunAggregationQueryRequest, RunAggregationQueryResponse> runAggregationQueryCallable() {
+        throw new UnsupportedOperationException("runAggregationQuery");
+    }
+
+    @Override
+    public UnaryCallable<ListCollectionIdsRequest, FirestoreClient.ListCollectionIdsPagedResponse> listCollectionIdsPagedCallable() {
+        throw new UnsupportedOperationException("listCollectionIds");
+    }
+
+    @Override
+    public UnaryCallable<PartitionQueryRequest, FirestoreClient.PartitionQueryPagedResponse> partitionQueryPagedCallable() {
+        throw new UnsupportedOperationException("partitionQuery");
+    }
+
+    @Override
+    public UnaryCallable<ListDocumentsRequest, FirestoreClient.ListDocumentsPagedResponse> listDocumentsPagedCallable() {
+        throw new UnsupportedOperationException("listDocuments");
+    }
+
+    @Override
+    public BidiStreamingCallable<ListenRequest, ListenResponse> listenCallable() {
+        throw new UnsupportedOperationException("listen");
+    }
+
+    @Override
+    public void shutdownNow() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
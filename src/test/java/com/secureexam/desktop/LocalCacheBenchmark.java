@@ -0,0 +1,81 @@
+package com.secureexam.desktop;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Manual throughput benchmark for LocalCache under concurrent readers and writers.
+ * Compares a single pooled connection (the old shared-connection behaviour) against
+ * a larger pool. Not picked up by surefire; run with:
+ * mvn test-compile exec:java -Dexec.mainClass=com.secureexam.desktop.LocalCacheBenchmark -Dexec.classpathScope=test
+ */
+public class LocalCacheBenchmark {
+
+    private static final int THREADS = 8;
+    private static final long DURATION_MS = 3_000;
+
+    public static void main(String[] args) throws Exception {
+        String examId = "bench-exam-" + System.currentTimeMillis();
+        List<Question> questions = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            questions.add(new Question(examId, "Question " + i, new String[]{"A", "B", "C", "D"}, "A"));
+        }
+        LocalCache.saveQuestions(examId, questions);
+
+        try {
+            for (int poolSize : new int[]{1, 2, 4, 8}) {
+                LocalCache.reconfigurePool(poolSize);
+                run(examId, poolSize);
+            }
+        } finally {
+            LocalCache.cleanupExamCache(examId);
+            LocalCache.shutdown();
+        }
+    }
+
+    private static void run(String examId, int poolSize) throws InterruptedException {
+        AtomicLong reads = new AtomicLong();
+        AtomicLong writes = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + DURATION_MS;
+
+        for (int t = 0; t < THREADS; t++) {
+            final boolean writer = t % 2 == 1;
+            final String studentId = "bench-student-" + t;
+            Thread thread = new Thread(() -> {
+                Map<Integer, String> answers = new HashMap<>();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                int i = 0;
+                while (System.currentTimeMillis() < deadline) {
+                    if (writer) {
+                        answers.put(i++ % 200, "A");
+                        LocalCache.saveSubmission(examId, studentId, answers);
+                        writes.incrementAndGet();
+                    } else {
+                        LocalCache.getQuestions(examId);
+                        reads.incrementAndGet();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = DURATION_MS / 1000.0;
+        System.out.printf("poolSize=%d threads=%d reads/s=%.0f writes/s=%.0f%n",
+                poolSize, THREADS, reads.get() / seconds, writes.get() / seconds);
+    }
+}
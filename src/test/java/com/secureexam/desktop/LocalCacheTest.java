@@ -5,10 +5,16 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.AfterEach;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Tests for the LocalCache class to verify caching functionality.
@@ -146,4 +152,247 @@ public class LocalCacheTest {
         
         System.out.println("[DEBUG_LOG] Cleanup exam cache test passed");
     }
+
+    @Test
+    public void testFailedQuestionSaveKeepsPreviousCache() throws Exception {
+        LocalCache.saveQuestions(examId, questions);
+
+        // A temporary constraint makes the batch fail part-way through
+        try (java.sql.Connection conn = java.sql.DriverManager.getConnection(LocalCache.databaseUrl());
+             java.sql.Statement stmt = conn.createStatement()) {
+            stmt.execute("ALTER TABLE cached_questions ADD CONSTRAINT test_max_ordinal CHECK (ordinal < 4)");
+            try {
+                List<Question> broken = new ArrayList<>(questions);
+                broken.add(new Question(examId, "Question 4", new String[]{"A", "B", "C", "D"}, "A"));
+                broken.add(new Question(examId, "Question 5", new String[]{"A", "B", "C", "D"}, "A"));
+                LocalCache.saveQuestions(examId, broken);
+            } finally {
+                stmt.execute("ALTER TABLE cached_questions DROP CONSTRAINT test_max_ordinal");
+            }
+        }
+
+        List<Question> cachedQuestions = LocalCache.getQuestions(examId);
+        assertEquals(questions.size(), cachedQuestions.size(), "A failed save must leave the previous questions intact");
+        System.out.println("[DEBUG_LOG] All-or-nothing question save test passed");
+    }
+
+    @Test
+    public void testLongExamsAreCompressedInsteadOfFailing() {
+        List<Question> longExam = new ArrayList<>();
+        Map<Integer, String> longAnswers = new HashMap<>();
+        for (int i = 0; i < 300; i++) {
+            String unit = i % 2 == 0 ? "metres per second" : "kilograms";
+            longExam.add(new Question(examId, "Question " + i + ": a body travels for " + i + " seconds. " +
+                "Which value, in " + unit + ", best describes the result?",
+                new String[]{i + " " + unit, (i + 1) + " " + unit, (i + 2) + " " + unit, (i + 3) + " " + unit},
+                (i + 1) + " " + unit));
+            longAnswers.put(i, (i + 1) + " " + unit);
+        }
+        longExam.add(new Question(examId, "x".repeat(100_000), new String[]{"A", "B", "C", "D"}, "A"));
+        LocalCache.saveQuestions(examId, longExam);
+        LocalCache.saveSubmission(examId, studentId, longAnswers);
+
+        assertEquals(longExam.size(), LocalCache.getQuestions(examId).size(), "Long questions should be cached");
+        assertEquals(longExam.get(300).getText(), LocalCache.getQuestions(examId).get(300).getText());
+        assertEquals(longAnswers, LocalCache.getSubmission(examId, studentId),
+            "Submissions longer than the old 2048-character column should round-trip");
+
+        CompressionStats stats = LocalCache.getCompressionStats(examId);
+        assertNotNull(stats);
+        assertTrue(stats.getRatio() < 0.5, "Repetitive exam text should compress well, got " + stats);
+        System.out.println("[DEBUG_LOG] Compression stats: " + stats);
+    }
+
+    @Test
+    public void testCachedRowsAreEncryptedAtRest() throws Exception {
+        LocalCache.useCipher(new CacheCipher(new byte[32])); // the test settings leave encryption off
+        try {
+            LocalCache.saveQuestions(examId, questions);
+            LocalCache.saveSubmission(examId, studentId, Map.of(0, "secret answer"));
+            LocalCache.saveAnswers(examId, studentId, Map.of(1, "secret delta"));
+
+            try (java.sql.Connection conn = java.sql.DriverManager.getConnection(LocalCache.databaseUrl());
+                 java.sql.PreparedStatement stmt = conn.prepareStatement(
+                     "SELECT q.payload FROM cached_questions q JOIN cached_exams e ON q.examKey = e.examKey WHERE e.examId = ?")) {
+                stmt.setString(1, examId);
+                try (java.sql.ResultSet rs = stmt.executeQuery()) {
+                    int rows = 0;
+                    while (rs.next()) {
+                        assertTrue(CacheCipher.isSealed(rs.getBytes(1)), "Question rows should be sealed");
+                        rows++;
+                    }
+                    assertEquals(questions.size(), rows);
+                }
+                try (java.sql.ResultSet rs = conn.createStatement().executeQuery(
+                         "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_NAME = 'CACHED_QUESTIONS' AND COLUMN_NAME = 'CORRECTINDEX'")) {
+                    rs.next();
+                    assertEquals(0, rs.getInt(1), "The correct answer should only be stored inside the encrypted payload");
+                }
+            }
+
+            assertEquals(Map.of(0, "secret answer", 1, "secret delta"), LocalCache.getSubmission(examId, studentId));
+            assertEquals(questions.get(0).getCorrectAnswer(), LocalCache.getQuestions(examId).get(0).getCorrectAnswer());
+        } finally {
+            // Sealed rows must not outlive the key, or later tests walking every submission could not read them
+            LocalCache.markSubmissionAsSynced(examId, studentId);
+            LocalCache.cleanupExamCache(examId);
+            LocalCache.useCipher(null);
+        }
+        System.out.println("[DEBUG_LOG] Encryption at rest test passed");
+    }
+
+    @Test
+    public void testPlaintextRecordsAreSealedOnceAndThenRejected() throws Exception {
+        LocalCache.saveQuestions(examId, questions);
+        LocalCache.saveSubmission(examId, studentId, Map.of(0, "written in the clear"));
+        byte[] plaintext;
+        try (CachePool.Lease lease = LocalCache.acquire()) {
+            plaintext = submissionAnswers(lease);
+        }
+        LocalCache.useCipher(new CacheCipher(new byte[32]));
+        try {
+            assertTrue(LocalCache.getSubmission(examId, studentId).isEmpty(), "Plaintext should be rejected under a key");
+
+            LocalCache.sealPlaintextRecords();
+            assertEquals(Map.of(0, "written in the clear"), LocalCache.getSubmission(examId, studentId));
+            assertEquals(questions.get(1).getCorrectAnswer(), LocalCache.getQuestions(examId).get(1).getCorrectAnswer());
+            try (CachePool.Lease lease = LocalCache.acquire()) {
+                assertTrue(CacheCipher.isSealed(submissionAnswers(lease)), "The row should be sealed in place");
+                // Swapping the sealed row for a plaintext one must not get past authentication
+                PreparedStatement swap = lease.prepare("UPDATE submissions SET answers = ? WHERE examId = ? AND studentId = ?");
+                swap.setBytes(1, plaintext);
+                swap.setString(2, examId);
+                swap.setString(3, studentId);
+                swap.executeUpdate();
+            }
+            LocalCache.sealPlaintextRecords(); // already done; does not accept the swapped row
+            assertTrue(LocalCache.getSubmission(examId, studentId).isEmpty(), "A swapped-in plaintext row should be rejected");
+        } finally {
+            LocalCache.markSubmissionAsSynced(examId, studentId);
+            LocalCache.cleanupExamCache(examId);
+            LocalCache.useCipher(null);
+            LocalCache.sealPlaintextRecords(); // clears the flag, as opening without encryption does
+        }
+        System.out.println("[DEBUG_LOG] Plaintext sealing test passed");
+    }
+
+    private byte[] submissionAnswers(CachePool.Lease lease) throws SQLException {
+        PreparedStatement stmt = lease.prepare("SELECT answers FROM submissions WHERE examId = ? AND studentId = ?");
+        stmt.setString(1, examId);
+        stmt.setString(2, studentId);
+        try (ResultSet rs = stmt.executeQuery()) {
+            assertTrue(rs.next());
+            return rs.getBytes(1);
+        }
+    }
+
+    @Test
+    public void testOptionsWithCommasAndOrderSurviveCaching() {
+        List<Question> tricky = new ArrayList<>();
+        tricky.add(new Question(examId, "Pick the list", new String[]{"1, 2", "3, 4", "5", "6,7,8"}, "6,7,8"));
+        tricky.add(new Question(examId, "Another", new String[]{"a", "b", "c", "d"}, "d"));
+        tricky.add(new Question(examId, "Before", new String[]{"a", "b", "c", "d"}, "a"));
+        LocalCache.saveQuestions(examId, tricky);
+
+        List<Question> cachedQuestions = LocalCache.getQuestions(examId);
+        for (int i = 0; i < tricky.size(); i++) {
+            assertEquals(tricky.get(i).getText(), cachedQuestions.get(i).getText(), "Order should be preserved at " + i);
+            assertArrayEquals(tricky.get(i).getOptions(), cachedQuestions.get(i).getOptions(), "Options should round-trip at " + i);
+        }
+        System.out.println("[DEBUG_LOG] Comma-safe options test passed");
+    }
+
+    @Test
+    public void testQuestionOrderIsStoredPerStudent() {
+        LocalCache.saveQuestions(examId, questions);
+        QuestionOrder order = QuestionOrder.shuffle(questions.size(), new java.util.Random(7));
+        LocalCache.saveQuestionOrder(examId, studentId, order);
+
+        QuestionOrder stored = LocalCache.getQuestionOrder(examId, studentId);
+        assertNotNull(stored, "Stored order should be readable");
+        for (int i = 0; i < questions.size(); i++) {
+            assertEquals(order.canonicalOrdinal(i), stored.canonicalOrdinal(i), "Question order should match at " + i);
+        }
+        assertNull(LocalCache.getQuestionOrder(examId, "someone-else"), "Orders are per student");
+
+        // Changing the question count invalidates stored orders
+        LocalCache.saveQuestions(examId, questions.subList(0, 2));
+        assertNull(LocalCache.getQuestionOrder(examId, studentId), "Stale order should be dropped");
+        System.out.println("[DEBUG_LOG] Question order test passed");
+    }
+
+    @Test
+    public void testLegacyQuestionsTableIsMigrated() throws Exception {
+        try (java.sql.Connection conn = java.sql.DriverManager.getConnection(LocalCache.databaseUrl());
+             java.sql.Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE questions (examId VARCHAR(255), text VARCHAR(1024), options VARCHAR(2048), " +
+                "correctAnswer VARCHAR(255), created TIMESTAMP DEFAULT CURRENT_TIMESTAMP, PRIMARY KEY (examId, text))");
+            stmt.execute("INSERT INTO questions (examId, text, options, correctAnswer) VALUES ('" + examId + "', 'Legacy 1', 'A,B,C,D', 'B')");
+            stmt.execute("INSERT INTO questions (examId, text, options, correctAnswer) VALUES ('" + examId + "', 'Legacy 2', 'A,B,C,D,E', 'A')");
+        }
+
+        LocalCache.migrateLegacySchema();
+
+        List<Question> migrated = LocalCache.getQuestions(examId);
+        assertEquals(1, migrated.size(), "Only rows that still split into four options can be migrated");
+        assertEquals("B", migrated.get(0).getCorrectAnswer(), "Correct answer should be carried over");
+        try (java.sql.Connection conn = java.sql.DriverManager.getConnection(LocalCache.databaseUrl());
+             java.sql.ResultSet rs = conn.createStatement().executeQuery(
+                 "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = 'QUESTIONS'")) {
+            rs.next();
+            assertEquals(0, rs.getInt(1), "Legacy table should be dropped after migration");
+        }
+        System.out.println("[DEBUG_LOG] Legacy migration test passed");
+    }
+
+    @Test
+    public void testRepeatedReadsAreServedFromMemory() {
+        LocalCache.saveQuestions(examId, questions);
+        List<Question> first = LocalCache.getQuestions(examId);
+        long hits = LocalCache.getQuestionCache().getHits();
+
+        assertSame(first, LocalCache.getQuestions(examId), "Second read should return the decoded L1 copy");
+        assertEquals(hits + 1, LocalCache.getQuestionCache().getHits(), "Second read should count as a hit");
+
+        List<Question> changed = new ArrayList<>(questions);
+        changed.set(0, new Question(examId, "Question 1 (fixed)", new String[]{"A", "B", "C", "D"}, "A"));
+        LocalCache.saveQuestions(examId, changed);
+        assertEquals("Question 1 (fixed)", LocalCache.getQuestions(examId).get(0).getText(),
+                "Re-cached content must not be served stale");
+        System.out.println("[DEBUG_LOG] L1 cache test passed");
+    }
+
+    @Test
+    public void testConcurrentReadersAndWriters() throws Exception {
+        LocalCache.saveQuestions(examId, questions);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 25; i++) {
+                        if (thread % 2 == 0) {
+                            assertEquals(questions.size(), LocalCache.getQuestions(examId).size(),
+                                    "Readers should always see the full question set");
+                        } else {
+                            LocalCache.saveSubmission(examId, studentId + thread, answers);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        for (int t = 1; t < 8; t += 2) {
+            assertEquals(answers, LocalCache.getSubmission(examId, studentId + t),
+                    "Each concurrent writer's submission should be intact");
+            LocalCache.markSubmissionAsSynced(examId, studentId + t);
+        }
+        System.out.println("[DEBUG_LOG] Concurrent readers and writers test passed");
+    }
 }
\ No newline at end of file
@@ -0,0 +1,248 @@
+package com.secureexam.desktop;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for the MvStoreCache key-value engine and the migration from the SQL tables.
+ */
+public class MvStoreCacheTest {
+
+    private String fileName;
+    private String examId;
+    private MvStoreCache store;
+    private List<Question> questions;
+
+    @BeforeEach
+    public void setUp() {
+        new File("target").mkdirs();
+        fileName = "target/mvstore-test-" + System.nanoTime() + ".kv";
+        examId = "kv-exam-" + System.nanoTime();
+        store = new MvStoreCache(fileName);
+        questions = new ArrayList<>();
+        questions.add(new Question(examId, "Pick one, please", new String[]{"1,000", "2,000", "3", "4"}, "2,000"));
+        questions.add(new Question(examId, "Unicode é中", new String[]{"é", "b", "c", "d"}, "d"));
+        System.out.println("[DEBUG_LOG] Test setup complete with store: " + fileName);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        store.close();
+        new File(fileName).delete();
+        System.out.println("[DEBUG_LOG] Test cleanup complete");
+    }
+
+    @Test
+    public void testQuestionsAndOrdersRoundTripAcrossReopen() {
+        store.saveQuestions(examId, questions);
+        QuestionOrder order = QuestionOrder.shuffle(2, new java.util.Random(7));
+        assertTrue(store.saveQuestionOrder(examId, "student", order), "Order should be stored for a cached exam");
+        assertFalse(store.saveQuestionOrder("missing", "student", order), "Order needs a cached exam");
+
+        store.close();
+        store = new MvStoreCache(fileName);
+
+        MvStoreCache.VersionedQuestions loaded = store.getQuestions(examId);
+        assertNotNull(loaded, "Questions should survive reopening the store");
+        assertEquals(QuestionCodec.contentHash(questions), loaded.getVersion(), "Version should be the content hash");
+        assertEquals(store.getVersion(examId).longValue(), loaded.getVersion(), "Version map should agree with the record");
+        for (int i = 0; i < questions.size(); i++) {
+            assertEquals(questions.get(i).getText(), loaded.getQuestions().get(i).getText());
+            assertArrayEquals(questions.get(i).getOptions(), loaded.getQuestions().get(i).getOptions());
+            assertEquals(questions.get(i).getCorrectAnswer(), loaded.getQuestions().get(i).getCorrectAnswer());
+        }
+        assertArrayEquals(order.encode(), store.getQuestionOrder(examId, "student").encode());
+        assertTrue(store.isCached(examId));
+        System.out.println("[DEBUG_LOG] Round trip test passed");
+    }
+
+    @Test
+    public void testAutosavedAnswersUpdateSubmissionInPlace() {
+        Map<Integer, String> answers = new HashMap<>();
+        answers.put(0, "1,000");
+        answers.put(1, "b");
+        store.saveSubmission(examId, "student", answers);
+
+        Map<Integer, String> changes = new HashMap<>();
+        changes.put(0, null);
+        changes.put(1, "c");
+        store.saveAnswers(examId, "student", changes);
+
+        Map<Integer, String> saved = store.getSubmission(examId, "student");
+        assertEquals(Map.of(1, "c"), saved, "Changes should be applied and nulls should clear answers");
+
+        List<PendingSubmission> pending = store.pendingSubmissionPage(null, null, 10, false);
+        assertEquals(1, pending.size());
+        assertEquals(Map.of(1, "c"), pending.get(0).getAnswers());
+
+        store.markSubmissionAsSynced(examId, "student");
+        assertTrue(store.pendingSubmissionPage(null, null, 10, false).isEmpty(), "Synced submission should no longer be pending");
+        assertEquals(0, store.cleanupExam(examId), "No exam questions were cached");
+        assertTrue(store.getSubmission(examId, "student").isEmpty(), "Synced submission should be cleaned up");
+        System.out.println("[DEBUG_LOG] Autosave test passed");
+    }
+
+    @Test
+    public void testAnswerSheetIsKeptWithSubmission() {
+        store.saveSubmission(examId, "student", Map.of(0, "a"));
+        AnswerSheet sheet = new AnswerSheet(3);
+        sheet.setAnswer(2, 1);
+        store.saveAnswerSheet(examId, "student", sheet.encode());
+        store.saveSubmission(examId, "student", Map.of(0, "b"));
+
+        assertArrayEquals(sheet.encode(), store.getAnswerSheet(examId, "student"), "A full save should keep the sheet");
+        assertEquals(Map.of(0, "b"), store.getSubmission(examId, "student"));
+        assertEquals(1, store.pendingSubmissionPage(null, null, 10, false).get(0).getAnswerSheet().getAnswer(2));
+        assertNull(store.getAnswerSheet(examId, "other"));
+        System.out.println("[DEBUG_LOG] Answer sheet test passed");
+    }
+
+    @Test
+    public void testOnlyFinishedSubmissionsAreOfferedForUpload() {
+        AnswerSheet sheet = new AnswerSheet(3);
+        sheet.setAnswer(0, 2);
+        store.saveAnswerSheet(examId, "in-progress", sheet.encode());
+        store.saveAnswerSheet(examId, "finished", sheet.encode());
+        FinishedSubmission finished = new FinishedSubmission(examId, "finished", "series", sheet, 1, 3, 0, 42L, 1_234);
+        store.finishSubmission(examId, "finished", finished.encode());
+        store.saveSubmission(examId, "finished", Map.of(0, "c")); // a late full save keeps the payload
+
+        assertEquals(2, store.pendingSubmissionPage(null, null, 10, false).size());
+        List<PendingSubmission> upload = store.pendingSubmissionPage(null, null, 10, true);
+        assertEquals(1, upload.size(), "An exam in progress should not be uploaded");
+        assertEquals(finished.toFirestore(), upload.get(0).getFinished().toFirestore());
+        assertNull(store.pendingSubmissionPage(null, null, 10, false).get(1).getFinished());
+
+        store.markSubmissionAsSynced(examId, "finished");
+        assertTrue(store.pendingSubmissionPage(null, null, 10, true).isEmpty());
+        System.out.println("[DEBUG_LOG] Finished submission test passed");
+    }
+
+    @Test
+    public void testUnreadableSubmissionIsLeftOutOfUploads() {
+        store.finishSubmission(examId, "poison", new byte[]{9, 9, 9});
+        PendingSubmission poison = store.pendingSubmissionPage(null, null, 10, true).get(0);
+        assertThrows(IllegalArgumentException.class, poison::getFinished);
+
+        store.setAsideSubmission(examId, "poison");
+        assertTrue(store.pendingSubmissionPage(null, null, 10, true).isEmpty(), "A set-aside row should not be uploaded");
+        assertEquals(1, store.pendingSubmissionPage(null, null, 10, false).size(), "It should be kept, unsynced");
+
+        AnswerSheet sheet = new AnswerSheet(1);
+        store.finishSubmission(examId, "poison", new FinishedSubmission(examId, "poison", "series", sheet, 0, 1, 0, null, 1).encode());
+        assertEquals(1, store.pendingSubmissionPage(null, null, 10, true).size(), "Finishing again should clear the mark");
+        System.out.println("[DEBUG_LOG] Unreadable submission test passed");
+    }
+
+    @Test
+    public void testExpiryRemovesOnlyOldEntries() {
+        store.saveQuestions(examId, questions, 1_000);
+        store.saveQuestions(examId + "-fresh", questions, System.currentTimeMillis());
+        store.saveQuestionOrder(examId, "student", QuestionOrder.shuffle(2, new java.util.Random(1)));
+        store.saveSubmission(examId, "synced", Map.of(0, "1,000"), true, 1_000);
+        store.saveSubmission(examId, "pending", Map.of(0, "1,000"), false, 1_000);
+
+        ExpiryReport report = new ExpiryReport();
+        List<String> removed = new ArrayList<>();
+        long cutoff = System.currentTimeMillis() - 60_000;
+        assertFalse(store.expireExamChunk(cutoff, 100, report, removed::add));
+        assertFalse(store.expireSubmissionChunk(cutoff, 100, report));
+
+        assertEquals(List.of(examId), removed);
+        assertFalse(store.isCached(examId), "Old exam should expire");
+        assertNull(store.getQuestionOrder(examId, "student"), "Orders should go with their exam");
+        assertTrue(store.isCached(examId + "-fresh"), "Fresh exam should be kept");
+        assertTrue(store.getSubmission(examId, "synced").isEmpty(), "Old synced submission should expire");
+        assertFalse(store.getSubmission(examId, "pending").isEmpty(), "Unsynced submissions are never expired");
+        assertEquals(1, report.getExamsDeleted());
+        assertEquals(1, report.getSubmissionsDeleted());
+        System.out.println("[DEBUG_LOG] Expiry test passed");
+    }
+
+    @Test
+    public void testEncryptedStoreNeedsItsKey() {
+        store.close();
+        new File(fileName).delete();
+        CacheCipher cipher = new CacheCipher(new byte[32]);
+        store = new MvStoreCache(fileName, new PayloadCodec(PayloadCodec.Algorithm.DEFLATE), cipher);
+        store.saveQuestions(examId, questions);
+        store.saveSubmission(examId, "student", Map.of(0, "1,000"));
+        assertEquals(questions.get(1).getText(), store.getQuestions(examId).getQuestions().get(1).getText());
+        assertEquals(Map.of(0, "1,000"), store.getSubmission(examId, "student"));
+
+        store.close();
+        store = new MvStoreCache(fileName);
+        assertThrows(IllegalStateException.class, () -> store.getQuestions(examId),
+            "Encrypted records should not open without the key");
+        assertThrows(IllegalStateException.class, () -> store.getSubmission(examId, "student"));
+        System.out.println("[DEBUG_LOG] Encrypted store test passed");
+    }
+
+    @Test
+    public void testPlaintextStoreIsSealedWhenOpenedWithAKey() {
+        store.saveQuestions(examId, questions);
+        store.saveSubmission(examId, "student", Map.of(0, "1,000"));
+        store.close();
+
+        CacheCipher cipher = new CacheCipher(new byte[32]);
+        store = new MvStoreCache(fileName, new PayloadCodec(PayloadCodec.Algorithm.DEFLATE), cipher);
+        assertEquals(questions.get(1).getText(), store.getQuestions(examId).getQuestions().get(1).getText());
+        assertEquals(Map.of(0, "1,000"), store.getSubmission(examId, "student"));
+
+        store.close();
+        store = new MvStoreCache(fileName);
+        assertThrows(IllegalStateException.class, () -> store.getQuestions(examId), "Records should now be sealed");
+        assertThrows(IllegalStateException.class, () -> store.getSubmission(examId, "student"));
+        System.out.println("[DEBUG_LOG] Plaintext store sealing test passed");
+    }
+
+    @Test
+    public void testInMemoryStoreSnapshotsToDisk() throws Exception {
+        java.nio.file.Path snapshot = java.nio.file.Path.of(fileName + ".snapshot");
+        try (MvStoreCache memory = new MvStoreCache(null)) {
+            memory.saveQuestions(examId, questions);
+            memory.saveSubmission(examId, "student", Map.of(0, "1,000"));
+            assertEquals(0, memory.getFileSize(), "An in-memory store has no file");
+            assertTrue(memory.snapshotTo(snapshot) > 0);
+        }
+        try (MvStoreCache restored = new MvStoreCache(null)) {
+            assertTrue(restored.restoreFrom(snapshot) >= 3, "Versions, exams and submissions should be restored");
+            assertEquals(questions.size(), restored.getQuestions(examId).getQuestions().size());
+            assertEquals(Map.of(0, "1,000"), restored.getSubmission(examId, "student"));
+            assertEquals(List.of(examId), restored.examsOldestFirst());
+        } finally {
+            java.nio.file.Files.deleteIfExists(snapshot);
+        }
+        System.out.println("[DEBUG_LOG] In-memory snapshot test passed");
+    }
+
+    @Test
+    public void testMigrationMovesSqlRowsIntoStore() throws Exception {
+        LocalCache.saveQuestions(examId, questions);
+        QuestionOrder order = QuestionOrder.shuffle(2, new java.util.Random(3));
+        LocalCache.saveQuestionOrder(examId, "student", order);
+        LocalCache.saveSubmission(examId, "student", Map.of(0, "1,000"));
+        LocalCache.saveAnswers(examId, "student", Map.of(1, "d"));
+
+        LocalCache.migrateToKeyValue(store);
+
+        assertFalse(LocalCache.isCached(examId), "SQL rows should be removed after migration");
+        assertTrue(LocalCache.getSubmission(examId, "student").isEmpty(), "SQL submission should be removed");
+        assertTrue(store.isCached(examId), "Exam should be in the key-value store");
+        assertEquals(QuestionCodec.contentHash(questions), store.getVersion(examId).longValue());
+        assertArrayEquals(order.encode(), store.getQuestionOrder(examId, "student").encode());
+        assertEquals(Map.of(0, "1,000", 1, "d"), store.getSubmission(examId, "student"),
+            "Autosaved deltas should be folded into the migrated submission");
+        assertEquals(1, store.pendingSubmissionPage(null, null, 1000, false).stream().filter(p -> examId.equals(p.getExamId())).count(),
+            "Migrated submission should still be pending");
+        System.out.println("[DEBUG_LOG] Migration test passed");
+    }
+}
@@ -0,0 +1,67 @@
+package com.secureexam.desktop;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for the PayloadCodec class to verify framing, algorithms and exam dictionaries.
+ */
+public class PayloadCodecTest {
+
+    private static byte[] text(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testEveryAlgorithmRoundTrips() {
+        byte[] raw = text("Which of the following is a prime number? ".repeat(20));
+        for (PayloadCodec.Algorithm algorithm : PayloadCodec.Algorithm.values()) {
+            PayloadCodec codec = new PayloadCodec(algorithm);
+            byte[] stored = codec.compress(raw, null);
+            assertArrayEquals(raw, PayloadCodec.decompress(stored, null), algorithm + " should round-trip");
+            if (algorithm != PayloadCodec.Algorithm.NONE) {
+                assertTrue(stored.length < raw.length / 4, algorithm + " should shrink repetitive text");
+                assertTrue(codec.getRatio() < 0.25, algorithm + " ratio should be tracked");
+            }
+        }
+        System.out.println("[DEBUG_LOG] Algorithm round trip test passed");
+    }
+
+    @Test
+    public void testIncompressibleDataIsStoredAsIs() {
+        byte[] raw = new byte[512];
+        new Random(1).nextBytes(raw);
+        PayloadCodec codec = new PayloadCodec(PayloadCodec.Algorithm.DEFLATE);
+        byte[] stored = codec.compress(raw, null);
+        assertTrue(stored.length <= raw.length + 3, "Random bytes should only pay for the frame header");
+        assertArrayEquals(raw, PayloadCodec.decompress(stored, null));
+        System.out.println("[DEBUG_LOG] Incompressible data test passed");
+    }
+
+    @Test
+    public void testExamDictionaryShrinksShortRows() {
+        List<byte[]> rows = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            rows.add(text("Q" + i + ": Identify the correct SI unit for the quantity measured in experiment " + i));
+        }
+        byte[] dictionary = PayloadCodec.trainDictionary(rows, PayloadCodec.MAX_DICTIONARY_BYTES);
+        assertNotNull(dictionary);
+        assertTrue(dictionary.length <= PayloadCodec.MAX_DICTIONARY_BYTES);
+
+        PayloadCodec codec = new PayloadCodec(PayloadCodec.Algorithm.DEFLATE);
+        byte[] row = rows.get(123);
+        byte[] plain = codec.compress(row, null);
+        byte[] withDictionary = codec.compress(row, dictionary);
+        assertTrue(withDictionary.length < plain.length / 2,
+            "Dictionary should shrink a short row: " + withDictionary.length + " vs " + plain.length);
+        assertArrayEquals(row, PayloadCodec.decompress(withDictionary, dictionary));
+        assertThrows(IllegalStateException.class, () -> PayloadCodec.decompress(withDictionary, null),
+            "Decoding a dictionary payload without its dictionary must fail loudly");
+        System.out.println("[DEBUG_LOG] Dictionary test passed");
+    }
+}
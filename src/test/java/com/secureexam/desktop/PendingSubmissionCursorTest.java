@@ -0,0 +1,172 @@
+package com.secureexam.desktop;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Tests for paged pending-submission cursors and the resumable sync built on them.
+ */
+public class PendingSubmissionCursorTest {
+
+    private static final int SUBMISSIONS = 25;
+    private String examId;
+
+    @BeforeEach
+    public void setUp() {
+        examId = "cursor-exam-" + System.nanoTime();
+        for (int i = 0; i < SUBMISSIONS; i++) {
+            LocalCache.saveSubmission(examId, String.format("student-%02d", i), Map.of(0, "A" + i));
+        }
+        // An autosaved delta must be visible through the cursor
+        try {
+            LocalCache.saveAnswers(examId, "student-03", Map.of(1, "B"));
+        } catch (Exception e) {
+            fail(e);
+        }
+        System.out.println("[DEBUG_LOG] Test setup complete with examId: " + examId);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        for (int i = 0; i < SUBMISSIONS; i++) {
+            LocalCache.markSubmissionAsSynced(examId, String.format("student-%02d", i));
+        }
+        LocalCache.cleanupExamCache(examId);
+        System.out.println("[DEBUG_LOG] Test cleanup complete for examId: " + examId);
+    }
+
+    private List<String> ownStudents(PendingSubmissionCursor cursor, int limit) {
+        List<String> students = new ArrayList<>();
+        while (students.size() < limit && cursor.hasNext()) {
+            PendingSubmission submission = cursor.next();
+            if (submission.getExamId().equals(examId)) {
+                students.add(submission.getStudentId());
+            }
+        }
+        return students;
+    }
+
+    @Test
+    public void testPagesCoverEveryRowOnceWhileRowsAreMarkedSynced() {
+        PendingSubmissionCursor cursor = LocalCache.openPendingSubmissions(null, 7);
+        List<String> seen = new ArrayList<>();
+        while (cursor.hasNext()) {
+            PendingSubmission submission = cursor.next();
+            if (!submission.getExamId().equals(examId)) {
+                continue;
+            }
+            seen.add(submission.getStudentId());
+            if (submission.getStudentId().equals("student-03")) {
+                assertEquals(Map.of(0, "A3", 1, "B"), submission.getAnswers(), "Deltas should be applied");
+            }
+            // Syncing during iteration must not shift later pages
+            LocalCache.markSubmissionAsSynced(examId, submission.getStudentId());
+        }
+        assertFalse(cursor.hasFailed());
+        assertEquals(SUBMISSIONS, seen.size(), "Every pending row should be returned once");
+        List<String> sorted = new ArrayList<>(seen);
+        sorted.sort(null);
+        assertEquals(sorted, seen, "Rows should come in key order");
+        System.out.println("[DEBUG_LOG] Paging test passed");
+    }
+
+    @Test
+    public void testHighWaterMarkResumesAfterLastRow() {
+        PendingSubmissionCursor first = LocalCache.openPendingSubmissions(null, 4);
+        List<String> head = ownStudents(first, 10);
+        String mark = first.getHighWaterMark();
+
+        List<String> tail = ownStudents(LocalCache.openPendingSubmissions(mark, 4), SUBMISSIONS);
+        assertEquals(10, head.size());
+        assertEquals(SUBMISSIONS - 10, tail.size(), "Resumed cursor should continue after the mark");
+        assertEquals("student-10", tail.get(0));
+        System.out.println("[DEBUG_LOG] Resume test passed");
+    }
+
+    @Test
+    public void testSyncStopsOnFailureAndResumes() throws Exception {
+        // Every exam but the last has ended; the last is still being answered and must never be uploaded
+        for (int i = 0; i < SUBMISSIONS - 1; i++) {
+            LocalCache.finishSubmission(finished(String.format("student-%02d", i), i));
+        }
+        List<String> uploaded = new ArrayList<>();
+        boolean[] failing = {true};
+        SubmissionSync sync = new SubmissionSync(submission -> {
+            if (failing[0] && submission.getExamId().equals(examId) && submission.getStudentId().equals("student-12")) {
+                throw new IllegalStateException("network down");
+            }
+            if (submission.getExamId().equals(examId)) {
+                Map<String, Object> data = submission.getFinished().toFirestore();
+                assertEquals(finished(submission.getStudentId(), uploaded.size()).toFirestore(), data,
+                    "The stored payload should be uploaded as it was built");
+                uploaded.add(submission.getStudentId());
+            }
+        }, 5);
+
+        sync.syncPending();
+        assertEquals(12, uploaded.size(), "Rows before the failure should be uploaded");
+        assertNotNull(sync.getHighWaterMark(), "Failed pass should leave a resume point");
+
+        failing[0] = false;
+        sync.syncPending();
+        assertEquals(SUBMISSIONS - 1, uploaded.size(), "Second pass should upload the rest");
+        assertEquals("student-12", uploaded.get(12), "Resume should retry the failed row first");
+        assertFalse(uploaded.contains("student-24"), "An exam in progress should not be uploaded");
+        assertNull(sync.getHighWaterMark(), "Completed pass should reset the mark");
+        assertEquals(List.of("student-24"), LocalCache.getPendingSubmissions().stream()
+                .filter(p -> examId.equals(p.get("examId"))).map(p -> p.get("studentId")).collect(Collectors.toList()),
+            "Uploaded rows should be marked as synced and the unfinished one left alone");
+        System.out.println("[DEBUG_LOG] Sync resume test passed");
+    }
+
+    @Test
+    public void testUnreadableSubmissionIsSetAsideAndSyncMovesOn() throws Exception {
+        for (int i = 0; i < SUBMISSIONS; i++) {
+            LocalCache.finishSubmission(finished(String.format("student-%02d", i), i));
+        }
+        try (CachePool.Lease lease = LocalCache.acquire()) {
+            var poison = lease.prepare("UPDATE submissions SET payload = ? WHERE examId = ? AND studentId = ?");
+            poison.setBytes(1, new byte[]{9, 9, 9});
+            poison.setString(2, examId);
+            poison.setString(3, "student-05");
+            assertEquals(1, poison.executeUpdate());
+        }
+        List<String> uploaded = new ArrayList<>();
+        SubmissionSync sync = new SubmissionSync(submission -> {
+            if (submission.getExamId().equals(examId)) {
+                uploaded.add(submission.getStudentId());
+            }
+        }, 4);
+
+        sync.syncPending();
+        assertEquals(SUBMISSIONS - 1, uploaded.size(), "Rows after the unreadable one should still be uploaded");
+        assertFalse(uploaded.contains("student-05"));
+        assertNull(sync.getHighWaterMark(), "The pass should reach the end");
+
+        List<String> offered = ownStudents(LocalCache.openFinishedSubmissions(null, 10), SUBMISSIONS);
+        assertTrue(offered.isEmpty(), "The unreadable row should not be offered for upload again");
+        assertEquals(List.of("student-05"), LocalCache.getPendingSubmissions().stream()
+                .filter(p -> examId.equals(p.get("examId"))).map(p -> p.get("studentId")).collect(Collectors.toList()),
+            "The unreadable row should be kept, unsynced");
+
+        LocalCache.finishSubmission(finished("student-05", 5));
+        assertEquals(List.of("student-05"), ownStudents(LocalCache.openFinishedSubmissions(null, 10), SUBMISSIONS),
+            "Finishing again should replace the payload and clear the mark");
+        System.out.println("[DEBUG_LOG] Unreadable submission test passed");
+    }
+
+    private FinishedSubmission finished(String studentId, int score) {
+        AnswerSheet sheet = new AnswerSheet(4);
+        sheet.setAnswer(0, score % 4);
+        sheet.setFlag(1, true);
+        return new FinishedSubmission(examId, studentId, "series@school.edu", sheet, score, 4, 1,
+            score % 2 == 0 ? (long) score : null, 1_000L + score);
+    }
+}
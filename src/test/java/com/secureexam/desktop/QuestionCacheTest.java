@@ -0,0 +1,69 @@
+package com.secureexam.desktop;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for the QuestionCache class to verify versioning, LRU size bounds and TTL expiry.
+ */
+public class QuestionCacheTest {
+
+    private static List<Question> questions(String examId, int count) {
+        List<Question> questions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            questions.add(new Question(examId, "Question " + i, new String[]{"A", "B", "C", "D"}, "A"));
+        }
+        return questions;
+    }
+
+    @Test
+    public void testHitRequiresMatchingVersion() {
+        QuestionCache cache = new QuestionCache(1 << 20, 60_000);
+        cache.put("exam", 1L, questions("exam", 3));
+
+        assertNotNull(cache.get("exam", 1L), "Same version should hit");
+        assertNull(cache.get("exam", 2L), "A new content version should miss");
+        assertNull(cache.get("exam", 1L), "The stale entry should have been dropped");
+        assertEquals(1, cache.getHits(), "One hit expected");
+        assertEquals(2, cache.getMisses(), "Two misses expected");
+        System.out.println("[DEBUG_LOG] Version test passed");
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvictedWhenOverBudget() {
+        long oneExam = QuestionCache.estimateBytes(questions("a", 10));
+        QuestionCache cache = new QuestionCache(oneExam * 2, 60_000);
+        cache.put("a", 1L, questions("a", 10));
+        cache.put("b", 1L, questions("b", 10));
+        cache.get("a", 1L); // touch a so b becomes eldest
+        cache.put("c", 1L, questions("c", 10));
+
+        assertNotNull(cache.get("a", 1L), "Recently used entry should survive");
+        assertNull(cache.get("b", 1L), "Least recently used entry should be evicted");
+        assertNotNull(cache.get("c", 1L), "Newest entry should be present");
+        assertTrue(cache.getSizeBytes() <= oneExam * 2, "Cache must stay within its byte budget");
+        assertEquals(1, cache.getEvictions(), "One eviction expected");
+        System.out.println("[DEBUG_LOG] LRU eviction test passed");
+    }
+
+    @Test
+    public void testExpiredEntriesMiss() throws InterruptedException {
+        QuestionCache cache = new QuestionCache(1 << 20, 20);
+        cache.put("exam", 1L, questions("exam", 3));
+        Thread.sleep(50);
+        assertNull(cache.get("exam", 1L), "Entry past its TTL should miss");
+        assertEquals(0, cache.getEntryCount(), "Expired entry should be removed");
+        System.out.println("[DEBUG_LOG] TTL test passed");
+    }
+
+    @Test
+    public void testCachedListIsImmutable() {
+        QuestionCache cache = new QuestionCache(1 << 20, 60_000);
+        List<Question> stored = cache.put("exam", 1L, questions("exam", 3));
+        assertThrows(UnsupportedOperationException.class, () -> stored.add(null), "Shared list must be unmodifiable");
+        System.out.println("[DEBUG_LOG] Immutability test passed");
+    }
+}
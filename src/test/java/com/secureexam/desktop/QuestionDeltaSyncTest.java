@@ -0,0 +1,140 @@
+package com.secureexam.desktop;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for QuestionDeltaSync and LocalCache.patchQuestions against an in-memory manifest store.
+ */
+public class QuestionDeltaSyncTest {
+
+    private String examId;
+    private ExamManifest manifest;
+    private final Map<String, Question> published = new HashMap<>();
+    private int questionsServed;
+    private QuestionDeltaSync sync;
+
+    @BeforeEach
+    public void setUp() {
+        examId = "delta-exam-" + System.nanoTime();
+        sync = new QuestionDeltaSync(new QuestionDeltaSync.Remote() {
+            @Override
+            public ExamManifest fetchManifest(String id) {
+                return manifest;
+            }
+
+            @Override
+            public Map<String, Question> fetchQuestions(String id, List<String> hashes) {
+                Map<String, Question> result = new HashMap<>();
+                for (String hash : hashes) {
+                    if (published.containsKey(hash)) {
+                        result.put(hash, published.get(hash));
+                        questionsServed++;
+                    }
+                }
+                return result;
+            }
+        });
+        System.out.println("[DEBUG_LOG] Test setup complete for " + examId);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        LocalCache.cleanupExamCache(examId);
+        System.out.println("[DEBUG_LOG] Test cleanup complete");
+    }
+
+    @Test
+    public void testOneEditFetchesAndWritesOneQuestion() {
+        List<Question> questions = questions(500);
+        publish(questions);
+        assertEquals(500, sync.sync(examId).size());
+        assertEquals(500, questionsServed, "The first sync needs every question");
+
+        questions.set(123, new Question(examId, "Fixed typo in question 123",
+            new String[]{"A123", "B123", "C123", "D123"}, "A123"));
+        publish(questions);
+        questionsServed = 0;
+        List<Question> synced = sync.sync(examId);
+
+        assertEquals(1, questionsServed, "Only the edited question should be downloaded");
+        assertEquals(1, sync.getLastRowsWritten(), "Only the edited row should be rewritten");
+        assertEquals(QuestionCodec.contentHash(questions), QuestionCodec.contentHash(synced));
+        assertEquals(QuestionCodec.contentHash(questions), LocalCache.getQuestionsVersion(examId));
+        System.out.println("[DEBUG_LOG] One-question edit synced with " + sync.getLastBytesFetched() + " bytes");
+
+        questionsServed = 0;
+        assertEquals(500, sync.sync(examId).size());
+        assertEquals(0, questionsServed, "An unchanged exam should fetch nothing");
+        assertEquals(0, sync.getLastRowsWritten());
+    }
+
+    @Test
+    public void testReorderAppendAndRemove() {
+        List<Question> questions = questions(20);
+        publish(questions);
+        sync.sync(examId);
+
+        List<Question> edited = new ArrayList<>(questions.subList(0, 15));
+        edited.add(0, edited.remove(14)); // move a question to the front
+        edited.add(new Question(examId, "Appended question", new String[]{"W", "X", "Y", "Z"}, "Z"));
+        publish(edited);
+        questionsServed = 0;
+        List<Question> synced = sync.sync(examId);
+
+        assertEquals(1, questionsServed, "Moved questions are already cached; only the new one is fetched");
+        assertEquals(16, synced.size());
+        assertEquals(QuestionCodec.contentHash(edited), QuestionCodec.contentHash(synced));
+        assertEquals(16, LocalCache.getQuestions(examId).size(), "Rows past the new end should be removed");
+    }
+
+    @Test
+    public void testPatchTellsAFullRewriteApart() {
+        List<Question> questions = questions(10);
+        QuestionPatch first = LocalCache.patchQuestions(examId, questions);
+        assertNotNull(first);
+        assertTrue(first.isFullRewrite(), "An exam not cached yet is written in full");
+        assertEquals(10, first.getRowsWritten());
+
+        questions.set(4, new Question(examId, "Edited", new String[]{"P", "Q", "R", "S"}, "S"));
+        QuestionPatch second = LocalCache.patchQuestions(examId, questions);
+        assertFalse(second.isFullRewrite());
+        assertEquals(1, second.getRowsWritten());
+        assertEquals("Edited", LocalCache.getQuestions(examId).get(4).getText());
+        System.out.println("[DEBUG_LOG] Patch result test passed");
+    }
+
+    @Test
+    public void testFallsBackWithoutUsableManifest() {
+        manifest = null;
+        assertNull(sync.sync(examId), "No manifest means a full download");
+
+        List<Question> questions = questions(5);
+        manifest = new ExamManifest(1, ExamManifest.hashesOf(questions));
+        assertNull(sync.sync(examId), "A manifest naming unavailable questions must not be half applied");
+        assertFalse(LocalCache.isCached(examId));
+    }
+
+    private void publish(List<Question> questions) {
+        for (Question question : questions) {
+            published.put(ExamManifest.hashOf(question), question);
+        }
+        manifest = new ExamManifest(manifest != null ? manifest.getVersion() + 1 : 1, ExamManifest.hashesOf(questions));
+    }
+
+    private List<Question> questions(int count) {
+        List<Question> questions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            questions.add(new Question(examId, "Delta question " + i + " about topic " + (i % 7),
+                new String[]{"A" + i, "B" + i, "C" + i, "D" + i}, "A" + i));
+        }
+        return questions;
+    }
+}
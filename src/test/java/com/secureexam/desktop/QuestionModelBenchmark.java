@@ -0,0 +1,104 @@
+package com.secureexam.desktop;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Manual benchmark of the question model over a 10,000-question bank: constructing the bank,
+ * laying it out for a student and scoring a full answer sheet, with time and bytes allocated
+ * per question. Shuffling is compared with copying options into new questions, as it used to.
+ * Not picked up by surefire; run with:
+ * mvn test-compile exec:java -Dexec.mainClass=com.secureexam.desktop.QuestionModelBenchmark -Dexec.classpathScope=test
+ */
+public class QuestionModelBenchmark {
+
+    private static final int QUESTIONS = 10_000;
+    private static final int ROUNDS = 20;
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static int sink;
+
+    public static void main(String[] args) {
+        String examId = "bench-model";
+        String[][] rows = new String[QUESTIONS][];
+        for (int i = 0; i < QUESTIONS; i++) {
+            // Banks repeat option labels heavily; the first two are shared by every question here
+            rows[i] = new String[]{"Benchmark question number " + i + "?", new String("True"), new String("False"),
+                "Option C " + i, "Option D " + i};
+        }
+        byte[] answers = new byte[QUESTIONS];
+        Random random = new Random(42);
+        for (int i = 0; i < QUESTIONS; i++) {
+            answers[i] = (byte) random.nextInt(Question.OPTION_COUNT);
+        }
+
+        List<Question> canonical = null;
+        for (int round = 0; round < ROUNDS; round++) {
+            boolean measured = round == ROUNDS - 1; // earlier rounds warm up the JIT
+            long[] start = mark();
+            canonical = new ArrayList<>(QUESTIONS);
+            for (String[] row : rows) {
+                canonical.add(new Question(examId, row[0], new String[]{row[1], row[2], row[3], row[4]}, row[2]));
+            }
+            report(measured, "construct", start);
+
+            start = mark();
+            QuestionOrder order = QuestionOrder.shuffle(QUESTIONS, random);
+            report(measured, "draw order", start);
+
+            start = mark();
+            List<Question> shown = order.apply(canonical);
+            report(measured, "shuffle (shared options)", start);
+
+            start = mark();
+            List<Question> copied = new ArrayList<>(QUESTIONS);
+            for (int i = 0; i < QUESTIONS; i++) {
+                Question source = canonical.get(order.canonicalOrdinal(i));
+                String[] sourceOptions = source.getOptions();
+                String[] options = new String[Question.OPTION_COUNT];
+                for (int j = 0; j < Question.OPTION_COUNT; j++) {
+                    options[j] = sourceOptions[order.canonicalOption(i, j)];
+                }
+                copied.add(new Question(examId, source.getText(), options, source.getCorrectAnswer()));
+            }
+            report(measured, "shuffle (copied options)", start);
+
+            start = mark();
+            int score = 0;
+            for (int i = 0; i < QUESTIONS; i++) {
+                if (shown.get(i).isCorrect(answers[i])) {
+                    score++;
+                }
+            }
+            report(measured, "score by index", start);
+
+            start = mark();
+            int stringScore = 0;
+            for (int i = 0; i < QUESTIONS; i++) {
+                String[] options = copied.get(i).getOptions();
+                if (copied.get(i).getCorrectAnswer().equals(options[answers[i]])) {
+                    stringScore++;
+                }
+            }
+            report(measured, "score by string", start);
+            sink += score + stringScore;
+        }
+        System.out.printf("retained bank: ~%d bytes (%d)%n", QuestionCache.estimateBytes(canonical), sink);
+    }
+
+    private static long[] mark() {
+        return new long[]{System.nanoTime(), THREADS.getCurrentThreadAllocatedBytes()};
+    }
+
+    private static void report(boolean measured, String phase, long[] start) {
+        long nanos = System.nanoTime() - start[0];
+        long bytes = THREADS.getCurrentThreadAllocatedBytes() - start[1];
+        if (measured) {
+            System.out.printf("%-26s %8.1f ns/question %8.1f bytes/question%n", phase,
+                (double) nanos / QUESTIONS, (double) bytes / QUESTIONS);
+        }
+    }
+}
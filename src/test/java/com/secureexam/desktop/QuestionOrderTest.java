@@ -0,0 +1,115 @@
+package com.secureexam.desktop;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Tests for the QuestionOrder and QuestionCodec classes to verify per-student layouts and encodings.
+ */
+public class QuestionOrderTest {
+
+    private List<Question> canonical;
+
+    @BeforeEach
+    public void setUp() {
+        canonical = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            canonical.add(new Question("exam", "Question " + i,
+                new String[]{"A" + i, "B" + i, "C" + i, "D" + i}, "C" + i));
+        }
+        System.out.println("[DEBUG_LOG] Test setup complete with " + canonical.size() + " questions");
+    }
+
+    @Test
+    public void testApplyIsAPermutationThatKeepsAnswers() {
+        List<Question> shuffled = QuestionOrder.shuffle(canonical.size(), new Random(42)).apply(canonical);
+
+        Set<String> texts = new HashSet<>();
+        for (Question q : shuffled) {
+            texts.add(q.getText());
+            assertTrue(Arrays.asList(q.getOptions()).contains(q.getCorrectAnswer()), "Correct answer must stay among options");
+        }
+        assertEquals(canonical.size(), texts.size(), "Every question should appear exactly once");
+        System.out.println("[DEBUG_LOG] Permutation test passed");
+    }
+
+    @Test
+    public void testEncodeDecodeRoundTrip() {
+        QuestionOrder order = QuestionOrder.shuffle(canonical.size(), new Random(1));
+        QuestionOrder decoded = QuestionOrder.decode(order.encode());
+
+        List<Question> expected = order.apply(canonical);
+        List<Question> actual = decoded.apply(canonical);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getText(), actual.get(i).getText(), "Question order should round-trip at " + i);
+            assertArrayEquals(expected.get(i).getOptions(), actual.get(i).getOptions(), "Option order should round-trip at " + i);
+        }
+        System.out.println("[DEBUG_LOG] Encode/decode test passed");
+    }
+
+    @Test
+    public void testDerivedLayoutIsReproducibleAndPerStudent() {
+        long seed = QuestionCodec.contentHash(canonical);
+        QuestionOrder first = QuestionOrder.derive("exam", "student-1", seed, canonical.size());
+        QuestionOrder again = QuestionOrder.forStudent("exam", "student-1", canonical);
+        QuestionOrder other = QuestionOrder.derive("exam", "student-2", seed, canonical.size());
+        QuestionOrder reseeded = QuestionOrder.derive("exam", "student-1", seed + 1, canonical.size());
+
+        assertTrue(first.isDerived());
+        assertEquals(seed, first.getSeed());
+        assertArrayEquals(first.encode(), again.encode(), "The same inputs should give the same layout");
+        assertFalse(Arrays.equals(first.encode(), other.encode()), "Students should get different layouts");
+        assertFalse(Arrays.equals(first.encode(), reseeded.encode()), "A new seed should give a new layout");
+
+        int[] order = new int[canonical.size()];
+        byte[] optionOrders = new byte[canonical.size()];
+        QuestionOrder.derive("exam", "student-1", seed, order, optionOrders);
+        assertArrayEquals(first.encode(), new QuestionOrder(order, optionOrders).encode(),
+            "Filling caller arrays should give the same layout");
+
+        Set<String> texts = new HashSet<>();
+        for (Question q : first.apply(canonical)) {
+            texts.add(q.getText());
+        }
+        assertEquals(canonical.size(), texts.size(), "Every question should appear exactly once");
+        System.out.println("[DEBUG_LOG] Derived layout test passed");
+    }
+
+    @Test
+    public void testDerivedLayoutsAreUniform() {
+        int students = 24_000;
+        Map<Byte, Integer> optionCounts = new HashMap<>();
+        int[] firstShown = new int[10];
+        for (int s = 0; s < students; s++) {
+            QuestionOrder order = QuestionOrder.derive("uniform", "student-" + s, 7, 10);
+            optionCounts.merge(order.optionOrder(0), 1, Integer::sum);
+            firstShown[order.canonicalOrdinal(0)]++;
+        }
+        assertEquals(24, optionCounts.size(), "Every option order should occur");
+        for (int count : optionCounts.values()) {
+            assertTrue(Math.abs(count - students / 24) < students / 24 / 5, "Option orders should be equally likely: " + count);
+        }
+        for (int count : firstShown) {
+            assertTrue(Math.abs(count - students / 10) < students / 10 / 5, "Questions should be equally likely first: " + count);
+        }
+        System.out.println("[DEBUG_LOG] Option order counts: " + optionCounts.values());
+    }
+
+    @Test
+    public void testOptionCodecIsBinarySafe() {
+        String[] options = {"a, b", "", "ünïcödé ✓", "x".repeat(300)};
+        assertArrayEquals(options, QuestionCodec.decodeOptions(QuestionCodec.encodeOptions(options)),
+            "Options with commas, empty strings, unicode and long text should round-trip");
+        System.out.println("[DEBUG_LOG] Option codec test passed");
+    }
+}
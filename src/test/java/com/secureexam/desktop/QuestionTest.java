@@ -63,31 +63,57 @@ public class QuestionTest {
     }
     
     @Test
-    public void testSetOptions() {
-        Question question = new Question(examId, text, options, correctAnswer);
+    public void testWithOptions() {
+        Question original = new Question(examId, text, options, correctAnswer);
         
         String[] newOptions = new String[]{"Rome", "Paris", "Athens", "Madrid"};
-        question.setOptions(newOptions);
+        Question question = original.withOptions(newOptions);
         
+        assertArrayEquals(options, original.getOptions(), "Questions are immutable");
         assertArrayEquals(newOptions, question.getOptions(), "Options should be updated");
         assertEquals(correctAnswer, question.getCorrectAnswer(), "Correct answer should remain the same");
         
-        System.out.println("[DEBUG_LOG] Set options test passed");
+        System.out.println("[DEBUG_LOG] With options test passed");
     }
     
     @Test
-    public void testSetOptionsWithInvalidCorrectAnswer() {
+    public void testWithOptionsWithInvalidCorrectAnswer() {
         Question question = new Question(examId, text, options, correctAnswer);
         
         String[] newOptions = new String[]{"Rome", "London", "Athens", "Madrid"}; // Paris is not in options
         
         Exception exception = assertThrows(IllegalArgumentException.class, () -> {
-            question.setOptions(newOptions);
+            question.withOptions(newOptions);
         });
         
         assertTrue(exception.getMessage().contains("New options must include the correct answer"), 
                 "Exception message should mention that new options must include correct answer");
         
-        System.out.println("[DEBUG_LOG] Set options with invalid correct answer test passed");
+        System.out.println("[DEBUG_LOG] With options with invalid correct answer test passed");
+    }
+
+    @Test
+    public void testOptionOrderSharesOptionsAndTracksCorrectIndex() {
+        Question question = new Question(examId, text, options, new String(correctAnswer));
+        assertEquals(1, question.getCorrectIndex());
+        assertSame("Paris".intern(), question.getOption(1), "Options should be interned");
+
+        // Display order Madrid, Paris, London, Berlin: canonical options 3, 1, 0, 2
+        Question shuffled = question.withOptionOrder((byte) (3 | 1 << 2 | 0 << 4 | 2 << 6));
+        assertArrayEquals(new String[]{"Madrid", "Paris", "London", "Berlin"}, shuffled.getOptions());
+        assertSame(question.getOption(3), shuffled.getOption(0), "Shuffling should not copy options");
+        assertEquals(1, shuffled.getCorrectIndex());
+        assertTrue(shuffled.isCorrect(shuffled.indexOf("Paris")));
+
+        // Shuffling a shuffled question composes the orders
+        Question reversed = shuffled.withOptionOrder((byte) (3 | 2 << 2 | 1 << 4 | 0 << 6));
+        assertArrayEquals(new String[]{"Berlin", "London", "Paris", "Madrid"}, reversed.getOptions());
+        assertEquals("Paris", reversed.getCorrectAnswer());
+        assertEquals(2, reversed.getCorrectIndex());
+
+        assertThrows(IllegalArgumentException.class, () -> question.withOptionOrder((byte) 0), "Not a permutation");
+        assertEquals(-1, question.indexOf("Rome"));
+
+        System.out.println("[DEBUG_LOG] Option order test passed");
     }
 }
\ No newline at end of file
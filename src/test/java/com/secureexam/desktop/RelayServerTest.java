@@ -0,0 +1,133 @@
+package com.secureexam.desktop;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * End-to-end tests for the exam relay over loopback.
+ */
+public class RelayServerTest {
+
+    private KeyPair relayKey;
+    private RelayServer relay;
+    private final AtomicInteger firestoreReads = new AtomicInteger();
+    private String examId;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        relayKey = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+        examId = "relay-exam-" + System.nanoTime();
+        relay = new RelayServer(id -> {
+            firestoreReads.incrementAndGet();
+            Thread.sleep(100); // a slow Firestore read makes concurrent clients overlap
+            return id.equals(examId) ? new RelayServer.SourceExam("CODE42", Map.of("name", "Relay exam"), questions(id, 30)) : null;
+        }, relayKey, 60_000);
+        relay.start(0, 8);
+        System.out.println("[DEBUG_LOG] Relay started on port " + relay.getPort());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        relay.stop();
+        LocalCache.cleanupExamCache(examId);
+        System.out.println("[DEBUG_LOG] Test cleanup complete");
+    }
+
+    @Test
+    public void testConcurrentClientsShareOneSourceRead() throws Exception {
+        RelayClient client = client(relayKey);
+        int students = 40;
+        ExecutorService pool = Executors.newFixedThreadPool(students);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < students; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return client.validateCode(examId, "CODE42");
+            }));
+        }
+        start.countDown();
+        for (Future<Boolean> result : results) {
+            assertEquals(Boolean.TRUE, result.get(10, TimeUnit.SECONDS));
+        }
+        pool.shutdown();
+
+        assertEquals(Boolean.FALSE, client.validateCode(examId, "WRONG"), "A wrong code should be refused");
+        assertEquals(1, firestoreReads.get(), "The relay should read the exam from its source once");
+    }
+
+    @Test
+    public void testBundleIsRevalidatedWithETag() {
+        RelayClient client = client(relayKey);
+
+        List<Question> first = client.fetchQuestions(examId, "CODE42");
+        assertNotNull(first);
+        assertEquals(30, first.size());
+        assertEquals(QuestionCodec.contentHash(first), LocalCache.getQuestionsVersion(examId), "Relayed questions should be cached");
+
+        List<Question> second = client.fetchQuestions(examId, "CODE42");
+        assertEquals(30, second.size());
+        assertEquals(1, relay.getBundlesServed(), "The second fetch should not download the bundle again");
+        assertEquals(1, relay.getNotModified(), "The second fetch should be answered 304");
+        assertEquals(1, firestoreReads.get());
+    }
+
+    @Test
+    public void testBundleNeedsCodeAndWrongCodesAreRateLimited() {
+        RelayClient client = client(relayKey);
+        assertNull(client.fetchQuestions(examId, null), "Without a code the relay is not asked");
+        assertNull(client.fetchQuestions(examId, "WRONG"), "The bundle must not be served for a wrong code");
+        assertEquals(0, relay.getBundlesServed());
+
+        for (int i = 1; i < RelayServer.MAX_FAILED_CODES; i++) {
+            assertEquals(Boolean.FALSE, client.validateCode(examId, "GUESS" + i));
+        }
+        assertEquals(Boolean.FALSE, client.validateCode(examId, "CODE42"),
+            "After too many wrong codes even the right one should wait out the window");
+        assertNull(client.fetchQuestions(examId, "CODE42"));
+        assertEquals(2, relay.getRateLimited());
+        assertEquals(0, relay.getBundlesServed());
+        assertFalse(LocalCache.isCached(examId));
+    }
+
+    @Test
+    public void testClientFallsBackWhenRelayCannotHelp() throws Exception {
+        KeyPair stranger = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+        assertNull(client(stranger).fetchQuestions(examId, "CODE42"), "A bundle signed by an untrusted key must be refused");
+        assertFalse(LocalCache.isCached(examId));
+
+        assertNull(client(relayKey).fetchQuestions("no-such-exam", "CODE42"), "Unknown exams should fall back to Firestore");
+        int port = relay.getPort();
+        relay.stop();
+        assertNull(new RelayClient("http://127.0.0.1:" + port, List.of(relayKey.getPublic())).validateCode(examId, "CODE42"),
+            "An unreachable relay should fall back to Firestore");
+        assertNull(new RelayClient("", List.of()).validateCode(examId, "CODE42"), "No relay configured");
+    }
+
+    private RelayClient client(KeyPair trusted) {
+        return new RelayClient("http://127.0.0.1:" + relay.getPort(), List.of(trusted.getPublic()));
+    }
+
+    private static List<Question> questions(String examId, int count) {
+        List<Question> questions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            questions.add(new Question(examId, "Relayed question " + i,
+                new String[]{"A" + i, "B" + i, "C" + i, "D" + i}, "B" + i));
+        }
+        return questions;
+    }
+}
@@ -0,0 +1,81 @@
+package com.secureexam.desktop;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Manual benchmark for caching question banks of 50 to 5,000 questions.
+ * Compares LocalCache.saveQuestions (batched, single transaction) with the previous
+ * approach of one auto-committed executeUpdate per question, replayed here against a
+ * scratch database. Not picked up by surefire; run with:
+ * mvn test-compile exec:java -Dexec.mainClass=com.secureexam.desktop.SaveQuestionsBenchmark -Dexec.classpathScope=test
+ */
+public class SaveQuestionsBenchmark {
+
+    private static final int[] SIZES = {50, 500, 2_000, 5_000};
+    private static final int ROUNDS = 8;
+
+    public static void main(String[] args) throws Exception {
+        try (Connection legacy = DriverManager.getConnection("jdbc:h2:./target/save_questions_benchmark")) {
+            try (Statement stmt = legacy.createStatement()) {
+                stmt.execute("CREATE TABLE IF NOT EXISTS questions (examId VARCHAR(255), text VARCHAR(1024), " +
+                    "options VARCHAR(2048), correctAnswer VARCHAR(255), PRIMARY KEY (examId, text))");
+            }
+            for (int size : SIZES) {
+                String examId = "bench-save-" + size;
+                List<Question> questions = questions(examId, size);
+
+                long legacyNanos = Long.MAX_VALUE;
+                long batchedNanos = Long.MAX_VALUE;
+                // Interleave the two paths and keep the best round of each to damp JIT and GC noise
+                for (int r = 0; r < ROUNDS; r++) {
+                    long start = System.nanoTime();
+                    saveLegacy(legacy, examId, questions);
+                    legacyNanos = Math.min(legacyNanos, System.nanoTime() - start);
+
+                    start = System.nanoTime();
+                    LocalCache.saveQuestions(examId, questions);
+                    batchedNanos = Math.min(batchedNanos, System.nanoTime() - start);
+                }
+                LocalCache.cleanupExamCache(examId);
+
+                System.out.printf("questions=%d per-row=%.1f ms batched=%.1f ms speedup=%.1fx%n",
+                    size, legacyNanos / 1e6, batchedNanos / 1e6, (double) legacyNanos / batchedNanos);
+            }
+        } finally {
+            LocalCache.shutdown();
+        }
+    }
+
+    private static List<Question> questions(String examId, int count) {
+        List<Question> questions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            questions.add(new Question(examId, "Benchmark question number " + i + " about a fairly typical topic?",
+                new String[]{"Option A " + i, "Option B " + i, "Option C " + i, "Option D " + i}, "Option A " + i));
+        }
+        return questions;
+    }
+
+    // The pre-batching behaviour: auto-commit on, one executeUpdate per question
+    private static void saveLegacy(Connection conn, String examId, List<Question> questions) throws SQLException {
+        try (PreparedStatement deleteStmt = conn.prepareStatement("DELETE FROM questions WHERE examId = ?")) {
+            deleteStmt.setString(1, examId);
+            deleteStmt.executeUpdate();
+        }
+        try (PreparedStatement insertStmt = conn.prepareStatement(
+            "INSERT INTO questions (examId, text, options, correctAnswer) VALUES (?, ?, ?, ?)")) {
+            for (Question q : questions) {
+                insertStmt.setString(1, examId);
+                insertStmt.setString(2, q.getText());
+                insertStmt.setString(3, String.join(",", q.getOptions()));
+                insertStmt.setString(4, q.getCorrectAnswer());
+                insertStmt.executeUpdate();
+            }
+        }
+    }
+}
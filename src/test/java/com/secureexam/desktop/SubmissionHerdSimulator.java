@@ -0,0 +1,74 @@
+package com.secureexam.desktop;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Manual simulation of 1,000 students whose exam timers expire in the same second, comparing
+ * uploads sent at once with uploads spread by {@link SubmissionQueue#jitterMillis} over 30 and
+ * 60 second windows. Uses the queue's own jitter, backoff and hint rules on a virtual clock.
+ * The server is modelled as accepting at most {@value #CAPACITY_PER_SECOND} writes per second
+ * to the adjacent submissions keys, rejecting the rest with a {@value #SERVER_HINT_MILLIS} ms
+ * retry hint. Prints peak offered and accepted writes per second, rejected writes and the time
+ * until the last submission is stored.
+ * Not picked up by surefire; run with:
+ * mvn test-compile exec:java -Dexec.mainClass=com.secureexam.desktop.SubmissionHerdSimulator -Dexec.classpathScope=test
+ */
+public class SubmissionHerdSimulator {
+
+    private static final int STUDENTS = 1_000;
+    private static final int CAPACITY_PER_SECOND = 200;
+    private static final long SERVER_HINT_MILLIS = 1_000;
+    private static final long RETRY_BASE_MILLIS = 1_000;
+    private static final long RETRY_MAX_MILLIS = 60_000;
+    private static final int MAX_SECONDS = 3_600;
+
+    public static void main(String[] args) {
+        System.out.printf("%-14s %12s %13s %9s %9s %14s%n",
+            "uploads", "peak offered", "peak accepted", "rejected", "attempts", "all stored at");
+        for (long window : new long[]{0, 30_000, 60_000}) {
+            simulate(window == 0 ? "at once" : "spread " + window / 1000 + " s", window);
+        }
+    }
+
+    private static void simulate(String label, long windowMillis) {
+        Random random = new Random(42);
+        int[] offered = new int[MAX_SECONDS];
+        int[] accepted = new int[MAX_SECONDS];
+        PriorityQueue<long[]> attempts = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0])); // {time, attempt}
+        for (int i = 0; i < STUDENTS; i++) {
+            String studentId = String.format("student-%04d@school.edu", i);
+            attempts.add(new long[]{SubmissionQueue.jitterMillis("herd-exam", studentId, windowMillis), 1});
+        }
+
+        int rejected = 0;
+        int total = 0;
+        long lastStored = 0;
+        while (!attempts.isEmpty()) {
+            long[] next = attempts.poll();
+            int second = (int) Math.min(MAX_SECONDS - 1, next[0] / 1000);
+            offered[second]++;
+            total++;
+            if (accepted[second] < CAPACITY_PER_SECOND) {
+                accepted[second]++;
+                lastStored = Math.max(lastStored, next[0]);
+            } else {
+                rejected++;
+                int attempt = (int) next[1];
+                long delay = Math.max(SERVER_HINT_MILLIS,
+                    SubmissionQueue.backoffMillis(attempt, RETRY_BASE_MILLIS, RETRY_MAX_MILLIS, random.nextDouble()));
+                attempts.add(new long[]{next[0] + delay, attempt + 1});
+            }
+        }
+        System.out.printf("%-14s %9d/s %10d/s %9d %9d %12.1f s%n",
+            label, max(offered), max(accepted), rejected, total, lastStored / 1000.0);
+    }
+
+    private static int max(int[] values) {
+        int max = 0;
+        for (int value : values) {
+            max = Math.max(max, value);
+        }
+        return max;
+    }
+}
@@ -0,0 +1,286 @@
+package com.secureexam.desktop;
+
+import com.google.api.gax.grpc.GrpcStatusCode;
+import com.google.api.gax.rpc.ApiException;
+import com.google.api.gax.rpc.ErrorDetails;
+import com.google.protobuf.Any;
+import com.google.protobuf.Duration;
+import com.google.rpc.RetryInfo;
+import io.grpc.Status;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for SubmissionQueue: background upload, retries with backoff, giving up, deadline spreading and server hints.
+ */
+public class SubmissionQueueTest {
+
+    @Test
+    public void testFailedUploadsAreRetriedWithTheSamePayload() throws Exception {
+        String examId = "queue-retry-" + System.nanoTime();
+        String studentId = "queue-student";
+        LocalCache.finishSubmission(finished(examId, studentId));
+        try {
+            List<Map<String, Object>> attempts = new CopyOnWriteArrayList<>();
+            List<SubmissionQueue.Status> statuses = new CopyOnWriteArrayList<>();
+            CountDownLatch finished = new CountDownLatch(1);
+            SubmissionQueue queue = new SubmissionQueue((documentId, data) -> {
+                assertEquals(examId + "_" + studentId, documentId);
+                attempts.add(data);
+                Thread.sleep(100); // a slow network must not hold up the caller
+                if (attempts.size() < 3) {
+                    throw new IllegalStateException("Simulated network failure");
+                }
+            }, 20, 1_000, 5);
+            queue.setListener(update -> {
+                statuses.add(update.getStatus());
+                if (update.getStatus() == SubmissionQueue.Status.UPLOADED) {
+                    finished.countDown();
+                }
+            });
+
+            long start = System.nanoTime();
+            queue.enqueue(examId, studentId, Map.of("examId", examId, "score", 3, "timestamp", 1234L));
+            long enqueueMillis = (System.nanoTime() - start) / 1_000_000;
+            assertTrue(enqueueMillis < 50, "Enqueueing should not wait for the upload");
+
+            assertTrue(finished.await(5, TimeUnit.SECONDS), "The third attempt should succeed");
+            assertEquals(3, attempts.size());
+            assertEquals(attempts.get(0), attempts.get(2), "Every attempt should write identical data");
+            assertEquals(List.of(SubmissionQueue.Status.QUEUED,
+                SubmissionQueue.Status.UPLOADING, SubmissionQueue.Status.RETRY_SCHEDULED,
+                SubmissionQueue.Status.UPLOADING, SubmissionQueue.Status.RETRY_SCHEDULED,
+                SubmissionQueue.Status.UPLOADING, SubmissionQueue.Status.UPLOADED), statuses);
+            assertEquals(0, queue.getPendingCount());
+            assertFalse(isPending(examId), "An uploaded submission should be marked synced");
+            System.out.println("[DEBUG_LOG] Enqueued in " + enqueueMillis + " ms; uploaded on attempt 3");
+        } finally {
+            LocalCache.markSubmissionAsSynced(examId, studentId);
+            LocalCache.cleanupExamCache(examId);
+        }
+    }
+
+    @Test
+    public void testDeferredSubmissionIsUploadedFromTheCacheAsQueued() throws Exception {
+        String examId = "queue-defer-" + System.nanoTime();
+        String studentId = "queue-student";
+        FinishedSubmission finished = finished(examId, studentId);
+        LocalCache.finishSubmission(finished);
+        try {
+            List<Map<String, Object>> attempts = new CopyOnWriteArrayList<>();
+            CountDownLatch deferred = new CountDownLatch(1);
+            SubmissionQueue queue = new SubmissionQueue((documentId, data) -> {
+                attempts.add(data);
+                throw new IllegalStateException("Offline");
+            }, 5, 20, 3);
+            queue.setListener(update -> {
+                if (update.getStatus() == SubmissionQueue.Status.DEFERRED) {
+                    deferred.countDown();
+                }
+            });
+            queue.enqueue(examId, studentId, finished.toFirestore());
+
+            assertTrue(deferred.await(5, TimeUnit.SECONDS));
+            assertEquals(3, attempts.size(), "Uploads should stop after the configured attempts");
+            assertEquals(SubmissionQueue.Status.DEFERRED, queue.getLastUpdate().getStatus());
+            assertTrue(isPending(examId), "A submission that was never uploaded should stay pending for the next sync");
+
+            List<Map<String, Object>> synced = new ArrayList<>();
+            new SubmissionSync(submission -> {
+                if (submission.getExamId().equals(examId)) {
+                    synced.add(submission.getFinished().toFirestore());
+                }
+            }, 50).syncPending();
+            assertEquals(List.of(attempts.get(0)), synced, "The next sync should write what the queue tried to");
+            assertFalse(isPending(examId));
+            System.out.println("[DEBUG_LOG] Deferred after " + attempts.size() + " attempts and uploaded by the sync");
+        } finally {
+            LocalCache.markSubmissionAsSynced(examId, studentId);
+            LocalCache.cleanupExamCache(examId);
+        }
+    }
+
+    @Test
+    public void testStoppingLeavesScheduledUploadsToTheNextSync() throws Exception {
+        String examId = "queue-stop-" + System.nanoTime();
+        String studentId = "queue-student";
+        FinishedSubmission finished = finished(examId, studentId);
+        LocalCache.finishSubmission(finished);
+        try {
+            AtomicInteger attempts = new AtomicInteger();
+            SubmissionQueue queue = new SubmissionQueue((documentId, data) -> attempts.incrementAndGet(),
+                5, 20, 3, 60_000);
+            queue.enqueueAt(examId, studentId, finished.toFirestore(),
+                queue.uploadSlot(examId, studentId, System.currentTimeMillis()));
+            long start = System.nanoTime();
+            queue.stop(1_000);
+            assertTrue((System.nanoTime() - start) / 1_000_000 < 500, "Stopping should not wait for a scheduled slot");
+            assertEquals(0, attempts.get());
+            assertTrue(isPending(examId), "The stopped upload should be left to the next sync");
+            System.out.println("[DEBUG_LOG] Stop test passed");
+        } finally {
+            LocalCache.markSubmissionAsSynced(examId, studentId);
+            LocalCache.cleanupExamCache(examId);
+        }
+    }
+
+    @Test
+    public void testBackoffDoublesUpToTheCapWithJitter() {
+        List<Long> delays = new ArrayList<>();
+        for (int attempt = 1; attempt <= 10; attempt++) {
+            long low = SubmissionQueue.backoffMillis(attempt, 1_000, 60_000, 0);
+            long high = SubmissionQueue.backoffMillis(attempt, 1_000, 60_000, 0.999999);
+            long ceiling = Math.min(60_000, 1_000L << (attempt - 1));
+            assertEquals(ceiling / 2, low, "Jitter should keep at least half the delay");
+            assertTrue(high <= ceiling && high > ceiling * 9 / 10, "Jitter should reach the full delay");
+            delays.add(high);
+        }
+        assertEquals(60_000, SubmissionQueue.backoffMillis(40, 1_000, 60_000, 0.999999), 1,
+            "Large attempt counts should stay at the cap");
+        System.out.println("[DEBUG_LOG] Backoff ceilings: " + delays);
+    }
+
+    @Test
+    public void testDeadlineUploadsAreSpreadDeterministically() throws Exception {
+        long window = 60_000;
+        int[] perSecond = new int[60];
+        for (int i = 0; i < 1_000; i++) {
+            String studentId = "student-" + i + "@school.edu";
+            long jitter = SubmissionQueue.jitterMillis("herd", studentId, window);
+            assertEquals(jitter, SubmissionQueue.jitterMillis("herd", studentId, window), "A student's slot should be stable");
+            assertTrue(jitter >= 0 && jitter < window);
+            perSecond[(int) (jitter / 1000)]++;
+        }
+        int peak = 0;
+        for (int count : perSecond) {
+            assertTrue(count > 0, "Every second of the window should be used");
+            peak = Math.max(peak, count);
+        }
+        assertTrue(peak < 50, "1,000 expiries should not put more than 50 uploads in one second: " + peak);
+        assertEquals(0, SubmissionQueue.jitterMillis("herd", "student", 0), "Without a window uploads start at once");
+
+        List<SubmissionQueue.Update> updates = new CopyOnWriteArrayList<>();
+        CountDownLatch uploaded = new CountDownLatch(1);
+        SubmissionQueue queue = new SubmissionQueue((documentId, data) -> { }, 10, 100, 3, 300);
+        queue.setListener(update -> {
+            updates.add(update);
+            if (update.getStatus() == SubmissionQueue.Status.UPLOADED) {
+                uploaded.countDown();
+            }
+        });
+        long start = System.nanoTime();
+        String spreadExam = "spread-" + System.nanoTime();
+        queue.enqueueAt(spreadExam, "student", Map.of("score", 1), queue.uploadSlot(spreadExam, "student", System.currentTimeMillis()));
+        assertTrue(uploaded.await(5, TimeUnit.SECONDS));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        assertEquals(SubmissionQueue.Status.SCHEDULED, updates.get(0).getStatus());
+        assertTrue(elapsedMillis + 20 >= updates.get(0).getDelayMillis(), "The upload should wait for the student's slot");
+        System.out.println("[DEBUG_LOG] Peak uploads per second over a 60 s window: " + peak
+            + "; slot of " + updates.get(0).getDelayMillis() + " ms kept");
+    }
+
+    @Test
+    public void testScheduledUploadKeepsItsSlotAcrossRestarts() throws Exception {
+        String examId = "queue-slot-" + System.nanoTime();
+        String studentId = "queue-student";
+        AnswerSheet sheet = new AnswerSheet(2);
+        long slot = System.currentTimeMillis() + 400;
+        FinishedSubmission finished = new FinishedSubmission(examId, studentId, "series", sheet, 0, 2, 0, null,
+            System.currentTimeMillis(), slot);
+        LocalCache.finishSubmission(finished);
+        try {
+            // The sync at launch leaves a submission whose slot is still ahead to the queue
+            List<String> synced = new ArrayList<>();
+            new SubmissionSync(submission -> synced.add(submission.getExamId()), 50).syncPending();
+            assertFalse(synced.contains(examId), "The sync should not upload before the student's slot");
+
+            List<Long> uploadTimes = new CopyOnWriteArrayList<>();
+            List<SubmissionQueue.Update> updates = new CopyOnWriteArrayList<>();
+            CountDownLatch uploaded = new CountDownLatch(1);
+            SubmissionQueue relaunched = new SubmissionQueue((documentId, data) -> {
+                if (documentId.startsWith(examId)) {
+                    assertEquals(finished.toFirestore(), data);
+                    uploadTimes.add(System.currentTimeMillis());
+                }
+            }, 5, 20, 3, 60_000);
+            relaunched.setListener(update -> {
+                if (update.getExamId().equals(examId)) {
+                    updates.add(update);
+                    if (update.getStatus() == SubmissionQueue.Status.UPLOADED) {
+                        uploaded.countDown();
+                    }
+                }
+            });
+            assertTrue(relaunched.resumeScheduled() >= 1);
+            assertTrue(uploaded.await(5, TimeUnit.SECONDS));
+            assertEquals(SubmissionQueue.Status.SCHEDULED, updates.get(0).getStatus());
+            assertTrue(uploadTimes.get(0) >= slot, "The resumed upload should still wait for its slot");
+            assertFalse(isPending(examId));
+            System.out.println("[DEBUG_LOG] Resumed upload waited " + updates.get(0).getDelayMillis() + " ms for its slot");
+        } finally {
+            LocalCache.markSubmissionAsSynced(examId, studentId);
+            LocalCache.cleanupExamCache(examId);
+        }
+    }
+
+    @Test
+    public void testServerBackoffHintIsHonoured() throws Exception {
+        ApiException throttled = new ApiException(new RuntimeException("Too many writes"),
+            GrpcStatusCode.of(Status.Code.RESOURCE_EXHAUSTED), true,
+            ErrorDetails.builder().setRawErrorMessages(List.of(Any.pack(RetryInfo.newBuilder()
+                .setRetryDelay(Duration.newBuilder().setSeconds(2).setNanos(500_000_000)).build()))).build());
+        assertEquals(2_500, SubmissionQueue.retryAfterMillis(new ExecutionException(throttled)),
+            "The gRPC retry delay should be found behind the future's wrapper");
+        assertEquals(0, SubmissionQueue.retryAfterMillis(new IllegalStateException("Offline")));
+
+        List<Long> attemptTimes = new CopyOnWriteArrayList<>();
+        CountDownLatch uploaded = new CountDownLatch(2);
+        SubmissionQueue queue = new SubmissionQueue((documentId, data) -> {
+            attemptTimes.add(System.nanoTime());
+            if (documentId.startsWith("hint-a") && attemptTimes.size() == 1) {
+                throw new SubmissionQueue.RetryAfterException("Server busy", 300);
+            }
+        }, 5, 20, 3);
+        queue.setListener(update -> {
+            if (update.getStatus() == SubmissionQueue.Status.UPLOADED) {
+                uploaded.countDown();
+            }
+        });
+        String examId = "hint-a" + System.nanoTime();
+        queue.enqueue(examId, "student", Map.of("score", 1));
+        queue.enqueue("hint-b" + System.nanoTime(), "student", Map.of("score", 2));
+        assertTrue(uploaded.await(5, TimeUnit.SECONDS));
+
+        assertEquals(3, attemptTimes.size());
+        long secondAttemptMillis = (attemptTimes.get(1) - attemptTimes.get(0)) / 1_000_000;
+        assertTrue(secondAttemptMillis >= 280, "Other uploads should pause for the server's hint: " + secondAttemptMillis + " ms");
+        long retryMillis = (attemptTimes.get(2) - attemptTimes.get(0)) / 1_000_000;
+        assertTrue(retryMillis >= 280, "The retry should wait at least as long as the server asked: " + retryMillis + " ms");
+        System.out.println("[DEBUG_LOG] After a 300 ms hint the next upload went out after " + secondAttemptMillis + " ms");
+    }
+
+    private static FinishedSubmission finished(String examId, String studentId) {
+        AnswerSheet sheet = new AnswerSheet(3);
+        sheet.setAnswer(1, 2);
+        return new FinishedSubmission(examId, studentId, "series", sheet, 1, 3, 0, null, System.currentTimeMillis());
+    }
+
+    private static boolean isPending(String examId) {
+        PendingSubmissionCursor cursor = LocalCache.openFinishedSubmissions(null, 100);
+        while (cursor.hasNext()) {
+            if (cursor.next().getExamId().equals(examId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}